@@ -30,6 +30,7 @@ package seventhsense;
 import java.awt.SplashScreen;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -45,7 +46,12 @@ import javax.sound.sampled.Port;
 import javax.swing.UIManager;
 
 import seventhsense.gui.MainWindow;
+import seventhsense.gui.file.NodeFile;
 import seventhsense.gui.logging.LoggerFrame;
+import seventhsense.sound.SoundFactory;
+import seventhsense.sound.cache.PcmDiskCache;
+import seventhsense.sound.engine.AudioMetrics;
+import seventhsense.sound.engine.SoftwareMixer;
 
 /**
  * Main start class.
@@ -160,6 +166,26 @@ public class SeventhSenseStartup
 			}
 		}
 		
+		AudioMetrics.registerMBean();
+		
+		if(arguments.containsKey("pcm-cache"))
+		{
+			final List<String> cacheArgs = arguments.get("pcm-cache");
+			if(cacheArgs.isEmpty())
+			{
+				PcmDiskCache.get().setDirectory(new File(NodeFile.DefaultLibraryFile.getAbsoluteFile().getParentFile(), "pcmcache"));
+			}
+			else
+			{
+				PcmDiskCache.get().setDirectory(new File(cacheArgs.get(0)));
+			}
+		}
+		
+		if(arguments.containsKey("mix-soundfx"))
+		{
+			SoundFactory.setSoundFxBackend(new SoftwareMixer(SoundFactory.getAudioBackend()));
+		}
+		
 		try
 		{
 			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
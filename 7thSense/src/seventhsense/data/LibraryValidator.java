@@ -0,0 +1,481 @@
+/*
+ * LibraryValidator.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import seventhsense.data.file.FileReference;
+import seventhsense.data.file.FileReferenceManager;
+import seventhsense.data.scenario.basicscenario.AbstractScenarioManager;
+import seventhsense.data.scenario.basicscenario.BasicScenarioNode;
+import seventhsense.data.scenario.sound.AbstractSoundItem;
+import seventhsense.sound.engine.input.AudioMetadataIndex;
+
+/**
+ * Validates a node tree in the background. The files of all scenarios are checked in parallel through the
+ * AudioMetadataIndex, so unchanged files are only stat'ed and copies of a file share its metadata. Each scenario is updated in the event dispatch thread
+ * as soon as all of its files were checked, the containers are updated at the end.
+ *
+ * @author Parallan
+ *
+ */
+public final class LibraryValidator
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(LibraryValidator.class.getName());
+	
+	/**
+	 * Number of threads checking files (mostly waiting for the file system)
+	 */
+	private static final int THREAD_COUNT = 8;
+	
+	/**
+	 * Threads checking files, shared by all validations
+	 */
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory()
+	{
+		/**
+		 * Number of created threads
+		 */
+		private final AtomicInteger _threadCount = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			final Thread thread = new Thread(runnable, "LibraryValidator-" + _threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+	
+	/**
+	 * A file to check
+	 */
+	private static final class FileEntry
+	{
+		/**
+		 * The file
+		 */
+		private final FileReference _file;
+		
+		/**
+		 * Scenarios using the file
+		 */
+		private final Set<ScenarioEntry> _scenarios = new LinkedHashSet<ScenarioEntry>();
+		
+		/**
+		 * Check result
+		 */
+		private volatile boolean _isValid = false;
+		
+		/**
+		 * Creates an entry
+		 *
+		 * @param file the file
+		 */
+		private FileEntry(final FileReference file)
+		{
+			_file = file;
+		}
+	}
+	
+	/**
+	 * A scenario to update
+	 */
+	private static final class ScenarioEntry
+	{
+		/**
+		 * The scenario
+		 */
+		private final BasicScenarioNode _node;
+		
+		/**
+		 * Files of the music manager
+		 */
+		private final Set<FileEntry> _musicFiles = new LinkedHashSet<FileEntry>();
+		
+		/**
+		 * Files of the sound fx manager
+		 */
+		private final Set<FileEntry> _soundFxFiles = new LinkedHashSet<FileEntry>();
+		
+		/**
+		 * Number of files, which were not checked yet
+		 */
+		private final AtomicInteger _pendingCount = new AtomicInteger();
+		
+		/**
+		 * Creates an entry
+		 *
+		 * @param node the scenario
+		 */
+		private ScenarioEntry(final BasicScenarioNode node)
+		{
+			_node = node;
+		}
+	}
+	
+	/**
+	 * Listener for the progress
+	 */
+	private final IValidationListener _listener;
+	
+	/**
+	 * Files to check by absolute path
+	 */
+	private final Map<String, FileEntry> _files = new LinkedHashMap<String, FileEntry>();
+	
+	/**
+	 * Scenarios to update
+	 */
+	private final List<ScenarioEntry> _scenarios = new ArrayList<ScenarioEntry>();
+	
+	/**
+	 * Containers to update at the end (children before parents)
+	 */
+	private final List<INode> _containers = new ArrayList<INode>();
+	
+	/**
+	 * Submitted checks
+	 */
+	private final List<Future<?>> _futures = new ArrayList<Future<?>>();
+	
+	/**
+	 * Number of checked files
+	 */
+	private final AtomicInteger _checkedCount = new AtomicInteger();
+	
+	/**
+	 * True, if a progress event is queued in the event dispatch thread
+	 */
+	private final AtomicBoolean _isProgressPending = new AtomicBoolean();
+	
+	/**
+	 * True, if cancelled
+	 */
+	private volatile boolean _isCancelled = false;
+	
+	/**
+	 * True, if finished or cancelled (only accessed in the event dispatch thread)
+	 */
+	private boolean _isFinished = false;
+	
+	/**
+	 * Creates a validator
+	 *
+	 * @param listener listener for the progress
+	 */
+	private LibraryValidator(final IValidationListener listener)
+	{
+		_listener = listener;
+	}
+	
+	/**
+	 * Starts validating the given tree. Must be called in the event dispatch thread.
+	 *
+	 * @param root root of the tree
+	 * @param listener listener for the progress
+	 * @return running validator
+	 */
+	public static LibraryValidator start(final INode root, final IValidationListener listener)
+	{
+		final LibraryValidator validator = new LibraryValidator(listener);
+		validator.collect(root);
+		validator.submit();
+		return validator;
+	}
+	
+	/**
+	 * Collects the files of all scenarios and the containers in the tree
+	 *
+	 * @param node current node
+	 */
+	private void collect(final INode node)
+	{
+		if(node instanceof BasicScenarioNode)
+		{
+			final BasicScenarioNode scenarioNode = (BasicScenarioNode) node;
+			final ScenarioEntry scenario = new ScenarioEntry(scenarioNode);
+			collect(scenario, scenarioNode.getMusicManager(), scenario._musicFiles);
+			collect(scenario, scenarioNode.getSoundFxManager(), scenario._soundFxFiles);
+			_scenarios.add(scenario);
+		}
+		else if(node instanceof AbstractContainerNode)
+		{
+			for(INode child : node)
+			{
+				collect(child);
+			}
+			_containers.add(node);
+		}
+	}
+	
+	/**
+	 * Collects the files of a scenario manager
+	 *
+	 * @param scenario scenario of the manager
+	 * @param manager scenario manager
+	 * @param files files of the manager
+	 */
+	private void collect(final ScenarioEntry scenario, final AbstractScenarioManager<?> manager, final Set<FileEntry> files)
+	{
+		for(AbstractSoundItem<?> item : manager.getList())
+		{
+			final String key = new File(item.getFile().getPath()).getAbsolutePath();
+			FileEntry fileEntry = _files.get(key);
+			if(fileEntry == null)
+			{
+				fileEntry = new FileEntry(item.getFile());
+				_files.put(key, fileEntry);
+			}
+			files.add(fileEntry);
+			if(fileEntry._scenarios.add(scenario))
+			{
+				scenario._pendingCount.incrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Submits the checks of all files
+	 */
+	private void submit()
+	{
+		LOGGER.log(Level.FINE, "validate " + _files.size() + " files in " + _scenarios.size() + " scenarios");
+		for(ScenarioEntry scenario : _scenarios)
+		{
+			if(scenario._pendingCount.get() == 0)
+			{
+				apply(scenario);
+			}
+		}
+		if(_files.isEmpty())
+		{
+			// Fire the events after start returned
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					finish();
+				}
+			});
+			return;
+		}
+		for(final FileEntry fileEntry : _files.values())
+		{
+			_futures.add(EXECUTOR.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					check(fileEntry);
+				}
+			}));
+		}
+	}
+	
+	/**
+	 * Checks a file. Runs in a validator thread.
+	 *
+	 * @param fileEntry file to check
+	 */
+	private void check(final FileEntry fileEntry)
+	{
+		if(_isCancelled)
+		{
+			return;
+		}
+		try
+		{
+			// Copies with identical content share the metadata
+			final FileReference contentFile = FileReferenceManager.get().getContentReference(fileEntry._file);
+			fileEntry._isValid = AudioMetadataIndex.get().getMetadata(new File(contentFile.getPath())).isValid();
+		}
+		catch (RuntimeException e)
+		{
+			// A file, which cannot be checked, is invalid
+			LOGGER.log(Level.SEVERE, "could not check " + fileEntry._file, e);
+			fileEntry._isValid = false;
+		}
+		finally
+		{
+			// The file must be counted in any case, else the validation never finishes
+			complete(fileEntry);
+		}
+	}
+	
+	/**
+	 * Counts a checked file and queues the updates of the scenarios, which are complete. Runs in a validator
+	 * thread.
+	 *
+	 * @param fileEntry checked file
+	 */
+	private void complete(final FileEntry fileEntry)
+	{
+		for(final ScenarioEntry scenario : fileEntry._scenarios)
+		{
+			if(scenario._pendingCount.decrementAndGet() == 0)
+			{
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						if(!_isCancelled)
+						{
+							apply(scenario);
+						}
+					}
+				});
+			}
+		}
+		final int checkedCount = _checkedCount.incrementAndGet();
+		if(checkedCount == _files.size())
+		{
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					finish();
+				}
+			});
+		}
+		else if(_isProgressPending.compareAndSet(false, true))
+		{
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					_isProgressPending.set(false);
+					if(!_isFinished)
+					{
+						_listener.validationProgress(_checkedCount.get(), _files.size());
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Updates a scenario with the check results of its files
+	 *
+	 * @param scenario scenario
+	 */
+	private static void apply(final ScenarioEntry scenario)
+	{
+		scenario._node.setValid(isValid(scenario._musicFiles), isValid(scenario._soundFxFiles));
+	}
+	
+	/**
+	 * Returns true, if all files are valid
+	 *
+	 * @param files checked files
+	 * @return true, if valid
+	 */
+	private static boolean isValid(final Set<FileEntry> files)
+	{
+		for(FileEntry fileEntry : files)
+		{
+			if(!fileEntry._isValid)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Updates the containers and fires the finished event
+	 */
+	private void finish()
+	{
+		if(_isFinished)
+		{
+			return;
+		}
+		_isFinished = true;
+		for(INode container : _containers)
+		{
+			container.validate(false);
+		}
+		_listener.validationProgress(_files.size(), _files.size());
+		_listener.validationFinished(false);
+	}
+	
+	/**
+	 * Cancels the validation. Scenarios, which were updated already, keep their state.
+	 * Must be called in the event dispatch thread.
+	 */
+	public void cancel()
+	{
+		if(_isFinished)
+		{
+			return;
+		}
+		_isCancelled = true;
+		_isFinished = true;
+		for(Future<?> future : _futures)
+		{
+			future.cancel(false);
+		}
+		_listener.validationFinished(true);
+	}
+	
+	/**
+	 * Returns true, if the validation did not finish and was not cancelled yet.
+	 * Must be called in the event dispatch thread.
+	 *
+	 * @return true, if running
+	 */
+	public boolean isRunning()
+	{
+		return !_isFinished;
+	}
+}
@@ -0,0 +1,458 @@
+/*
+ * LibraryWatcher.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import seventhsense.data.file.DuplicateReport;
+import seventhsense.data.file.FileReference;
+import seventhsense.data.file.FileReferenceManager;
+import seventhsense.data.scenario.basicscenario.AbstractScenarioManager;
+import seventhsense.data.scenario.basicscenario.BasicScenarioNode;
+import seventhsense.data.scenario.sound.AbstractSoundItem;
+import seventhsense.sound.cache.PcmCache;
+import seventhsense.sound.cache.PcmDiskCache;
+import seventhsense.sound.engine.input.AudioMetadataIndex;
+import seventhsense.sound.engine.input.SeekIndex;
+
+/**
+ * Watches the files of all known file references for changes. When a file is created, modified, moved or
+ * deleted, the cached data of the file is dropped and only the scenarios using the file and their containers
+ * are validated again. The files are polled, because the WatchService is not available on the supported
+ * java version. A poll only stats the directories of the files and the files in directories, which were
+ * changed (created, deleted or moved entries). Files modified in place do not change their directory, so all
+ * files are stat'ed at a much longer interval. After the first poll, all files are hashed once in the background
+ * while polling continues, so copies of a file share its caches (the hashes saved with the library are reused
+ * for unmodified files), and the copies are reported.
+ *
+ * @author Parallan
+ *
+ */
+public final class LibraryWatcher
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(LibraryWatcher.class.getName());
+	
+	/**
+	 * Time between two polls in ms
+	 */
+	private static final long POLL_INTERVAL = 2000;
+	
+	/**
+	 * Time between two polls of all files in ms (finds files modified in place)
+	 */
+	private static final long FULL_POLL_INTERVAL = 60000;
+	
+	/**
+	 * Resolution of the modification time of the file systems in ms. A directory modified this short before
+	 * a poll may be modified again without changing its modification time, so it is checked again.
+	 */
+	private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+	
+	/**
+	 * State of a file at a poll
+	 */
+	private static final class FileState
+	{
+		/**
+		 * Length of the file (0, if it does not exist)
+		 */
+		private final long _length;
+		
+		/**
+		 * Modification time of the file (0, if it does not exist)
+		 */
+		private final long _lastModified;
+		
+		/**
+		 * Reads the state of the file
+		 *
+		 * @param file the file
+		 */
+		private FileState(final File file)
+		{
+			_length = file.length();
+			_lastModified = file.lastModified();
+		}
+		
+		/**
+		 * Returns true, if the file existed
+		 *
+		 * @return true, if the file existed
+		 */
+		private boolean exists()
+		{
+			return _lastModified != 0;
+		}
+		
+		/**
+		 * Returns true, if both states are equal
+		 *
+		 * @param other other state
+		 * @return true, if equal
+		 */
+		private boolean isEqual(final FileState other)
+		{
+			return (_length == other._length) && (_lastModified == other._lastModified);
+		}
+	}
+	
+	/**
+	 * Root of the watched tree
+	 */
+	private final INode _root;
+	
+	/**
+	 * Listener for the hashing
+	 */
+	private final IHashListener _listener;
+	
+	/**
+	 * States of the watched files at the last poll (only accessed by the watcher thread)
+	 */
+	private final Map<FileReference, FileState> _states = new WeakHashMap<FileReference, FileState>();
+	
+	/**
+	 * Modification times of the directories of the watched files at the last poll (only accessed by the
+	 * watcher thread)
+	 */
+	private Map<File, Long> _directoryStates = new HashMap<File, Long>();
+	
+	/**
+	 * System time of the last poll in ms (only accessed by the watcher thread)
+	 */
+	private long _lastPollTime = 0;
+	
+	/**
+	 * System time of the last poll of all files in ms (only accessed by the watcher thread)
+	 */
+	private long _lastFullPollTime = 0;
+	
+	/**
+	 * Polling thread
+	 */
+	private final Thread _thread;
+	
+	/**
+	 * True, until the watcher is stopped
+	 */
+	private volatile boolean _isRunning = true;
+	
+	/**
+	 * Creates a watcher
+	 *
+	 * @param root root of the watched tree
+	 * @param listener listener for the hashing
+	 */
+	private LibraryWatcher(final INode root, final IHashListener listener)
+	{
+		_root = root;
+		_listener = listener;
+		_thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				LibraryWatcher.this.run();
+			}
+		}, "LibraryWatcher");
+		_thread.setDaemon(true);
+		_thread.setPriority(Thread.MIN_PRIORITY);
+	}
+	
+	/**
+	 * Starts watching the files of the given tree
+	 *
+	 * @param root root of the tree
+	 * @param listener listener for the hashing
+	 * @return running watcher
+	 */
+	public static LibraryWatcher start(final INode root, final IHashListener listener)
+	{
+		final LibraryWatcher watcher = new LibraryWatcher(root, listener);
+		watcher._thread.start();
+		return watcher;
+	}
+	
+	/**
+	 * Stops watching
+	 */
+	public void stop()
+	{
+		_isRunning = false;
+		_thread.interrupt();
+	}
+	
+	/**
+	 * Starts hashing the files after the first poll and polls the files until stopped
+	 */
+	private void run()
+	{
+		boolean isHashed = false;
+		while(_isRunning)
+		{
+			try
+			{
+				poll();
+				if(!isHashed)
+				{
+					isHashed = true;
+					hash();
+				}
+				Thread.sleep(POLL_INTERVAL);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			catch (RuntimeException e)
+			{
+				LOGGER.log(Level.SEVERE, e.toString(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Starts hashing all files, the files with identical content are reported, when hashing has finished
+	 */
+	private void hash()
+	{
+		FileReferenceManager.get().hashAll(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				hashingFinished();
+			}
+		});
+	}
+	
+	/**
+	 * Reports the files with identical content. Runs in a hashing thread.
+	 */
+	private void hashingFinished()
+	{
+		if(!_isRunning)
+		{
+			return;
+		}
+		final DuplicateReport report = FileReferenceManager.get().getDuplicateReport();
+		if(report.getDuplicateCount() > 0)
+		{
+			LOGGER.log(Level.INFO, report.toString() + " " + report.getDuplicateGroups());
+		}
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(_isRunning)
+				{
+					_listener.hashingFinished(report);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Checks the files in changed directories, new files and at the full poll interval all files for changes.
+	 * The first poll only reads the states.
+	 */
+	private void poll()
+	{
+		final long pollTime = System.currentTimeMillis();
+		final boolean isFullPoll = pollTime - _lastFullPollTime >= FULL_POLL_INTERVAL;
+		if(isFullPoll)
+		{
+			_lastFullPollTime = pollTime;
+		}
+		final Map<File, Long> directoryStates = new HashMap<File, Long>();
+		final Set<File> changedDirectories = new HashSet<File>();
+		final Set<FileReference> changedFiles = new HashSet<FileReference>();
+		for(FileReference fileReference : FileReferenceManager.get().getFileReferences())
+		{
+			if(fileReference.getPath().length() == 0)
+			{
+				continue;
+			}
+			final File file = new File(fileReference.getPath());
+			final File directory = file.getAbsoluteFile().getParentFile();
+			if((directory != null) && !directoryStates.containsKey(directory))
+			{
+				final long lastModified = directory.lastModified();
+				directoryStates.put(directory, Long.valueOf(lastModified));
+				final Long previousLastModified = _directoryStates.get(directory);
+				if((previousLastModified == null) || (previousLastModified.longValue() != lastModified)
+						|| (lastModified >= _lastPollTime - MODIFICATION_TIME_RESOLUTION))
+				{
+					changedDirectories.add(directory);
+				}
+			}
+			if(!isFullPoll && (directory != null) && !changedDirectories.contains(directory) && _states.containsKey(fileReference))
+			{
+				continue;
+			}
+			final FileState state = new FileState(file);
+			final FileState previousState = _states.put(fileReference, state);
+			if((previousState != null) && !previousState.isEqual(state))
+			{
+				LOGGER.log(Level.FINE, "changed " + file);
+				invalidate(fileReference, file, previousState);
+				changedFiles.add(fileReference);
+			}
+		}
+		_directoryStates = directoryStates;
+		_lastPollTime = pollTime;
+		if(changedFiles.isEmpty() || !_isRunning)
+		{
+			return;
+		}
+		for(FileReference fileReference : changedFiles)
+		{
+			rehash(fileReference);
+			// Read the metadata here, so the validation in the event dispatch thread only stats the files
+			AudioMetadataIndex.get().getMetadata(new File(FileReferenceManager.get().getContentReference(fileReference).getPath()));
+		}
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(_isRunning)
+				{
+					revalidate(_root, changedFiles);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Drops the cached data of a changed file
+	 *
+	 * @param fileReference changed file reference
+	 * @param file changed file
+	 * @param previousState state of the file before the change
+	 */
+	private static void invalidate(final FileReference fileReference, final File file, final FileState previousState)
+	{
+		AudioMetadataIndex.get().invalidate(file);
+		SeekIndex.invalidate(file);
+		PcmCache.get().invalidate(fileReference);
+		if(previousState.exists())
+		{
+			PcmDiskCache.get().invalidate(file, previousState._length, previousState._lastModified);
+		}
+	}
+	
+	/**
+	 * Hashes a changed file again, so it is shared with its new copies
+	 *
+	 * @param fileReference changed file reference
+	 */
+	private static void rehash(final FileReference fileReference)
+	{
+		if(!new File(fileReference.getPath()).isFile())
+		{
+			return;
+		}
+		try
+		{
+			fileReference.updateHash();
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Can't hash file: " + e.toString());
+		}
+	}
+	
+	/**
+	 * Validates the scenarios using one of the changed files and their containers. Runs in the event
+	 * dispatch thread.
+	 *
+	 * @param node current node
+	 * @param changedFiles changed files
+	 * @return true, if a node in the subtree was validated
+	 */
+	private static boolean revalidate(final INode node, final Set<FileReference> changedFiles)
+	{
+		if(node instanceof BasicScenarioNode)
+		{
+			final BasicScenarioNode scenarioNode = (BasicScenarioNode) node;
+			if(uses(scenarioNode.getMusicManager(), changedFiles) || uses(scenarioNode.getSoundFxManager(), changedFiles))
+			{
+				scenarioNode.validate(false);
+				return true;
+			}
+		}
+		else if(node instanceof AbstractContainerNode)
+		{
+			boolean isAffected = false;
+			for(INode child : node)
+			{
+				isAffected |= revalidate(child, changedFiles);
+			}
+			if(isAffected)
+			{
+				node.validate(false);
+			}
+			return isAffected;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns true, if one of the items of the manager uses a changed file
+	 *
+	 * @param manager scenario manager
+	 * @param changedFiles changed files
+	 * @return true, if a changed file is used
+	 */
+	private static boolean uses(final AbstractScenarioManager<?> manager, final Set<FileReference> changedFiles)
+	{
+		for(AbstractSoundItem<?> item : manager.getList())
+		{
+			if(changedFiles.contains(item.getFile()))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * DuplicateReport.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.data.file;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Report of the file references with identical content, created by the FileReferenceManager from the hashes
+ * of the references
+ *
+ * @author Parallan
+ *
+ */
+public final class DuplicateReport
+{
+	/**
+	 * Groups of references with identical content (each with at least two references)
+	 */
+	private final List<List<FileReference>> _duplicateGroups;
+	
+	/**
+	 * Number of hashed references
+	 */
+	private final int _hashedCount;
+	
+	/**
+	 * Number of distinct contents of the hashed references
+	 */
+	private final int _uniqueCount;
+	
+	/**
+	 * Number of references, which are a copy of another reference
+	 */
+	private final int _duplicateCount;
+	
+	/**
+	 * Size of the copies in bytes
+	 */
+	private final long _duplicateBytes;
+	
+	/**
+	 * Creates a report
+	 *
+	 * @param duplicateGroups groups of references with identical content
+	 * @param hashedCount number of hashed references
+	 * @param uniqueCount number of distinct contents
+	 * @param duplicateCount number of copies
+	 * @param duplicateBytes size of the copies in bytes
+	 */
+	DuplicateReport(final List<List<FileReference>> duplicateGroups, final int hashedCount, final int uniqueCount, final int duplicateCount, final long duplicateBytes)
+	{
+		final List<List<FileReference>> groups = new ArrayList<List<FileReference>>(duplicateGroups.size());
+		for(List<FileReference> group : duplicateGroups)
+		{
+			groups.add(Collections.unmodifiableList(new ArrayList<FileReference>(group)));
+		}
+		_duplicateGroups = Collections.unmodifiableList(groups);
+		_hashedCount = hashedCount;
+		_uniqueCount = uniqueCount;
+		_duplicateCount = duplicateCount;
+		_duplicateBytes = duplicateBytes;
+	}
+	
+	/**
+	 * Gets the groups of references with identical content. The first reference of a group is the one used
+	 * for playing and caching.
+	 *
+	 * @return groups with at least two references each
+	 */
+	public List<List<FileReference>> getDuplicateGroups()
+	{
+		return _duplicateGroups;
+	}
+	
+	/**
+	 * Gets the number of hashed references (references without a current hash are not included)
+	 *
+	 * @return number of hashed references
+	 */
+	public int getHashedCount()
+	{
+		return _hashedCount;
+	}
+	
+	/**
+	 * Gets the number of distinct contents
+	 *
+	 * @return number of distinct contents
+	 */
+	public int getUniqueCount()
+	{
+		return _uniqueCount;
+	}
+	
+	/**
+	 * Gets the number of references, which are a copy of another reference
+	 *
+	 * @return number of copies
+	 */
+	public int getDuplicateCount()
+	{
+		return _duplicateCount;
+	}
+	
+	/**
+	 * Gets the size of all copies, which could be removed from the library
+	 *
+	 * @return size in bytes
+	 */
+	public long getDuplicateBytes()
+	{
+		return _duplicateBytes;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "DuplicateReport [" + _hashedCount + " files, " + _uniqueCount + " unique, " + _duplicateCount + " duplicates in " + _duplicateGroups.size() + " groups, "
+				+ (_duplicateBytes / 1024) + " KB duplicate data]";
+	}
+}
@@ -27,6 +27,7 @@
  */
 package seventhsense.data.file;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
@@ -60,11 +61,26 @@ public class FileReference implements Serializable
 	 */
 	private final String _path;
 	
+	/**
+	 * Size of the chunks read for hashing
+	 */
+	private static final int HASH_CHUNK_SIZE = 256 * 1024;
+	
 	/**
 	 * File hash value
 	 */
 	private byte[] _hash;
 	
+	/**
+	 * Length of the file, when the hash was calculated
+	 */
+	private long _hashFileLength;
+	
+	/**
+	 * Modification time of the file, when the hash was calculated
+	 */
+	private long _hashLastModified;
+	
 	/**
 	 * Create a new file reference
 	 * 
@@ -76,30 +92,89 @@ public class FileReference implements Serializable
 	}
 	
 	/**
-	 * Calculates the hash for the file and saves it
+	 * Calculates the hash for the file and saves it. The file is read in chunks, so the memory is constant.
 	 * 
 	 * @throws IOException
 	 */
 	public void generateHash() throws IOException
 	{
-		final FileInputStream fileInputStream = new FileInputStream(_path);
-		final FileChannel fileChannel = fileInputStream.getChannel();
-		final ByteBuffer fileData = ByteBuffer.allocate((int) fileChannel.size());
-		if(fileChannel.read(fileData) != fileChannel.size())
+		final File file = new File(_path);
+		final long fileLength = file.length();
+		final long lastModified = file.lastModified();
+		final MessageDigest md;
+		try
 		{
-			throw new IOException("can't read entire file");
+			md = MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
 		}
-		fileInputStream.close();
 		
+		final FileInputStream fileInputStream = new FileInputStream(file);
 		try
 		{
-			final MessageDigest md = MessageDigest.getInstance("MD5");
-			_hash = md.digest(fileData.array());
+			final FileChannel fileChannel = fileInputStream.getChannel();
+			final ByteBuffer chunk = ByteBuffer.allocate(HASH_CHUNK_SIZE);
+			long readBytes = 0;
+			while(true)
+			{
+				chunk.clear();
+				final int result = fileChannel.read(chunk);
+				if(result < 0)
+				{
+					break;
+				}
+				md.update(chunk.array(), 0, result);
+				readBytes += result;
+			}
+			if(readBytes != fileLength)
+			{
+				throw new IOException("can't read entire file");
+			}
 		}
-		catch (NoSuchAlgorithmException e)
+		finally
 		{
-			throw new IllegalStateException(e);
+			fileInputStream.close();
+		}
+		
+		final byte[] hash = md.digest();
+		synchronized (this)
+		{
+			_hash = hash;
+			_hashFileLength = fileLength;
+			_hashLastModified = lastModified;
+		}
+	}
+	
+	/**
+	 * Checks, if a hash was calculated and the file was not modified since
+	 * 
+	 * @return true, if the hash is up to date
+	 */
+	public boolean isHashCurrent()
+	{
+		final File file = new File(_path);
+		synchronized (this)
+		{
+			return (_hash != null) && (file.length() == _hashFileLength) && (file.lastModified() == _hashLastModified);
+		}
+	}
+	
+	/**
+	 * Calculates the hash, if it was not calculated yet or the file was modified
+	 * 
+	 * @return true, if the hash was calculated, false if it was up to date
+	 * @throws IOException
+	 */
+	public boolean updateHash() throws IOException
+	{
+		if(isHashCurrent())
+		{
+			return false;
 		}
+		generateHash();
+		return true;
 	}
 	
 	/**
@@ -107,7 +182,7 @@ public class FileReference implements Serializable
 	 * 
 	 * @return hash generated hash or null
 	 */
-	public byte[] getHash()
+	public synchronized byte[] getHash()
 	{
 		return _hash;
 	}
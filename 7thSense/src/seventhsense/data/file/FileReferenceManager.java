@@ -28,12 +28,28 @@
 package seventhsense.data.file;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * A singleton class for referenced files
+ * A singleton class for referenced files. The references are interned by path and held weakly,
+ * so references, which are not used by any item anymore, are collected.
  * 
  * @author Parallan
  *
@@ -50,12 +66,92 @@ public final class FileReferenceManager
 	 */
 	private static final FileReferenceManager __fileReferenceManager = new FileReferenceManager();
 	
+	/**
+	 * Maximum number of files hashed at the same time (limits the concurrent disk access)
+	 */
+	private static final int HASH_THREAD_COUNT = 2;
+	
+	/**
+	 * Maximum number of cached normalized paths
+	 */
+	private static final int MAX_NORMALIZED_PATHS = 4096;
+	
+	/**
+	 * Weakly held file reference in the interning table
+	 */
+	private static final class ReferenceEntry extends WeakReference<FileReference>
+	{
+		/**
+		 * Path of the reference (key in the table)
+		 */
+		private final String _path;
+		
+		/**
+		 * Creates an entry
+		 * 
+		 * @param path path of the reference
+		 * @param fileReference file reference
+		 * @param queue queue for collected references
+		 */
+		private ReferenceEntry(final String path, final FileReference fileReference, final ReferenceQueue<FileReference> queue)
+		{
+			super(fileReference, queue);
+			_path = path;
+		}
+	}
+	
+	/**
+	 * Threads for hashing files
+	 */
+	private final ExecutorService _hashExecutor = Executors.newFixedThreadPool(HASH_THREAD_COUNT, new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			final Thread thread = new Thread(runnable, "FileHasher");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+	
 	private final FileReference _emptyReference;
 	
 	/**
-	 * List of file references
+	 * File references by path
+	 */
+	private final ConcurrentMap<String, ReferenceEntry> _fileReferences = new ConcurrentHashMap<String, ReferenceEntry>();
+	
+	/**
+	 * Queue of collected file references, which are removed from the table
 	 */
-	private final Map<String, FileReference> _fileReferences = new HashMap<String, FileReference>();
+	private final ReferenceQueue<FileReference> _collectedReferences = new ReferenceQueue<FileReference>();
+	
+	/**
+	 * Relative paths by the given paths, so the path of known files is only normalized once. The least recently
+	 * used paths are dropped, so a library larger than the cache does not evict the frequently used paths.
+	 */
+	private final Map<String, String> _normalizedPaths = new LinkedHashMap<String, String>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, String> eldest)
+		{
+			return size() > MAX_NORMALIZED_PATHS;
+		}
+	};
+	
+	/**
+	 * Absolute path of the working directory including the trailing separator
+	 */
+	private final String _localPathPrefix;
+	
+	/**
+	 * File reference used for each content by hex hash. Files with identical content share the decoders and
+	 * caches of this reference.
+	 */
+	private final Map<String, WeakReference<FileReference>> _contentReferences = new HashMap<String, WeakReference<FileReference>>();
 	
 	/**
 	 * Singleton Constructor
@@ -63,6 +159,7 @@ public final class FileReferenceManager
 	private FileReferenceManager()
 	{
 		_emptyReference = new FileReference("");
+		_localPathPrefix = new File("").getAbsolutePath() + File.separator;
 	}
 	
 	/**
@@ -81,15 +178,32 @@ public final class FileReferenceManager
 	 * @param path path to make relative
 	 * @return relative path if possible, otherwise the given absolute path
 	 */
-	private String tryGetRelativePath(final File path)
+	private String tryGetRelativePath(final String path)
 	{
-		final String localAbsolutePath = new File ("").getAbsolutePath();
-		final String absolutePath = path.getAbsolutePath();
-		if(absolutePath.startsWith(localAbsolutePath))
+		synchronized (_normalizedPaths)
+		{
+			final String cachedPath = _normalizedPaths.get(path);
+			if(cachedPath != null)
+			{
+				return cachedPath;
+			}
+		}
+		final File file = new File(path);
+		final String absolutePath = file.getAbsolutePath();
+		final String relativePath;
+		if(absolutePath.startsWith(_localPathPrefix))
 		{
-			return absolutePath.substring(localAbsolutePath.length() + 1);
+			relativePath = absolutePath.substring(_localPathPrefix.length());
 		}
-		return path.getPath();
+		else
+		{
+			relativePath = file.getPath();
+		}
+		synchronized (_normalizedPaths)
+		{
+			_normalizedPaths.put(path, relativePath);
+		}
+		return relativePath;
 	}
 	
 	/**
@@ -100,14 +214,7 @@ public final class FileReferenceManager
 	 */
 	public FileReference getFileReference(final String path)
 	{
-		final String filePath = tryGetRelativePath(new File(path));
-		if(_fileReferences.containsKey(filePath))
-		{
-			return _fileReferences.get(filePath);
-		}
-		final FileReference fileReference = new FileReference(filePath);
-		_fileReferences.put(fileReference.getPath(), fileReference);
-		return fileReference;
+		return intern(tryGetRelativePath(path), null);
 	}
 	
 	/**
@@ -118,12 +225,57 @@ public final class FileReferenceManager
 	 */
 	public FileReference getFileReference(final FileReference fileReference)
 	{
-		if(_fileReferences.containsKey(fileReference.getPath()))
+		return intern(fileReference.getPath(), fileReference);
+	}
+	
+	/**
+	 * Gets the interned file reference for the path or adds one
+	 * 
+	 * @param path path of the reference
+	 * @param fileReference reference to add, if none is interned for the path (null to create one)
+	 * @return interned file reference
+	 */
+	private FileReference intern(final String path, final FileReference fileReference)
+	{
+		removeCollectedReferences();
+		while(true)
 		{
-			return _fileReferences.get(fileReference.getPath());
+			final ReferenceEntry entry = _fileReferences.get(path);
+			if(entry != null)
+			{
+				final FileReference internedReference = entry.get();
+				if(internedReference != null)
+				{
+					return internedReference;
+				}
+			}
+			final FileReference newReference = (fileReference != null)?fileReference:new FileReference(path);
+			final ReferenceEntry newEntry = new ReferenceEntry(path, newReference, _collectedReferences);
+			if(entry == null)
+			{
+				if(_fileReferences.putIfAbsent(path, newEntry) == null)
+				{
+					return newReference;
+				}
+			}
+			else if(_fileReferences.replace(path, entry, newEntry))
+			{
+				return newReference;
+			}
+			// Another thread interned the path in the meantime
+		}
+	}
+	
+	/**
+	 * Removes the entries of collected file references from the table
+	 */
+	private void removeCollectedReferences()
+	{
+		ReferenceEntry entry;
+		while((entry = (ReferenceEntry) _collectedReferences.poll()) != null)
+		{
+			_fileReferences.remove(entry._path, entry);
 		}
-		_fileReferences.put(fileReference.getPath(), fileReference);
-		return fileReference;
 	}
 
 	/**
@@ -133,4 +285,222 @@ public final class FileReferenceManager
 	{
 		return _emptyReference;
 	}
+	
+	/**
+	 * Gets all known file references
+	 * 
+	 * @return copy of the file references
+	 */
+	public List<FileReference> getFileReferences()
+	{
+		removeCollectedReferences();
+		final List<FileReference> fileReferences = new ArrayList<FileReference>(_fileReferences.size());
+		for(ReferenceEntry entry : _fileReferences.values())
+		{
+			final FileReference fileReference = entry.get();
+			if(fileReference != null)
+			{
+				fileReferences.add(fileReference);
+			}
+		}
+		return fileReferences;
+	}
+	
+	/**
+	 * Calculates the hashes of all known file references in parallel. Files, which were not modified since
+	 * their hash was calculated, are skipped. The hashes are saved with the file references.
+	 * Does not block, the callback is run in a hashing thread, after all files were hashed.
+	 * 
+	 * @param callback called, when all files were hashed
+	 */
+	public void hashAll(final Runnable callback)
+	{
+		final List<FileReference> fileReferences = new ArrayList<FileReference>();
+		for(final FileReference fileReference : getFileReferences())
+		{
+			if(!new File(fileReference.getPath()).isFile())
+			{
+				// Missing files are found by the validation
+				continue;
+			}
+			fileReferences.add(fileReference);
+		}
+		final AtomicInteger hashedCount = new AtomicInteger();
+		final Runnable finishTask = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				// Registers the content references in the order of the files, so the same copy is shared each time
+				for(FileReference fileReference : fileReferences)
+				{
+					getContentReference(fileReference);
+				}
+				LOGGER.log(Level.FINE, "hashed " + hashedCount.get() + " of " + fileReferences.size() + " files");
+				callback.run();
+			}
+		};
+		// The last finished file runs the finish task
+		final AtomicInteger pendingCount = new AtomicInteger(fileReferences.size());
+		if(fileReferences.isEmpty())
+		{
+			_hashExecutor.execute(finishTask);
+			return;
+		}
+		for(final FileReference fileReference : fileReferences)
+		{
+			_hashExecutor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						if(fileReference.updateHash())
+						{
+							hashedCount.incrementAndGet();
+						}
+					}
+					catch (IOException e)
+					{
+						LOGGER.log(Level.WARNING, "Can't hash file: " + e.toString());
+					}
+					finally
+					{
+						if(pendingCount.decrementAndGet() == 0)
+						{
+							finishTask.run();
+						}
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Gets the file reference, which is used for the content of the given file reference. If another file
+	 * with identical content (same hash) is known, it is returned, so decoders, pcm caches and metadata are
+	 * shared by all copies. Files without a current hash are their own content reference, the hash is not
+	 * calculated here.
+	 * 
+	 * @param fileReference file reference
+	 * @return file reference with identical content (the given one, if it is the first or has no hash)
+	 */
+	public FileReference getContentReference(final FileReference fileReference)
+	{
+		if(!fileReference.isHashCurrent())
+		{
+			return fileReference;
+		}
+		final byte[] hash = fileReference.getHash();
+		final String key = toHex(hash);
+		final WeakReference<FileReference> contentEntry;
+		final FileReference contentReference;
+		synchronized (_contentReferences)
+		{
+			contentEntry = _contentReferences.get(key);
+			contentReference = (contentEntry == null)?null:contentEntry.get();
+			if(contentReference == null)
+			{
+				_contentReferences.put(key, new WeakReference<FileReference>(fileReference));
+				return fileReference;
+			}
+			if(contentReference == fileReference)
+			{
+				return fileReference;
+			}
+		}
+		if(contentReference.isHashCurrent() && Arrays.equals(hash, contentReference.getHash()))
+		{
+			return contentReference;
+		}
+		// The previous file was modified or removed
+		synchronized (_contentReferences)
+		{
+			if(_contentReferences.get(key) == contentEntry)
+			{
+				_contentReferences.put(key, new WeakReference<FileReference>(fileReference));
+			}
+		}
+		return fileReference;
+	}
+	
+	/**
+	 * Creates a report of the known files with identical content. Only files with a current hash are
+	 * included, so it should be created, when hashAll has finished.
+	 * 
+	 * @return report
+	 */
+	public DuplicateReport getDuplicateReport()
+	{
+		synchronized (_contentReferences)
+		{
+			// Remove the contents of collected references
+			final Iterator<WeakReference<FileReference>> iterator = _contentReferences.values().iterator();
+			while(iterator.hasNext())
+			{
+				if(iterator.next().get() == null)
+				{
+					iterator.remove();
+				}
+			}
+		}
+		final Map<String, List<FileReference>> groups = new LinkedHashMap<String, List<FileReference>>();
+		int hashedCount = 0;
+		for(FileReference fileReference : getFileReferences())
+		{
+			if(!fileReference.isHashCurrent())
+			{
+				continue;
+			}
+			hashedCount++;
+			final String key = toHex(fileReference.getHash());
+			List<FileReference> group = groups.get(key);
+			if(group == null)
+			{
+				group = new ArrayList<FileReference>();
+				groups.put(key, group);
+			}
+			group.add(fileReference);
+		}
+		final List<List<FileReference>> duplicateGroups = new ArrayList<List<FileReference>>();
+		int duplicateCount = 0;
+		long duplicateBytes = 0;
+		for(List<FileReference> group : groups.values())
+		{
+			if(group.size() < 2)
+			{
+				continue;
+			}
+			// The reference used for the content is listed first
+			final FileReference contentReference = getContentReference(group.get(0));
+			if(group.remove(contentReference))
+			{
+				group.add(0, contentReference);
+			}
+			duplicateGroups.add(group);
+			duplicateCount += group.size() - 1;
+			duplicateBytes += (group.size() - 1) * new File(contentReference.getPath()).length();
+		}
+		final DuplicateReport report = new DuplicateReport(duplicateGroups, hashedCount, groups.size(), duplicateCount, duplicateBytes);
+		LOGGER.log(Level.FINE, report.toString());
+		return report;
+	}
+	
+	/**
+	 * Converts a hash to a hex string
+	 * 
+	 * @param hash hash
+	 * @return hex string
+	 */
+	private static String toHex(final byte[] hash)
+	{
+		final StringBuilder builder = new StringBuilder(hash.length * 2);
+		for(byte value : hash)
+		{
+			builder.append(Character.forDigit((value >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(value & 0xF, 16));
+		}
+		return builder.toString();
+	}
 }
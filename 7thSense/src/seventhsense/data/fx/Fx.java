@@ -33,7 +33,8 @@ import java.util.logging.Logger;
 import seventhsense.data.eventlist.EventList;
 
 /**
- * Class for performing a fx: A thread fires the update routine in the fx setters using the given transitions.
+ * Class for performing a fx: The shared FxScheduler thread fires the update routine in the fx setters using
+ * the given transitions.
  * 
  * Inspired by mootools
  * 
@@ -48,12 +49,7 @@ public class Fx
 	private static final Logger LOGGER = Logger.getLogger(Fx.class.getName());
 
 	/**
-	 * The thread that runs the updates
-	 */
-	private Thread _thread;
-	
-	/**
-	 * Lock object for the thread
+	 * Lock object for the state, the scheduler steps the fx with the lock held
 	 */
 	private final Object _threadLock = new Object();
 
@@ -61,6 +57,26 @@ public class Fx
 	 * State of the thread
 	 */
 	private boolean _running = false;
+	
+	/**
+	 * True from start until the fx is stopped or finished
+	 */
+	private boolean _isActive = false;
+	
+	/**
+	 * True, if the started event was not fired yet
+	 */
+	private boolean _isStartPending = false;
+	
+	/**
+	 * True, while the fx is stepped by the scheduler
+	 */
+	private volatile boolean _isScheduled = false;
+	
+	/**
+	 * Time of the next frame
+	 */
+	private volatile long _nextFrameTime;
 
 	/**
 	 * Listeners
@@ -134,31 +150,17 @@ public class Fx
 	}
 	
 	/**
-	 * Stops the thread and cancels the fx
+	 * Stops the updates and cancels the fx. No setter is called after this returned.
 	 */
 	public void stop()
 	{
 		LOGGER.log(Level.FINE, "stop");
-		Thread thread;
 		synchronized (_threadLock)
 		{
-			thread = _thread;
-			if (_thread != null)
+			if (_isActive)
 			{
 				_running = false;
-				_thread = null;
-				_threadLock.notifyAll();
-				LOGGER.log(Level.FINER, "Lock notified");
-			}
-		}
-		if (thread != null)
-		{
-			try
-			{
-				thread.join(100);
-			}
-			catch (InterruptedException e)
-			{
+				_isActive = false;
 			}
 		}
 		fireFxCancelled();
@@ -262,20 +264,16 @@ public class Fx
 			_running = true;
 			_startTime = System.nanoTime();
 
-			if (_thread == null)
+			if (!_isActive)
 			{
-				LOGGER.log(Level.FINER, "New thread");
-				_thread = new Thread(new Runnable()
-				{
-					@Override
-					public void run()
-					{
-						Fx.this.run();
-					}
-				});
-				_thread.start();
+				LOGGER.log(Level.FINER, "Schedule");
+				_isActive = true;
+				_isStartPending = true;
+				_nextFrameTime = _startTime;
 			}
+			_isScheduled = true;
 		}
+		FxScheduler.get().add(this);
 	}
 	
 	/**
@@ -330,59 +328,70 @@ public class Fx
 	}
 
 	/**
-	 * Thread-routine
+	 * Performs the next frame. Called by the FxScheduler.
+	 * 
+	 * @return true, if the fx needs further frames
 	 */
-	private void run()
+	boolean stepFrame()
 	{
-		LOGGER.log(Level.FINE, "run");
-		
-		double totalTime = 0;
-		
-		fireFxStarted();
-		
-		double duration = _duration;
-		boolean running = _running;
-		while (running && (totalTime < duration))
+		final boolean isStartPending;
+		synchronized (_threadLock)
 		{
-			synchronized (_threadLock)
+			if (!_running)
 			{
-				// perform step
-				step(totalTime / _duration);
-				// Wait for frame
-				try
-				{
-					if (!_running)
-					{
-						break;
-					}
-					_threadLock.wait(_frameDelay);
-				}
-				catch (InterruptedException e)
-				{
-					LOGGER.log(Level.SEVERE, e.toString(), e);
-					break;
-				}
-				// Update time
-				final long curTime = System.nanoTime();
-				totalTime = ((double) (curTime - _startTime) * 1.0e-9);
-				
-				// Update state
-				running = _running;
-				duration = _duration;
+				_isScheduled = false;
+				return false;
 			}
+			isStartPending = _isStartPending;
+			_isStartPending = false;
+		}
+		if(isStartPending)
+		{
+			fireFxStarted();
 		}
-		LOGGER.log(Level.FINE, "thread finished");
-		// Finish thread if it was not cancelled
-		if(running)
+		synchronized (_threadLock)
 		{
-			synchronized (_threadLock)
+			if (!_running)
 			{
-				step(1.0);
-				_running = false;
-				_thread = null;
+				_isScheduled = false;
+				return false;
 			}
-			fireFxFinished();
+			final double totalTime = (double) (System.nanoTime() - _startTime) * 1.0e-9;
+			if (totalTime < _duration)
+			{
+				// perform step
+				step(totalTime / _duration);
+				_nextFrameTime = System.nanoTime() + _frameDelay * 1000000L;
+				return true;
+			}
+			step(1.0);
+			_running = false;
+			_isActive = false;
+			_isScheduled = false;
 		}
+		LOGGER.log(Level.FINE, "fx finished");
+		fireFxFinished();
+		return false;
+	}
+	
+	/**
+	 * Returns true, while the fx is stepped by the scheduler
+	 * 
+	 * @return true, if scheduled
+	 */
+	boolean isScheduled()
+	{
+		return _isScheduled;
+	}
+	
+	/**
+	 * Gets the time of the next frame
+	 * 
+	 * @return time of the next frame in ns (System.nanoTime)
+	 */
+	long getNextFrameTime()
+	{
+		return _nextFrameTime;
 	}
 	
 	/**
@@ -0,0 +1,194 @@
+/*
+ * FxScheduler.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.data.fx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Frame clock for all running fx: A single thread steps every active fx at its own frame rate, so the number
+ * of threads does not grow with the number of running fx.
+ *
+ * @author Parallan
+ *
+ */
+final class FxScheduler
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(FxScheduler.class.getName());
+	
+	/**
+	 * Singleton instance
+	 */
+	private static final FxScheduler FX_SCHEDULER_INSTANCE = new FxScheduler();
+	
+	/**
+	 * Lock object for the thread
+	 */
+	private final Object _threadLock = new Object();
+	
+	/**
+	 * Active fx
+	 */
+	private final List<Fx> _activeFx = new ArrayList<Fx>();
+	
+	/**
+	 * The thread that steps the fx (created on first use)
+	 */
+	private Thread _thread;
+	
+	/**
+	 * Singleton
+	 */
+	private FxScheduler()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Gets the singleton instance
+	 *
+	 * @return singleton instance
+	 */
+	public static FxScheduler get()
+	{
+		return FX_SCHEDULER_INSTANCE;
+	}
+	
+	/**
+	 * Adds a fx, which is stepped until it is not scheduled anymore
+	 *
+	 * @param fx fx to add
+	 */
+	public void add(final Fx fx)
+	{
+		synchronized (_threadLock)
+		{
+			if(!_activeFx.contains(fx))
+			{
+				_activeFx.add(fx);
+			}
+			if(_thread == null)
+			{
+				LOGGER.log(Level.FINER, "New thread");
+				_thread = new Thread(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						FxScheduler.this.run();
+					}
+				}, "FxScheduler");
+				_thread.setDaemon(true);
+				_thread.start();
+			}
+			_threadLock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Thread-routine
+	 */
+	private void run()
+	{
+		final List<Fx> dueFx = new ArrayList<Fx>();
+		while(true)
+		{
+			synchronized (_threadLock)
+			{
+				try
+				{
+					while(_activeFx.isEmpty())
+					{
+						_threadLock.wait();
+					}
+					// Wait for the next frame of any fx
+					final long time = System.nanoTime();
+					long nextFrameTime = Long.MAX_VALUE;
+					for(Fx fx : _activeFx)
+					{
+						nextFrameTime = Math.min(nextFrameTime, fx.getNextFrameTime());
+					}
+					if(nextFrameTime > time)
+					{
+						_threadLock.wait((nextFrameTime - time + 999999) / 1000000);
+						continue;
+					}
+				}
+				catch (InterruptedException e)
+				{
+					LOGGER.log(Level.SEVERE, e.toString(), e);
+					_thread = null;
+					return;
+				}
+				final long time = System.nanoTime();
+				for(Fx fx : _activeFx)
+				{
+					if(fx.getNextFrameTime() <= time)
+					{
+						dueFx.add(fx);
+					}
+				}
+			}
+			// Step outside of the lock, the callbacks may start other fx
+			for(Fx fx : dueFx)
+			{
+				boolean isActive;
+				try
+				{
+					isActive = fx.stepFrame();
+				}
+				catch (RuntimeException e)
+				{
+					LOGGER.log(Level.SEVERE, e.toString(), e);
+					synchronized (_threadLock)
+					{
+						_activeFx.remove(fx);
+					}
+					continue;
+				}
+				if(!isActive)
+				{
+					synchronized (_threadLock)
+					{
+						// The fx may have been started again in the meantime
+						if(!fx.isScheduled())
+						{
+							_activeFx.remove(fx);
+						}
+					}
+				}
+			}
+			dueFx.clear();
+		}
+	}
+}
@@ -42,7 +42,9 @@ import seventhsense.data.listenerlist.ListenerArrayList;
 import seventhsense.data.scenario.sound.AbstractSoundItem;
 import seventhsense.data.scenario.sound.ISoundItemListener;
 import seventhsense.sound.engine.PlayerMixer;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
+import seventhsense.sound.engine.SoundListenerList;
 
 /**
  * Abstract class for scenario managers. Contains common methods.
@@ -86,7 +88,7 @@ public abstract class AbstractScenarioManager<E extends AbstractSoundItem<E>> im
 	/**
 	 * Listeners for all music item events
 	 */
-	protected transient EventList<ISoundItemListener<E>> _itemListeners;
+	protected transient SoundListenerList<ISoundItemListener<E>> _itemListeners;
 
 	/**
 	 * Time used for fading in/out
@@ -119,7 +121,7 @@ public abstract class AbstractScenarioManager<E extends AbstractSoundItem<E>> im
 	 */
 	protected void onItemAdded(final int index, final E item)
 	{
-		item.addListener(_soundItemListener);
+		item.addListener(_soundItemListener, getItemSubscription());
 	}
 
 	/**
@@ -226,6 +228,20 @@ public abstract class AbstractScenarioManager<E extends AbstractSoundItem<E>> im
 		return _isValid;
 	}
 
+	/**
+	 * Sets the check-result without checking the items (e.g. checked by a LibraryValidator)
+	 * 
+	 * @param isValid check result
+	 */
+	public void setValid(final boolean isValid)
+	{
+		if(_isValid != isValid)
+		{
+			_isValid = isValid;
+			fireChanged(PROPERTY_VALID);
+		}
+	}
+
 	/**
 	 * Checks all sub items for validity
 	 */
@@ -259,6 +275,19 @@ public abstract class AbstractScenarioManager<E extends AbstractSoundItem<E>> im
 	public void addItemListener(final ISoundItemListener<E> listener)
 	{
 		_itemListeners.add(listener);
+		updateItemSubscription();
+	}
+	
+	/**
+	 * Add an item listener, that listens to the subscribed sound events of all items
+	 * 
+	 * @param listener listener
+	 * @param subscription subscribed sound events
+	 */
+	public void addItemListener(final ISoundItemListener<E> listener, final SoundEventSubscription subscription)
+	{
+		_itemListeners.add(listener, subscription);
+		updateItemSubscription();
 	}
 
 	/**
@@ -269,6 +298,39 @@ public abstract class AbstractScenarioManager<E extends AbstractSoundItem<E>> im
 	public void removeItemListener(final ISoundItemListener<E> listener)
 	{
 		_itemListeners.remove(listener);
+		updateItemSubscription();
+	}
+	
+	/**
+	 * Gets the sound events of the items, which are handled by this manager
+	 * 
+	 * @return subscribed sound events
+	 */
+	protected SoundEventSubscription getSoundEventSubscription()
+	{
+		return SoundEventSubscription.NONE;
+	}
+	
+	/**
+	 * Gets the sound events of the items, which are required by this manager and its item listeners
+	 * 
+	 * @return subscribed sound events
+	 */
+	private SoundEventSubscription getItemSubscription()
+	{
+		return _itemListeners.getSubscription().union(getSoundEventSubscription());
+	}
+	
+	/**
+	 * Updates the subscription of all items
+	 */
+	private void updateItemSubscription()
+	{
+		final SoundEventSubscription subscription = getItemSubscription();
+		for (E soundItem : _soundList)
+		{
+			soundItem.addListener(_soundItemListener, subscription);
+		}
 	}
 	
 	/**
@@ -313,7 +375,7 @@ public abstract class AbstractScenarioManager<E extends AbstractSoundItem<E>> im
 	 */
 	private void fireItemSoundEvent(final E item, final SoundEventType event)
 	{
-		for (ISoundItemListener<E> listener : _itemListeners.iterateEvents())
+		for (ISoundItemListener<E> listener : _itemListeners.iterateEvents(event))
 		{
 			listener.soundEvent(item, event);
 		}
@@ -345,7 +407,7 @@ public abstract class AbstractScenarioManager<E extends AbstractSoundItem<E>> im
 	private void initialize()
 	{
 		// initialize listener lists
-		_itemListeners = new EventList<ISoundItemListener<E>>();
+		_itemListeners = new SoundListenerList<ISoundItemListener<E>>();
 		_listeners = new EventList<IPropertyChangedListener<AbstractScenarioManager<E>>>();
 
 		// initialize sound listener
@@ -383,7 +445,7 @@ public abstract class AbstractScenarioManager<E extends AbstractSoundItem<E>> im
 		// initialize events
 		for (E soundItem : _soundList)
 		{
-			soundItem.addListener(_soundItemListener);
+			soundItem.addListener(_soundItemListener, getItemSubscription());
 		}
 	}
 
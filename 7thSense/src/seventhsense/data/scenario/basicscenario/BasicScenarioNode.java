@@ -40,6 +40,7 @@ import seventhsense.data.scenario.AbstractScenarioNode;
 import seventhsense.data.scenario.sound.ISoundItemListener;
 import seventhsense.data.scenario.sound.MusicItem;
 import seventhsense.data.scenario.sound.SoundFxItem;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 import seventhsense.sound.engine.SoundException;
 
@@ -214,6 +215,27 @@ public class BasicScenarioNode extends AbstractScenarioNode
 	{
 		_musicManager.validate();
 		_soundFxManager.validate();
+		updateValid();
+	}
+
+	/**
+	 * Sets the check-results of the managers without reading the files (e.g. checked by a LibraryValidator)
+	 * 
+	 * @param isMusicValid check result of the music manager
+	 * @param isSoundFxValid check result of the sound fx manager
+	 */
+	public void setValid(final boolean isMusicValid, final boolean isSoundFxValid)
+	{
+		_musicManager.setValid(isMusicValid);
+		_soundFxManager.setValid(isSoundFxValid);
+		updateValid();
+	}
+
+	/**
+	 * Updates the valid-state from the check-results of the managers
+	 */
+	private void updateValid()
+	{
 		final boolean isValid = _musicManager.isValid() && _soundFxManager.isValid();
 		if (isValid != _isValid)
 		{
@@ -252,7 +274,7 @@ public class BasicScenarioNode extends AbstractScenarioNode
 					validate(false);
 				}
 			}
-		});
+		}, SoundEventSubscription.NONE);
 		_musicManager.getList().addListener(new IListItemListener<MusicItem>()
 		{
 
@@ -284,7 +306,7 @@ public class BasicScenarioNode extends AbstractScenarioNode
 					validate(false);
 				}
 			}
-		});
+		}, SoundEventSubscription.NONE);
 		_soundFxManager.getList().addListener(new IListItemListener<SoundFxItem>()
 		{
 
@@ -34,11 +34,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.swing.SwingUtilities;
+
 import seventhsense.data.scenario.sound.ISoundItemListener;
 import seventhsense.data.scenario.sound.MusicItem;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 import seventhsense.sound.engine.SoundException;
 
@@ -65,6 +69,31 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 	 */
 	private static final Logger LOGGER = Logger.getLogger(MusicManager.class.getName());
 	
+	/**
+	 * Sound events of the active item, which are handled by the manager
+	 */
+	private static final SoundEventSubscription ACTIVE_SUBSCRIPTION = SoundEventSubscription.of(SoundEventType.Finished, SoundEventType.Update, SoundEventType.Audible);
+	
+	/**
+	 * Sound events of the preloaded item, which is started by the audio engine at the end of the active item
+	 */
+	private static final SoundEventSubscription NEXT_SUBSCRIPTION = SoundEventSubscription.of(SoundEventType.Started, SoundEventType.Audible, SoundEventType.Finished);
+	
+	/**
+	 * Sound events of the item, which was handed over to the next item and plays its end
+	 */
+	private static final SoundEventSubscription PREVIOUS_SUBSCRIPTION = SoundEventSubscription.of(SoundEventType.Finished);
+	
+	/**
+	 * Time before the end of the current music, when the next music is loaded (0 disables the look-ahead)
+	 */
+	private static volatile double __lookAheadTime = 5.0;
+	
+	/**
+	 * Time for crossfading into the preloaded music (0 starts it gapless, when the current music finished)
+	 */
+	private static volatile double __crossfadeTime = 0.0;
+	
 	/**
 	 * Flag indicating if music is currently randomized
 	 */
@@ -79,11 +108,46 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 	 * current playing item
 	 */
 	private transient MusicItem _currentItem;
+	
+	/**
+	 * Preloaded next item or null
+	 */
+	private transient MusicItem _nextItem;
+	
+	/**
+	 * Item, for which the next item was looked up already
+	 */
+	private transient MusicItem _lookAheadItem;
+	
+	/**
+	 * Item, which was handed over to the current item by the audio engine and plays its end, or null
+	 */
+	private transient MusicItem _previousItem;
+	
+	/**
+	 * Time (System.nanoTime) when the last music finished or 0, if no transition is pending
+	 */
+	private transient long _finishedTime;
+	
+	/**
+	 * Time (System.nanoTime) when the current music became audible or 0, if no transition is pending
+	 */
+	private transient long _audibleTime;
+	
+	/**
+	 * Time between the end of the last music and the start of the next in seconds
+	 */
+	private transient double _lastTransitionGap;
 
 	/**
 	 * Listener for active sound item
 	 */
 	private transient ISoundItemListener<MusicItem> _activeSoundItemListener;
+	
+	/**
+	 * True, while an update event of the active item waits for the event dispatch thread
+	 */
+	private transient AtomicBoolean _isUpdatePending;
 
 	/**
 	 * Constructor
@@ -124,6 +188,57 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 		return _isRandomized;
 	}
 
+	/**
+	 * Sets the time before the end of the current music, when the next music is loaded and decoded ahead.
+	 * 
+	 * @param lookAheadTime time in seconds (0 disables the look-ahead)
+	 */
+	public static void setLookAheadTime(final double lookAheadTime)
+	{
+		__lookAheadTime = lookAheadTime;
+	}
+	
+	/**
+	 * Gets the time before the end of the current music, when the next music is loaded
+	 * 
+	 * @return time in seconds
+	 */
+	public static double getLookAheadTime()
+	{
+		return __lookAheadTime;
+	}
+	
+	/**
+	 * Sets the time for crossfading from the current music into the preloaded next music.
+	 * 
+	 * @param crossfadeTime time in seconds (0 plays the next music, when the current finished)
+	 */
+	public static void setCrossfadeTime(final double crossfadeTime)
+	{
+		__crossfadeTime = crossfadeTime;
+	}
+	
+	/**
+	 * Gets the time for crossfading into the next music
+	 * 
+	 * @return time in seconds
+	 */
+	public static double getCrossfadeTime()
+	{
+		return __crossfadeTime;
+	}
+	
+	/**
+	 * Gets the time between the end of the last music and the first played buffer of the next one.
+	 * Negative values are the overlap of a crossfade.
+	 * 
+	 * @return time in seconds or NaN, if there was no transition yet
+	 */
+	public double getLastTransitionGap()
+	{
+		return _lastTransitionGap;
+	}
+
 	/**
 	 * Returns the real (internal) index for the virtual index (the one that can be seen from the "outside")
 	 * 
@@ -155,6 +270,7 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 		LOGGER.log(Level.FINE, "randomize last order: " + _musicOrder);
 		Collections.shuffle(_musicOrder);
 		LOGGER.log(Level.FINE, "randomize new order: " + _musicOrder);
+		discardNextMusic();
 		if((_currentItem == null) || !_currentItem.isPlaying())
 		{
 			LOGGER.log(Level.FINER, "reset current item");
@@ -172,6 +288,7 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 		{
 			_musicOrder.set(i, i);
 		}
+		discardNextMusic();
 		if((_currentItem == null) || !_currentItem.isPlaying())
 		{
 			LOGGER.log(Level.FINER, "reset current item");
@@ -195,10 +312,114 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 			_currentItem = null;
 			return false;
 		}
-		_currentItem.addListener(_activeSoundItemListener);
+		_currentItem.addListener(_activeSoundItemListener, ACTIVE_SUBSCRIPTION);
 		return true;
 	}
 
+	/**
+	 * Loads the item, which follows the current item in the music order, so it is decoded ahead
+	 */
+	private void preloadNextMusic()
+	{
+		_lookAheadItem = _currentItem;
+		final int currentRealIndex = _soundList.indexOf(_currentItem);
+		if ((_soundList.size() < 2) || (currentRealIndex == -1))
+		{
+			return;
+		}
+		int nextIndex = _musicOrder.indexOf(currentRealIndex) + 1;
+		for (int i = 1; i < _soundList.size(); i++)
+		{
+			if (nextIndex >= _soundList.size())
+			{
+				if (_isRandomized)
+				{
+					// The order is randomized again, when it restarts
+					return;
+				}
+				nextIndex = 0;
+			}
+			final MusicItem item = _soundList.get(_musicOrder.get(nextIndex));
+			if (item.isLoopSong() && (item != _currentItem))
+			{
+				try
+				{
+					item.load();
+					_nextItem = item;
+					LOGGER.log(Level.FINE, "preloaded next item: " + item.getFile());
+					cueNextMusic();
+					return;
+				}
+				catch (SoundException e)
+				{
+					LOGGER.log(Level.WARNING, e.toString(), e);
+				}
+			}
+			nextIndex++;
+		}
+	}
+
+	/**
+	 * Cues the preloaded item as successor of the current item, so the audio engine starts it at the end
+	 * of the current item (or the crossfade time before)
+	 */
+	private void cueNextMusic()
+	{
+		_nextItem.addListener(_activeSoundItemListener, NEXT_SUBSCRIPTION);
+		_currentItem.setSuccessor(_nextItem, __crossfadeTime);
+	}
+	
+	/**
+	 * Unloads the preloaded next item
+	 */
+	private void discardNextMusic()
+	{
+		if (_nextItem != null)
+		{
+			LOGGER.log(Level.FINER, "discard next item: " + _nextItem.getFile());
+			if ((_currentItem != null) && _currentItem.isLoaded())
+			{
+				_currentItem.setSuccessor(null, 0);
+			}
+			_nextItem.removeListener(_activeSoundItemListener);
+			_nextItem.unload(0);
+			_nextItem = null;
+		}
+		_lookAheadItem = null;
+	}
+	
+	/**
+	 * Unloads the item, which was handed over to the current item
+	 * 
+	 * @param fadeTime time to fade out
+	 */
+	private void discardPreviousMusic(final double fadeTime)
+	{
+		if (_previousItem != null)
+		{
+			_previousItem.removeListener(_activeSoundItemListener);
+			_previousItem.unload(fadeTime);
+			_previousItem = null;
+		}
+	}
+
+	/**
+	 * Makes the preloaded item the current item
+	 */
+	private void takeNextMusic()
+	{
+		if (_currentItem != null)
+		{
+			_currentItem.removeListener(_activeSoundItemListener);
+			_currentItem.unload(_fadeTime);
+		}
+		_currentItem = _nextItem;
+		_nextItem = null;
+		_lookAheadItem = null;
+		_currentItem.addListener(_activeSoundItemListener, ACTIVE_SUBSCRIPTION);
+		LOGGER.log(Level.FINE, "next item was preloaded: " + _currentItem.getFile());
+	}
+
 	/**
 	 * Moves to the next music and unloads the current
 	 * 
@@ -206,6 +427,12 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 	 */
 	private void nextMusic(final boolean requireFirst)
 	{
+		if ((_nextItem != null) && !requireFirst && _soundList.contains(_nextItem))
+		{
+			takeNextMusic();
+			return;
+		}
+		discardNextMusic();
 		if (_soundList.isEmpty())
 		{
 			_currentItem = null;
@@ -299,6 +526,14 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 	{
 		super.onItemRemoved(index, item);
 		_musicOrder.remove(Integer.valueOf(_musicOrder.size() - 1)); //Always remove last index
+		if(item.equals(_nextItem))
+		{
+			discardNextMusic();
+		}
+		if(item.equals(_previousItem))
+		{
+			discardPreviousMusic(0);
+		}
 		if(item.equals(_currentItem))
 		{
 			_currentItem.unload();
@@ -344,11 +579,129 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 
 	/**
 	 * Event: Fired when a music finished playing
+	 * 
+	 * @param eventTime time (System.nanoTime) of the event
 	 */
-	private void onActiveMusicFinished()
+	private void onActiveMusicFinished(final long eventTime)
 	{
+		// No successor was started by the audio engine
+		_finishedTime = eventTime;
+		_audibleTime = 0;
 		play(true, false, false);
 	}
+	
+	/**
+	 * Event: Fired when the audio engine has started the preloaded item at the end of the active item
+	 */
+	private void onNextMusicStarted()
+	{
+		LOGGER.log(Level.FINE, "handover to next item: " + _nextItem.getFile());
+		discardPreviousMusic(0);
+		_previousItem = _currentItem;
+		_previousItem.addListener(_activeSoundItemListener, PREVIOUS_SUBSCRIPTION);
+		_currentItem = _nextItem;
+		_nextItem = null;
+		_lookAheadItem = null;
+		_audibleTime = 0;
+		_currentItem.addListener(_activeSoundItemListener, ACTIVE_SUBSCRIPTION);
+	}
+	
+	/**
+	 * Event: Fired when the item, which was handed over to the active item, has finished
+	 * 
+	 * @param eventTime time (System.nanoTime) of the event
+	 */
+	private void onPreviousMusicFinished(final long eventTime)
+	{
+		_finishedTime = eventTime;
+		discardPreviousMusic(0);
+		measureTransitionGap();
+	}
+	
+	/**
+	 * Event: Fired when the output has played the first buffer of the active music
+	 * 
+	 * @param audibleTime time (System.nanoTime), since the music is audible
+	 */
+	private void onActiveMusicAudible(final long audibleTime)
+	{
+		_audibleTime = audibleTime;
+		measureTransitionGap();
+	}
+	
+	/**
+	 * Stores the transition gap, when the end of the last music and the start of the active music are known
+	 */
+	private void measureTransitionGap()
+	{
+		if ((_finishedTime != 0) && (_audibleTime != 0))
+		{
+			_lastTransitionGap = (_audibleTime - _finishedTime) / 1000000000.0;
+			_finishedTime = 0;
+			_audibleTime = 0;
+			LOGGER.log(Level.FINE, "transition gap: " + (_lastTransitionGap * 1000.0) + " ms");
+		}
+	}
+	
+	/**
+	 * Event: Fired on each update of the active music. Loads the next music ahead and cues it, so the
+	 * audio engine starts it in time.
+	 */
+	private void onActiveMusicUpdate()
+	{
+		final double lookAheadTime = Math.max(__lookAheadTime, __crossfadeTime);
+		if ((lookAheadTime <= 0) || (_currentItem == null) || (_previousItem != null))
+		{
+			// The previous item may be preloaded again, when it has finished
+			return;
+		}
+		final double remaining = _currentItem.getDuration() - _currentItem.getTime();
+		if ((_lookAheadItem != _currentItem) && (remaining <= lookAheadTime))
+		{
+			preloadNextMusic();
+		}
+	}
+
+	/**
+	 * Handles a sound event of the active item in the event dispatch thread
+	 * 
+	 * @param item item, which fired the event
+	 * @param event event
+	 * @param eventTime time (System.nanoTime) of the event
+	 */
+	private void onActiveMusicEvent(final MusicItem item, final SoundEventType event, final long eventTime)
+	{
+		if (event == SoundEventType.Update)
+		{
+			_isUpdatePending.set(false);
+		}
+		if ((item == _nextItem) && (event == SoundEventType.Started))
+		{
+			onNextMusicStarted();
+		}
+		if ((item == _previousItem) && (event == SoundEventType.Finished))
+		{
+			onPreviousMusicFinished(eventTime);
+			return;
+		}
+		if (item != _currentItem)
+		{
+			// The item was replaced or stopped in the meantime
+			return;
+		}
+		if (event == SoundEventType.Finished)
+		{
+			onActiveMusicFinished(eventTime);
+		}
+		else if (event == SoundEventType.Update)
+		{
+			onActiveMusicUpdate();
+		}
+		else if (event == SoundEventType.Audible)
+		{
+			onActiveMusicAudible(eventTime);
+		}
+	}
 
 	/**
 	 * 
@@ -356,6 +709,10 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 	@Override
 	public void stop()
 	{
+		discardNextMusic();
+		discardPreviousMusic(_fadeTime);
+		_finishedTime = 0;
+		_audibleTime = 0;
 		if (_currentItem != null)
 		{
 			_currentItem.unload(_fadeTime);
@@ -425,6 +782,9 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 	 */
 	private void initialize()
 	{
+		_lastTransitionGap = Double.NaN;
+		_isUpdatePending = new AtomicBoolean(false);
+		
 		// initialize music order
 		_musicOrder = new ArrayList<Integer>(_soundList.size());
 		for (int i = 0; i < _soundList.size(); i++)
@@ -442,10 +802,26 @@ public class MusicManager extends AbstractScenarioManager<MusicItem>
 			@Override
 			public void soundEvent(final MusicItem item, final SoundEventType event)
 			{
-				if (event == SoundEventType.Finished)
+				// The events come from the audio pump, which must not be blocked by loading the next item
+				long time = System.nanoTime();
+				if ((event == SoundEventType.Update) && !_isUpdatePending.compareAndSet(false, true))
 				{
-					onActiveMusicFinished();
+					return;
 				}
+				if (event == SoundEventType.Audible)
+				{
+					// The first buffer was played, so the music is audible since its current time
+					time -= (long) (item.getTime() * 1000000000.0);
+				}
+				final long eventTime = time;
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						onActiveMusicEvent(item, event, eventTime);
+					}
+				});
 			}
 
 			@Override
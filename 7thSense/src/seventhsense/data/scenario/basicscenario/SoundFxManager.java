@@ -45,6 +45,7 @@ import seventhsense.data.scenario.sound.DelayThread;
 import seventhsense.data.scenario.sound.ISoundItemListener;
 import seventhsense.data.scenario.sound.MusicItem;
 import seventhsense.data.scenario.sound.SoundFxItem;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 import seventhsense.sound.engine.SoundException;
 
@@ -81,6 +82,11 @@ public class SoundFxManager extends AbstractScenarioManager<SoundFxItem>
 	 */
 	private static final double STOP_FADETIME = 0.25;
 
+	/**
+	 * Sound events of the items, which are handled by the manager
+	 */
+	private static final SoundEventSubscription SOUND_EVENT_SUBSCRIPTION = SoundEventSubscription.of(SoundEventType.Finished);
+
 	/**
 	 * Contains the delay-threads for the soundFxList
 	 */
@@ -298,6 +304,12 @@ public class SoundFxManager extends AbstractScenarioManager<SoundFxItem>
 		}
 	}
 
+	@Override
+	protected SoundEventSubscription getSoundEventSubscription()
+	{
+		return SOUND_EVENT_SUBSCRIPTION;
+	}
+
 	@Override
 	protected void onSoundEvent(final SoundFxItem item, final SoundEventType event)
 	{
@@ -33,18 +33,18 @@ import java.io.ObjectInputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.UnsupportedAudioFileException;
-
 import seventhsense.data.IItem;
-import seventhsense.data.eventlist.EventList;
 import seventhsense.data.file.FileReference;
 import seventhsense.data.file.FileReferenceManager;
 import seventhsense.sound.SoundFactory;
 import seventhsense.sound.engine.IPlayer;
 import seventhsense.sound.engine.ISoundListener;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 import seventhsense.sound.engine.SoundException;
+import seventhsense.sound.engine.SoundListenerList;
+import seventhsense.sound.engine.input.AudioMetadataIndex;
+import seventhsense.sound.engine.output.IAudioBackend;
 import seventhsense.sound.fade.IPlayerFade;
 import seventhsense.sound.fade.ReplayFadeFile;
 
@@ -100,7 +100,7 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 	/**
 	 * Event listeners
 	 */
-	private transient EventList<ISoundItemListener<E>> _listeners;
+	private transient SoundListenerList<ISoundItemListener<E>> _listeners;
 
 	/**
 	 * Listener for _soundThread
@@ -229,12 +229,22 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 		if (_soundPlayer == null)
 		{
 			LOGGER.log(Level.FINE, _file + " load");
-			_soundPlayer = new ReplayFadeFile(new File(_file.getPath()));
+			_soundPlayer = new ReplayFadeFile(_file, getAudioBackend());
 			_soundPlayer.setVolume(_volume);
-			_soundPlayer.addSoundListener(_soundListener);
+			_soundPlayer.addSoundListener(_soundListener, _listeners.getSubscription());
 		}
 	}
 	
+	/**
+	 * Gets the backend for the output of this sound
+	 * 
+	 * @return audio backend
+	 */
+	protected IAudioBackend getAudioBackend()
+	{
+		return SoundFactory.getAudioBackend();
+	}
+	
 	/**
 	 * Unloads the media file with a fadout
 	 * 
@@ -250,6 +260,7 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 		}
 		if (_soundPlayer != null)
 		{
+			_soundPlayer.setSuccessor(null, 0);
 			_soundPlayer.setFadeTime(fadeTime);
 			_soundPlayer.close();
 			_soundPlayer.removeSoundListener(_soundListener);
@@ -357,6 +368,40 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 	{
 		play(_defaultFadeInTime);
 	}
+	
+	/**
+	 * Cues the given sound, which is then started by the audio engine at the end of this sound (gapless)
+	 * or overlapping its end by the given time (this sound fades out, the successor fades in by its fade type).
+	 * Both sounds must be loaded.
+	 * 
+	 * @param successor sound to start after this sound or null to remove the successor
+	 * @param overlap overlap in seconds
+	 */
+	public void setSuccessor(final AbstractSoundItem<?> successor, final double overlap)
+	{
+		LOGGER.log(Level.FINE, _file + " successor " + successor + " " + overlap);
+		if ((_soundPlayer == null) || ((successor != null) && (successor._soundPlayer == null)))
+		{
+			throw new IllegalStateException("sound not loaded");
+		}
+		if (successor == null)
+		{
+			_soundPlayer.setSuccessor(null, 0);
+			return;
+		}
+		// After fade starts after this sound, the other fade types fade in during the overlap
+		final double successorOverlap = (successor._fadeType == FadeType.AfterFade)?0:overlap;
+		successor._soundPlayer.setFadeTime((successor._fadeType == FadeType.VolumeFade)?successorOverlap:0);
+		try
+		{
+			successor._soundPlayer.cue();
+		}
+		catch (SoundException e)
+		{
+			LOGGER.log(Level.SEVERE, e.toString(), e);
+		}
+		_soundPlayer.setSuccessor(successor._soundPlayer, successorOverlap);
+	}
 
 	/**
 	 * Stops playback of this sound
@@ -373,6 +418,7 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 		}
 		if (_soundPlayer != null)
 		{
+			_soundPlayer.setSuccessor(null, 0);
 			_soundPlayer.setFadeTime(fadeTime);
 			_soundPlayer.stop();
 		}
@@ -467,6 +513,21 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 	public void addListener(final ISoundItemListener<E> listener)
 	{
 		_listeners.add(listener);
+		updateSubscription();
+	}
+	
+	/**
+	 * Adds a listener, which only receives the subscribed sound events.
+	 * Property changes are always received.
+	 * If the listener was already added, its subscription is replaced.
+	 * 
+	 * @param listener listener
+	 * @param subscription subscribed sound events
+	 */
+	public void addListener(final ISoundItemListener<E> listener, final SoundEventSubscription subscription)
+	{
+		_listeners.add(listener, subscription);
+		updateSubscription();
 	}
 
 	/**
@@ -477,6 +538,18 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 	public void removeListener(final ISoundItemListener<E> listener)
 	{
 		_listeners.remove(listener);
+		updateSubscription();
+	}
+	
+	/**
+	 * Subscribes the events of the player, which are required by the listeners
+	 */
+	private void updateSubscription()
+	{
+		if (_soundPlayer != null)
+		{
+			_soundPlayer.addSoundListener(_soundListener, _listeners.getSubscription());
+		}
 	}
 
 	/**
@@ -499,32 +572,20 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 	@SuppressWarnings("unchecked")
 	private void fireSoundEvent(final SoundEventType event)
 	{
-		for (ISoundItemListener<E> listener : _listeners.iterateEvents())
+		for (ISoundItemListener<E> listener : _listeners.iterateEvents(event))
 		{
 			listener.soundEvent((E) this, event);
 		}
 	}
 
 	/**
-	 * Validates the SoundItem
+	 * Validates the SoundItem. The file is only read, if it is not in the AudioMetadataIndex or was modified.
 	 * 
 	 * @return true, if the item was valid
 	 */
 	public boolean validate()
 	{
-		try
-		{
-			AudioSystem.getAudioFileFormat(new File(_file.getPath()));
-		}
-		catch (UnsupportedAudioFileException e)
-		{
-			return false;
-		}
-		catch (IOException e)
-		{
-			return false;
-		}
-		return true;
+		return AudioMetadataIndex.get().getMetadata(new File(FileReferenceManager.get().getContentReference(_file).getPath())).isValid();
 	}
 
 	/**
@@ -541,7 +602,7 @@ public abstract class AbstractSoundItem<E> implements IItem, IPlayable
 				fireSoundEvent(eventType);
 			}
 		};
-		_listeners = new EventList<ISoundItemListener<E>>();
+		_listeners = new SoundListenerList<ISoundItemListener<E>>();
 		_file = FileReferenceManager.get().getFileReference(_file);
 	}
 
@@ -32,6 +32,8 @@ import java.util.logging.Logger;
 import seventhsense.data.file.FileReference;
 import seventhsense.data.file.FileReferenceManager;
 import seventhsense.data.scenario.ScriptItem;
+import seventhsense.sound.SoundFactory;
+import seventhsense.sound.engine.output.IAudioBackend;
 
 /**
  * Represents a single sfx of a scenario
@@ -236,6 +238,12 @@ public class SoundFxItem extends AbstractSoundItem<SoundFxItem>
 		return _finishScript;
 	}
 
+	@Override
+	protected IAudioBackend getAudioBackend()
+	{
+		return SoundFactory.getSoundFxBackend();
+	}
+
 	/**
 	 * Creates a clone of this object
 	 * 
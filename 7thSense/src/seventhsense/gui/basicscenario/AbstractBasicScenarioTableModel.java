@@ -33,6 +33,7 @@ import seventhsense.data.listenerlist.IListItemListener;
 import seventhsense.data.listenerlist.IListenerList;
 import seventhsense.data.scenario.sound.AbstractSoundItem;
 import seventhsense.data.scenario.sound.ISoundItemListener;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 
 /**
@@ -116,7 +117,7 @@ public abstract class AbstractBasicScenarioTableModel<E extends AbstractSoundIte
 	protected void listItemAdded(final int index, final E item)
 	{
 		this.fireTableRowsInserted(index, index);
-		item.addListener(_soundItemListener);
+		item.addListener(_soundItemListener, SoundEventSubscription.NONE);
 	}
 
 	/**
@@ -161,7 +162,7 @@ public abstract class AbstractBasicScenarioTableModel<E extends AbstractSoundIte
 			_data.addListener(_listener);
 			for (E item : _data)
 			{
-				item.addListener(_soundItemListener);
+				item.addListener(_soundItemListener, SoundEventSubscription.NONE);
 			}
 		}
 		this.fireTableDataChanged();
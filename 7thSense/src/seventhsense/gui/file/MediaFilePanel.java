@@ -37,11 +37,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.io.File;
-import java.io.IOException;
 
-import javax.sound.sampled.AudioFileFormat;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
@@ -54,6 +50,8 @@ import javax.swing.event.ChangeListener;
 import seventhsense.data.eventlist.EventList;
 import seventhsense.data.file.FileReference;
 import seventhsense.data.file.FileReferenceManager;
+import seventhsense.sound.engine.input.AudioMetadata;
+import seventhsense.sound.engine.input.AudioMetadataIndex;
 
 /**
  * Class for selecting a media file
@@ -199,24 +197,24 @@ public class MediaFilePanel extends JPanel
 	private void filePathTextFieldActionPerformed()
 	{
 		final File file = new File(_textFieldSoundFilePath.getText());
-		if (file.exists())
+		if (!file.canRead() && file.exists())
 		{
-			try
+			_labelFileInfo.setText("IO error");
+			_labelFileInfo.setForeground(Color.RED);
+		}
+		else if (file.exists())
+		{
+			final AudioMetadata metadata = AudioMetadataIndex.get().getMetadata(file);
+			if (metadata.isValid())
 			{
-				final AudioFileFormat audioFileFormat = AudioSystem.getAudioFileFormat(file);
-				_labelFileInfo.setText(audioFileFormat.getType().toString());
+				_labelFileInfo.setText(metadata.getCodec());
 				_labelFileInfo.setForeground(new Color(0x00aa00));
 			}
-			catch (UnsupportedAudioFileException e)
+			else
 			{
 				_labelFileInfo.setText("Unrecognized format");
 				_labelFileInfo.setForeground(Color.RED);
 			}
-			catch (IOException e)
-			{
-				_labelFileInfo.setText("IO error");
-				_labelFileInfo.setForeground(Color.RED);
-			}
 		}
 		else
 		{
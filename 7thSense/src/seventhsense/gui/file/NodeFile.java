@@ -61,6 +61,11 @@ public final class NodeFile
 	 */
 	public static final File DefaultLibraryFile = new File("library.7lf");
 	
+	/**
+	 * Default file for the audio metadata index of the library
+	 */
+	public static final File DefaultMetadataIndexFile = new File("library.7mi");
+	
 	/**
 	 * No Ctor
 	 */
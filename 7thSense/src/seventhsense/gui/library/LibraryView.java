@@ -32,19 +32,28 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.List;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JProgressBar;
 import javax.swing.JSplitPane;
 import javax.swing.JToolBar;
 import javax.swing.JToolBar.Separator;
 
 import seventhsense.data.FolderNode;
+import seventhsense.data.IHashListener;
 import seventhsense.data.INode;
+import seventhsense.data.IValidationListener;
+import seventhsense.data.LibraryValidator;
+import seventhsense.data.LibraryWatcher;
 import seventhsense.data.LinkNode;
+import seventhsense.data.file.DuplicateReport;
+import seventhsense.data.file.FileReference;
 import seventhsense.data.scenario.basicscenario.BasicScenarioNode;
 import seventhsense.gui.ModelView;
 import seventhsense.gui.basicscenario.BasicScenarioView;
@@ -52,6 +61,7 @@ import seventhsense.gui.database.DatabaseView;
 import seventhsense.gui.database.INodeSelectionListener;
 import seventhsense.gui.file.NodeFile;
 import seventhsense.sound.engine.PlayerMixer;
+import seventhsense.sound.engine.input.AudioMetadataIndex;
 
 /**
  * Panel for viewing the library inclusive a editor
@@ -66,11 +76,33 @@ public class LibraryView extends ModelView<INode>
 	 * Default serial version
 	 */
 	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Maximum number of duplicate groups listed in the tool tip
+	 */
+	private static final int MAX_DUPLICATE_GROUPS = 20;
 
 	private final DatabaseView _databaseView;
 	private final BasicScenarioView _basicScenarioView;
 	private final JPopupMenu _popupMenuAdd;
 	private final JButton _buttonAdd;
+	private final JButton _buttonRevalidate;
+	private final JProgressBar _progressBarValidation;
+	
+	/**
+	 * Shows the number of files with identical content after the hashing
+	 */
+	private final JLabel _labelDuplicates;
+	
+	/**
+	 * Running validation or null
+	 */
+	private LibraryValidator _validator;
+	
+	/**
+	 * Watcher revalidating the nodes of changed files
+	 */
+	private LibraryWatcher _watcher;
 
 	/**
 	 * Creates a view for the library
@@ -108,8 +140,8 @@ public class LibraryView extends ModelView<INode>
 		final Separator separator1 = new Separator();
 		toolBarFile.add(separator1);
 		
-		final JButton buttonRevalidate = new JButton("");
-		buttonRevalidate.addActionListener(new ActionListener()
+		_buttonRevalidate = new JButton("");
+		_buttonRevalidate.addActionListener(new ActionListener()
 		{
 			@Override
 			public void actionPerformed(final ActionEvent e)
@@ -117,9 +149,18 @@ public class LibraryView extends ModelView<INode>
 				LibraryView.this.onRevalidateAction();
 			}
 		});
-		buttonRevalidate.setIcon(new ImageIcon(LibraryView.class.getResource("/seventhsense/resources/Warning_20.png")));
-		buttonRevalidate.setToolTipText("Validate all nodes: Check if everything is fine.");
-		toolBarFile.add(buttonRevalidate);
+		_buttonRevalidate.setIcon(new ImageIcon(LibraryView.class.getResource("/seventhsense/resources/Warning_20.png")));
+		_buttonRevalidate.setToolTipText("Validate all nodes: Check if everything is fine.");
+		toolBarFile.add(_buttonRevalidate);
+		
+		_progressBarValidation = new JProgressBar();
+		_progressBarValidation.setStringPainted(true);
+		_progressBarValidation.setVisible(false);
+		toolBarFile.add(_progressBarValidation);
+		
+		_labelDuplicates = new JLabel("");
+		_labelDuplicates.setVisible(false);
+		toolBarFile.add(_labelDuplicates);
 
 		final JSplitPane splitPane = new JSplitPane();
 		splitPane.setOneTouchExpandable(true);
@@ -256,6 +297,7 @@ public class LibraryView extends ModelView<INode>
 	private void onSaveAction()
 	{
 		NodeFile.saveNode(getModel(), NodeFile.DefaultLibraryFile);
+		AudioMetadataIndex.get().save(NodeFile.DefaultMetadataIndexFile);
 	}
 	
 	/**
@@ -263,7 +305,72 @@ public class LibraryView extends ModelView<INode>
 	 */
 	private void onRevalidateAction()
 	{
-		getModel().validate(true);
+		if(_validator != null)
+		{
+			_validator.cancel();
+			return;
+		}
+		_buttonRevalidate.setToolTipText("Cancel the validation");
+		_progressBarValidation.setValue(0);
+		_progressBarValidation.setString(null);
+		_progressBarValidation.setVisible(true);
+		_validator = LibraryValidator.start(getModel(), new IValidationListener()
+		{
+			@Override
+			public void validationProgress(final int checkedCount, final int totalCount)
+			{
+				_progressBarValidation.setMaximum(totalCount);
+				_progressBarValidation.setValue(checkedCount);
+				_progressBarValidation.setString(checkedCount + " / " + totalCount);
+			}
+			
+			@Override
+			public void validationFinished(final boolean isCancelled)
+			{
+				LibraryView.this.onValidationFinished();
+			}
+		});
+	}
+	
+	/**
+	 * Event.
+	 */
+	private void onValidationFinished()
+	{
+		_validator = null;
+		_progressBarValidation.setVisible(false);
+		_buttonRevalidate.setToolTipText("Validate all nodes: Check if everything is fine.");
+	}
+
+	/**
+	 * Event. Shows the files with identical content.
+	 * 
+	 * @param report report of the files with identical content
+	 */
+	private void onHashingFinished(final DuplicateReport report)
+	{
+		_labelDuplicates.setVisible(report.getDuplicateCount() > 0);
+		if(report.getDuplicateCount() == 0)
+		{
+			return;
+		}
+		_labelDuplicates.setText(" " + report.getDuplicateCount() + " duplicate files (" + (report.getDuplicateBytes() / (1024 * 1024)) + " MB)");
+		final StringBuilder toolTip = new StringBuilder("<html>Files with identical content:");
+		int groupCount = 0;
+		for(List<FileReference> group : report.getDuplicateGroups())
+		{
+			if(groupCount++ == MAX_DUPLICATE_GROUPS)
+			{
+				toolTip.append("<br><br>...");
+				break;
+			}
+			toolTip.append("<br>");
+			for(FileReference file : group)
+			{
+				toolTip.append("<br>").append(file.getPath().replace("&", "&amp;").replace("<", "&lt;"));
+			}
+		}
+		_labelDuplicates.setToolTipText(toolTip.append("</html>").toString());
 	}
 
 	/**
@@ -275,6 +382,22 @@ public class LibraryView extends ModelView<INode>
 	public void setModel(final INode root)
 	{
 		_databaseView.setModel(root);
+		if(_watcher != null)
+		{
+			_watcher.stop();
+			_watcher = null;
+		}
+		if(root != null)
+		{
+			_watcher = LibraryWatcher.start(root, new IHashListener()
+			{
+				@Override
+				public void hashingFinished(final DuplicateReport report)
+				{
+					LibraryView.this.onHashingFinished(report);
+				}
+			});
+		}
 	}
 	
 	/**
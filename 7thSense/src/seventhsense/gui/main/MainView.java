@@ -46,6 +46,7 @@ import seventhsense.gui.playlist.PlaylistView;
 import seventhsense.gui.playlistmanager.PlaylistManagerView;
 import seventhsense.gui.tabbedpane.VerticalLabelIcon;
 import seventhsense.sound.engine.PlayerMixer;
+import seventhsense.sound.engine.input.AudioMetadataIndex;
 
 /**
  * Panel containing all elements
@@ -153,6 +154,7 @@ public class MainView extends JPanel
 	{
 		INode libraryNode;
 		INode playlistNode; 
+		AudioMetadataIndex.get().load(NodeFile.DefaultMetadataIndexFile);
 		if(NodeFile.DefaultLibraryFile.exists())
 		{
 			libraryNode = NodeFile.loadNode(NodeFile.DefaultLibraryFile);
@@ -187,5 +189,6 @@ public class MainView extends JPanel
 	{
 		NodeFile.saveNode(_libraryView.getModel(), NodeFile.DefaultLibraryFile);
 		NodeFile.saveNode(_playlistView.getModel(), NodeFile.DefaultPlaylistFile);
+		AudioMetadataIndex.get().save(NodeFile.DefaultMetadataIndexFile);
 	}
 }
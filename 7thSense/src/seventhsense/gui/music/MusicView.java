@@ -55,6 +55,7 @@ import seventhsense.gui.file.MediaFilePanel;
 import seventhsense.gui.numberslider.NumberSlider;
 import seventhsense.gui.player.SoundPlayer;
 import seventhsense.sound.engine.PlayerMixer;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 
 /**
@@ -457,7 +458,7 @@ public class MusicView extends ModelView<MusicItem>
 			if (_data != null)
 			{
 				dataChanged(null);
-				_data.addListener(_dataListener);
+				_data.addListener(_dataListener, SoundEventSubscription.NONE);
 			}
 		}
 	}
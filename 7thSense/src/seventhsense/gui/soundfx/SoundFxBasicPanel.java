@@ -51,6 +51,7 @@ import seventhsense.gui.numberslider.NumberSlider;
 import seventhsense.gui.player.SoundPlayer;
 import seventhsense.gui.timeslider.TimeSlider;
 import seventhsense.sound.engine.PlayerMixer;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 
 /**
@@ -438,7 +439,7 @@ public class SoundFxBasicPanel extends ModelView<SoundFxItem>
 			if (_data != null)
 			{
 				dataChanged(null);
-				_data.addListener(_dataListener);
+				_data.addListener(_dataListener, SoundEventSubscription.NONE);
 			}
 		}
 	}
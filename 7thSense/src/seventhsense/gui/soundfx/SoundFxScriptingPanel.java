@@ -56,6 +56,7 @@ import seventhsense.data.scenario.ScriptItem;
 import seventhsense.data.scenario.sound.ISoundItemListener;
 import seventhsense.data.scenario.sound.SoundFxItem;
 import seventhsense.gui.ModelView;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 
 /**
@@ -484,7 +485,7 @@ public class SoundFxScriptingPanel extends ModelView<SoundFxItem>
 			if (_data != null)
 			{
 				dataChanged(null);
-				_data.addListener(_dataListener);
+				_data.addListener(_dataListener, SoundEventSubscription.NONE);
 			}
 		}
 	}
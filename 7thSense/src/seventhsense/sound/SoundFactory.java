@@ -30,13 +30,25 @@ package seventhsense.sound;
 import java.io.File;
 import java.io.IOException;
 
+import seventhsense.data.file.FileReference;
+import seventhsense.data.file.FileReferenceManager;
+import seventhsense.sound.cache.PcmCache;
+import seventhsense.sound.cache.PcmDiskCache;
 import seventhsense.sound.engine.AudioBuffer;
+import seventhsense.sound.engine.AudioPump;
 import seventhsense.sound.engine.AudioThread;
+import seventhsense.sound.engine.BufferingProfile;
 import seventhsense.sound.engine.GlobalVolumeFilter;
 import seventhsense.sound.engine.IPlayer;
 import seventhsense.sound.engine.PlayerMixer;
+import seventhsense.sound.engine.SchedulingMode;
 import seventhsense.sound.engine.SoundException;
+import seventhsense.sound.engine.input.DecodeAheadStream;
+import seventhsense.sound.engine.input.IAudioInputStream;
 import seventhsense.sound.engine.input.JavaSoundDecoderStream;
+import seventhsense.sound.engine.input.WavPcmStream;
+import seventhsense.sound.engine.output.IAudioBackend;
+import seventhsense.sound.engine.output.OpenAlBackend;
 
 /**
  * Static class for creating a IPlayer from a file and a mixer
@@ -46,6 +58,36 @@ import seventhsense.sound.engine.input.JavaSoundDecoderStream;
  */
 public final class SoundFactory
 {
+	/**
+	 * How new players are updated
+	 */
+	private static volatile SchedulingMode __schedulingMode = SchedulingMode.SharedPump;
+	
+	/**
+	 * If true, new players decode in a background decoder
+	 */
+	private static volatile boolean __decodeAhead = true;
+	
+	/**
+	 * If true, new players pass pooled direct buffers to OpenAL
+	 */
+	private static volatile boolean __directBuffers = true;
+	
+	/**
+	 * Buffering profile for players, which do not specify one
+	 */
+	private static volatile BufferingProfile __defaultBufferingProfile = BufferingProfile.BALANCED;
+	
+	/**
+	 * Backend for the output of new players
+	 */
+	private static volatile IAudioBackend __audioBackend = OpenAlBackend.get();
+	
+	/**
+	 * Backend for the output of new SoundFx players or null for the default backend
+	 */
+	private static volatile IAudioBackend __soundFxBackend = null;
+	
 	/**
 	 * Empty ctor
 	 */
@@ -54,21 +96,328 @@ public final class SoundFactory
 		// Can't instantiate
 	}
 	
+	/**
+	 * Sets how new players are updated. Existing players are not affected.
+	 * 
+	 * @param schedulingMode scheduling mode
+	 */
+	public static void setSchedulingMode(final SchedulingMode schedulingMode)
+	{
+		__schedulingMode = schedulingMode;
+	}
+	
+	/**
+	 * Gets how new players are updated
+	 * 
+	 * @return scheduling mode
+	 */
+	public static SchedulingMode getSchedulingMode()
+	{
+		return __schedulingMode;
+	}
+	
+	/**
+	 * Sets, if new players decode ahead in a background decoder. Existing players are not affected.
+	 * 
+	 * @param decodeAhead true for decoding in the background
+	 */
+	public static void setDecodeAhead(final boolean decodeAhead)
+	{
+		__decodeAhead = decodeAhead;
+	}
+	
+	/**
+	 * Gets, if new players decode ahead in a background decoder
+	 * 
+	 * @return true, if decoding is performed in the background
+	 */
+	public static boolean isDecodeAhead()
+	{
+		return __decodeAhead;
+	}
+	
+	/**
+	 * Sets, if new players decode into pooled direct buffers instead of a heap buffer per player.
+	 * Existing players are not affected.
+	 * 
+	 * @param directBuffers true for using direct buffers
+	 */
+	public static void setDirectBuffers(final boolean directBuffers)
+	{
+		__directBuffers = directBuffers;
+	}
+	
+	/**
+	 * Gets, if new players decode into pooled direct buffers
+	 * 
+	 * @return true, if direct buffers are used
+	 */
+	public static boolean isDirectBuffers()
+	{
+		return __directBuffers;
+	}
+	
+	/**
+	 * Sets the buffering profile for new players, which do not specify one
+	 * 
+	 * @param bufferingProfile default buffering profile
+	 */
+	public static void setDefaultBufferingProfile(final BufferingProfile bufferingProfile)
+	{
+		__defaultBufferingProfile = bufferingProfile;
+	}
+	
+	/**
+	 * Gets the buffering profile for new players, which do not specify one
+	 * 
+	 * @return default buffering profile
+	 */
+	public static BufferingProfile getDefaultBufferingProfile()
+	{
+		return __defaultBufferingProfile;
+	}
+	
+	/**
+	 * Sets the backend for the output of new players. Existing players are not affected.
+	 * A NullAudioBackend allows playing without sound hardware.
+	 * 
+	 * @param audioBackend audio backend
+	 */
+	public static void setAudioBackend(final IAudioBackend audioBackend)
+	{
+		__audioBackend = audioBackend;
+	}
+	
+	/**
+	 * Gets the backend for the output of new players
+	 * 
+	 * @return audio backend
+	 */
+	public static IAudioBackend getAudioBackend()
+	{
+		return __audioBackend;
+	}
+	
+	/**
+	 * Sets the backend for the output of new SoundFx players. A SoftwareMixer mixes all SoundFx into one output.
+	 * Existing players are not affected.
+	 * 
+	 * @param soundFxBackend audio backend or null for using the default backend
+	 */
+	public static void setSoundFxBackend(final IAudioBackend soundFxBackend)
+	{
+		__soundFxBackend = soundFxBackend;
+	}
+	
+	/**
+	 * Gets the backend for the output of new SoundFx players
+	 * 
+	 * @return audio backend
+	 */
+	public static IAudioBackend getSoundFxBackend()
+	{
+		final IAudioBackend soundFxBackend = __soundFxBackend;
+		if(soundFxBackend == null)
+		{
+			return __audioBackend;
+		}
+		return soundFxBackend;
+	}
+	
+	/**
+	 * Creates the decoding stream for the given file. Pcm wave files are read directly by a WavPcmStream,
+	 * other files are decoded by the AudioSystem.
+	 * 
+	 * @param file file to decode
+	 * @return decoding stream
+	 * @throws IOException if the file could not be opened
+	 */
+	private static IAudioInputStream createDecoder(final File file) throws IOException
+	{
+		final IAudioInputStream stream = WavPcmStream.open(file);
+		if(stream != null)
+		{
+			return stream;
+		}
+		return new JavaSoundDecoderStream(file);
+	}
+	
+	/**
+	 * Wraps the decoder into a DecodeAheadStream, if enabled. Pcm files are wrapped too, so reading from the disk
+	 * does not block the audio pump. The DecodeAheadStream takes its chunks from the buffer pool only while playing.
+	 * 
+	 * @param decoder decoding stream
+	 * @return stream to play
+	 */
+	private static IAudioInputStream decodeAhead(final IAudioInputStream decoder)
+	{
+		if(__decodeAhead)
+		{
+			return new DecodeAheadStream(decoder);
+		}
+		return decoder;
+	}
+	
+	/**
+	 * Creates the stream for playing the given file
+	 * 
+	 * @param file file to decode
+	 * @return stream to play
+	 * @throws IOException if the file could not be opened
+	 */
+	private static IAudioInputStream createStream(final File file) throws IOException
+	{
+		return decodeAhead(createDecoder(file));
+	}
+	
+	/**
+	 * Creates a player for the given file
+	 * 
+	 * @param file file to play
+	 * @return player
+	 * @throws SoundException if the file could not be opened
+	 */
 	public static IPlayer createPlayer(final File file) throws SoundException
+	{
+		return createPlayer(file, __defaultBufferingProfile);
+	}
+	
+	/**
+	 * Creates a player for the given file
+	 * 
+	 * @param file file to play
+	 * @param bufferingProfile number and size of the queued buffers
+	 * @return player
+	 * @throws SoundException if the file could not be opened
+	 */
+	public static IPlayer createPlayer(final File file, final BufferingProfile bufferingProfile) throws SoundException
 	{
 		try
 		{
-			return new GlobalVolumeFilter(
-					new AudioThread(
-							new AudioBuffer(
-									new JavaSoundDecoderStream(file)
-							)
-						)
-					);
+			return createPlayer(createStream(file), bufferingProfile, __audioBackend);
 		}
 		catch (IOException e)
 		{
 			throw new SoundException(e);
 		}
 	}
+	
+	/**
+	 * Creates a player for the given file. Short clips are played from the PcmCache.
+	 * 
+	 * @param file file to play
+	 * @return player
+	 * @throws SoundException if the file could not be opened
+	 */
+	public static IPlayer createPlayer(final FileReference file) throws SoundException
+	{
+		return createPlayer(file, __defaultBufferingProfile, __audioBackend);
+	}
+	
+	/**
+	 * Creates a player for the given file. Short clips are played from the PcmCache.
+	 * 
+	 * @param file file to play
+	 * @param audioBackend backend for the output
+	 * @return player
+	 * @throws SoundException if the file could not be opened
+	 */
+	public static IPlayer createPlayer(final FileReference file, final IAudioBackend audioBackend) throws SoundException
+	{
+		return createPlayer(file, __defaultBufferingProfile, audioBackend);
+	}
+	
+	/**
+	 * Creates a player for the given file. Short clips are played from the PcmCache, longer files from the
+	 * PcmDiskCache, if it is enabled and the file was transcoded already. Files, which are not cached yet, are
+	 * decoded for the caches in the background. Pcm wave files are read directly.
+	 * Copies of a file with identical content are played and cached through the same content reference.
+	 * 
+	 * @param file file to play
+	 * @param bufferingProfile number and size of the queued buffers
+	 * @param audioBackend backend for the output
+	 * @return player
+	 * @throws SoundException if the file could not be opened
+	 */
+	public static IPlayer createPlayer(final FileReference file, final BufferingProfile bufferingProfile, final IAudioBackend audioBackend) throws SoundException
+	{
+		final FileReference contentFile = FileReferenceManager.get().getContentReference(file);
+		try
+		{
+			IAudioInputStream stream = PcmCache.get().getStream(contentFile);
+			if(stream == null)
+			{
+				// The mapped cache file is paged in from the disk
+				final IAudioInputStream cachedStream = PcmDiskCache.get().openStream(contentFile);
+				if(cachedStream != null)
+				{
+					stream = decodeAhead(cachedStream);
+				}
+			}
+			if(stream == null)
+			{
+				// The first play streams through the decoder, while the caches are filled in the background
+				final IAudioInputStream decoder = createDecoder(new File(contentFile.getPath()));
+				if(!PcmCache.get().request(contentFile, decoder) && !(decoder instanceof WavPcmStream))
+				{
+					// Pcm files are not transcoded, they are read as fast as the cache
+					PcmDiskCache.get().request(contentFile);
+				}
+				stream = decodeAhead(decoder);
+			}
+			return createPlayer(stream, bufferingProfile, audioBackend);
+		}
+		catch (IOException e)
+		{
+			throw new SoundException(e);
+		}
+	}
+	
+	/**
+	 * Creates a player for the given stream
+	 * 
+	 * @param stream stream to play
+	 * @param bufferingProfile number and size of the queued buffers
+	 * @param audioBackend backend for the output
+	 * @return player
+	 * @throws SoundException if the player could not be created, the stream is closed then
+	 */
+	private static IPlayer createPlayer(final IAudioInputStream stream, final BufferingProfile bufferingProfile, final IAudioBackend audioBackend) throws SoundException
+	{
+		final AudioBuffer audioBuffer;
+		try
+		{
+			audioBuffer = new AudioBuffer(stream, __directBuffers, bufferingProfile, audioBackend);
+		}
+		catch (RuntimeException e)
+		{
+			// E.g. no OpenAL source available
+			stream.close();
+			throw e;
+		}
+		final AudioThread audioThread;
+		try
+		{
+			audioThread = new AudioThread(audioBuffer, (__schedulingMode == SchedulingMode.SharedPump)?AudioPump.get():null);
+		}
+		catch (SoundException e)
+		{
+			audioBuffer.close();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			audioBuffer.close();
+			throw e;
+		}
+		try
+		{
+			return new GlobalVolumeFilter(audioThread);
+		}
+		catch (RuntimeException e)
+		{
+			audioThread.close();
+			throw e;
+		}
+	}
 }
@@ -0,0 +1,515 @@
+/*
+ * PcmCache.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import seventhsense.data.file.FileReference;
+import seventhsense.sound.engine.input.IAudioInputStream;
+import seventhsense.sound.engine.input.JavaSoundDecoderStream;
+import seventhsense.sound.engine.input.MemoryPcmStream;
+import seventhsense.sound.engine.input.WavPcmStream;
+
+/**
+ * Process-wide cache of fully decoded pcm data for short clips. Replays of cached clips are played from memory
+ * without opening and decoding the file again. On a miss, the clip is decoded for the cache in the background,
+ * while the first play streams through its own decoder. The cache has a memory budget, the least recently used
+ * clips are evicted first. Streams, that are still playing an evicted clip, keep its data until they are closed.
+ *
+ * @author Parallan
+ *
+ */
+public final class PcmCache
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(PcmCache.class.getName());
+	
+	/**
+	 * Default maximum duration of cached clips in seconds
+	 */
+	private static final double DEFAULT_MAX_CLIP_DURATION = 10.0;
+	
+	/**
+	 * Default memory budget in bytes
+	 */
+	private static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	
+	/**
+	 * Singleton instance
+	 */
+	private static final PcmCache PCM_CACHE_INSTANCE = new PcmCache();
+	
+	/**
+	 * A decoded clip
+	 */
+	private static final class Clip
+	{
+		/**
+		 * Pcm data
+		 */
+		private final byte[] _data;
+		
+		/**
+		 * Number of valid bytes
+		 */
+		private final int _length;
+		
+		/**
+		 * Size of one sample
+		 */
+		private final int _sampleSize;
+		
+		/**
+		 * Number of channels
+		 */
+		private final int _channels;
+		
+		/**
+		 * Sample rate
+		 */
+		private final int _sampleRate;
+		
+		/**
+		 * Codec name
+		 */
+		private final String _name;
+		
+		/**
+		 * Length of the file, when it was decoded
+		 */
+		private final long _fileLength;
+		
+		/**
+		 * Modification time of the file, when it was decoded
+		 */
+		private final long _lastModified;
+		
+		/**
+		 * Creates a clip
+		 *
+		 * @param data pcm data
+		 * @param length number of valid bytes
+		 * @param stream decoder stream, the data was read from
+		 * @param file decoded file
+		 */
+		private Clip(final byte[] data, final int length, final IAudioInputStream stream, final File file)
+		{
+			_data = data;
+			_length = length;
+			_sampleSize = stream.getSampleSize();
+			_channels = stream.getChannels();
+			_sampleRate = stream.getSampleRate();
+			_name = stream.getName();
+			_fileLength = file.length();
+			_lastModified = file.lastModified();
+		}
+		
+		/**
+		 * Checks, if the file was not modified since it was decoded
+		 *
+		 * @param file file to check
+		 * @return true, if the clip is still valid
+		 */
+		private boolean isValid(final File file)
+		{
+			return (file.length() == _fileLength) && (file.lastModified() == _lastModified);
+		}
+	}
+	
+	/**
+	 * Cached clips by path in access order
+	 */
+	private final LinkedHashMap<String, Clip> _clips = new LinkedHashMap<String, Clip>(16, 0.75f, true);
+	
+	/**
+	 * Sum of the sizes of all cached clips
+	 */
+	private long _usedBytes = 0;
+	
+	/**
+	 * Memory budget in bytes
+	 */
+	private long _memoryBudget = DEFAULT_MEMORY_BUDGET;
+	
+	/**
+	 * Maximum duration of cached clips in seconds
+	 */
+	private double _maxClipDuration = DEFAULT_MAX_CLIP_DURATION;
+	
+	/**
+	 * Number of streams served from the cache
+	 */
+	private long _hitCount = 0;
+	
+	/**
+	 * Number of requests, which were not in the cache
+	 */
+	private long _missCount = 0;
+	
+	/**
+	 * Paths of the clips, which are queued for decoding
+	 */
+	private final Set<String> _pending = new HashSet<String>();
+	
+	/**
+	 * Background decoder
+	 */
+	private final ExecutorService _decoder = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			final Thread thread = new Thread(runnable, "PcmCache");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+	
+	/**
+	 * Creates the cache
+	 */
+	private PcmCache()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Gets a stream for the cached clip of the given file
+	 *
+	 * @param file file reference
+	 * @return stream reading from memory or null, if the file is not cached
+	 */
+	public synchronized IAudioInputStream getStream(final FileReference file)
+	{
+		final Clip clip = _clips.get(file.getPath());
+		if((clip != null) && !clip.isValid(new File(file.getPath())))
+		{
+			LOGGER.log(Level.FINE, file + " was modified");
+			remove(file.getPath());
+		}
+		else if(clip != null)
+		{
+			_hitCount++;
+			return createStream(clip, file);
+		}
+		_missCount++;
+		return null;
+	}
+	
+	/**
+	 * Queues the given file for decoding into the cache in the background, if it is not longer than the
+	 * maximum clip duration
+	 *
+	 * @param file file reference
+	 * @param decoder decoder of the file, which is only used for checking the length (it is not read)
+	 * @return true, if the clip is short enough for caching
+	 */
+	public boolean request(final FileReference file, final IAudioInputStream decoder)
+	{
+		final long maxLength = getMaxLength(decoder);
+		final long length = decoder.getLength();
+		if((length <= 0) || (length > maxLength))
+		{
+			return false;
+		}
+		synchronized (_pending)
+		{
+			if(!_pending.add(file.getPath()))
+			{
+				return true;
+			}
+		}
+		_decoder.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					decode(file);
+				}
+				catch (IOException e)
+				{
+					LOGGER.log(Level.WARNING, "Could not cache " + file + ": " + e.toString(), e);
+				}
+				finally
+				{
+					synchronized (_pending)
+					{
+						_pending.remove(file.getPath());
+					}
+				}
+			}
+		});
+		return true;
+	}
+	
+	/**
+	 * Gets the maximum length of a cached clip
+	 *
+	 * @param decoder decoder for the format of the clip
+	 * @return maximum length in bytes
+	 */
+	private synchronized long getMaxLength(final IAudioInputStream decoder)
+	{
+		return Math.min((long) (_maxClipDuration * decoder.getFrameSize() * decoder.getSampleRate()), _memoryBudget);
+	}
+	
+	/**
+	 * Decodes the given file completely and caches it, if it is not longer than the maximum clip duration
+	 *
+	 * @param file file reference
+	 * @throws IOException on decoder error
+	 */
+	private void decode(final FileReference file) throws IOException
+	{
+		final File sourceFile = new File(file.getPath());
+		IAudioInputStream decoder = WavPcmStream.open(sourceFile);
+		if(decoder == null)
+		{
+			decoder = new JavaSoundDecoderStream(sourceFile);
+		}
+		final byte[] data;
+		final int size;
+		try
+		{
+			final long byteRate = (long) decoder.getFrameSize() * decoder.getSampleRate();
+			final long maxLength = getMaxLength(decoder);
+			final long length = decoder.getLength();
+			if((length <= 0) || (length > maxLength))
+			{
+				return;
+			}
+			
+			// Length is only an estimation for some codecs
+			byte[] buffer = new byte[(int) length];
+			int bufferSize = 0;
+			while(true)
+			{
+				if(bufferSize == buffer.length)
+				{
+					if(bufferSize >= maxLength)
+					{
+						LOGGER.log(Level.FINE, file + " is longer than expected, not cached");
+						return;
+					}
+					buffer = Arrays.copyOf(buffer, (int) Math.min(maxLength, bufferSize + byteRate));
+				}
+				final int result = decoder.read(buffer, bufferSize, buffer.length - bufferSize);
+				if(result < 0)
+				{
+					break;
+				}
+				bufferSize += result;
+			}
+			// Only the used part is kept in the budget
+			data = (buffer.length != bufferSize)?Arrays.copyOf(buffer, bufferSize):buffer;
+			size = bufferSize;
+		}
+		finally
+		{
+			decoder.close();
+		}
+		
+		final Clip clip = new Clip(data, size, decoder, sourceFile);
+		synchronized (this)
+		{
+			remove(file.getPath());
+			_clips.put(file.getPath(), clip);
+			_usedBytes += clip._data.length;
+			evict();
+		}
+		LOGGER.log(Level.FINE, "cached " + file + " (" + size + " bytes)");
+	}
+	
+	/**
+	 * Creates a stream for a clip
+	 *
+	 * @param clip clip
+	 * @param file file reference of the clip
+	 * @return stream reading from memory
+	 */
+	private static IAudioInputStream createStream(final Clip clip, final FileReference file)
+	{
+		return new MemoryPcmStream(clip._data, clip._length, clip._sampleSize, clip._channels, clip._sampleRate, clip._name, file.getPath());
+	}
+	
+	/**
+	 * Removes a clip. Must hold the lock.
+	 *
+	 * @param path path of the clip
+	 */
+	private void remove(final String path)
+	{
+		final Clip clip = _clips.remove(path);
+		if(clip != null)
+		{
+			_usedBytes -= clip._data.length;
+		}
+	}
+	
+	/**
+	 * Evicts the least recently used clips until the budget is met. Must hold the lock.
+	 */
+	private void evict()
+	{
+		final Iterator<Map.Entry<String, Clip>> iterator = _clips.entrySet().iterator();
+		while((_usedBytes > _memoryBudget) && iterator.hasNext())
+		{
+			final Map.Entry<String, Clip> entry = iterator.next();
+			LOGGER.log(Level.FINE, "evict " + entry.getKey());
+			_usedBytes -= entry.getValue()._data.length;
+			iterator.remove();
+		}
+	}
+	
+	/**
+	 * Removes the clip of the given file from the cache
+	 *
+	 * @param file file reference
+	 */
+	public synchronized void invalidate(final FileReference file)
+	{
+		remove(file.getPath());
+	}
+	
+	/**
+	 * Removes all clips from the cache
+	 */
+	public synchronized void clear()
+	{
+		_clips.clear();
+		_usedBytes = 0;
+	}
+	
+	/**
+	 * Sets the memory budget. Clips are evicted, if the new budget is exceeded.
+	 *
+	 * @param memoryBudget memory budget in bytes
+	 */
+	public synchronized void setMemoryBudget(final long memoryBudget)
+	{
+		_memoryBudget = memoryBudget;
+		evict();
+	}
+	
+	/**
+	 * Gets the memory budget
+	 *
+	 * @return memory budget in bytes
+	 */
+	public synchronized long getMemoryBudget()
+	{
+		return _memoryBudget;
+	}
+	
+	/**
+	 * Sets the maximum duration of clips, which are cached. 0 disables caching of new clips.
+	 *
+	 * @param maxClipDuration maximum duration in seconds
+	 */
+	public synchronized void setMaxClipDuration(final double maxClipDuration)
+	{
+		_maxClipDuration = maxClipDuration;
+	}
+	
+	/**
+	 * Gets the maximum duration of clips, which are cached
+	 *
+	 * @return maximum duration in seconds
+	 */
+	public synchronized double getMaxClipDuration()
+	{
+		return _maxClipDuration;
+	}
+	
+	/**
+	 * Gets the memory used by cached clips
+	 *
+	 * @return used memory in bytes
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return _usedBytes;
+	}
+	
+	/**
+	 * Gets the number of cached clips
+	 *
+	 * @return number of clips
+	 */
+	public synchronized int getClipCount()
+	{
+		return _clips.size();
+	}
+	
+	/**
+	 * Gets the number of streams served from the cache
+	 *
+	 * @return number of hits
+	 */
+	public synchronized long getHitCount()
+	{
+		return _hitCount;
+	}
+	
+	/**
+	 * Gets the number of requests, which were not in the cache
+	 *
+	 * @return number of misses
+	 */
+	public synchronized long getMissCount()
+	{
+		return _missCount;
+	}
+	
+	/**
+	 * Gets the singleton instance
+	 *
+	 * @return singleton instance
+	 */
+	public static PcmCache get()
+	{
+		return PCM_CACHE_INSTANCE;
+	}
+}
@@ -0,0 +1,523 @@
+/*
+ * PcmDiskCache.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import seventhsense.data.file.FileReference;
+import seventhsense.sound.engine.input.IAudioInputStream;
+import seventhsense.sound.engine.input.JavaSoundDecoderStream;
+import seventhsense.sound.engine.input.MappedPcmStream;
+
+/**
+ * Optional cache, which transcodes files once into raw pcm files in a cache directory.
+ * Cached files are mapped into memory, so repeated plays need no decoding and seeking is instant.
+ * Cache files are keyed by path, size and modification time of the source file, so modified files are transcoded again.
+ * Transcoding is done by a background thread. The least recently used files are deleted, if the disk budget is exceeded.
+ *
+ * @author Parallan
+ *
+ */
+public final class PcmDiskCache
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(PcmDiskCache.class.getName());
+	
+	/**
+	 * Magic number at the start of each cache file ("7PCM")
+	 */
+	private static final int MAGIC = 0x3750434D;
+	
+	/**
+	 * Version of the file format
+	 */
+	private static final int VERSION = 1;
+	
+	/**
+	 * Size of the header (magic, version, sample size, channels, sample rate, data length)
+	 */
+	private static final int HEADER_SIZE = 4 * 5 + 8;
+	
+	/**
+	 * Extension of complete cache files
+	 */
+	private static final String EXTENSION = ".pcm";
+	
+	/**
+	 * Extension of cache files, which are being written
+	 */
+	private static final String TEMP_EXTENSION = ".tmp";
+	
+	/**
+	 * Default disk budget in bytes
+	 */
+	private static final long DEFAULT_DISK_BUDGET = 2L * 1024 * 1024 * 1024;
+	
+	/**
+	 * Singleton instance
+	 */
+	private static final PcmDiskCache PCM_DISK_CACHE_INSTANCE = new PcmDiskCache();
+	
+	/**
+	 * Cache directory or null, if the cache is disabled
+	 */
+	private volatile File _directory = null;
+	
+	/**
+	 * Disk budget in bytes
+	 */
+	private volatile long _diskBudget = DEFAULT_DISK_BUDGET;
+	
+	/**
+	 * Cache files, which are queued for transcoding
+	 */
+	private final Set<String> _pending = new HashSet<String>();
+	
+	/**
+	 * Background transcoder
+	 */
+	private final ExecutorService _transcoder = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			final Thread thread = new Thread(runnable, "PcmDiskCache");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+	
+	/**
+	 * Creates the cache
+	 */
+	private PcmDiskCache()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Enables the cache with the given directory, which is created if required
+	 *
+	 * @param directory cache directory or null for disabling the cache
+	 */
+	public void setDirectory(final File directory)
+	{
+		if((directory != null) && !directory.isDirectory() && !directory.mkdirs())
+		{
+			LOGGER.log(Level.WARNING, "Could not create cache directory " + directory);
+			return;
+		}
+		_directory = directory;
+		LOGGER.log(Level.INFO, "pcm disk cache: " + directory);
+	}
+	
+	/**
+	 * Gets the cache directory
+	 *
+	 * @return cache directory or null, if the cache is disabled
+	 */
+	public File getDirectory()
+	{
+		return _directory;
+	}
+	
+	/**
+	 * Checks, if the cache is enabled
+	 *
+	 * @return true, if a cache directory is set
+	 */
+	public boolean isEnabled()
+	{
+		return _directory != null;
+	}
+	
+	/**
+	 * Sets the disk budget. Exceeding files are deleted, when the next file was transcoded.
+	 *
+	 * @param diskBudget disk budget in bytes
+	 */
+	public void setDiskBudget(final long diskBudget)
+	{
+		_diskBudget = diskBudget;
+	}
+	
+	/**
+	 * Gets the disk budget
+	 *
+	 * @return disk budget in bytes
+	 */
+	public long getDiskBudget()
+	{
+		return _diskBudget;
+	}
+	
+	/**
+	 * Opens a stream for the cached pcm data of the given file
+	 *
+	 * @param file file reference
+	 * @return stream reading from the mapped cache file or null, if the file is not cached
+	 */
+	public IAudioInputStream openStream(final FileReference file)
+	{
+		final File cacheFile = getCacheFile(file);
+		if((cacheFile == null) || !cacheFile.isFile())
+		{
+			return null;
+		}
+		try
+		{
+			final RandomAccessFile randomAccessFile = new RandomAccessFile(cacheFile, "r");
+			try
+			{
+				final MappedByteBuffer mapped = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+				if((mapped.getInt() != MAGIC) || (mapped.getInt() != VERSION))
+				{
+					throw new IOException("Invalid cache file");
+				}
+				final int sampleSize = mapped.getInt();
+				final int channels = mapped.getInt();
+				final int sampleRate = mapped.getInt();
+				final long length = mapped.getLong();
+				if(length != mapped.remaining())
+				{
+					throw new IOException("Incomplete cache file");
+				}
+				// Marks the file as recently used
+				if(!cacheFile.setLastModified(System.currentTimeMillis()))
+				{
+					LOGGER.log(Level.FINER, "Could not touch " + cacheFile);
+				}
+				LOGGER.log(Level.FINE, file + " from " + cacheFile);
+				return new MappedPcmStream(mapped, sampleSize, channels, sampleRate, "PCM cache", file.getPath());
+			}
+			finally
+			{
+				// The mapping stays valid after closing the file
+				randomAccessFile.close();
+			}
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not open " + cacheFile + ": " + e.toString(), e);
+			if(!cacheFile.delete())
+			{
+				LOGGER.log(Level.WARNING, "Could not delete " + cacheFile);
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * Queues the given file for transcoding in the background, if it is not cached yet
+	 *
+	 * @param file file reference
+	 */
+	public void request(final FileReference file)
+	{
+		final File cacheFile = getCacheFile(file);
+		if((cacheFile == null) || cacheFile.isFile())
+		{
+			return;
+		}
+		synchronized (_pending)
+		{
+			if(!_pending.add(cacheFile.getPath()))
+			{
+				return;
+			}
+		}
+		_transcoder.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					transcode(file, cacheFile);
+					evict();
+				}
+				catch (IOException e)
+				{
+					LOGGER.log(Level.WARNING, "Could not cache " + file + ": " + e.toString(), e);
+				}
+				finally
+				{
+					synchronized (_pending)
+					{
+						_pending.remove(cacheFile.getPath());
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Decodes the file completely into the cache file. The data is written to a temporary file first,
+	 * which is renamed, when it is complete.
+	 *
+	 * @param file file reference
+	 * @param cacheFile target cache file
+	 * @throws IOException on decoder or write error
+	 */
+	private void transcode(final FileReference file, final File cacheFile) throws IOException
+	{
+		final long startTime = System.nanoTime();
+		final File tempFile = new File(cacheFile.getPath().substring(0, cacheFile.getPath().length() - EXTENSION.length()) + TEMP_EXTENSION);
+		final IAudioInputStream decoder = new JavaSoundDecoderStream(new File(file.getPath()));
+		final RandomAccessFile output = new RandomAccessFile(tempFile, "rw");
+		boolean complete = false;
+		try
+		{
+			output.setLength(0);
+			final FileChannel channel = output.getChannel();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION);
+			header.putInt(decoder.getSampleSize()).putInt(decoder.getChannels()).putInt(decoder.getSampleRate());
+			header.putLong(0);
+			header.flip();
+			channel.write(header, 0);
+			
+			final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			long length = 0;
+			while(true)
+			{
+				buffer.clear();
+				final int result = decoder.read(buffer);
+				if(result < 0)
+				{
+					break;
+				}
+				buffer.flip();
+				while(buffer.hasRemaining())
+				{
+					length += channel.write(buffer, HEADER_SIZE + length);
+				}
+				if(HEADER_SIZE + length > Integer.MAX_VALUE)
+				{
+					throw new IOException("Too long for caching");
+				}
+			}
+			
+			header.clear();
+			header.putLong(length);
+			header.flip();
+			channel.write(header, HEADER_SIZE - 8);
+			complete = true;
+		}
+		finally
+		{
+			decoder.close();
+			output.close();
+			if(!complete && !tempFile.delete())
+			{
+				LOGGER.log(Level.WARNING, "Could not delete " + tempFile);
+			}
+		}
+		if(!tempFile.renameTo(cacheFile))
+		{
+			if(!tempFile.delete())
+			{
+				LOGGER.log(Level.WARNING, "Could not delete " + tempFile);
+			}
+			throw new IOException("Could not rename " + tempFile + " to " + cacheFile);
+		}
+		LOGGER.log(Level.FINE, "cached " + file + " in " + cacheFile + " (" + ((System.nanoTime() - startTime) / 1000000) + " ms)");
+	}
+	
+	/**
+	 * Deletes the least recently used cache files, until the disk budget is met
+	 */
+	private void evict()
+	{
+		final File directory = _directory;
+		if(directory == null)
+		{
+			return;
+		}
+		final File[] files = directory.listFiles();
+		if(files == null)
+		{
+			return;
+		}
+		long usedBytes = 0;
+		for(File file : files)
+		{
+			usedBytes += file.length();
+		}
+		Arrays.sort(files, new Comparator<File>()
+		{
+			@Override
+			public int compare(final File file1, final File file2)
+			{
+				final long modified1 = file1.lastModified();
+				final long modified2 = file2.lastModified();
+				return (modified1 < modified2) ? -1 : ((modified1 == modified2) ? 0 : 1);
+			}
+		});
+		for(int i = 0; (i < files.length) && (usedBytes > _diskBudget); i++)
+		{
+			if(files[i].getName().endsWith(EXTENSION))
+			{
+				final long size = files[i].length();
+				// Fails, while the file is mapped on some platforms
+				if(files[i].delete())
+				{
+					LOGGER.log(Level.FINE, "evict " + files[i]);
+					usedBytes -= size;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the cache file of a source file, which was modified or removed since. The state of the
+	 * source file before the change is needed, because it is part of the cache file name.
+	 *
+	 * @param sourceFile source file
+	 * @param length previous length of the source file
+	 * @param lastModified previous modification time of the source file
+	 */
+	public void invalidate(final File sourceFile, final long length, final long lastModified)
+	{
+		final File directory = _directory;
+		if(directory == null)
+		{
+			return;
+		}
+		final File cacheFile = getCacheFile(directory, sourceFile, length, lastModified);
+		// Fails, while the file is mapped on some platforms
+		if(cacheFile.isFile() && !cacheFile.delete())
+		{
+			LOGGER.log(Level.FINE, "Could not delete " + cacheFile);
+		}
+	}
+	
+	/**
+	 * Deletes all cache files, which are not mapped
+	 */
+	public void clear()
+	{
+		final File directory = _directory;
+		if(directory == null)
+		{
+			return;
+		}
+		final File[] files = directory.listFiles();
+		if(files != null)
+		{
+			for(File file : files)
+			{
+				if(file.getName().endsWith(EXTENSION) && !file.delete())
+				{
+					LOGGER.log(Level.FINE, "Could not delete " + file);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the cache file for the given file. The name is the MD5 of path, size and modification time.
+	 *
+	 * @param file file reference
+	 * @return cache file or null, if the cache is disabled or the file does not exist
+	 */
+	private File getCacheFile(final FileReference file)
+	{
+		final File directory = _directory;
+		final File sourceFile = new File(file.getPath());
+		if((directory == null) || !sourceFile.isFile())
+		{
+			return null;
+		}
+		return getCacheFile(directory, sourceFile, sourceFile.length(), sourceFile.lastModified());
+	}
+	
+	/**
+	 * Gets the cache file for the given state of a source file
+	 *
+	 * @param directory cache directory
+	 * @param sourceFile source file
+	 * @param length length of the source file
+	 * @param lastModified modification time of the source file
+	 * @return cache file
+	 */
+	private static File getCacheFile(final File directory, final File sourceFile, final long length, final long lastModified)
+	{
+		final String key = sourceFile.getAbsolutePath() + "|" + length + "|" + lastModified;
+		try
+		{
+			final MessageDigest md = MessageDigest.getInstance("MD5");
+			final byte[] hash = md.digest(key.getBytes("UTF-8"));
+			final StringBuilder name = new StringBuilder(hash.length * 2 + EXTENSION.length());
+			for(byte value : hash)
+			{
+				name.append(Character.forDigit((value >> 4) & 0xF, 16));
+				name.append(Character.forDigit(value & 0xF, 16));
+			}
+			name.append(EXTENSION);
+			return new File(directory, name.toString());
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Gets the singleton instance
+	 *
+	 * @return singleton instance
+	 */
+	public static PcmDiskCache get()
+	{
+		return PCM_DISK_CACHE_INSTANCE;
+	}
+}
@@ -0,0 +1,396 @@
+/*
+ * AlObjectPool.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jogamp.openal.AL;
+
+/**
+ * Pool for OpenAL sources and buffers. Handles are generated on demand, returned handles are reused,
+ * so replaying a sound does not create any new OpenAL objects. The total number of handles is capped.
+ * Handles, that are in use, are tracked with their owner for reporting leaks.
+ *
+ * @author Parallan
+ *
+ */
+public final class AlObjectPool
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(AlObjectPool.class.getName());
+	
+	/**
+	 * Owners of the handles in use. An open addressing table keyed by the handle, so tracking a handle does not
+	 * box it or allocate entries.
+	 */
+	private static final class HandleTable
+	{
+		/**
+		 * Key of an empty slot (0 is never a valid OpenAL name)
+		 */
+		private static final int EMPTY = 0;
+		
+		/**
+		 * Handles by slot
+		 */
+		private final int[] _handles;
+		
+		/**
+		 * Owners by slot
+		 */
+		private final String[] _owners;
+		
+		/**
+		 * Mask for the slot index
+		 */
+		private final int _mask;
+		
+		/**
+		 * Number of handles
+		 */
+		private int _size = 0;
+		
+		/**
+		 * Creates a table
+		 *
+		 * @param maxCount maximum number of handles
+		 */
+		private HandleTable(final int maxCount)
+		{
+			// At most half full
+			final int capacity = Integer.highestOneBit(Math.max(1, maxCount) * 2 - 1) << 1;
+			_handles = new int[capacity];
+			_owners = new String[capacity];
+			_mask = capacity - 1;
+		}
+		
+		/**
+		 * Gets the preferred slot of a handle
+		 *
+		 * @param handle handle
+		 * @return slot index
+		 */
+		private int getHomeSlot(final int handle)
+		{
+			final int hash = handle * 0x9E3779B9;
+			return (hash ^ (hash >>> 16)) & _mask;
+		}
+		
+		/**
+		 * Gets the slot of a handle
+		 *
+		 * @param handle handle
+		 * @return slot of the handle or the empty slot, where it would be inserted
+		 */
+		private int findSlot(final int handle)
+		{
+			int slot = getHomeSlot(handle);
+			while((_handles[slot] != EMPTY) && (_handles[slot] != handle))
+			{
+				slot = (slot + 1) & _mask;
+			}
+			return slot;
+		}
+		
+		/**
+		 * Sets the owner of a handle
+		 *
+		 * @param handle handle
+		 * @param owner owner
+		 */
+		private void put(final int handle, final String owner)
+		{
+			final int slot = findSlot(handle);
+			if(_handles[slot] == EMPTY)
+			{
+				_handles[slot] = handle;
+				_size++;
+			}
+			_owners[slot] = owner;
+		}
+		
+		/**
+		 * Removes a handle
+		 *
+		 * @param handle handle
+		 * @return true, if the handle was in the table
+		 */
+		private boolean remove(final int handle)
+		{
+			int slot = findSlot(handle);
+			if(_handles[slot] == EMPTY)
+			{
+				return false;
+			}
+			// Move following entries of the probe sequence back into the gap
+			int next = slot;
+			while(true)
+			{
+				next = (next + 1) & _mask;
+				if(_handles[next] == EMPTY)
+				{
+					break;
+				}
+				final int home = getHomeSlot(_handles[next]);
+				final boolean isHomeInGap = (slot <= next)?((slot < home) && (home <= next)):((slot < home) || (home <= next));
+				if(!isHomeInGap)
+				{
+					_handles[slot] = _handles[next];
+					_owners[slot] = _owners[next];
+					slot = next;
+				}
+			}
+			_handles[slot] = EMPTY;
+			_owners[slot] = null;
+			_size--;
+			return true;
+		}
+		
+		/**
+		 * Gets the number of handles
+		 *
+		 * @return number of handles
+		 */
+		private int size()
+		{
+			return _size;
+		}
+		
+		/**
+		 * Logs all handles
+		 *
+		 * @param type type of the handles for the log
+		 */
+		private void report(final String type)
+		{
+			for(int i = 0; i < _handles.length; i++)
+			{
+				if(_handles[i] != EMPTY)
+				{
+					LOGGER.log(Level.WARNING, type + " " + _handles[i] + " still in use by " + _owners[i]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * OpenAL instance
+	 */
+	private final AL _al;
+	
+	/**
+	 * Maximum number of sources
+	 */
+	private final int _maxSources;
+	
+	/**
+	 * Maximum number of buffers
+	 */
+	private final int _maxBuffers;
+	
+	/**
+	 * Unused sources
+	 */
+	private final int[] _freeSources;
+	
+	/**
+	 * Number of unused sources
+	 */
+	private int _freeSourceCount = 0;
+	
+	/**
+	 * Unused buffers
+	 */
+	private final int[] _freeBuffers;
+	
+	/**
+	 * Number of unused buffers
+	 */
+	private int _freeBufferCount = 0;
+	
+	/**
+	 * Sources in use with their owners
+	 */
+	private final HandleTable _usedSources;
+	
+	/**
+	 * Buffers in use with their owners
+	 */
+	private final HandleTable _usedBuffers;
+	
+	/**
+	 * Buffer for handle transfers
+	 */
+	private final int[] _intBuffer = new int[1];
+	
+	/**
+	 * Creates a pool
+	 *
+	 * @param al OpenAL instance
+	 * @param maxSources maximum number of sources
+	 * @param maxBuffers maximum number of buffers
+	 */
+	public AlObjectPool(final AL al, final int maxSources, final int maxBuffers)
+	{
+		_al = al;
+		_maxSources = maxSources;
+		_maxBuffers = maxBuffers;
+		_freeSources = new int[maxSources];
+		_freeBuffers = new int[maxBuffers];
+		_usedSources = new HandleTable(maxSources);
+		_usedBuffers = new HandleTable(maxBuffers);
+	}
+	
+	/**
+	 * Acquires a source. The source must be returned by releaseSource.
+	 *
+	 * @param owner name of the owner of the source (for leak reports)
+	 * @return source handle
+	 */
+	public synchronized int acquireSource(final String owner)
+	{
+		final int source;
+		if(_freeSourceCount > 0)
+		{
+			source = _freeSources[--_freeSourceCount];
+		}
+		else
+		{
+			if(_usedSources.size() >= _maxSources)
+			{
+				throw new IllegalStateException("OpenAl source limit of " + _maxSources + " reached");
+			}
+			_al.alGenSources(1, _intBuffer, 0);
+			AlUtil.checkError(_al);
+			source = _intBuffer[0];
+			LOGGER.log(Level.FINE, "generated source " + source);
+		}
+		_usedSources.put(source, owner);
+		return source;
+	}
+	
+	/**
+	 * Returns a source to the pool. The source is stopped, its buffers are detached and the gain is reset.
+	 *
+	 * @param source source handle
+	 */
+	public synchronized void releaseSource(final int source)
+	{
+		if(!_usedSources.remove(source))
+		{
+			throw new IllegalArgumentException("Source " + source + " is not in use");
+		}
+		_al.alSourceStop(source);
+		_al.alSourcei(source, AL.AL_BUFFER, 0);
+		_al.alSourcef(source, AL.AL_GAIN, 1.0f);
+		AlUtil.checkError(_al);
+		_freeSources[_freeSourceCount++] = source;
+	}
+	
+	/**
+	 * Acquires buffers. The buffers must be returned by releaseBuffers.
+	 *
+	 * @param buffers destination for the buffer handles
+	 * @param offset offset in destination
+	 * @param count number of buffers
+	 * @param owner name of the owner of the buffers (for leak reports)
+	 */
+	public synchronized void acquireBuffers(final int[] buffers, final int offset, final int count, final String owner)
+	{
+		final int generateCount = count - Math.min(count, _freeBufferCount);
+		if(_usedBuffers.size() + _freeBufferCount + generateCount > _maxBuffers)
+		{
+			throw new IllegalStateException("OpenAl buffer limit of " + _maxBuffers + " reached");
+		}
+		if(generateCount > 0)
+		{
+			_al.alGenBuffers(generateCount, buffers, offset);
+			AlUtil.checkError(_al);
+			LOGGER.log(Level.FINE, "generated " + generateCount + " buffers");
+		}
+		for(int i = generateCount; i < count; i++)
+		{
+			buffers[offset + i] = _freeBuffers[--_freeBufferCount];
+		}
+		for(int i = 0; i < count; i++)
+		{
+			_usedBuffers.put(buffers[offset + i], owner);
+		}
+	}
+	
+	/**
+	 * Returns buffers to the pool. The buffers must not be queued anymore.
+	 *
+	 * @param buffers buffer handles
+	 * @param offset offset in buffers
+	 * @param count number of buffers
+	 */
+	public synchronized void releaseBuffers(final int[] buffers, final int offset, final int count)
+	{
+		for(int i = 0; i < count; i++)
+		{
+			if(!_usedBuffers.remove(buffers[offset + i]))
+			{
+				throw new IllegalArgumentException("Buffer " + buffers[offset + i] + " is not in use");
+			}
+			_freeBuffers[_freeBufferCount++] = buffers[offset + i];
+		}
+	}
+	
+	/**
+	 * Gets the number of sources in use
+	 *
+	 * @return number of sources in use
+	 */
+	public synchronized int getUsedSourceCount()
+	{
+		return _usedSources.size();
+	}
+	
+	/**
+	 * Gets the number of buffers in use
+	 *
+	 * @return number of buffers in use
+	 */
+	public synchronized int getUsedBufferCount()
+	{
+		return _usedBuffers.size();
+	}
+	
+	/**
+	 * Logs all handles, which are still in use
+	 */
+	public synchronized void reportUsedHandles()
+	{
+		_usedSources.report("Source");
+		_usedBuffers.report("Buffer");
+	}
+}
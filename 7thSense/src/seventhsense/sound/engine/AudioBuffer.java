@@ -32,11 +32,13 @@ import java.nio.ByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import seventhsense.data.fx.ITransition;
 import seventhsense.data.fx.ITransitionReversible;
 import seventhsense.data.fx.transitions.ExpTransition;
 import seventhsense.sound.engine.input.IAudioInputStream;
-
-import com.jogamp.openal.AL;
+import seventhsense.sound.engine.output.IAudioBackend;
+import seventhsense.sound.engine.output.IAudioOutput;
+import seventhsense.sound.engine.output.OpenAlBackend;
 
 /**
  * @author Parallan
@@ -46,6 +48,28 @@ public class AudioBuffer
 {
 	private static final Logger LOGGER = Logger.getLogger(AudioBuffer.class.getName());
 	
+	/**
+	 * Time without underrun in ns, after which an adaptive queue is shrinked by one buffer
+	 */
+	private static final long ADAPTIVE_SHRINK_DELAY = 10000000000L;
+	
+	/**
+	 * Delay in seconds for polling the end of the stream
+	 */
+	private static final double END_POLL_DELAY = 0.001;
+	
+	/**
+	 * Maximum change of the linear gain per step, if a volume ramp is stepped by updates
+	 * (steps of 1% of the full gain are not audible as zipper noise)
+	 */
+	private static final double MAX_GAIN_STEP = 0.01;
+	
+	/**
+	 * Minimum time in seconds between two gain steps (granularity of the audio pump). This limits the
+	 * steps in the steepest part of short ramps (up to about 10% of the full gain for a 0.25 s fade).
+	 */
+	private static final double MIN_RAMP_STEP_DELAY = 0.001;
+	
 	private static enum BufferState
 	{
 		Normal,
@@ -56,111 +80,219 @@ public class AudioBuffer
 	private static enum PlayerState
 	{
 		Stopped,
+		Cued,
 		Playing,
 		Paused,
 		Finished
 	}
 	
-	private final AL _al;
+	/**
+	 * Output for the pcm data
+	 */
+	private final IAudioOutput _output;
 	
-	private final int[] _buffers = new int[4];
-	private final int _source;
+	private final BufferingProfile _bufferingProfile;
 	
-	private final int _format;
+	/**
+	 * Sizes of the queued buffers (ring buffer)
+	 */
+	private final int[] _bufferSizes;
+	private int _firstQueuedBuffer = 0;
+	private int _queuedBufferCount = 0;
 	
-	private final byte[] _pcmBuffer;
-
-	private final IAudioInputStream _sourceStream;
+	/**
+	 * Number of buffers to keep queued
+	 */
+	private int _bufferCount;
+	
+	/**
+	 * Time of the last change of the buffer count (for adaptive buffering)
+	 */
+	private long _lastResizeTime = 0;
+	
+	/**
+	 * Size of one buffer in bytes
+	 */
+	private final int _chunkSize;
+	
+	/**
+	 * True, if data is decoded into direct buffers, otherwise into heap buffers
+	 */
+	private final boolean _useDirectBuffers;
 	
-	private final int[] _intBuffer = new int[1];
-	private final float[] _floatBuffer = new float[1];
+	private final IAudioInputStream _sourceStream;
 	
 	private PlayerState _playState = PlayerState.Stopped;
 	
-	private int _lastBufferSize = 0;
+	private long _queuedBytes = 0;
 	private long _lastPlayPosition = 0;
 	
+	/**
+	 * Played bytes of the first queued buffer at the last update
+	 */
+	private int _lastPlayOffset = 0;
+	private boolean _endOfStream = false;
+	
+	/**
+	 * True, if playing was requested, but the output waits for the first chunk (e.g. after a seek)
+	 */
+	private boolean _isStarting = false;
+	
+	/**
+	 * True, if the output has played a buffer since the last start or seek
+	 */
+	private boolean _isAudible = false;
+	
+	/**
+	 * True, if the output was closed
+	 */
+	private boolean _isClosed = false;
+	
 	private final ITransitionReversible _volumeFactor = new ExpTransition(20.0);
 	
+	/**
+	 * Active volume ramp or null
+	 */
+	private GainRamp _gainRamp = null;
+	
+	/**
+	 * Start time (System.nanoTime) of the volume ramp
+	 */
+	private long _rampStartTime;
+	
+	/**
+	 * True, if the output applies the volume ramp itself
+	 */
+	private boolean _isOutputRamp;
+	
 	/**
 	 * Creates an audio buffer for draining and pushing data
+	 *
+	 * @param sourceStream stream to play
 	 */
 	public AudioBuffer(final IAudioInputStream sourceStream)
 	{
-		LOGGER.log(Level.FINE, "create AudioBuffer");
+		this(sourceStream, false);
+	}
+	
+	/**
+	 * Creates an audio buffer for draining and pushing data
+	 *
+	 * @param sourceStream stream to play
+	 * @param useDirectBuffers if true, data is decoded into pooled direct buffers, which are passed to the output without copying
+	 */
+	public AudioBuffer(final IAudioInputStream sourceStream, final boolean useDirectBuffers)
+	{
+		this(sourceStream, useDirectBuffers, BufferingProfile.BALANCED);
+	}
+	
+	/**
+	 * Creates an audio buffer for draining and pushing data to OpenAL
+	 *
+	 * @param sourceStream stream to play
+	 * @param useDirectBuffers if true, data is decoded into pooled direct buffers, which are passed to the output without copying
+	 * @param bufferingProfile number and size of the queued buffers
+	 */
+	public AudioBuffer(final IAudioInputStream sourceStream, final boolean useDirectBuffers, final BufferingProfile bufferingProfile)
+	{
+		this(sourceStream, useDirectBuffers, bufferingProfile, OpenAlBackend.get());
+	}
+	
+	/**
+	 * Creates an audio buffer for draining and pushing data
+	 *
+	 * @param sourceStream stream to play
+	 * @param useDirectBuffers if true, data is decoded into pooled direct buffers, which are passed to the output without copying
+	 * @param bufferingProfile number and size of the queued buffers
+	 * @param backend backend for creating the output
+	 */
+	public AudioBuffer(final IAudioInputStream sourceStream, final boolean useDirectBuffers, final BufferingProfile bufferingProfile, final IAudioBackend backend)
+	{
+		LOGGER.log(Level.FINE, "create AudioBuffer (" + bufferingProfile + ", " + backend.getName() + ")");
 		
-		_al = PlayerMixer.get().getAl();
 		_sourceStream = sourceStream;
+		_bufferingProfile = bufferingProfile;
 		
-		_al.alGenBuffers(_buffers.length, _buffers, 0);
-		AlUtil.checkError(_al);
+		_bufferSizes = new int[bufferingProfile.getMaxBufferCount()];
+		_bufferCount = bufferingProfile.getBufferCount();
 		
-		_al.alGenSources(1, _intBuffer, 0);
-		AlUtil.checkError(_al);
-		_source = _intBuffer[0];
+		_chunkSize = Math.max(1, (int) (bufferingProfile.getChunkDuration() * _sourceStream.getSampleRate())) * _sourceStream.getFrameSize();
+		_useDirectBuffers = useDirectBuffers;
 		
-		/*_al.alSource3f(_source, AL.AL_POSITION, 0.0f, 0.0f, 0.0f);
-		_al.alSource3f(_source, AL.AL_VELOCITY, 0.0f, 0.0f, 0.0f);
-		_al.alSource3f(_source, AL.AL_DIRECTION, 0.0f, 0.0f, 0.0f);
-		_al.alSourcef(_source, AL.AL_ROLLOFF_FACTOR, 0.0f);
-		_al.alSourcei(_source, AL.AL_SOURCE_RELATIVE, AL.AL_TRUE);*/
-		
-		if((sourceStream.getSampleSize() == 1) && (sourceStream.getChannels() == 1))
-		{
-			_format = AL.AL_FORMAT_MONO8;
-			LOGGER.log(Level.FINE, "Mono 8");
-		}
-		else if((sourceStream.getSampleSize() == 1) && (sourceStream.getChannels() == 2))
-		{
-			_format = AL.AL_FORMAT_STEREO8;
-			LOGGER.log(Level.FINE, "Stereo 8");
-		}
-		else if((sourceStream.getSampleSize() == 2) && (sourceStream.getChannels() == 1))
-		{
-			_format = AL.AL_FORMAT_MONO16;
-			LOGGER.log(Level.FINE, "Mono 16");
-		}
-		else if((sourceStream.getSampleSize() == 2) && (sourceStream.getChannels() == 2))
-		{
-			_format = AL.AL_FORMAT_STEREO16;
-			LOGGER.log(Level.FINE, "Stereo 16");
-		}
-		else
-		{
-			throw new IllegalArgumentException("Invalid source stream format");
-		}
-		
-		_pcmBuffer = new byte[_sourceStream.getSampleRate() * _sourceStream.getFrameSize()]; // 1 sec buffer
+		_output = backend.createOutput(sourceStream.getChannels(), sourceStream.getSampleSize(), sourceStream.getSampleRate());
+		AudioMetrics.get().sourceOpened();
 		
 		LOGGER.log(Level.FINE, "AudioBuffer created");
 	}
 	
 	public boolean isPlaying()
 	{
-		//final int state = getSourceState();
-		//return (state == AL.AL_PLAYING) || (state == AL.AL_PAUSED);
 		return _playState == PlayerState.Playing || _playState == PlayerState.Paused;
 	}
 	
 	public boolean isPaused()
 	{
-		//return getSourceState() == AL.AL_PAUSED;
 		return _playState == PlayerState.Paused;
 	}
 	
 	/**
-	 * Start/Restart playback
-	 * @throws IOException 
+	 * Returns true, if the buffers are filled for starting the playback without delay
+	 *
+	 * @return true, if cued
+	 */
+	public boolean isCued()
+	{
+		return _playState == PlayerState.Cued;
+	}
+	
+	/**
+	 * Returns true, if the output has played a buffer since the last start or seek
+	 *
+	 * @return true, if audible
+	 */
+	public boolean isAudible()
+	{
+		return _isAudible;
+	}
+	
+	/**
+	 * Returns true, if the source stream has ended (the queued buffers are still playing)
+	 *
+	 * @return true, if the end of the stream was read
+	 */
+	public boolean isEndOfStream()
+	{
+		return _endOfStream;
+	}
+	
+	/**
+	 * Start/Restart playback. If the buffer is cued, the queued buffers are played without refilling.
+	 * @throws IOException
 	 */
 	public void play() throws IOException
+	{
+		if(_playState != PlayerState.Cued)
+		{
+			stop();
+			
+			fillBuffers();
+		}
+		
+		_playState = PlayerState.Playing;
+		startOutput();
+	}
+	
+	/**
+	 * Rewinds the source and fills the buffers without starting the output, so a following {@link #play()}
+	 * starts without waiting for the decoder. The buffers are kept filled by {@link #update()}.
+	 * @throws IOException
+	 */
+	public void cue() throws IOException
 	{
 		stop();
 		
+		_playState = PlayerState.Cued;
 		fillBuffers();
-		
-		_al.alSourcePlay(_source);
-		AlUtil.checkError(_al);
-		_playState = PlayerState.Playing;
 	}
 	
 	/**
@@ -168,10 +300,11 @@ public class AudioBuffer
 	 */
 	public void stop()
 	{
-		_al.alSourceStop(_source);
-		AlUtil.checkError(_al);
 		_playState = PlayerState.Stopped;
-		// Reset stream
+		// Reset buffers
+		flushBuffers();
+		// Reset stream, the data read ahead is not needed while stopped
+		_sourceStream.releaseBuffers();
 		try
 		{
 			_sourceStream.setPosition(0);
@@ -180,21 +313,18 @@ public class AudioBuffer
 		{
 			LOGGER.log(Level.SEVERE, e.toString(), e);
 		}
-		// Reset buffers
-		flushBuffers();
 	}
 	
 	/**
 	 * Resume or start playback
-	 * @throws IOException 
+	 * @throws IOException
 	 */
 	public void resume() throws IOException
 	{
 		if(_playState == PlayerState.Paused)
 		{
 			_playState = PlayerState.Playing;
-			_al.alSourcePlay(_source);
-			AlUtil.checkError(_al);
+			startOutput();
 		}
 		else if(_playState != PlayerState.Playing)
 		{
@@ -202,6 +332,34 @@ public class AudioBuffer
 		}
 	}
 	
+	/**
+	 * Starts the output, if a chunk is queued. Otherwise the output is started by the update, when the
+	 * decoder delivered the first chunk, so waiting for the decoder is not counted as underrun.
+	 */
+	private void startOutput()
+	{
+		if(_queuedBufferCount > 0)
+		{
+			_isStarting = false;
+			_output.play();
+			_lastResizeTime = System.nanoTime();
+		}
+		else
+		{
+			_isStarting = true;
+		}
+	}
+	
+	/**
+	 * Returns true, if playing was requested, but the output waits for the first chunk of the decoder
+	 *
+	 * @return true, if starting
+	 */
+	public boolean isStarting()
+	{
+		return _isStarting && (_playState == PlayerState.Playing);
+	}
+	
 	/**
 	 * Pause playback
 	 */
@@ -210,36 +368,29 @@ public class AudioBuffer
 		if(_playState == PlayerState.Playing)
 		{
 			_playState = PlayerState.Paused;
-			_al.alSourcePause(_source);
+			_output.pause();
+			// The position of the last update may be up to a second old
+			updatePosition();
+			// The queued buffers are kept for resuming, the data read ahead is not needed while paused
+			_sourceStream.releaseBuffers();
 		}
 	}
 	
 	/**
 	 * Gets the current playing position
-	 * 
+	 *
 	 * @return current position in bytes
 	 */
 	public long getPosition()
 	{
-		/*// Playing has just finished!
-		if(_playState == PlayerState.Finished)
-		{
-			return _sourceStream.getPosition();
-		}
-		// Is playing or stopped
-		final int buffersQueued = getBuffersQueued();
-		final int queuedBuffersSize = (buffersQueued > 0?(buffersQueued - 1) * _pcmBuffer.length + _lastBufferSize:0);
-		final int byteOffset = getByteOffset();
-		LOGGER.log(Level.FINEST, "queued: " + queuedBuffersSize + ", source: " + _sourceStream.getPosition() + ", play: " + byteOffset);
-		return byteOffset + _sourceStream.getPosition() - queuedBuffersSize;*/
 		return _lastPlayPosition;
 	}
 	
 	/**
 	 * Sets the current playing position. Sets the state to playing.
-	 * 
+	 *
 	 * @param position current position in bytes
-	 * @throws IOException 
+	 * @throws IOException
 	 */
 	public void setPosition(final long position) throws IOException
 	{
@@ -247,8 +398,6 @@ public class AudioBuffer
 		
 		// At first stop it
 		_playState = PlayerState.Paused;
-		_al.alSourceStop(_source);
-		AlUtil.checkError(_al);
 		// flush buffers
 		flushBuffers();
 		
@@ -263,9 +412,29 @@ public class AudioBuffer
 		}
 	}
 	
+	/**
+	 * Gets the size of one frame
+	 *
+	 * @return frame size in bytes
+	 */
+	public int getFrameSize()
+	{
+		return _sourceStream.getFrameSize();
+	}
+	
+	/**
+	 * Gets the sample rate
+	 *
+	 * @return sample rate
+	 */
+	public int getSampleRate()
+	{
+		return _sourceStream.getSampleRate();
+	}
+	
 	/**
 	 * Gets the stream length in bytes
-	 * 
+	 *
 	 * @return stream length in bytes
 	 */
 	public long getLength()
@@ -275,7 +444,7 @@ public class AudioBuffer
 	
 	/**
 	 * Gets the stream length in seconds
-	 * 
+	 *
 	 * @return stream length in seconds
 	 */
 	public double getDuration()
@@ -285,7 +454,7 @@ public class AudioBuffer
 	
 	/**
 	 * Gets the stream time in seconds
-	 * 
+	 *
 	 * @return stream time in seconds
 	 */
 	public double getTime()
@@ -295,9 +464,9 @@ public class AudioBuffer
 	
 	/**
 	 * Sets the stream time in seconds
-	 * 
+	 *
 	 * @param time stream time in seconds
-	 * @throws IOException 
+	 * @throws IOException
 	 */
 	public void setTime(final double time) throws IOException
 	{
@@ -307,209 +476,482 @@ public class AudioBuffer
 	
 	/**
 	 * Sets the volume
-	 * 
+	 *
 	 * @param volume volume
 	 */
 	public void setVolume(final double volume)
 	{
-		_al.alSourcef(_source, AL.AL_GAIN, (float) _volumeFactor.getValue(volume));
-		AlUtil.checkError(_al);
+		_gainRamp = null;
+		_output.setGain((float) _volumeFactor.getValue(volume));
 	}
 	
 	/**
-	 * Gets the volume
-	 * 
-	 * @return volume
+	 * Ramps the volume from the current volume to the given volume.
+	 * The ramp is applied per sample, if the output supports it, else the gain of the output is stepped by the updates.
+	 * Stepping is used, because the output applies its gain to the already queued samples (up to the whole queue), so
+	 * scaling the samples while queueing would delay the ramp by the queued time. The steps are kept small enough to be inaudible.
+	 *
+	 * @param volume target volume
+	 * @param duration duration in seconds
+	 * @param transition curve of the ramp
 	 */
-	public double getVolume()
+	public void rampVolume(final double volume, final double duration, final ITransition transition)
 	{
-		_al.alGetSourcef(_source, AL.AL_GAIN, _floatBuffer, 0);
-		return _volumeFactor.getValueReverse(_floatBuffer[0]);
+		if(duration <= 0)
+		{
+			setVolume(volume);
+			return;
+		}
+		_gainRamp = new GainRamp(getVolume(), volume, duration, transition, _volumeFactor);
+		_rampStartTime = System.nanoTime();
+		_isOutputRamp = _output.rampGain(_gainRamp);
 	}
 	
 	/**
-	 * Gets byte offset
-	 * 
-	 * @return byte offset
+	 * Returns true, if a volume ramp is active
+	 *
+	 * @return true, if ramping
 	 */
-	private int getByteOffset()
+	public boolean isRamping()
 	{
-		_al.alGetSourcei(_source, AL.AL_BYTE_OFFSET, _intBuffer, 0);
-		return _intBuffer[0];
+		return _gainRamp != null;
 	}
 	
 	/**
-	 * Gets buffers queued
-	 * 
-	 * @return buffers queued
+	 * Gets the time until the active ramp needs the next update. Ramps, which are applied by the output,
+	 * only need an update at their end. Stepped ramps are updated, before the gain changes by more than {@link #MAX_GAIN_STEP}.
+	 *
+	 * @param stepDelay maximum time between two gain steps in seconds, if the ramp is applied by updates
+	 * @return delay in seconds
 	 */
-	private int getBuffersQueued()
+	public double getRampDelay(final double stepDelay)
 	{
-		_al.alGetSourcei(_source, AL.AL_BUFFERS_QUEUED, _intBuffer, 0);
-		return _intBuffer[0];
+		final double time = (System.nanoTime() - _rampStartTime) * 1e-9;
+		final double remaining = Math.max(0, _gainRamp.getDuration() - time);
+		if(_isOutputRamp)
+		{
+			return remaining;
+		}
+		double delay = stepDelay;
+		final double gainStep = Math.abs(_gainRamp.getGain(time + stepDelay) - _gainRamp.getGain(time));
+		if(gainStep > MAX_GAIN_STEP)
+		{
+			// Fast ramp, shorten the steps
+			delay = Math.max(MIN_RAMP_STEP_DELAY, stepDelay * MAX_GAIN_STEP / gainStep);
+		}
+		return Math.min(delay, remaining);
 	}
 	
 	/**
-	 * Gets buffers processed
-	 * 
-	 * @return buffers processed
+	 * Sets the target volume of the active ramp immediately
 	 */
-	private int getBuffersProcessed()
+	public void finishRamp()
 	{
-		_al.alGetSourcei(_source, AL.AL_BUFFERS_PROCESSED, _intBuffer, 0);
-		return _intBuffer[0];
+		if(_gainRamp != null)
+		{
+			setVolume(_gainRamp.getTargetVolume());
+		}
 	}
 	
 	/**
-	 * Gets source state
-	 * 
-	 * @return source state
+	 * Updates the gain of the active volume ramp
+	 *
+	 * @return true, if the ramp has reached its target
 	 */
-	private int getSourceState()
+	public boolean updateRamp()
 	{
-		_al.alGetSourcei(_source, AL.AL_SOURCE_STATE, _intBuffer, 0);
-		return _intBuffer[0];
+		if(_gainRamp == null)
+		{
+			return false;
+		}
+		final double time = (System.nanoTime() - _rampStartTime) * 1e-9;
+		if(time >= _gainRamp.getDuration())
+		{
+			if(!_isOutputRamp)
+			{
+				_output.setGain(_gainRamp.getGain(time));
+			}
+			_gainRamp = null;
+			return true;
+		}
+		if(!_isOutputRamp)
+		{
+			_output.setGain(_gainRamp.getGain(time));
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the volume
+	 *
+	 * @return volume
+	 */
+	public double getVolume()
+	{
+		return _volumeFactor.getValueReverse(_output.getGain());
 	}
 	
 	/**
-	 * Fills the given buffer with data from the source stream and queues it to the audio source if it is not empty.
-	 * 
-	 * @param buffer buffer to fill
+	 * Fills a buffer with data from the source stream and queues it to the output if it is not empty.
+	 * If the source stream has no data available yet (but did not end), only the available data is queued.
+	 *
 	 * @return buffer state
 	 * @throws IOException
 	 */
-	private BufferState fillBuffer(final int buffer) throws IOException
+	private BufferState fillBuffer() throws IOException
 	{
-		int size = 0;
-		while(size < _pcmBuffer.length)
+		final int size;
+		if(_useDirectBuffers)
 		{
-			final int result = _sourceStream.read(_pcmBuffer, size, _pcmBuffer.length - size);
-			if(result < 0)
+			final ByteBuffer directBuffer = PcmBufferPool.get().acquireDirect(_chunkSize);
+			try
 			{
-				break;
+				size = readDirect(directBuffer);
+				if(size > 0)
+				{
+					directBuffer.flip();
+					_output.queue(directBuffer);
+				}
+			}
+			finally
+			{
+				PcmBufferPool.get().releaseDirect(directBuffer);
+			}
+		}
+		else
+		{
+			final ByteBuffer heapBuffer = PcmBufferPool.get().acquireHeap(_chunkSize);
+			try
+			{
+				size = readHeap(heapBuffer.array());
+				if(size > 0)
+				{
+					heapBuffer.limit(size);
+					_output.queue(heapBuffer);
+				}
+			}
+			finally
+			{
+				PcmBufferPool.get().releaseHeap(heapBuffer);
 			}
-			size += result;
 		}
 		
-		LOGGER.log(Level.FINEST, "read " + size + "/" + _pcmBuffer.length);
+		if(LOGGER.isLoggable(Level.FINEST))
+		{
+			LOGGER.log(Level.FINEST, "read " + size + "/" + _chunkSize);
+		}
 		
 		if(size <= 0)
 		{
 			return BufferState.Empty;
 		}
 		
-		_al.alBufferData(buffer, _format, ByteBuffer.wrap(_pcmBuffer), size, _sourceStream.getSampleRate());
-		AlUtil.checkError(_al);
+		_bufferSizes[(_firstQueuedBuffer + _queuedBufferCount) % _bufferSizes.length] = size;
+		_queuedBufferCount++;
+		_queuedBytes += size;
+		AudioMetrics.get().buffersQueued(1);
 		
-		_intBuffer[0] = buffer;
-		_al.alSourceQueueBuffers(_source, 1, _intBuffer, 0);
-		AlUtil.checkError(_al);
-		
-		_lastBufferSize = size;
-		
-		return (size == _pcmBuffer.length)?BufferState.Normal:BufferState.Truncated;
+		return (size == _chunkSize)?BufferState.Normal:BufferState.Truncated;
 	}
 	
 	/**
-	 * Updates the buffer data by draining from the source and pushing to the audio buffer
-	 * 
-	 * @return true, if more data is available or the buffers were not cleared, false if all buffers have finished
+	 * Reads the next chunk from the source stream into the given heap array
+	 *
+	 * @param pcmBuffer destination array (at least one chunk)
+	 * @return number of bytes read
 	 * @throws IOException
 	 */
-	public boolean update() throws IOException
+	private int readHeap(final byte[] pcmBuffer) throws IOException
 	{
-		final int buffersProcessed = getBuffersProcessed();
-		
-		final int[] buffer = new int[1];
-		
-		for(int i = 0; i < buffersProcessed; i++)
+		int size = 0;
+		while(size < _chunkSize)
 		{
-			buffer[0] = 0;
-			
-			_al.alSourceUnqueueBuffers(_source, 1, buffer, 0);
-			AlUtil.checkError(_al);
-			
-			final BufferState bufferState = fillBuffer(buffer[0]);
+			final int result = _sourceStream.read(pcmBuffer, size, _chunkSize - size);
+			if(result < 0)
+			{
+				_endOfStream = true;
+				break;
+			}
+			if(result == 0)
+			{
+				// Decoder is not ready yet
+				break;
+			}
+			size += result;
+		}
+		return size;
+	}
+	
+	/**
+	 * Reads the next chunk from the source stream into the given direct buffer
+	 *
+	 * @param directBuffer destination buffer
+	 * @return number of bytes read
+	 * @throws IOException
+	 */
+	private int readDirect(final ByteBuffer directBuffer) throws IOException
+	{
+		while(directBuffer.hasRemaining())
+		{
+			final int result = _sourceStream.read(directBuffer);
+			if(result < 0)
+			{
+				_endOfStream = true;
+				break;
+			}
+			if(result == 0)
+			{
+				// Decoder is not ready yet
+				break;
+			}
+		}
+		return directBuffer.position();
+	}
+	
+	/**
+	 * Fills free buffers until the source stream has no more data available
+	 *
+	 * @throws IOException
+	 */
+	private void fillFreeBuffers() throws IOException
+	{
+		while(_queuedBufferCount < _bufferCount)
+		{
+			final BufferState bufferState = fillBuffer();
 			
-			LOGGER.log(Level.FINER, "Update " + buffer[0] + " -> " + bufferState);
+			if(LOGGER.isLoggable(Level.FINER))
+			{
+				LOGGER.log(Level.FINER, "Fill " + _queuedBufferCount + " -> " + bufferState);
+			}
 			
 			if(bufferState != BufferState.Normal)
 			{
 				break;
 			}
 		}
+	}
+	
+	/**
+	 * Marks all buffers as free
+	 */
+	private void resetFreeBuffers()
+	{
+		AudioMetrics.get().buffersQueued(-_queuedBufferCount);
+		_firstQueuedBuffer = 0;
+		_queuedBufferCount = 0;
+		_queuedBytes = 0;
+		_lastPlayOffset = 0;
+	}
+	
+	/**
+	 * Updates the buffer data by draining from the source and pushing to the audio buffer
+	 *
+	 * @return true, if more data is available or the buffers were not cleared, false if all buffers have finished
+	 * @throws IOException
+	 */
+	public boolean update() throws IOException
+	{
+		final int buffersProcessed = _output.unqueueProcessed();
+		
+		for(int i = 0; i < buffersProcessed; i++)
+		{
+			_queuedBytes -= _bufferSizes[_firstQueuedBuffer];
+			_firstQueuedBuffer = (_firstQueuedBuffer + 1) % _bufferSizes.length;
+			_queuedBufferCount--;
+		}
+		if(buffersProcessed > 0)
+		{
+			AudioMetrics.get().buffersQueued(-buffersProcessed);
+			_isAudible = true;
+		}
+		if(LOGGER.isLoggable(Level.FINER))
+		{
+			LOGGER.log(Level.FINER, "Processed " + buffersProcessed);
+		}
+		
+		if((_playState == PlayerState.Playing) || (_playState == PlayerState.Paused) || (_playState == PlayerState.Cued))
+		{
+			fillFreeBuffers();
+		}
 		
-		final int buffersQueued = getBuffersQueued();
+		if((_playState == PlayerState.Paused) && ((_queuedBufferCount == _bufferCount) || _endOfStream))
+		{
+			// Nothing more is read until resumed (e.g. after seeking while paused)
+			_sourceStream.releaseBuffers();
+		}
+		
+		if(_isStarting && (_playState == PlayerState.Playing) && (_queuedBufferCount > 0))
+		{
+			// First chunk after play or seek is available
+			startOutput();
+		}
 		
-		if((buffersQueued == 0) && ((_playState != PlayerState.Finished) && (_playState != PlayerState.Stopped)))
+		if((_queuedBufferCount == 0) && _endOfStream && ((_playState == PlayerState.Playing) || (_playState == PlayerState.Paused)))
 		{
 			LOGGER.log(Level.FINE, "sound finish");
 			
 			_playState = PlayerState.Finished;
-			_lastBufferSize = 0;
+			_queuedBytes = 0;
 			_lastPlayPosition = _sourceStream.getPosition();
-			if(getSourceState() == AL.AL_PLAYING)
-			{
-				_al.alSourceStop(_source);
-			}
+			_output.stop();
 			return false;
 		}
 		
 		// Is playing or stopped
-		final int queuedBuffersSize = (buffersQueued > 0?(buffersQueued - 1) * _pcmBuffer.length + _lastBufferSize:0);
-		final int byteOffset = getByteOffset();
-		_lastPlayPosition = byteOffset + _sourceStream.getPosition() - queuedBuffersSize;
+		updatePosition();
 		
-		if((_playState == PlayerState.Playing) && (getSourceState() != AL.AL_PLAYING))
+		if((_playState == PlayerState.Playing) && (_queuedBufferCount > 0) && !_output.isRunning())
 		{
 			LOGGER.log(Level.WARNING, "Buffer Underrun: Hold Play");
-			_al.alSourcePlay(_source);
+			AudioMetrics.get().underrun();
+			_output.play();
+			if(_bufferingProfile.isAdaptive())
+			{
+				growBuffers();
+			}
+		}
+		else if(_bufferingProfile.isAdaptive() && (_playState == PlayerState.Playing) && (_queuedBufferCount >= _bufferCount))
+		{
+			// Decoder keeps up, check if the queue can be shrinked
+			if((_bufferCount > _bufferingProfile.getBufferCount()) && (System.nanoTime() - _lastResizeTime > ADAPTIVE_SHRINK_DELAY))
+			{
+				_bufferCount--;
+				_lastResizeTime = System.nanoTime();
+				LOGGER.log(Level.FINE, "shrink to " + _bufferCount + " buffers");
+			}
 		}
 		
 		return true;
 	}
 	
+	/**
+	 * Reads the play position from the output
+	 */
+	private void updatePosition()
+	{
+		_lastPlayOffset = _output.getPlayOffset();
+		_lastPlayPosition = _lastPlayOffset + _sourceStream.getPosition() - _queuedBytes;
+	}
+	
+	/**
+	 * Gets the time in seconds from the last update until the end of the stream is played. Before the end of the
+	 * stream was read, this is the remaining stream time (but at least the queued time).
+	 *
+	 * @return remaining time in seconds
+	 */
+	public double getRemainingTime()
+	{
+		final double bytesPerSecond = (double) _sourceStream.getFrameSize() * _sourceStream.getSampleRate();
+		final long queuedRemaining = Math.max(0, _queuedBytes - _lastPlayOffset);
+		if(_endOfStream)
+		{
+			return queuedRemaining / bytesPerSecond;
+		}
+		return Math.max(getLength() - getPosition(), queuedRemaining) / bytesPerSecond;
+	}
+	
+	/**
+	 * Gets the time after the last update, when the next update is required to keep the queue filled.
+	 * This is the time until the first queued buffer was played, but at most the queued time minus the safety margin.
+	 * After the end of the stream, nothing is refilled, so the update is due when the queued buffers have played
+	 * and the end is polled closely afterwards to detect it in time.
+	 *
+	 * @param safetyMargin time in seconds, which should stay queued
+	 * @return delay in seconds (0, if the queue should be filled as soon as possible)
+	 */
+	public double getRefillDelay(final double safetyMargin)
+	{
+		if((_queuedBufferCount == 0) || (!_endOfStream && (_queuedBufferCount < _bufferCount)))
+		{
+			// The decoder could not fill the queue
+			return 0;
+		}
+		final double bytesPerSecond = (double) _sourceStream.getFrameSize() * _sourceStream.getSampleRate();
+		final double queuedTime = Math.max(0, _queuedBytes - _lastPlayOffset) / bytesPerSecond;
+		if(_endOfStream)
+		{
+			return Math.max(queuedTime, END_POLL_DELAY);
+		}
+		final double firstBufferTime = Math.max(0, _bufferSizes[_firstQueuedBuffer] - _lastPlayOffset) / bytesPerSecond;
+		return Math.max(0, Math.min(firstBufferTime, queuedTime - safetyMargin));
+	}
+	
+	/**
+	 * Adds a buffer to the queue after an underrun (for adaptive buffering)
+	 */
+	private void growBuffers()
+	{
+		_lastResizeTime = System.nanoTime();
+		if(_bufferCount < _bufferSizes.length)
+		{
+			_bufferCount++;
+			LOGGER.log(Level.FINE, "grow to " + _bufferCount + " buffers");
+		}
+	}
+	
 	/**
 	 * Initially fills the buffers
-	 * 
+	 *
 	 * @throws IOException
 	 */
 	private void fillBuffers() throws IOException
 	{
-		LOGGER.log(Level.FINER, "fill " + _buffers.length + " buffers");
-		for(int i = 0; i < _buffers.length; i++)
+		if(LOGGER.isLoggable(Level.FINER))
 		{
-			final BufferState bufferState = fillBuffer(_buffers[i]);
-			if(bufferState != BufferState.Normal)
-			{
-				break;
-			}
+			LOGGER.log(Level.FINER, "fill " + (_bufferCount - _queuedBufferCount) + " buffers");
 		}
+		fillFreeBuffers();
 	}
 	
 	/**
-	 * Finally removes the buffers
+	 * Stops the output and removes the buffers
 	 */
 	private void flushBuffers()
 	{
-		final int queued = getBuffersQueued();
-		LOGGER.log(Level.FINER, "flush " + queued + " buffers");
-		for(int i = 0; i < queued; i++)
+		_output.stop();
+		resetFreeBuffers();
+		_endOfStream = false;
+		_isStarting = false;
+		_isAudible = false;
+	}
+	
+	/**
+	 * Stops playback, closes the source stream and the output.
+	 * The buffer cannot be used afterwards.
+	 */
+	public void close()
+	{
+		if(_isClosed)
 		{
-			_intBuffer[0] = 0;
-			_al.alSourceUnqueueBuffers(_source, 1, _intBuffer, 0);
-			AlUtil.checkError(_al);
+			return;
 		}
-		_lastBufferSize = 0;
+		_isClosed = true;
+		_playState = PlayerState.Stopped;
+		resetFreeBuffers();
+		_output.close();
+		_sourceStream.close();
+		AudioMetrics.get().sourceClosed();
+	}
+	
+	/**
+	 * Returns true, if the buffer was closed
+	 *
+	 * @return true, if closed
+	 */
+	public boolean isClosed()
+	{
+		return _isClosed;
 	}
 	
 	@Override
 	protected void finalize() throws Throwable
 	{
-		flushBuffers();
-		_al.alDeleteBuffers(_buffers.length, _buffers, 0);
-		_al.alDeleteSources(1, new int[]{_source}, 0);
-		AlUtil.checkError(_al);
+		if(!_isClosed)
+		{
+			// Only a safety net, the owner should have called close
+			LOGGER.log(Level.WARNING, "AudioBuffer was not closed (" + _output + ", " + _sourceStream + ")");
+			close();
+		}
 		super.finalize();
 	}
 }
@@ -0,0 +1,437 @@
+/*
+ * AudioMetrics.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of the audio engine. The engine feeds the counters with atomic operations only,
+ * so collecting does not allocate and can stay enabled. The metrics can be read by any JMX client.
+ *
+ * @author Parallan
+ *
+ */
+public final class AudioMetrics implements AudioMetricsMBean
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(AudioMetrics.class.getName());
+	
+	/**
+	 * Name of the MBean
+	 */
+	public static final String OBJECT_NAME = "seventhsense:type=AudioMetrics";
+	
+	/**
+	 * Upper bounds of the decode time histogram in ns (the last range is unbounded)
+	 */
+	private static final long[] DECODE_TIME_BOUNDS = { 50000L, 100000L, 250000L, 500000L, 1000000L, 2500000L, 5000000L, 10000000L, 25000000L, 50000000L };
+	
+	/**
+	 * Length of the window for the rates in ns
+	 */
+	private static final long RATE_WINDOW = 1000000000L;
+	
+	/**
+	 * Singleton instance
+	 */
+	private static final AudioMetrics INSTANCE = new AudioMetrics();
+	
+	/**
+	 * Open audio buffers
+	 */
+	private final AtomicInteger _liveSources = new AtomicInteger();
+	
+	/**
+	 * Buffers queued to the outputs
+	 */
+	private final AtomicInteger _queuedBuffers = new AtomicInteger();
+	
+	/**
+	 * Buffer underruns
+	 */
+	private final AtomicLong _underrunCount = new AtomicLong();
+	
+	/**
+	 * Decoded chunks
+	 */
+	private final AtomicLong _decodedChunkCount = new AtomicLong();
+	
+	/**
+	 * Sum of the decode times in ns
+	 */
+	private final AtomicLong _decodeTime = new AtomicLong();
+	
+	/**
+	 * Decoded chunks per decode time range
+	 */
+	private final AtomicLongArray _decodeTimeHistogram = new AtomicLongArray(DECODE_TIME_BOUNDS.length + 1);
+	
+	/**
+	 * Decoded bytes
+	 */
+	private final AtomicLong _decodedBytes = new AtomicLong();
+	
+	/**
+	 * Seeks
+	 */
+	private final AtomicLong _seekCount = new AtomicLong();
+	
+	/**
+	 * Sum of the seek latencies in ns
+	 */
+	private final AtomicLong _seekTime = new AtomicLong();
+	
+	/**
+	 * Maximum seek latency in ns
+	 */
+	private final AtomicLong _maxSeekTime = new AtomicLong();
+	
+	/**
+	 * Running dedicated player threads
+	 */
+	private final AtomicInteger _playerThreads = new AtomicInteger();
+	
+	/**
+	 * Decoded bytes at the start of the current rate window
+	 */
+	private long _windowDecodedBytes = 0;
+	
+	/**
+	 * Start time (System.nanoTime) of the current rate window
+	 */
+	private long _windowStartTime = System.nanoTime();
+	
+	/**
+	 * Decoded bytes per second of the last complete rate window
+	 */
+	private double _decodedBytesPerSecond = 0;
+	
+	/**
+	 * Singleton
+	 */
+	private AudioMetrics()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Gets the metrics singleton
+	 *
+	 * @return metrics
+	 */
+	public static AudioMetrics get()
+	{
+		return INSTANCE;
+	}
+	
+	/**
+	 * Registers the metrics at the platform MBean server, if not done yet
+	 */
+	public static void registerMBean()
+	{
+		try
+		{
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if(!server.isRegistered(name))
+			{
+				server.registerMBean(INSTANCE, name);
+				LOGGER.log(Level.FINE, "registered " + OBJECT_NAME);
+			}
+		}
+		catch (JMException e)
+		{
+			LOGGER.log(Level.WARNING, "Can't register audio metrics", e);
+		}
+	}
+	
+	/**
+	 * Called, when an audio buffer was created
+	 */
+	public void sourceOpened()
+	{
+		_liveSources.incrementAndGet();
+	}
+	
+	/**
+	 * Called, when an audio buffer was closed
+	 */
+	public void sourceClosed()
+	{
+		_liveSources.decrementAndGet();
+	}
+	
+	/**
+	 * Called, when buffers were queued to or removed from an output
+	 *
+	 * @param count number of queued (positive) or removed (negative) buffers
+	 */
+	public void buffersQueued(final int count)
+	{
+		_queuedBuffers.addAndGet(count);
+	}
+	
+	/**
+	 * Called on a buffer underrun
+	 */
+	public void underrun()
+	{
+		_underrunCount.incrementAndGet();
+	}
+	
+	/**
+	 * Called, when a decoder has decoded a chunk
+	 *
+	 * @param time decode time in ns
+	 * @param bytes number of decoded bytes
+	 */
+	public void chunkDecoded(final long time, final int bytes)
+	{
+		_decodedChunkCount.incrementAndGet();
+		_decodeTime.addAndGet(time);
+		_decodedBytes.addAndGet(bytes);
+		int range = 0;
+		while((range < DECODE_TIME_BOUNDS.length) && (time >= DECODE_TIME_BOUNDS[range]))
+		{
+			range++;
+		}
+		_decodeTimeHistogram.incrementAndGet(range);
+	}
+	
+	/**
+	 * Called, when a decoder has seeked
+	 *
+	 * @param time seek latency in ns
+	 */
+	public void seeked(final long time)
+	{
+		_seekCount.incrementAndGet();
+		_seekTime.addAndGet(time);
+		long maxTime = _maxSeekTime.get();
+		while((time > maxTime) && !_maxSeekTime.compareAndSet(maxTime, time))
+		{
+			maxTime = _maxSeekTime.get();
+		}
+	}
+	
+	/**
+	 * Called, when a dedicated player thread was started
+	 */
+	public void playerThreadStarted()
+	{
+		_playerThreads.incrementAndGet();
+	}
+	
+	/**
+	 * Called, when a dedicated player thread has finished
+	 */
+	public void playerThreadFinished()
+	{
+		_playerThreads.decrementAndGet();
+	}
+	
+	@Override
+	public int getLiveSources()
+	{
+		return _liveSources.get();
+	}
+	
+	@Override
+	public int getQueuedBuffers()
+	{
+		return _queuedBuffers.get();
+	}
+	
+	@Override
+	public double getQueuedBuffersPerSource()
+	{
+		final int sources = _liveSources.get();
+		if(sources <= 0)
+		{
+			return 0;
+		}
+		return (double) _queuedBuffers.get() / sources;
+	}
+	
+	@Override
+	public long getUnderrunCount()
+	{
+		return _underrunCount.get();
+	}
+	
+	@Override
+	public long getDecodedChunkCount()
+	{
+		return _decodedChunkCount.get();
+	}
+	
+	@Override
+	public double getAverageDecodeTime()
+	{
+		final long count = _decodedChunkCount.get();
+		if(count == 0)
+		{
+			return 0;
+		}
+		return _decodeTime.get() / 1e6 / count;
+	}
+	
+	@Override
+	public long[] getDecodeTimeHistogram()
+	{
+		final long[] result = new long[_decodeTimeHistogram.length()];
+		for(int i = 0; i < result.length; i++)
+		{
+			result[i] = _decodeTimeHistogram.get(i);
+		}
+		return result;
+	}
+	
+	@Override
+	public String[] getDecodeTimeHistogramRanges()
+	{
+		final String[] result = new String[DECODE_TIME_BOUNDS.length + 1];
+		for(int i = 0; i < DECODE_TIME_BOUNDS.length; i++)
+		{
+			result[i] = "< " + (DECODE_TIME_BOUNDS[i] / 1e6) + " ms";
+		}
+		result[DECODE_TIME_BOUNDS.length] = ">= " + (DECODE_TIME_BOUNDS[DECODE_TIME_BOUNDS.length - 1] / 1e6) + " ms";
+		return result;
+	}
+	
+	@Override
+	public long getDecodedBytes()
+	{
+		return _decodedBytes.get();
+	}
+	
+	@Override
+	public synchronized double getDecodedBytesPerSecond()
+	{
+		final long time = System.nanoTime();
+		if(time - _windowStartTime >= 2 * RATE_WINDOW)
+		{
+			// The pump was idle, so the last complete window is outdated
+			return (_decodedBytes.get() - _windowDecodedBytes) * 1e9 / (time - _windowStartTime);
+		}
+		return _decodedBytesPerSecond;
+	}
+	
+	/**
+	 * Completes the rate window, if it has passed. Called by the audio pump on each round,
+	 * so reading the rates does not change them.
+	 */
+	public synchronized void sampleRates()
+	{
+		final long time = System.nanoTime();
+		if(time - _windowStartTime >= RATE_WINDOW)
+		{
+			final long decodedBytes = _decodedBytes.get();
+			_decodedBytesPerSecond = (decodedBytes - _windowDecodedBytes) * 1e9 / (time - _windowStartTime);
+			_windowDecodedBytes = decodedBytes;
+			_windowStartTime = time;
+		}
+	}
+	
+	@Override
+	public long getSeekCount()
+	{
+		return _seekCount.get();
+	}
+	
+	@Override
+	public double getAverageSeekLatency()
+	{
+		final long count = _seekCount.get();
+		if(count == 0)
+		{
+			return 0;
+		}
+		return _seekTime.get() / 1e6 / count;
+	}
+	
+	@Override
+	public double getMaxSeekLatency()
+	{
+		return _maxSeekTime.get() / 1e6;
+	}
+	
+	@Override
+	public int getPlayerThreadCount()
+	{
+		return _playerThreads.get();
+	}
+	
+	@Override
+	public int getPumpClientCount()
+	{
+		return AudioPump.get().getClientCount();
+	}
+	
+	@Override
+	public int getUsedAlSources()
+	{
+		return PlayerMixer.get().getUsedSourceCount();
+	}
+	
+	@Override
+	public int getUsedAlBuffers()
+	{
+		return PlayerMixer.get().getUsedBufferCount();
+	}
+	
+	@Override
+	public synchronized void resetStatistics()
+	{
+		_underrunCount.set(0);
+		_decodedChunkCount.set(0);
+		_decodeTime.set(0);
+		for(int i = 0; i < _decodeTimeHistogram.length(); i++)
+		{
+			_decodeTimeHistogram.set(i, 0);
+		}
+		_decodedBytes.set(0);
+		_seekCount.set(0);
+		_seekTime.set(0);
+		_maxSeekTime.set(0);
+		_windowDecodedBytes = 0;
+		_windowStartTime = System.nanoTime();
+		_decodedBytesPerSecond = 0;
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * AudioMetricsMBean.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+/**
+ * Management interface of the audio engine metrics (the name is required by JMX)
+ *
+ * @author Parallan
+ *
+ */
+public interface AudioMetricsMBean
+{
+	/**
+	 * Gets the number of open audio buffers
+	 *
+	 * @return number of sources
+	 */
+	int getLiveSources();
+	
+	/**
+	 * Gets the number of buffers queued to the outputs of all sources
+	 *
+	 * @return number of queued buffers
+	 */
+	int getQueuedBuffers();
+	
+	/**
+	 * Gets the average number of queued buffers per source
+	 *
+	 * @return queued buffers per source
+	 */
+	double getQueuedBuffersPerSource();
+	
+	/**
+	 * Gets the number of buffer underruns
+	 *
+	 * @return number of underruns
+	 */
+	long getUnderrunCount();
+	
+	/**
+	 * Gets the number of decoded chunks
+	 *
+	 * @return number of chunks
+	 */
+	long getDecodedChunkCount();
+	
+	/**
+	 * Gets the average decode time per chunk
+	 *
+	 * @return decode time in ms
+	 */
+	double getAverageDecodeTime();
+	
+	/**
+	 * Gets the number of decoded chunks per decode time range
+	 *
+	 * @return counts for the ranges of getDecodeTimeHistogramRanges
+	 */
+	long[] getDecodeTimeHistogram();
+	
+	/**
+	 * Gets the decode time ranges of the histogram
+	 *
+	 * @return ranges
+	 */
+	String[] getDecodeTimeHistogramRanges();
+	
+	/**
+	 * Gets the total number of decoded bytes
+	 *
+	 * @return decoded bytes
+	 */
+	long getDecodedBytes();
+	
+	/**
+	 * Gets the number of decoded bytes per second in the last complete window of one second
+	 *
+	 * @return decoded bytes per second
+	 */
+	double getDecodedBytesPerSecond();
+	
+	/**
+	 * Gets the number of seeks in the decoders
+	 *
+	 * @return number of seeks
+	 */
+	long getSeekCount();
+	
+	/**
+	 * Gets the average seek latency
+	 *
+	 * @return latency in ms
+	 */
+	double getAverageSeekLatency();
+	
+	/**
+	 * Gets the maximum seek latency
+	 *
+	 * @return latency in ms
+	 */
+	double getMaxSeekLatency();
+	
+	/**
+	 * Gets the number of running dedicated player threads
+	 *
+	 * @return number of threads
+	 */
+	int getPlayerThreadCount();
+	
+	/**
+	 * Gets the number of clients of the shared audio pump
+	 *
+	 * @return number of clients
+	 */
+	int getPumpClientCount();
+	
+	/**
+	 * Gets the number of OpenAL sources in use
+	 *
+	 * @return number of sources
+	 */
+	int getUsedAlSources();
+	
+	/**
+	 * Gets the number of OpenAL buffers in use
+	 *
+	 * @return number of buffers
+	 */
+	int getUsedAlBuffers();
+	
+	/**
+	 * Resets the counters, histograms and latencies (gauges are kept)
+	 */
+	void resetStatistics();
+}
@@ -0,0 +1,306 @@
+/*
+ * AudioPump.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single thread, that services all registered audio pump clients from one loop.
+ * Replaces the dedicated thread per AudioThread. Each client is only pumped, when the delay it
+ * requested has passed or it was woken up, so idle clients cost nothing.
+ *
+ * @author Parallan
+ *
+ */
+public final class AudioPump
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(AudioPump.class.getName());
+	
+	/**
+	 * Shared pump instance
+	 */
+	private static final AudioPump AUDIO_PUMP_INSTANCE = new AudioPump("AudioPump");
+	
+	/**
+	 * Schedule of a registered client
+	 */
+	private static final class Client
+	{
+		/**
+		 * The client
+		 */
+		private final IAudioPumpClient _client;
+		
+		/**
+		 * True, if a wakeup was requested since the last pump (guarded by the pump lock)
+		 */
+		private boolean _isWoken = true;
+		
+		/**
+		 * True, if the client returned IDLE and waits for a wakeup (only accessed by the pump thread)
+		 */
+		private boolean _isIdle = false;
+		
+		/**
+		 * Time (System.nanoTime) of the next pump (only accessed by the pump thread)
+		 */
+		private long _deadline;
+		
+		/**
+		 * Creates the schedule of a client, which is pumped immediately
+		 *
+		 * @param client the client
+		 */
+		private Client(final IAudioPumpClient client)
+		{
+			_client = client;
+		}
+	}
+	
+	/**
+	 * Name of the pump thread
+	 */
+	private final String _name;
+	
+	/**
+	 * Lock-Object for safe threading
+	 */
+	private final Object _pumpLock = new Object();
+	
+	/**
+	 * Registered clients
+	 */
+	private final Map<IAudioPumpClient, Client> _clients = new IdentityHashMap<IAudioPumpClient, Client>();
+	
+	/**
+	 * Copy of the clients for iterating (only accessed by the pump thread)
+	 */
+	private Client[] _clientsCopy = new Client[0];
+	
+	/**
+	 * True, if the clients were changed since the last copy
+	 */
+	private boolean _isClientsChanged = false;
+	
+	/**
+	 * The pump thread (created on first registration)
+	 */
+	private Thread _thread;
+	
+	/**
+	 * True, if a wakeup was requested since the last update
+	 */
+	private boolean _wakeUp = false;
+	
+	/**
+	 * Creates an audio pump
+	 *
+	 * @param name name of the pump thread
+	 */
+	public AudioPump(final String name)
+	{
+		_name = name;
+	}
+	
+	/**
+	 * Registers a client. The client will be pumped until it is unregistered.
+	 *
+	 * @param client client to register
+	 */
+	public void register(final IAudioPumpClient client)
+	{
+		synchronized (_pumpLock)
+		{
+			if(!_clients.containsKey(client))
+			{
+				_clients.put(client, new Client(client));
+				_isClientsChanged = true;
+			}
+			if(_thread == null)
+			{
+				_thread = new Thread(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						AudioPump.this.run();
+					}
+				}, _name);
+				_thread.setDaemon(true);
+				_thread.start();
+				LOGGER.log(Level.FINE, "pump thread started");
+			}
+			_wakeUp = true;
+			_pumpLock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Unregisters a client
+	 *
+	 * @param client client to unregister
+	 */
+	public void unregister(final IAudioPumpClient client)
+	{
+		synchronized (_pumpLock)
+		{
+			if(_clients.remove(client) != null)
+			{
+				_isClientsChanged = true;
+			}
+		}
+	}
+	
+	/**
+	 * Wakes the pump thread for an immediate update of the given client (e.g. after play or resume)
+	 *
+	 * @param client client to update
+	 */
+	public void wakeUp(final IAudioPumpClient client)
+	{
+		synchronized (_pumpLock)
+		{
+			final Client scheduledClient = _clients.get(client);
+			if(scheduledClient != null)
+			{
+				scheduledClient._isWoken = true;
+				_wakeUp = true;
+				_pumpLock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of registered clients
+	 *
+	 * @return number of clients
+	 */
+	public int getClientCount()
+	{
+		synchronized (_pumpLock)
+		{
+			return _clients.size();
+		}
+	}
+	
+	/**
+	 * Pump thread routine
+	 */
+	private void run()
+	{
+		LOGGER.log(Level.FINE, "pump run");
+		Client[] dueClients = new Client[0];
+		while(true)
+		{
+			int dueCount = 0;
+			synchronized (_pumpLock)
+			{
+				_wakeUp = false;
+				if(_isClientsChanged)
+				{
+					_clientsCopy = _clients.values().toArray(new Client[_clients.size()]);
+					_isClientsChanged = false;
+				}
+				if(dueClients.length < _clientsCopy.length)
+				{
+					dueClients = new Client[_clientsCopy.length];
+				}
+				// Collect the clients, which were woken or whose delay has passed
+				final long time = System.nanoTime();
+				for(Client client : _clientsCopy)
+				{
+					if(client._isWoken || (!client._isIdle && (time - client._deadline >= 0)))
+					{
+						client._isWoken = false;
+						dueClients[dueCount++] = client;
+					}
+				}
+			}
+			for(int i = 0; i < dueCount; i++)
+			{
+				final Client client = dueClients[i];
+				dueClients[i] = null;
+				int delay = IAudioPumpClient.IDLE;
+				try
+				{
+					delay = client._client.pump();
+				}
+				catch (RuntimeException e)
+				{
+					LOGGER.log(Level.SEVERE, e.toString(), e);
+				}
+				client._isIdle = delay == IAudioPumpClient.IDLE;
+				client._deadline = System.nanoTime() + delay * 1000000L;
+			}
+			AudioMetrics.get().sampleRates();
+			synchronized (_pumpLock)
+			{
+				if(!_wakeUp)
+				{
+					// Sleep until the earliest deadline, infinitely if all clients are idle
+					final long time = System.nanoTime();
+					long delay = 0;
+					for(Client client : _clientsCopy)
+					{
+						if(!client._isIdle)
+						{
+							final long clientDelay = Math.max(1, (client._deadline - time + 999999) / 1000000);
+							delay = (delay == 0)?clientDelay:Math.min(delay, clientDelay);
+						}
+					}
+					try
+					{
+						_pumpLock.wait(delay);
+					}
+					catch (InterruptedException e)
+					{
+						LOGGER.log(Level.SEVERE, e.toString(), e);
+						_thread = null;
+						return;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the shared pump instance
+	 *
+	 * @return shared pump
+	 */
+	public static AudioPump get()
+	{
+		return AUDIO_PUMP_INSTANCE;
+	}
+}
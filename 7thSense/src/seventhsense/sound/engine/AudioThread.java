@@ -28,35 +28,78 @@
 package seventhsense.sound.engine;
 
 import java.io.IOException;
-import java.lang.Thread.State;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import seventhsense.data.eventlist.EventList;
+import seventhsense.data.fx.ITransition;
+import seventhsense.data.fx.transitions.LinearTransition;
 
 /**
- * This class creates a thread for playing the specified sound file.
+ * This class drives the playback of the specified sound file.
+ * The updates are either performed by a dedicated thread or by a shared audio pump.
  * The thread can't restart.
  * 
  * @author Parallan, Drag-On
  *
  */
-public class AudioThread implements IPlayer
+public class AudioThread implements IPlayer, IAudioPumpClient
 {
 	/**
 	 * LOGGER
 	 */
 	private static final Logger LOGGER = Logger.getLogger(AudioThread.class.getName());
 	
+	/**
+	 * Delay between two updates in ms, if the queue could not be filled or listeners need updates
+	 */
+	private static final int THREAD_DELAY = 50;
+	
+	/**
+	 * Minimum delay between two updates in ms, while playing
+	 */
+	private static final int MIN_THREAD_DELAY = 10;
+	
+	/**
+	 * Maximum delay between two updates in ms, while playing
+	 */
+	private static final int MAX_THREAD_DELAY = 1000;
+	
+	/**
+	 * Time in seconds, which should stay queued when the next update is performed
+	 */
+	private static final double REFILL_SAFETY_MARGIN = 0.25;
+	
+	/**
+	 * Maximum delay between two gain steps in ms, while the volume is ramped by updates (50 steps per second like the fx).
+	 * Fast ramps are stepped more often, see {@link AudioBuffer#getRampDelay(double)}.
+	 */
+	private static final int RAMP_DELAY = 20;
+	
+	/**
+	 * Time in seconds before the end of the queued data, when the successor is started without overlap.
+	 * Covers the wake-up jitter of the pump and starting the output of the successor.
+	 */
+	private static final double HANDOVER_LATENCY = 0.003;
+	
+	/**
+	 * Transition for fading out into the successor
+	 */
+	private static final ITransition HANDOVER_TRANSITION = new LinearTransition();
+
 	/**
 	 * The output-line
 	 */
 	private final AudioBuffer _playBuffer;
 	
 	/**
-	 * Main thread
+	 * Main thread (null, if a shared pump is used)
 	 */
 	private final Thread _thread;
+
+	/**
+	 * Shared pump (null, if a dedicated thread is used)
+	 */
+	private final AudioPump _pump;
 	
 	/**
 	 * Lock-Object for safe threading
@@ -73,25 +116,54 @@ public class AudioThread implements IPlayer
 	 */
 	private boolean _mayInterrupt = false;
 	
+	/**
+	 * Snapshot of the playback state, replaced after each change. Read without locking, so readers never wait for the update.
+	 */
+	private volatile PlaybackState _state;
+
 	/**
 	 * Listeners
 	 */
-	private final EventList<ISoundListener<IPlayer>> _listeners = new EventList<ISoundListener<IPlayer>>();
+	private final SoundListenerList<ISoundListener<IPlayer>> _listeners = new SoundListenerList<ISoundListener<IPlayer>>();
+	
+	/**
+	 * Player, which is started at the end of this player or null
+	 */
+	private IPlayer _successor = null;
+	
+	/**
+	 * Time in seconds, which the successor overlaps the end of this player
+	 */
+	private double _successorOverlap = 0;
 	
 	/**
 	 * Creates a sound-thread for the specified sound-file.
 	 * Exceptions are fired, when an error while opening occurred.
 	 * 
-	 * @param file file to play
-	 * @param fileFormat format of the sound file
-	 * @param line destination for audio data
+	 * @param playBuffer destination for audio data
 	 * @throws SoundException
 	 */
 	public AudioThread(final AudioBuffer playBuffer) throws SoundException
+	{
+		this(playBuffer, null);
+	}
+
+	/**
+	 * Creates a sound-thread for the specified sound-file, which is updated by the given pump.
+	 * Exceptions are fired, when an error while opening occurred.
+	 *
+	 * @param playBuffer destination for audio data
+	 * @param pump pump for updating or null for a dedicated thread
+	 * @throws SoundException
+	 */
+	public AudioThread(final AudioBuffer playBuffer, final AudioPump pump) throws SoundException
 	{
 		LOGGER.log(Level.FINE, "Create (" + playBuffer + ")");
 		_playBuffer = playBuffer;
+		_pump = pump;
 		
+		if(_pump == null)
+		{
 		_thread = new Thread(new Runnable()
 		{
 			public void run()
@@ -99,8 +171,17 @@ public class AudioThread implements IPlayer
 				AudioThread.this.run();
 			}
 		});
+		}
+		else
+		{
+			_thread = null;
+		}
 		
+		synchronized (_threadLock)
+		{
 		startThread();
+			publishState();
+		}
 	}
 	
 	/**
@@ -109,8 +190,16 @@ public class AudioThread implements IPlayer
 	private void startThread()
 	{
 		_isRunning = true;
+		if(_pump == null)
+		{
 		_thread.start();
 		LOGGER.log(Level.FINE, "thread started");
+		}
+		else
+		{
+			_pump.register(this);
+			LOGGER.log(Level.FINE, "registered at pump");
+		}
 	}
 	
 	/**
@@ -130,10 +219,14 @@ public class AudioThread implements IPlayer
 					LOGGER.log(Level.FINER, "interrupt thread");
 					_thread.interrupt();
 				}
-				_playBuffer.stop();
 				_threadLock.notifyAll();
 			}
+			publishState();
+			// Return the OpenAL objects to the pool
+			_playBuffer.close();
 		}
+		if((_pump == null) && (Thread.currentThread() != _thread))
+		{
 		try
 		{
 			_thread.join(500);
@@ -146,34 +239,229 @@ public class AudioThread implements IPlayer
 		{
 			LOGGER.log(Level.SEVERE, "Can't stop play thread (" + _playBuffer + ")");
 		}
+		}
+		else if(_pump != null)
+		{
+			_pump.unregister(this);
+		}
 		LOGGER.log(Level.FINE, "thread closed");
 		
 		fireEvent(SoundEventType.Closed);
 	}
 
+	/**
+	 * Performs the buffer update and fires the events
+	 *
+	 * @return maximum delay until the next update in ms or IDLE, if the buffer is not playing
+	 * @throws IOException
+	 */
+	private int update() throws IOException
+	{
+		boolean isFinished;
+		boolean isRampFinished;
+		final boolean isAudible;
+		final IPlayer successor;
+		synchronized (_threadLock)
+		{
+			if(!_isRunning)
+			{
+				// Closed meanwhile, the buffer was already released
+				return IDLE;
+			}
+			final boolean wasAudible = _playBuffer.isAudible();
+			// Perform the buffer update and drain data
+			isFinished = !_playBuffer.update();
+			isAudible = !wasAudible && _playBuffer.isAudible();
+			isRampFinished = _playBuffer.updateRamp();
+			if(isFinished && _playBuffer.isRamping())
+			{
+				_playBuffer.finishRamp();
+				isRampFinished = true;
+			}
+			successor = takeDueSuccessor(isFinished);
+			publishState();
+		}
+		if(successor != null)
+		{
+			startSuccessor(successor);
+		}
+		if(isAudible)
+		{
+			fireEvent(SoundEventType.Audible);
+		}
+		if(isFinished)
+		{
+			LOGGER.log(Level.FINE, "playing finished (" + _playBuffer + ")");
+			fireEvent(SoundEventType.Finished);
+		}
+		if(isRampFinished)
+		{
+			fireEvent(SoundEventType.VolumeRamped);
+		}
+		fireEvent(SoundEventType.Update);
+		synchronized (_threadLock)
+		{
+			if(_playBuffer.isCued())
+			{
+				// Keep decoding until the queue is filled
+				return (_playBuffer.getRefillDelay(REFILL_SAFETY_MARGIN) > 0)?IDLE:MIN_THREAD_DELAY;
+			}
+			if(_playBuffer.isPaused() || !_playBuffer.isPlaying())
+			{
+				return IDLE;
+			}
+			if(_playBuffer.isStarting())
+			{
+				// Start as soon as the decoder delivered the first chunk
+				return MIN_THREAD_DELAY;
+			}
+			int delay = getRefillDelay();
+			if(_playBuffer.isRamping())
+			{
+				delay = Math.min(delay, (int) Math.ceil(_playBuffer.getRampDelay(RAMP_DELAY / 1000.0) * 1000));
+			}
+			if(_successor != null)
+			{
+				// Wake up in time for the handover
+				delay = Math.min(delay, (int) Math.max(0, Math.floor((_playBuffer.getRemainingTime() - getHandoverTime()) * 1000)));
+			}
+			return delay;
+		}
+	}
+	
+	/**
+	 * Gets the time in seconds before the end of this player, when the successor is started. Must hold the lock.
+	 *
+	 * @return handover time in seconds
+	 */
+	private double getHandoverTime()
+	{
+		return Math.max(_successorOverlap, HANDOVER_LATENCY);
+	}
+	
+	/**
+	 * Removes the successor, if it is due after the last update, and fades out this player, if the successor
+	 * overlaps. Must hold the lock.
+	 *
+	 * @param isFinished true, if this player has finished with the last update
+	 * @return successor to start or null
+	 */
+	private IPlayer takeDueSuccessor(final boolean isFinished)
+	{
+		if(_successor == null)
+		{
+			return null;
+		}
+		if(!isFinished)
+		{
+			if(!_playBuffer.isPlaying() || _playBuffer.isPaused() || _playBuffer.isStarting())
+			{
+				return null;
+			}
+			final double remaining = _playBuffer.getRemainingTime();
+			if(remaining > getHandoverTime())
+			{
+				return null;
+			}
+			if(_successorOverlap > 0)
+			{
+				_playBuffer.rampVolume(0, remaining, HANDOVER_TRANSITION);
+			}
+		}
+		final IPlayer successor = _successor;
+		_successor = null;
+		return successor;
+	}
+	
+	/**
+	 * Starts the successor, must not hold the lock
+	 *
+	 * @param successor successor to start
+	 */
+	private void startSuccessor(final IPlayer successor)
+	{
+		LOGGER.log(Level.FINE, "handover to successor (" + _playBuffer + ")");
+		try
+		{
+			successor.play();
+		}
+		catch (SoundException e)
+		{
+			LOGGER.log(Level.SEVERE, e.toString(), e);
+		}
+		catch (IllegalStateException e)
+		{
+			// The successor was closed meanwhile
+			LOGGER.log(Level.FINE, e.toString(), e);
+		}
+	}
+	
+	/**
+	 * Gets the delay until the next update from the queued time of the buffer.
+	 * Control commands wake up earlier. Must hold the lock.
+	 * 
+	 * @return delay in ms
+	 */
+	private int getRefillDelay()
+	{
+		final double refillDelay = _playBuffer.getRefillDelay(REFILL_SAFETY_MARGIN);
+		int delay = THREAD_DELAY;
+		if(refillDelay > 0)
+		{
+			// At the end of the stream, the end is polled closely to detect it in time
+			final int minDelay = _playBuffer.isEndOfStream()?1:MIN_THREAD_DELAY;
+			delay = Math.min(MAX_THREAD_DELAY, Math.max(minDelay, (int) (refillDelay * 1000)));
+		}
+		if(_listeners.isSubscribed(SoundEventType.Update))
+		{
+			// Listeners need regular update events
+			final long updateInterval = _listeners.getSubscription().getMinUpdateInterval() / 1000000;
+			delay = Math.min(delay, (updateInterval > 0)?(int) updateInterval:THREAD_DELAY);
+		}
+		return delay;
+	}
+
+	@Override
+	public int pump()
+	{
+		synchronized (_threadLock)
+		{
+			if(!_isRunning)
+			{
+				return IDLE;
+			}
+		}
+		try
+		{
+			return update();
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.SEVERE, e.toString(), e);
+			synchronized (_threadLock)
+			{
+				_isRunning = false;
+				publishState();
+				_playBuffer.close();
+			}
+			_pump.unregister(this);
+			return IDLE;
+		}
+	}
+
 	/**
 	 * The method for draining and filling the audio buffer
 	 */
 	private void run()
 	{
+		AudioMetrics.get().playerThreadStarted();
 		try
 		{
 			LOGGER.log(Level.FINE, "thread run (" + _playBuffer + ")");
 			boolean isRunning = true;
 			while(isRunning && !Thread.interrupted())
 			{
-				boolean isFinished;
-				synchronized (_threadLock)
-				{
-					// Perform the buffer update and drain data
-					isFinished = !_playBuffer.update();
-				}
-				if(isFinished)
-				{
-					LOGGER.log(Level.FINE, "playing finished (" + _playBuffer + ")");
-					fireEvent(SoundEventType.Finished);
-				}
-				fireEvent(SoundEventType.Update);
+				final int updateDelay = update();
 				synchronized (_threadLock)
 				{
 					// Check state before delay
@@ -184,8 +472,8 @@ public class AudioThread implements IPlayer
 					}
 					
 					// Determine delay
-					int threadDelay = 50;
-					if(_playBuffer.isPaused() || !_playBuffer.isPlaying())
+					int threadDelay = updateDelay;
+					if(updateDelay == IDLE)
 					{
 						//Save performance: Pause thread for infinite
 						threadDelay = 0;
@@ -214,35 +502,77 @@ public class AudioThread implements IPlayer
 					isRunning = _isRunning;
 				}
 			}
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.SEVERE, e.toString(), e);
+		}
+		finally
+		{
 			synchronized(_threadLock)
 			{
 				//_listeners.clear();
 				_isRunning = false;
+				publishState();
 			}
 		}
-		catch (IOException e)
+		AudioMetrics.get().playerThreadFinished();
+		LOGGER.log(Level.FINE, "thread finished");
+	}
+
+	/**
+	 * Wakes the updating thread or pump
+	 */
+	private void wakeUp()
+	{
+		if(_pump == null)
 		{
-			LOGGER.log(Level.SEVERE, e.toString(), e);
+			_threadLock.notifyAll();
+		}
+		else
+		{
+			_pump.wakeUp(this);
 		}
-		LOGGER.log(Level.FINE, "thread finished");
 	}
 	
-	@Override
-	public double getTime()
+	/**
+	 * Publishes a snapshot of the playback state. Must hold the lock.
+	 */
+	private void publishState()
 	{
-		synchronized (_threadLock)
+		if(_playBuffer.isClosed())
 		{
-			return _playBuffer.getTime();
+			// Keep the last position, the buffer was released
+			final PlaybackState state = _state;
+			_state = new PlaybackState(false, false, true, false, state.getPosition(), state.getLength(), state.getSampleRate(), state.getVolume());
+			return;
 		}
+		final int frameSize = _playBuffer.getFrameSize();
+		final boolean isAdvancing = _isRunning && _playBuffer.isPlaying() && !_playBuffer.isPaused() && !_playBuffer.isStarting();
+		_state = new PlaybackState(_playBuffer.isPlaying(), _playBuffer.isPaused(), !_isRunning, isAdvancing, _playBuffer.getPosition() / frameSize,
+				_playBuffer.getLength() / frameSize, _playBuffer.getSampleRate(), _playBuffer.getVolume());
+	}
+	
+	/**
+	 * Gets the snapshot of the playback state of the last update or change. Does not lock.
+	 * 
+	 * @return playback state
+	 */
+	public PlaybackState getState()
+	{
+		return _state;
+	}
+	
+	@Override
+	public double getTime()
+	{
+		return _state.getTime();
 	}
 	
 	@Override
 	public double getDuration()
 	{
-		synchronized (_threadLock)
-		{
-			return _playBuffer.getDuration();
-		}
+		return _state.getDuration();
 	}
 
 	@Override
@@ -259,28 +589,64 @@ public class AudioThread implements IPlayer
 			{
 				throw new SoundException(e);
 			}
+			finally
+			{
+				publishState();
+			}
+			wakeUp();
 		}
 	}
 	
 	@Override
 	public void setVolume(final double volume)
 	{
+		final boolean wasRamping;
 		synchronized (_threadLock)
 		{
 			checkThread();
+			wasRamping = _playBuffer.isRamping();
 			_playBuffer.setVolume(volume);
+			publishState();
+		}
+		if(wasRamping)
+		{
+			fireEvent(SoundEventType.VolumeRamped);
 		}
 	}
 	
 	@Override
-	public double getVolume()
+	public void rampVolume(final double volume, final double duration, final ITransition transition)
 	{
+		final boolean isRamping;
 		synchronized (_threadLock)
 		{
 			checkThread();
-			return _playBuffer.getVolume();
+			if((duration <= 0) || !_playBuffer.isPlaying() || _playBuffer.isPaused())
+			{
+				// Nothing is played, so there is nothing to ramp
+				_playBuffer.setVolume(volume);
+				publishState();
+				isRamping = false;
+			}
+			else
+			{
+				_playBuffer.rampVolume(volume, duration, transition);
+				isRamping = true;
+				wakeUp();
+			}
+		}
+		if(!isRamping)
+		{
+			fireEvent(SoundEventType.VolumeRamped);
 		}
 	}
+	
+	@Override
+	public double getVolume()
+	{
+			checkThread();
+		return _state.getVolume();
+	}
 
 	@Override
 	public void play() throws SoundException
@@ -297,30 +663,88 @@ public class AudioThread implements IPlayer
 			{
 				throw new SoundException(e);
 			}
-			_threadLock.notifyAll();
+			finally
+			{
+				publishState();
+			}
+			wakeUp();
 		}
 		fireEvent(SoundEventType.Started);
 	}
 	
+	@Override
+	public void cue() throws SoundException
+	{
+		synchronized (_threadLock)
+		{
+			checkThread();
+			LOGGER.log(Level.FINE, "cue");
+			try
+			{
+				_playBuffer.cue();
+			}
+			catch (IOException e)
+			{
+				throw new SoundException(e);
+			}
+			finally
+			{
+				publishState();
+			}
+			wakeUp();
+		}
+	}
+	
+	@Override
+	public void setSuccessor(final IPlayer successor, final double overlap)
+	{
+		synchronized (_threadLock)
+		{
+			if(successor != null)
+			{
+				checkThread();
+			}
+			_successor = successor;
+			_successorOverlap = Math.max(0, overlap);
+			wakeUp();
+		}
+	}
+	
 	@Override
 	public void stop()
 	{
+		final boolean wasRamping;
 		synchronized (_threadLock)
 		{
 			checkThread();
 			LOGGER.log(Level.FINE, "stop");
+			wasRamping = _playBuffer.isRamping();
+			_playBuffer.finishRamp();
 			_playBuffer.stop();
+			publishState();
+		}
+		if(wasRamping)
+		{
+			fireEvent(SoundEventType.VolumeRamped);
 		}
 	}
 
 	@Override
 	public void pause()
 	{
+		final boolean wasRamping;
 		synchronized (_threadLock)
 		{
 			checkThread();
 			LOGGER.log(Level.FINE, "pause");
+			wasRamping = _playBuffer.isRamping();
+			_playBuffer.finishRamp();
 			_playBuffer.pause();
+			publishState();
+		}
+		if(wasRamping)
+		{
+			fireEvent(SoundEventType.VolumeRamped);
 		}
 		fireEvent(SoundEventType.Paused);
 	}
@@ -340,7 +764,11 @@ public class AudioThread implements IPlayer
 			{
 				throw new SoundException(e);
 			}
-			_threadLock.notifyAll();
+			finally
+			{
+				publishState();
+			}
+			wakeUp();
 		}
 		fireEvent(SoundEventType.Resumed);
 	}
@@ -348,19 +776,13 @@ public class AudioThread implements IPlayer
 	@Override
 	public boolean isPlaying()
 	{
-		synchronized (_threadLock)
-		{
-			return _playBuffer.isPlaying();
-		}
+		return _state.isPlaying();
 	}
 	
 	@Override
 	public boolean isPaused()
 	{
-		synchronized (_threadLock)
-		{
-			return _playBuffer.isPaused() ;
-		}
+		return _state.isPaused();
 	}
 	
 	/**
@@ -370,10 +792,7 @@ public class AudioThread implements IPlayer
 	 */
 	public boolean isClosed()
 	{
-		synchronized (_threadLock)
-		{
-			return !_isRunning || (!_thread.isAlive() && (_thread.getState() != State.NEW));
-		}
+		return _state.isClosed();
 	}
 	
 	/**
@@ -397,6 +816,25 @@ public class AudioThread implements IPlayer
 	public void addSoundListener(final ISoundListener<IPlayer> listener)
 	{
 		_listeners.add(listener);
+		// Shorten the current delay to the update interval
+		synchronized (_threadLock)
+		{
+			wakeUp();
+		}
+	}
+	
+	@Override
+	public void addSoundListener(final ISoundListener<IPlayer> listener, final SoundEventSubscription subscription)
+	{
+		_listeners.add(listener, subscription);
+		if(subscription.contains(SoundEventType.Update))
+		{
+			// Shorten the current delay to the update interval
+			synchronized (_threadLock)
+			{
+				wakeUp();
+			}
+		}
 	}
 
 	/**
@@ -406,7 +844,7 @@ public class AudioThread implements IPlayer
 	 */
 	private void fireEvent(final SoundEventType eventType)
 	{
-		for (ISoundListener<IPlayer> listener : _listeners.iterateEvents())
+		for (ISoundListener<IPlayer> listener : _listeners.iterateEvents(eventType))
 		{
 			listener.soundEvent(this, eventType);
 		}
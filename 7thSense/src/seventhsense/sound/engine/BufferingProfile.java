@@ -0,0 +1,150 @@
+/*
+ * BufferingProfile.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+/**
+ * Defines how many OpenAL buffers are queued by a player and how much audio each buffer holds.
+ * More and longer buffers protect against underruns, fewer and shorter buffers reduce latency and memory.
+ * If the maximum buffer count is greater than the buffer count, the queue is adaptive: It grows after
+ * an underrun and shrinks again, when the decoder keeps up comfortably.
+ *
+ * @author Parallan
+ *
+ */
+public final class BufferingProfile
+{
+	/**
+	 * Short buffers for fast reaction on seeks and new tracks
+	 */
+	public static final BufferingProfile LOW_LATENCY = new BufferingProfile(6, 0.05);
+	
+	/**
+	 * Long buffers, safe against underruns
+	 */
+	public static final BufferingProfile BALANCED = new BufferingProfile(4, 1.0);
+	
+	/**
+	 * Few short buffers for keeping many loaded items in memory
+	 */
+	public static final BufferingProfile MEMORY_SAVER = new BufferingProfile(3, 0.25);
+	
+	/**
+	 * Starts with a short queue and grows it after underruns
+	 */
+	public static final BufferingProfile ADAPTIVE = new BufferingProfile(4, 0.1, 16);
+	
+	/**
+	 * Initial (and minimum) number of buffers
+	 */
+	private final int _bufferCount;
+	
+	/**
+	 * Maximum number of buffers
+	 */
+	private final int _maxBufferCount;
+	
+	/**
+	 * Duration of one buffer in seconds
+	 */
+	private final double _chunkDuration;
+	
+	/**
+	 * Creates a fixed buffering profile
+	 *
+	 * @param bufferCount number of buffers
+	 * @param chunkDuration duration of one buffer in seconds
+	 */
+	public BufferingProfile(final int bufferCount, final double chunkDuration)
+	{
+		this(bufferCount, chunkDuration, bufferCount);
+	}
+	
+	/**
+	 * Creates a buffering profile
+	 *
+	 * @param bufferCount initial (and minimum) number of buffers
+	 * @param chunkDuration duration of one buffer in seconds
+	 * @param maxBufferCount maximum number of buffers (adaptive, if greater than bufferCount)
+	 */
+	public BufferingProfile(final int bufferCount, final double chunkDuration, final int maxBufferCount)
+	{
+		if((bufferCount < 2) || (maxBufferCount < bufferCount) || (chunkDuration <= 0))
+		{
+			throw new IllegalArgumentException("Invalid buffering profile");
+		}
+		_bufferCount = bufferCount;
+		_chunkDuration = chunkDuration;
+		_maxBufferCount = maxBufferCount;
+	}
+	
+	/**
+	 * Gets the initial (and minimum) number of buffers
+	 *
+	 * @return number of buffers
+	 */
+	public int getBufferCount()
+	{
+		return _bufferCount;
+	}
+	
+	/**
+	 * Gets the maximum number of buffers
+	 *
+	 * @return maximum number of buffers
+	 */
+	public int getMaxBufferCount()
+	{
+		return _maxBufferCount;
+	}
+	
+	/**
+	 * Gets the duration of one buffer
+	 *
+	 * @return duration in seconds
+	 */
+	public double getChunkDuration()
+	{
+		return _chunkDuration;
+	}
+	
+	/**
+	 * Returns true, if the number of buffers is adapted at runtime
+	 *
+	 * @return true, if adaptive
+	 */
+	public boolean isAdaptive()
+	{
+		return _maxBufferCount > _bufferCount;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return _bufferCount + (isAdaptive()?"-" + _maxBufferCount:"") + " x " + _chunkDuration + " sec";
+	}
+}
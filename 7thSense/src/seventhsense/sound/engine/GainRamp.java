@@ -0,0 +1,129 @@
+/*
+ * GainRamp.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import seventhsense.data.fx.ITransition;
+
+/**
+ * Ramp of the volume from a start volume to a target volume over a duration with a transition curve.
+ * The volume is mapped to the gain of the output for each evaluation.
+ *
+ * @author Parallan
+ *
+ */
+public final class GainRamp
+{
+	/**
+	 * Volume at the start
+	 */
+	private final double _fromVolume;
+	
+	/**
+	 * Target volume
+	 */
+	private final double _toVolume;
+	
+	/**
+	 * Duration in seconds
+	 */
+	private final double _duration;
+	
+	/**
+	 * Curve of the ramp
+	 */
+	private final ITransition _transition;
+	
+	/**
+	 * Mapping from volume to gain
+	 */
+	private final ITransition _volumeFactor;
+	
+	/**
+	 * Creates a ramp
+	 *
+	 * @param fromVolume volume at the start
+	 * @param toVolume target volume
+	 * @param duration duration in seconds
+	 * @param transition curve of the ramp
+	 * @param volumeFactor mapping from volume to gain
+	 */
+	public GainRamp(final double fromVolume, final double toVolume, final double duration, final ITransition transition, final ITransition volumeFactor)
+	{
+		_fromVolume = fromVolume;
+		_toVolume = toVolume;
+		_duration = duration;
+		_transition = transition;
+		_volumeFactor = volumeFactor;
+	}
+	
+	/**
+	 * Gets the volume at the given time
+	 *
+	 * @param time time since the start of the ramp in seconds
+	 * @return volume
+	 */
+	public double getVolume(final double time)
+	{
+		if(time >= _duration)
+		{
+			return _toVolume;
+		}
+		return _fromVolume + (_toVolume - _fromVolume) * _transition.getValue(time / _duration);
+	}
+	
+	/**
+	 * Gets the gain at the given time
+	 *
+	 * @param time time since the start of the ramp in seconds
+	 * @return gain
+	 */
+	public float getGain(final double time)
+	{
+		return (float) _volumeFactor.getValue(getVolume(time));
+	}
+	
+	/**
+	 * Gets the target volume
+	 *
+	 * @return target volume
+	 */
+	public double getTargetVolume()
+	{
+		return _toVolume;
+	}
+	
+	/**
+	 * Gets the duration
+	 *
+	 * @return duration in seconds
+	 */
+	public double getDuration()
+	{
+		return _duration;
+	}
+}
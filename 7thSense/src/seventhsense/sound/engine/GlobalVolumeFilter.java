@@ -31,7 +31,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import seventhsense.data.IPropertyChangedListener;
-import seventhsense.data.eventlist.EventList;
+import seventhsense.data.fx.ITransition;
 
 /**
  * @author Parallan
@@ -62,7 +62,7 @@ public class GlobalVolumeFilter implements IPlayer
 	/**
 	 * List for listeners
 	 */
-	private final EventList<ISoundListener<IPlayer>> _listeners = new EventList<ISoundListener<IPlayer>>();
+	private final SoundListenerList<ISoundListener<IPlayer>> _listeners = new SoundListenerList<ISoundListener<IPlayer>>();
 	
 	/**
 	 * Internal Volume
@@ -101,7 +101,7 @@ public class GlobalVolumeFilter implements IPlayer
 		};
 		
 		PlayerMixer.get().addListener(_mixerListener);
-		_player.addSoundListener(_playerListener);
+		_player.addSoundListener(_playerListener, SoundEventSubscription.NONE);
 	}
 	
 	/**
@@ -128,6 +128,16 @@ public class GlobalVolumeFilter implements IPlayer
 		fireSoundEvent(SoundEventType.Volume);
 	}
 	
+	@Override
+	public void rampVolume(final double volume, final double duration, final ITransition transition)
+	{
+		_volume = Math.min(Math.max(0, volume), 1);
+		final double finalVolume = _volume * PlayerMixer.get().getVolume();
+		LOGGER.log(Level.FINEST, "ramp volume to " + (finalVolume*100) + "% in " + duration + "s");
+		_player.rampVolume(finalVolume, duration, transition);
+		fireSoundEvent(SoundEventType.Volume);
+	}
+	
 	@Override
 	public double getVolume()
 	{
@@ -157,6 +167,18 @@ public class GlobalVolumeFilter implements IPlayer
 	{
 		_player.resume();
 	}
+	
+	@Override
+	public void cue() throws SoundException
+	{
+		_player.cue();
+	}
+	
+	@Override
+	public void setSuccessor(final IPlayer successor, final double overlap)
+	{
+		_player.setSuccessor(successor, overlap);
+	}
 
 	@Override
 	public boolean isPlaying()
@@ -206,17 +228,34 @@ public class GlobalVolumeFilter implements IPlayer
 	public void addSoundListener(final ISoundListener<IPlayer> listener)
 	{
 		_listeners.add(listener);
+		updateSubscription();
+	}
+	
+	@Override
+	public void addSoundListener(final ISoundListener<IPlayer> listener, final SoundEventSubscription subscription)
+	{
+		_listeners.add(listener, subscription);
+		updateSubscription();
 	}
 
 	@Override
 	public void removeSoundListener(final ISoundListener<IPlayer> listener)
 	{
 		_listeners.remove(listener);
+		updateSubscription();
+	}
+	
+	/**
+	 * Subscribes the events of the player, which are required by the listeners
+	 */
+	private void updateSubscription()
+	{
+		_player.addSoundListener(_playerListener, _listeners.getSubscription());
 	}
 	
 	private void fireSoundEvent(final SoundEventType eventType)
 	{
-		for(ISoundListener<IPlayer> listener : _listeners.iterateEvents())
+		for(ISoundListener<IPlayer> listener : _listeners.iterateEvents(eventType))
 		{
 			listener.soundEvent(this, eventType);
 		}
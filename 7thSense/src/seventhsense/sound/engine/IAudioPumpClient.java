@@ -0,0 +1,50 @@
+/*
+ * IAudioPumpClient.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+/**
+ * Interface for clients, that are serviced by an audio pump
+ *
+ * @author Parallan
+ *
+ */
+public interface IAudioPumpClient
+{
+	/**
+	 * Returned by pump, if the client is idle
+	 */
+	int IDLE = -1;
+	
+	/**
+	 * Performs one update step (drain and fill buffers, fire events).
+	 * Called from the pump thread only.
+	 *
+	 * @return maximum delay until the next update in ms or IDLE, if the client needs no periodic updates
+	 */
+	int pump();
+}
@@ -27,6 +27,7 @@
  */
 package seventhsense.sound.engine;
 
+import seventhsense.data.fx.ITransition;
 
 /**
  * Interface for a sound-file player
@@ -60,6 +61,22 @@ public interface IPlayer
 	 * @throws SoundException 
 	 */
 	void resume() throws SoundException;
+	
+	/**
+	 * Prepares playing from the start, so a following {@link #play()} starts without waiting for the decoder
+	 * 
+	 * @throws SoundException
+	 */
+	void cue() throws SoundException;
+	
+	/**
+	 * Sets the player, which is started by the audio engine when this player reaches its end (gapless),
+	 * or the given overlap in seconds before its end (this player fades out during the overlap)
+	 * 
+	 * @param successor player to start or null
+	 * @param overlap overlap in seconds
+	 */
+	void setSuccessor(IPlayer successor, double overlap);
 
 	/**
 	 * true, if the file is playing or paused
@@ -104,6 +121,16 @@ public interface IPlayer
 	 * @param volume volume
 	 */
 	void setVolume(double volume);
+	
+	/**
+	 * Ramps the volume of sound [0, 1] from the current volume to the given volume.
+	 * The ramp is applied while playing and fires VolumeRamped, when it is done.
+	 * 
+	 * @param volume target volume
+	 * @param duration duration of the ramp in seconds
+	 * @param transition curve of the ramp
+	 */
+	void rampVolume(double volume, double duration, ITransition transition);
 
 	/**
 	 * returns volume of sound [0, 1]
@@ -119,6 +146,15 @@ public interface IPlayer
 	 */
 	void addSoundListener(ISoundListener<IPlayer> listener);
 	
+	/**
+	 * Add a sound listener, which only receives the subscribed events.
+	 * If the listener was already added, its subscription is replaced.
+	 * 
+	 * @param listener listener
+	 * @param subscription subscribed events
+	 */
+	void addSoundListener(ISoundListener<IPlayer> listener, SoundEventSubscription subscription);
+	
 	/**
 	 * Remove a listener
 	 * 
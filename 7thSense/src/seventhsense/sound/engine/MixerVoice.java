@@ -0,0 +1,371 @@
+/*
+ * MixerVoice.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import seventhsense.sound.engine.output.IAudioOutput;
+
+/**
+ * Output of one player, which is mixed by the SoftwareMixer. Queued chunks are converted to
+ * 16 bit stereo and consumed by the mixer at its sample rate, behaving like a streaming source.
+ *
+ * @author Parallan
+ *
+ */
+final class MixerVoice implements IAudioOutput
+{
+	/**
+	 * Queued chunk of converted samples
+	 */
+	private static final class Chunk
+	{
+		/**
+		 * Interleaved 16 bit stereo samples
+		 */
+		private short[] _samples = new short[0];
+		
+		/**
+		 * Number of valid frames
+		 */
+		private int _frames;
+		
+		/**
+		 * Size of the chunk in the source format
+		 */
+		private int _bytes;
+	}
+	
+	/**
+	 * Mixer of this voice
+	 */
+	private final SoftwareMixer _mixer;
+	
+	/**
+	 * Number of channels of the source data
+	 */
+	private final int _channels;
+	
+	/**
+	 * Size of one sample of the source data
+	 */
+	private final int _sampleSize;
+	
+	/**
+	 * Size of one frame of the source data
+	 */
+	private final int _frameSize;
+	
+	/**
+	 * Source frames per mixer frame
+	 */
+	private final double _step;
+	
+	/**
+	 * Queued chunks
+	 */
+	private final Deque<Chunk> _chunks = new ArrayDeque<Chunk>();
+	
+	/**
+	 * Processed chunks for reuse
+	 */
+	private final Deque<Chunk> _freeChunks = new ArrayDeque<Chunk>();
+	
+	/**
+	 * Position in the first chunk in frames
+	 */
+	private double _framePosition = 0;
+	
+	/**
+	 * Number of chunks processed since the last unqueue
+	 */
+	private int _processedCount = 0;
+	
+	/**
+	 * Bytes of the chunks processed since the last unqueue
+	 */
+	private int _processedBytes = 0;
+	
+	/**
+	 * True, while the voice is mixed
+	 */
+	private boolean _isRunning = false;
+	
+	/**
+	 * Gain
+	 */
+	private float _gain = 1.0f;
+	
+	/**
+	 * Active gain ramp or null
+	 */
+	private GainRamp _ramp = null;
+	
+	/**
+	 * Number of mixed frames since the start of the ramp
+	 */
+	private long _rampFrame = 0;
+	
+	/**
+	 * Creates a voice
+	 *
+	 * @param mixer mixer of the voice
+	 * @param channels number of channels
+	 * @param sampleSize size of one sample in bytes
+	 * @param sampleRate sample rate
+	 */
+	MixerVoice(final SoftwareMixer mixer, final int channels, final int sampleSize, final int sampleRate)
+	{
+		_mixer = mixer;
+		_channels = channels;
+		_sampleSize = sampleSize;
+		_frameSize = channels * sampleSize;
+		_step = (double) sampleRate / mixer.getSampleRate();
+	}
+	
+	@Override
+	public synchronized void queue(final ByteBuffer data)
+	{
+		final int position = data.position();
+		final int frames = data.remaining() / _frameSize;
+		Chunk chunk = _freeChunks.poll();
+		if(chunk == null)
+		{
+			chunk = new Chunk();
+		}
+		if(chunk._samples.length < frames * 2)
+		{
+			chunk._samples = new short[frames * 2];
+		}
+		final short[] samples = chunk._samples;
+		for(int i = 0; i < frames; i++)
+		{
+			final int offset = position + i * _frameSize;
+			final short left;
+			final short right;
+			if(_sampleSize == 2)
+			{
+				// 16 bit signed little endian
+				left = (short) ((data.get(offset) & 0xFF) | (data.get(offset + 1) << 8));
+				right = (_channels == 2)?(short) ((data.get(offset + 2) & 0xFF) | (data.get(offset + 3) << 8)):left;
+			}
+			else
+			{
+				// 8 bit unsigned
+				left = (short) (((data.get(offset) & 0xFF) - 128) << 8);
+				right = (_channels == 2)?(short) (((data.get(offset + 1) & 0xFF) - 128) << 8):left;
+			}
+			samples[i * 2] = left;
+			samples[i * 2 + 1] = right;
+		}
+		chunk._frames = frames;
+		chunk._bytes = data.remaining();
+		_chunks.add(chunk);
+		data.position(data.limit());
+	}
+	
+	/**
+	 * Adds the samples of this voice to the mix buffer. Called by the mixer.
+	 *
+	 * @param mixBuffer interleaved stereo mix buffer
+	 * @param frames number of frames to mix
+	 * @return number of frames, this voice contributed
+	 */
+	synchronized int mix(final int[] mixBuffer, final int frames)
+	{
+		if(!_isRunning)
+		{
+			return 0;
+		}
+		double position = _framePosition;
+		int mixed = 0;
+		while(mixed < frames)
+		{
+			final Chunk chunk = _chunks.peek();
+			if(chunk == null)
+			{
+				// Ran out of data, stop like a real output
+				_isRunning = false;
+				break;
+			}
+			final short[] samples = chunk._samples;
+			if(_step == 1.0)
+			{
+				final int start = (int) position;
+				final int count = Math.min(frames - mixed, chunk._frames - start);
+				for(int i = 0; i < count; i++)
+				{
+					final float gain = nextGain();
+					mixBuffer[(mixed + i) * 2] += (int) (samples[(start + i) * 2] * gain);
+					mixBuffer[(mixed + i) * 2 + 1] += (int) (samples[(start + i) * 2 + 1] * gain);
+				}
+				position += count;
+				mixed += count;
+			}
+			else
+			{
+				// Linear interpolation within the chunk
+				while((mixed < frames) && (position < chunk._frames))
+				{
+					final int frame = (int) position;
+					final int nextFrame = Math.min(frame + 1, chunk._frames - 1);
+					final float fraction = (float) (position - frame);
+					final float left = samples[frame * 2] + (samples[nextFrame * 2] - samples[frame * 2]) * fraction;
+					final float right = samples[frame * 2 + 1] + (samples[nextFrame * 2 + 1] - samples[frame * 2 + 1]) * fraction;
+					final float gain = nextGain();
+					mixBuffer[mixed * 2] += (int) (left * gain);
+					mixBuffer[mixed * 2 + 1] += (int) (right * gain);
+					position += _step;
+					mixed++;
+				}
+			}
+			if(position >= chunk._frames)
+			{
+				position -= chunk._frames;
+				_chunks.poll();
+				_processedCount++;
+				_processedBytes += chunk._bytes;
+				_freeChunks.add(chunk);
+			}
+		}
+		_framePosition = position;
+		return mixed;
+	}
+	
+	/**
+	 * Gets the gain for the next mixed frame and advances the ramp
+	 *
+	 * @return gain
+	 */
+	private float nextGain()
+	{
+		if(_ramp != null)
+		{
+			final double time = (double) _rampFrame / _mixer.getSampleRate();
+			_gain = _ramp.getGain(time);
+			_rampFrame++;
+			if(time >= _ramp.getDuration())
+			{
+				_ramp = null;
+			}
+		}
+		return _gain;
+	}
+	
+	@Override
+	public synchronized int unqueueProcessed()
+	{
+		final int processedCount = _processedCount;
+		_processedCount = 0;
+		_processedBytes = 0;
+		return processedCount;
+	}
+	
+	@Override
+	public synchronized int getPlayOffset()
+	{
+		if(_chunks.isEmpty())
+		{
+			return _processedBytes;
+		}
+		return _processedBytes + (int) _framePosition * _frameSize;
+	}
+	
+	@Override
+	public synchronized boolean isRunning()
+	{
+		return _isRunning;
+	}
+	
+	@Override
+	public void play()
+	{
+		synchronized (this)
+		{
+			if(_isRunning || _chunks.isEmpty())
+			{
+				return;
+			}
+			_isRunning = true;
+		}
+		_mixer.wakeUp();
+	}
+	
+	@Override
+	public synchronized void pause()
+	{
+		_isRunning = false;
+	}
+	
+	@Override
+	public synchronized void stop()
+	{
+		_isRunning = false;
+		_freeChunks.addAll(_chunks);
+		_chunks.clear();
+		_framePosition = 0;
+		_processedCount = 0;
+		_processedBytes = 0;
+	}
+	
+	@Override
+	public synchronized void setGain(final float gain)
+	{
+		_ramp = null;
+		_gain = gain;
+	}
+	
+	@Override
+	public synchronized float getGain()
+	{
+		return _gain;
+	}
+	
+	@Override
+	public synchronized boolean rampGain(final GainRamp ramp)
+	{
+		_ramp = ramp;
+		_rampFrame = 0;
+		return true;
+	}
+	
+	@Override
+	public void close()
+	{
+		stop();
+		_mixer.removeVoice(this);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "MixerVoice (" + _mixer + ")";
+	}
+}
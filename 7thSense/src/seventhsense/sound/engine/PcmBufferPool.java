@@ -0,0 +1,239 @@
+/*
+ * PcmBufferPool.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pool for direct and heap pcm buffers, shared by the whole sound stack.
+ * Buffers are grouped in size classes (powers of two), so buffers of similar sizes can be reused.
+ * Buffers should only be held while data is transferred, so the memory is bounded by the number of
+ * streams refilling at the same time instead of the number of loaded streams.
+ *
+ * @author Parallan
+ *
+ */
+public final class PcmBufferPool
+{
+	/**
+	 * Smallest size class (2^MIN_SIZE_CLASS bytes)
+	 */
+	private static final int MIN_SIZE_CLASS = 10;
+	
+	/**
+	 * Largest size class (2^MAX_SIZE_CLASS bytes, the largest power of two fitting into an int)
+	 */
+	private static final int MAX_SIZE_CLASS = 30;
+	
+	/**
+	 * Number of size classes
+	 */
+	private static final int SIZE_CLASS_COUNT = MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1;
+	
+	/**
+	 * Largest pooled buffer size in bytes. Larger buffers are allocated with the exact size and not pooled.
+	 */
+	private static final int MAX_POOLED_SIZE = 1 << MAX_SIZE_CLASS;
+	
+	/**
+	 * Maximum number of unused buffers kept per size class
+	 */
+	private static final int MAX_POOLED_PER_CLASS = 8;
+	
+	/**
+	 * Singleton instance
+	 */
+	private static final PcmBufferPool PCM_BUFFER_POOL_INSTANCE = new PcmBufferPool();
+	
+	/**
+	 * Unused direct buffers per size class
+	 */
+	private final Deque<ByteBuffer>[] _directBuffers = createSizeClasses();
+	
+	/**
+	 * Unused heap buffers per size class
+	 */
+	private final Deque<ByteBuffer>[] _heapBuffers = createSizeClasses();
+	
+	/**
+	 * Creates the pool
+	 */
+	private PcmBufferPool()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Creates empty queues for all size classes
+	 *
+	 * @return queues
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Deque<ByteBuffer>[] createSizeClasses()
+	{
+		final Deque<ByteBuffer>[] sizeClasses = new Deque[SIZE_CLASS_COUNT];
+		for(int i = 0; i < SIZE_CLASS_COUNT; i++)
+		{
+			sizeClasses[i] = new ArrayDeque<ByteBuffer>();
+		}
+		return sizeClasses;
+	}
+	
+	/**
+	 * Gets the size class for the given size
+	 *
+	 * @param size size in bytes
+	 * @return size class index
+	 */
+	private static int getSizeClass(final int size)
+	{
+		final int sizeClass = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1)) - MIN_SIZE_CLASS;
+		return Math.max(sizeClass, 0);
+	}
+	
+	/**
+	 * Acquires a direct buffer with at least the given capacity. The buffer is cleared and its limit is set to size.
+	 * The buffer must be released after use.
+	 *
+	 * @param size required size in bytes
+	 * @return direct buffer in native byte order
+	 */
+	public ByteBuffer acquireDirect(final int size)
+	{
+		return acquire(_directBuffers, size, true);
+	}
+	
+	/**
+	 * Returns a buffer acquired by acquireDirect to the pool
+	 *
+	 * @param buffer buffer to release
+	 */
+	public void releaseDirect(final ByteBuffer buffer)
+	{
+		release(_directBuffers, buffer);
+	}
+	
+	/**
+	 * Acquires a heap buffer with at least the given capacity. The buffer is cleared and its limit is set to size.
+	 * The backing array starts at offset 0 and may be longer than size.
+	 * The buffer must be released after use.
+	 *
+	 * @param size required size in bytes
+	 * @return heap buffer
+	 */
+	public ByteBuffer acquireHeap(final int size)
+	{
+		return acquire(_heapBuffers, size, false);
+	}
+	
+	/**
+	 * Returns a buffer acquired by acquireHeap to the pool
+	 *
+	 * @param buffer buffer to release
+	 */
+	public void releaseHeap(final ByteBuffer buffer)
+	{
+		release(_heapBuffers, buffer);
+	}
+	
+	/**
+	 * Takes a buffer of the size class from the pool or allocates a new one
+	 *
+	 * @param sizeClasses pooled buffers
+	 * @param size required size in bytes
+	 * @param direct true for a direct buffer
+	 * @return buffer
+	 */
+	private static ByteBuffer acquire(final Deque<ByteBuffer>[] sizeClasses, final int size, final boolean direct)
+	{
+		if(size < 0)
+		{
+			throw new IllegalArgumentException("negative buffer size " + size);
+		}
+		if(size > MAX_POOLED_SIZE)
+		{
+			// Past the largest size class, the capacity cannot be rounded up to a power of two
+			return direct?ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder()):ByteBuffer.allocate(size);
+		}
+		final int sizeClass = getSizeClass(size);
+		ByteBuffer buffer;
+		synchronized (sizeClasses)
+		{
+			buffer = sizeClasses[sizeClass].poll();
+		}
+		if(buffer == null)
+		{
+			final int capacity = 1 << (sizeClass + MIN_SIZE_CLASS);
+			buffer = direct?ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder()):ByteBuffer.allocate(capacity);
+		}
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+	
+	/**
+	 * Returns a buffer to its size class, if the size class is not full. Buffers, which were not allocated
+	 * with the size of a size class, are dropped.
+	 *
+	 * @param sizeClasses pooled buffers
+	 * @param buffer buffer to release
+	 */
+	private static void release(final Deque<ByteBuffer>[] sizeClasses, final ByteBuffer buffer)
+	{
+		final int capacity = buffer.capacity();
+		if(capacity > MAX_POOLED_SIZE)
+		{
+			return;
+		}
+		final int sizeClass = getSizeClass(capacity);
+		if(capacity != 1 << (sizeClass + MIN_SIZE_CLASS))
+		{
+			return;
+		}
+		synchronized (sizeClasses)
+		{
+			if(sizeClasses[sizeClass].size() < MAX_POOLED_PER_CLASS)
+			{
+				sizeClasses[sizeClass].push(buffer);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the singleton instance
+	 *
+	 * @return singleton instance
+	 */
+	public static PcmBufferPool get()
+	{
+		return PCM_BUFFER_POOL_INSTANCE;
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * PlaybackState.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+/**
+ * Immutable snapshot of the playback state of a player. Published by the player after each change,
+ * so it can be read from any thread without locking. While the player is playing, the position is
+ * extrapolated from the time of the snapshot, because the player may publish only once per second.
+ *
+ * @author Parallan
+ *
+ */
+public final class PlaybackState
+{
+	/**
+	 * True, if playing or paused
+	 */
+	private final boolean _isPlaying;
+	
+	/**
+	 * True, if paused
+	 */
+	private final boolean _isPaused;
+	
+	/**
+	 * True, if closed
+	 */
+	private final boolean _isClosed;
+	
+	/**
+	 * True, if the position advances in real-time
+	 */
+	private final boolean _isAdvancing;
+	
+	/**
+	 * Play position in frames at the time of the snapshot
+	 */
+	private final long _position;
+	
+	/**
+	 * Time of the snapshot (System.nanoTime)
+	 */
+	private final long _publishTime;
+	
+	/**
+	 * Length in frames
+	 */
+	private final long _length;
+	
+	/**
+	 * Sample rate
+	 */
+	private final int _sampleRate;
+	
+	/**
+	 * Volume [0, 1]
+	 */
+	private final double _volume;
+	
+	/**
+	 * Creates a snapshot
+	 *
+	 * @param isPlaying true, if playing or paused
+	 * @param isPaused true, if paused
+	 * @param isClosed true, if closed
+	 * @param isAdvancing true, if the position advances in real-time (playing, not paused and not waiting for data)
+	 * @param position play position in frames
+	 * @param length length in frames
+	 * @param sampleRate sample rate
+	 * @param volume volume
+	 */
+	public PlaybackState(final boolean isPlaying, final boolean isPaused, final boolean isClosed, final boolean isAdvancing, final long position, final long length, final int sampleRate, final double volume)
+	{
+		_isPlaying = isPlaying;
+		_isPaused = isPaused;
+		_isClosed = isClosed;
+		_isAdvancing = isAdvancing;
+		_position = position;
+		_publishTime = System.nanoTime();
+		_length = length;
+		_sampleRate = sampleRate;
+		_volume = volume;
+	}
+	
+	/**
+	 * true, if the file is playing or paused
+	 *
+	 * @return playing state
+	 */
+	public boolean isPlaying()
+	{
+		return _isPlaying;
+	}
+	
+	/**
+	 * true, if the file is paused
+	 *
+	 * @return pause state
+	 */
+	public boolean isPaused()
+	{
+		return _isPaused;
+	}
+	
+	/**
+	 * true, if the player was closed
+	 *
+	 * @return closed state
+	 */
+	public boolean isClosed()
+	{
+		return _isClosed;
+	}
+	
+	/**
+	 * Gets the play position. While advancing, the position is extrapolated to the current time, but not
+	 * beyond the length.
+	 *
+	 * @return position in frames
+	 */
+	public long getPosition()
+	{
+		if(!_isAdvancing)
+		{
+			return _position;
+		}
+		final long position = _position + (long) ((System.nanoTime() - _publishTime) * 1e-9 * _sampleRate);
+		return (_length > 0)?Math.min(_length, position):position;
+	}
+	
+	/**
+	 * Gets the length
+	 *
+	 * @return length in frames
+	 */
+	public long getLength()
+	{
+		return _length;
+	}
+	
+	/**
+	 * Gets the sample rate
+	 *
+	 * @return sample rate
+	 */
+	public int getSampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	/**
+	 * Gets the play position in seconds
+	 *
+	 * @return play time
+	 */
+	public double getTime()
+	{
+		return (double) getPosition() / _sampleRate;
+	}
+	
+	/**
+	 * Gets the length in seconds
+	 *
+	 * @return duration
+	 */
+	public double getDuration()
+	{
+		return (double) _length / _sampleRate;
+	}
+	
+	/**
+	 * Gets the volume
+	 *
+	 * @return volume [0, 1]
+	 */
+	public double getVolume()
+	{
+		return _volume;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "PlaybackState [playing=" + _isPlaying + ", paused=" + _isPaused + ", closed=" + _isClosed + ", time=" + getTime() + "/" + getDuration() + ", volume=" + _volume + "]";
+	}
+}
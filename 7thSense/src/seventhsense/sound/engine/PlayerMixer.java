@@ -50,63 +50,116 @@ public final class PlayerMixer
 	 */
 	public static final String PROPERTY_VOLUME = "volume";
 	
+	/**
+	 * Maximum number of OpenAL sources handed out by the object pool
+	 */
+	private static final int MAX_SOURCES = 256;
+	
+	/**
+	 * Maximum number of OpenAL buffers handed out by the object pool
+	 */
+	private static final int MAX_BUFFERS = 4096;
+	
 	/**
 	 * Player Mixer singleton instance
 	 */
-	private static PlayerMixer PLAYER_MIXER_INSTANCE;
+	private static final PlayerMixer PLAYER_MIXER_INSTANCE = new PlayerMixer();
+	
+	/**
+	 * The mixer to manage (null until OpenAL was initialized)
+	 */
+	private AL _mixer;
+	
+	/**
+	 * Pool for sources and buffers
+	 */
+	private AlObjectPool _objectPool;
+	
+	/**
+	 * Volume of mixer
+	 */
+	private double _volume = 1;
 	
 	/**
-	 * Static initializer
+	 * List for listeners
 	 */
-	static
+	private final EventList<IPropertyChangedListener<PlayerMixer>> _listeners = new EventList<IPropertyChangedListener<PlayerMixer>>();
+	
+	/**
+	 * Creates a mixer for the player. OpenAL is initialized on first use, so the mixer can be used without sound hardware.
+	 */
+	private PlayerMixer()
 	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Loads the natives and initializes OpenAL, if not done yet. Must hold the lock.
+	 */
+	private void initializeAl()
+	{
+		if(_mixer != null)
+		{
+			return;
+		}
 		final NativeLoader nativeLoader = new NativeLoader(new File("lib"));
 		nativeLoader.initializeNatives();
 		
 		ALut.alutInit();
 		
-		PLAYER_MIXER_INSTANCE = new PlayerMixer();
+		_mixer = ALFactory.getAL();
+		_objectPool = new AlObjectPool(_mixer, MAX_SOURCES, MAX_BUFFERS);
 		
 		Runtime.getRuntime().addShutdownHook(new Thread() {
 			@Override
 			public void run()
 			{
+				_objectPool.reportUsedHandles();
 				ALut.alutExit();
 			}
 		});
 	}
 	
 	/**
-	 * The mixer to manage
-	 */
-	private final AL _mixer;
-	
-	/**
-	 * Volume of mixer
+	 * Gets the valid al instance. Initializes OpenAL on first call.
+	 * 
+	 * @return al instance
 	 */
-	private double _volume = 1;
+	public synchronized AL getAl()
+	{
+		initializeAl();
+		return _mixer;
+	}
 	
 	/**
-	 * List for listeners
+	 * Gets the pool for OpenAL sources and buffers. Initializes OpenAL on first call.
+	 * 
+	 * @return object pool
 	 */
-	private final EventList<IPropertyChangedListener<PlayerMixer>> _listeners = new EventList<IPropertyChangedListener<PlayerMixer>>();
+	public synchronized AlObjectPool getObjectPool()
+	{
+		initializeAl();
+		return _objectPool;
+	}
 	
 	/**
-	 * Creates a mixer for the player
+	 * Gets the number of OpenAL sources in use (0, if OpenAL was not initialized yet)
+	 * 
+	 * @return number of sources
 	 */
-	private PlayerMixer()
+	public synchronized int getUsedSourceCount()
 	{
-		_mixer = ALFactory.getAL();
+		return (_objectPool == null)?0:_objectPool.getUsedSourceCount();
 	}
 	
 	/**
-	 * Gets the valid al instance
+	 * Gets the number of OpenAL buffers in use (0, if OpenAL was not initialized yet)
 	 * 
-	 * @return al instance
+	 * @return number of buffers
 	 */
-	public AL getAl()
+	public synchronized int getUsedBufferCount()
 	{
-		return _mixer;
+		return (_objectPool == null)?0:_objectPool.getUsedBufferCount();
 	}
 	
 	/**
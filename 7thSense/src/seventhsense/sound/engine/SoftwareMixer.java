@@ -0,0 +1,302 @@
+/*
+ * SoftwareMixer.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import seventhsense.sound.engine.output.IAudioBackend;
+import seventhsense.sound.engine.output.IAudioOutput;
+
+/**
+ * Backend, which mixes the outputs of many players in software into a single output of another backend.
+ * Each output of this backend is a voice with its own queue and gain, so players work unchanged,
+ * but only one source of the underlying backend is used. The mixer is updated by its own AudioPump, so the
+ * short mixed queue is refilled in time, even if the shared pump is busy with decoding.
+ *
+ * @author Parallan
+ *
+ */
+public final class SoftwareMixer implements IAudioBackend, IAudioPumpClient
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(SoftwareMixer.class.getName());
+	
+	/**
+	 * Default sample rate of the mix
+	 */
+	public static final int DEFAULT_SAMPLE_RATE = 44100;
+	
+	/**
+	 * Default number of frames per mixed chunk
+	 */
+	public static final int DEFAULT_CHUNK_FRAMES = 1024;
+	
+	/**
+	 * Default number of queued chunks (about 93 ms at the default format, the mixer pump only mixes)
+	 */
+	public static final int DEFAULT_CHUNK_COUNT = 4;
+	
+	/**
+	 * Backend for the mixed output
+	 */
+	private final IAudioBackend _backend;
+	
+	/**
+	 * Sample rate of the mix
+	 */
+	private final int _sampleRate;
+	
+	/**
+	 * Number of frames per mixed chunk
+	 */
+	private final int _chunkFrames;
+	
+	/**
+	 * Number of queued chunks
+	 */
+	private final int _chunkCount;
+	
+	/**
+	 * Voices
+	 */
+	private final List<MixerVoice> _voices = new ArrayList<MixerVoice>();
+	
+	/**
+	 * Copy of the voices for mixing (only used by the pump thread)
+	 */
+	private MixerVoice[] _voicesCopy = new MixerVoice[0];
+	
+	/**
+	 * Pump for mixing, which is not shared with the players
+	 */
+	private final AudioPump _pump = new AudioPump("SoftwareMixer");
+	
+	/**
+	 * True, if the mixer is registered at the pump
+	 */
+	private boolean _isRegistered = false;
+	
+	/**
+	 * Mixed output (only used by the pump thread)
+	 */
+	private IAudioOutput _output;
+	
+	/**
+	 * Number of chunks queued to the output
+	 */
+	private int _queuedChunks = 0;
+	
+	/**
+	 * Sum of the voice samples
+	 */
+	private final int[] _mixBuffer;
+	
+	/**
+	 * Mixed chunk
+	 */
+	private final ByteBuffer _outputBuffer;
+	
+	/**
+	 * Creates a software mixer with the default format
+	 *
+	 * @param backend backend for the mixed output
+	 */
+	public SoftwareMixer(final IAudioBackend backend)
+	{
+		this(backend, DEFAULT_SAMPLE_RATE, DEFAULT_CHUNK_FRAMES, DEFAULT_CHUNK_COUNT);
+	}
+	
+	/**
+	 * Creates a software mixer
+	 *
+	 * @param backend backend for the mixed output
+	 * @param sampleRate sample rate of the mix
+	 * @param chunkFrames number of frames per mixed chunk
+	 * @param chunkCount number of queued chunks
+	 */
+	public SoftwareMixer(final IAudioBackend backend, final int sampleRate, final int chunkFrames, final int chunkCount)
+	{
+		_backend = backend;
+		_sampleRate = sampleRate;
+		_chunkFrames = chunkFrames;
+		_chunkCount = chunkCount;
+		_mixBuffer = new int[chunkFrames * 2];
+		_outputBuffer = ByteBuffer.allocateDirect(chunkFrames * 4).order(ByteOrder.nativeOrder());
+	}
+	
+	@Override
+	public IAudioOutput createOutput(final int channels, final int sampleSize, final int sampleRate)
+	{
+		if(((channels != 1) && (channels != 2)) || ((sampleSize != 1) && (sampleSize != 2)))
+		{
+			throw new IllegalArgumentException("Invalid source stream format");
+		}
+		final MixerVoice voice = new MixerVoice(this, channels, sampleSize, sampleRate);
+		synchronized (_voices)
+		{
+			_voices.add(voice);
+			if(!_isRegistered)
+			{
+				_isRegistered = true;
+				_pump.register(this);
+			}
+		}
+		LOGGER.log(Level.FINE, "voice created");
+		return voice;
+	}
+	
+	/**
+	 * Removes a closed voice
+	 *
+	 * @param voice voice to remove
+	 */
+	void removeVoice(final MixerVoice voice)
+	{
+		synchronized (_voices)
+		{
+			_voices.remove(voice);
+		}
+		wakeUp();
+	}
+	
+	/**
+	 * Wakes the pump for mixing
+	 */
+	void wakeUp()
+	{
+		_pump.wakeUp(this);
+	}
+	
+	@Override
+	public int pump()
+	{
+		final MixerVoice[] voices;
+		synchronized (_voices)
+		{
+			if(_voices.isEmpty())
+			{
+				if(_output != null)
+				{
+					_output.close();
+					_output = null;
+					_queuedChunks = 0;
+					LOGGER.log(Level.FINE, "output closed");
+				}
+				_pump.unregister(this);
+				_isRegistered = false;
+				return IDLE;
+			}
+			_voicesCopy = _voices.toArray(_voicesCopy);
+			voices = _voicesCopy;
+		}
+		if(_output == null)
+		{
+			_output = _backend.createOutput(2, 2, _sampleRate);
+			LOGGER.log(Level.FINE, "output created: " + _output);
+		}
+		_queuedChunks -= _output.unqueueProcessed();
+		
+		while(_queuedChunks < _chunkCount)
+		{
+			Arrays.fill(_mixBuffer, 0);
+			int mixed = 0;
+			for(int i = 0; (i < voices.length) && (voices[i] != null); i++)
+			{
+				mixed = Math.max(mixed, voices[i].mix(_mixBuffer, _chunkFrames));
+			}
+			if(mixed == 0)
+			{
+				break;
+			}
+			_outputBuffer.clear();
+			for(int i = 0; i < mixed * 2; i++)
+			{
+				_outputBuffer.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, _mixBuffer[i])));
+			}
+			_outputBuffer.flip();
+			_output.queue(_outputBuffer);
+			_queuedChunks++;
+		}
+		
+		if((_queuedChunks > 0) && !_output.isRunning())
+		{
+			_output.play();
+		}
+		
+		boolean isActive = _queuedChunks > 0;
+		for(int i = 0; (i < voices.length) && (voices[i] != null) && !isActive; i++)
+		{
+			isActive = voices[i].isRunning();
+		}
+		// Mix again, when one chunk was played
+		return isActive?(int) (_chunkFrames * 1000L / _sampleRate):IDLE;
+	}
+	
+	/**
+	 * Gets the sample rate of the mix
+	 *
+	 * @return sample rate
+	 */
+	public int getSampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	/**
+	 * Gets the number of voices
+	 *
+	 * @return number of voices
+	 */
+	public int getVoiceCount()
+	{
+		synchronized (_voices)
+		{
+			return _voices.size();
+		}
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "Software mixer (" + _backend.getName() + ")";
+	}
+	
+	@Override
+	public String toString()
+	{
+		return getName();
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * SoundEventSubscription.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+/**
+ * Set of sound event types a listener is interested in, with a maximum rate for Update events.
+ * Subscriptions are immutable.
+ *
+ * @author Parallan
+ *
+ */
+public final class SoundEventSubscription
+{
+	/**
+	 * Subscription for all events without rate limit
+	 */
+	public static final SoundEventSubscription ALL = new SoundEventSubscription(-1, 0);
+	
+	/**
+	 * Subscription for no events
+	 */
+	public static final SoundEventSubscription NONE = new SoundEventSubscription(0, 0);
+	
+	/**
+	 * Bit mask of the subscribed event types (by ordinal)
+	 */
+	private final int _eventMask;
+	
+	/**
+	 * Maximum rate of Update events in Hz (0 for no limit)
+	 */
+	private final double _maxUpdateRate;
+	
+	/**
+	 * Creates a subscription
+	 *
+	 * @param eventMask bit mask of the subscribed event types
+	 * @param maxUpdateRate maximum rate of Update events in Hz (0 for no limit)
+	 */
+	private SoundEventSubscription(final int eventMask, final double maxUpdateRate)
+	{
+		_eventMask = eventMask;
+		_maxUpdateRate = maxUpdateRate;
+	}
+	
+	/**
+	 * Creates a subscription for the given event types without rate limit
+	 *
+	 * @param events subscribed event types
+	 * @return subscription
+	 */
+	public static SoundEventSubscription of(final SoundEventType... events)
+	{
+		return NONE.with(events);
+	}
+	
+	/**
+	 * Creates a subscription, which additionally contains the given event types
+	 *
+	 * @param events additional event types
+	 * @return subscription
+	 */
+	public SoundEventSubscription with(final SoundEventType... events)
+	{
+		int eventMask = _eventMask;
+		for(SoundEventType event : events)
+		{
+			eventMask |= 1 << event.ordinal();
+		}
+		return new SoundEventSubscription(eventMask, _maxUpdateRate);
+	}
+	
+	/**
+	 * Creates a subscription with the same event types and the given maximum rate of Update events
+	 *
+	 * @param maxUpdateRate maximum rate of Update events in Hz (0 for no limit)
+	 * @return subscription
+	 */
+	public SoundEventSubscription withMaxUpdateRate(final double maxUpdateRate)
+	{
+		return new SoundEventSubscription(_eventMask, Math.max(0, maxUpdateRate));
+	}
+	
+	/**
+	 * Creates a subscription, which contains the events of both subscriptions at the higher update rate
+	 *
+	 * @param other other subscription
+	 * @return subscription
+	 */
+	public SoundEventSubscription union(final SoundEventSubscription other)
+	{
+		final double maxUpdateRate;
+		if(!contains(SoundEventType.Update))
+		{
+			maxUpdateRate = other._maxUpdateRate;
+		}
+		else if(!other.contains(SoundEventType.Update))
+		{
+			maxUpdateRate = _maxUpdateRate;
+		}
+		else if((_maxUpdateRate == 0) || (other._maxUpdateRate == 0))
+		{
+			maxUpdateRate = 0;
+		}
+		else
+		{
+			maxUpdateRate = Math.max(_maxUpdateRate, other._maxUpdateRate);
+		}
+		return new SoundEventSubscription(_eventMask | other._eventMask, maxUpdateRate);
+	}
+	
+	/**
+	 * Returns true, if the event type is subscribed
+	 *
+	 * @param event event type
+	 * @return true, if subscribed
+	 */
+	public boolean contains(final SoundEventType event)
+	{
+		return (_eventMask & (1 << event.ordinal())) != 0;
+	}
+	
+	/**
+	 * Returns true, if no event type is subscribed
+	 *
+	 * @return true, if empty
+	 */
+	public boolean isEmpty()
+	{
+		return _eventMask == 0;
+	}
+	
+	/**
+	 * Gets the maximum rate of Update events
+	 *
+	 * @return rate in Hz (0 for no limit)
+	 */
+	public double getMaxUpdateRate()
+	{
+		return _maxUpdateRate;
+	}
+	
+	/**
+	 * Gets the minimum time between two Update events
+	 *
+	 * @return interval in ns (0 for no limit)
+	 */
+	public long getMinUpdateInterval()
+	{
+		if(_maxUpdateRate == 0)
+		{
+			return 0;
+		}
+		return (long) (1e9 / _maxUpdateRate);
+	}
+	
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if(!(obj instanceof SoundEventSubscription))
+		{
+			return false;
+		}
+		final SoundEventSubscription other = (SoundEventSubscription) obj;
+		return (_eventMask == other._eventMask) && (_maxUpdateRate == other._maxUpdateRate);
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return _eventMask * 31 + (int) Double.doubleToLongBits(_maxUpdateRate);
+	}
+	
+	@Override
+	public String toString()
+	{
+		final StringBuilder result = new StringBuilder("SoundEventSubscription [");
+		for(SoundEventType event : SoundEventType.values())
+		{
+			if(contains(event))
+			{
+				result.append(event).append(' ');
+			}
+		}
+		if(_maxUpdateRate > 0)
+		{
+			result.append("max ").append(_maxUpdateRate).append(" Hz");
+		}
+		return result.append(']').toString();
+	}
+}
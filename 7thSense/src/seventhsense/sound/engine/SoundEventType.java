@@ -75,10 +75,18 @@ public enum SoundEventType
 	 * Volume has changed
 	 */
 	Volume,
+	/**
+	 * Volume ramp has reached its target (or was cancelled by setting the volume, stopping or pausing)
+	 */
+	VolumeRamped,
 	/**
 	 * Sound file has played to its end
 	 */
 	Finished,
+	/**
+	 * The output has played the first buffer after starting or seeking (the sound is audible since {@link IPlayer#getTime()} seconds)
+	 */
+	Audible,
 	/**
 	 * Fired, when the sound thread has performed one step
 	 */
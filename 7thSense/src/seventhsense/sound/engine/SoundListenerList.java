@@ -0,0 +1,259 @@
+/*
+ * SoundListenerList.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import seventhsense.data.eventlist.EventList;
+
+/**
+ * List for sound event listeners, where each listener has a subscription for the event types it receives.
+ * Listeners added without subscription receive all events. The list may be changed and dispatched from
+ * different threads: Changes hold the lock of the list and publish new snapshots of the receivers of each
+ * event type, so dispatching does not copy the list.
+ *
+ * @author Parallan
+ *
+ * @param <L> type of listeners
+ */
+public class SoundListenerList<L> extends EventList<L>
+{
+	/**
+	 * Default serial version
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * All event types
+	 */
+	private static final SoundEventType[] EVENT_TYPES = SoundEventType.values();
+	
+	/**
+	 * Subscription of a listener
+	 */
+	private static final class Entry
+	{
+		/**
+		 * Subscription
+		 */
+		private SoundEventSubscription _subscription;
+		
+		/**
+		 * Earliest time (System.nanoTime) for the next Update event
+		 */
+		private long _nextUpdateTime;
+	}
+	
+	/**
+	 * Subscriptions of the listeners, which were not added for all events (guarded by the list)
+	 */
+	private final Map<L, Entry> _entries = new IdentityHashMap<L, Entry>();
+	
+	/**
+	 * Union of all subscriptions
+	 */
+	private volatile SoundEventSubscription _subscription = SoundEventSubscription.NONE;
+	
+	/**
+	 * Snapshot of all listeners
+	 */
+	private volatile List<L> _allListeners = Collections.emptyList();
+	
+	/**
+	 * Snapshots of the listeners, which subscribed an event type, by the ordinal of the event type
+	 */
+	private volatile List<List<L>> _eventListeners = createSnapshots();
+	
+	/**
+	 * Adds a listener for the given events. If the listener was already added, its subscription is replaced.
+	 *
+	 * @param listener listener
+	 * @param subscription subscribed events
+	 */
+	public synchronized void add(final L listener, final SoundEventSubscription subscription)
+	{
+		Entry entry = _entries.get(listener);
+		if(entry == null)
+		{
+			if(!contains(listener))
+			{
+				super.add(listener);
+			}
+			entry = new Entry();
+			entry._nextUpdateTime = System.nanoTime();
+			_entries.put(listener, entry);
+		}
+		entry._subscription = subscription;
+		updateSubscription();
+	}
+	
+	@Override
+	public synchronized boolean add(final L listener)
+	{
+		_entries.remove(listener);
+		final boolean result = super.add(listener);
+		updateSubscription();
+		return result;
+	}
+	
+	@Override
+	public synchronized boolean remove(final Object listener)
+	{
+		_entries.remove(listener);
+		final boolean result = super.remove(listener);
+		updateSubscription();
+		return result;
+	}
+	
+	@Override
+	public synchronized void clear()
+	{
+		_entries.clear();
+		super.clear();
+		updateSubscription();
+	}
+	
+	/**
+	 * Recalculates the union of all subscriptions and the snapshots of the receivers. Must hold the lock.
+	 */
+	private void updateSubscription()
+	{
+		SoundEventSubscription subscription = SoundEventSubscription.NONE;
+		final List<List<L>> eventListeners = createSnapshots();
+		for(L listener : this)
+		{
+			final Entry entry = _entries.get(listener);
+			final SoundEventSubscription listenerSubscription = (entry == null)?SoundEventSubscription.ALL:entry._subscription;
+			subscription = subscription.union(listenerSubscription);
+			for(SoundEventType event : EVENT_TYPES)
+			{
+				if(listenerSubscription.contains(event))
+				{
+					eventListeners.get(event.ordinal()).add(listener);
+				}
+			}
+		}
+		for(int i = 0; i < EVENT_TYPES.length; i++)
+		{
+			eventListeners.set(i, Collections.unmodifiableList(eventListeners.get(i)));
+		}
+		_eventListeners = eventListeners;
+		_allListeners = Collections.unmodifiableList(new ArrayList<L>(this));
+		_subscription = subscription;
+	}
+	
+	/**
+	 * Creates empty snapshots for all event types
+	 *
+	 * @return snapshots by the ordinal of the event type
+	 */
+	private static <L> List<List<L>> createSnapshots()
+	{
+		final List<List<L>> snapshots = new ArrayList<List<L>>(EVENT_TYPES.length);
+		for(int i = 0; i < EVENT_TYPES.length; i++)
+		{
+			snapshots.add(new ArrayList<L>());
+		}
+		return snapshots;
+	}
+	
+	/**
+	 * Gets the union of the subscriptions of all listeners
+	 *
+	 * @return subscription
+	 */
+	public SoundEventSubscription getSubscription()
+	{
+		return _subscription;
+	}
+	
+	/**
+	 * Returns true, if any listener subscribed the event type
+	 *
+	 * @param event event type
+	 * @return true, if subscribed
+	 */
+	public boolean isSubscribed(final SoundEventType event)
+	{
+		return _subscription.contains(event);
+	}
+	
+	@Override
+	public Iterable<L> iterateEvents()
+	{
+		return _allListeners;
+	}
+	
+	/**
+	 * Method for getting a safe enumeration of the listeners, which receive the event now.
+	 * For Update events, the maximum rate of each listener is applied.
+	 *
+	 * @param event event type
+	 * @return safe enumeration
+	 */
+	public Iterable<L> iterateEvents(final SoundEventType event)
+	{
+		final List<L> listeners = _eventListeners.get(event.ordinal());
+		if((event != SoundEventType.Update) || listeners.isEmpty())
+		{
+			return listeners;
+		}
+		synchronized (this)
+		{
+			final long time = System.nanoTime();
+			// Only copied, if a listener is skipped
+			List<L> result = null;
+			for(int i = 0; i < listeners.size(); i++)
+			{
+				final L listener = listeners.get(i);
+				final Entry entry = _entries.get(listener);
+				if(entry != null)
+				{
+					if(time - entry._nextUpdateTime < 0)
+					{
+						if(result == null)
+						{
+							result = new ArrayList<L>(listeners.subList(0, i));
+						}
+						continue;
+					}
+					entry._nextUpdateTime = time + entry._subscription.getMinUpdateInterval();
+				}
+				if(result != null)
+				{
+					result.add(listener);
+				}
+			}
+			return (result == null)?listeners:result;
+		}
+	}
+}
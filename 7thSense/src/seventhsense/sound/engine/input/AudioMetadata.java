@@ -0,0 +1,284 @@
+/*
+ * AudioMetadata.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.tritonus.share.sampled.file.TAudioFileFormat;
+
+/**
+ * Format information of an audio file, read once by the AudioSystem and stored in the AudioMetadataIndex.
+ * The metadata is bound to the length and modification time of the file.
+ *
+ * @author Parallan
+ *
+ */
+public final class AudioMetadata implements Serializable
+{
+	/**
+	 * Default serial version uid
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * True, if the file is a supported audio file
+	 */
+	private final boolean _isValid;
+	
+	/**
+	 * Codec name (file type)
+	 */
+	private final String _codec;
+	
+	/**
+	 * Sample rate
+	 */
+	private final float _sampleRate;
+	
+	/**
+	 * Sample size of the source in bits (AudioSystem.NOT_SPECIFIED, if unknown)
+	 */
+	private final int _sampleSizeInBits;
+	
+	/**
+	 * Number of channels
+	 */
+	private final int _channels;
+	
+	/**
+	 * Length in frames (-1, if unknown)
+	 */
+	private final long _frameLength;
+	
+	/**
+	 * True, if the file is decoded by a tritonus codec (MP3, Ogg Vorbis), which can be indexed by a SeekIndex
+	 */
+	private final boolean _isIndexable;
+	
+	/**
+	 * Length of the file, when it was read
+	 */
+	private final long _fileLength;
+	
+	/**
+	 * Modification time of the file, when it was read
+	 */
+	private final long _lastModified;
+	
+	/**
+	 * Creates metadata
+	 *
+	 * @param file the file
+	 * @param isValid true, if the file is a supported audio file
+	 * @param codec codec name
+	 * @param sampleRate sample rate
+	 * @param sampleSizeInBits sample size in bits
+	 * @param channels number of channels
+	 * @param frameLength length in frames
+	 * @param isIndexable true, if the file can be indexed by a SeekIndex
+	 */
+	private AudioMetadata(final File file, final boolean isValid, final String codec, final float sampleRate, final int sampleSizeInBits, final int channels, final long frameLength, final boolean isIndexable)
+	{
+		_fileLength = file.length();
+		_lastModified = file.lastModified();
+		_isValid = isValid;
+		_codec = codec;
+		_sampleRate = sampleRate;
+		_sampleSizeInBits = sampleSizeInBits;
+		_channels = channels;
+		_frameLength = frameLength;
+		_isIndexable = isIndexable;
+	}
+	
+	/**
+	 * Creates the metadata of a file, which is not a supported audio file
+	 *
+	 * @param file the file
+	 * @return invalid metadata
+	 */
+	static AudioMetadata invalid(final File file)
+	{
+		return new AudioMetadata(file, false, null, 0, AudioSystem.NOT_SPECIFIED, 0, -1, false);
+	}
+	
+	/**
+	 * Reads the metadata of the file by the AudioSystem
+	 *
+	 * @param file file to read
+	 * @return metadata (invalid, if the format is not supported or the file is too short)
+	 * @throws IOException if the file could not be read (e.g. it is locked or on an unavailable drive)
+	 */
+	static AudioMetadata read(final File file) throws IOException
+	{
+		final AudioFileFormat fileFormat;
+		try
+		{
+			fileFormat = AudioSystem.getAudioFileFormat(file);
+		}
+		catch (UnsupportedAudioFileException e)
+		{
+			return invalid(file);
+		}
+		catch (EOFException e)
+		{
+			// A codec probed past the end of the file, so the content is no audio file
+			return invalid(file);
+		}
+		final AudioFormat format = fileFormat.getFormat();
+		long frameLength = -1;
+		if(fileFormat instanceof TAudioFileFormat)
+		{
+			final Map<?, ?> props = ((TAudioFileFormat) fileFormat).properties();
+			final Long duration = (Long) props.get("duration");
+			if(duration != null)
+			{
+				frameLength = duration.longValue() * (int) format.getSampleRate() / 1000000;
+			}
+		}
+		else if(fileFormat.getFrameLength() > 0)
+		{
+			frameLength = fileFormat.getFrameLength();
+		}
+		return new AudioMetadata(file, true, fileFormat.getType().toString(), format.getSampleRate(), format.getSampleSizeInBits(), format.getChannels(), frameLength,
+				fileFormat instanceof TAudioFileFormat);
+	}
+	
+	/**
+	 * Checks, if the file was not modified since the metadata was read
+	 *
+	 * @param file file to check
+	 * @return true, if the metadata is up to date
+	 */
+	public boolean isCurrent(final File file)
+	{
+		return (file.length() == _fileLength) && (file.lastModified() == _lastModified);
+	}
+	
+	/**
+	 * Returns true, if the file is a supported audio file
+	 *
+	 * @return true, if valid
+	 */
+	public boolean isValid()
+	{
+		return _isValid;
+	}
+	
+	/**
+	 * Gets the codec name
+	 *
+	 * @return codec name or null, if invalid
+	 */
+	public String getCodec()
+	{
+		return _codec;
+	}
+	
+	/**
+	 * Gets the sample rate
+	 *
+	 * @return sample rate
+	 */
+	public float getSampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	/**
+	 * Gets the sample size of the source
+	 *
+	 * @return sample size in bits (AudioSystem.NOT_SPECIFIED, if unknown)
+	 */
+	public int getSampleSizeInBits()
+	{
+		return _sampleSizeInBits;
+	}
+	
+	/**
+	 * Gets the number of channels
+	 *
+	 * @return number of channels
+	 */
+	public int getChannels()
+	{
+		return _channels;
+	}
+	
+	/**
+	 * Gets the length
+	 *
+	 * @return length in frames (-1, if unknown)
+	 */
+	public long getFrameLength()
+	{
+		return _frameLength;
+	}
+	
+	/**
+	 * Gets the duration
+	 *
+	 * @return duration in seconds (-1, if unknown)
+	 */
+	public double getDuration()
+	{
+		if((_frameLength < 0) || (_sampleRate <= 0))
+		{
+			return -1;
+		}
+		return _frameLength / (double) _sampleRate;
+	}
+	
+	/**
+	 * Returns true, if the file can be indexed by a SeekIndex
+	 *
+	 * @return true, if indexable
+	 */
+	public boolean isIndexable()
+	{
+		return _isIndexable;
+	}
+	
+	@Override
+	public String toString()
+	{
+		if(!_isValid)
+		{
+			return "AudioMetadata [invalid]";
+		}
+		return "AudioMetadata [" + _codec + ", " + _sampleRate + " Hz, " + _sampleSizeInBits + " bits, " + _channels + " channels, " + getDuration() + " s]";
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * AudioMetadataIndex.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent index of the metadata of audio files by absolute path. The metadata is read by the AudioSystem
+ * only once per file and is read again, when the length or modification time of the file changed.
+ * So validating known files only needs to stat them.
+ *
+ * @author Parallan
+ *
+ */
+public final class AudioMetadataIndex
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(AudioMetadataIndex.class.getName());
+	
+	/**
+	 * Singleton instance
+	 */
+	private static final AudioMetadataIndex AUDIO_METADATA_INDEX_INSTANCE = new AudioMetadataIndex();
+	
+	/**
+	 * Metadata by absolute path
+	 */
+	private final Map<String, AudioMetadata> _entries = new HashMap<String, AudioMetadata>();
+	
+	/**
+	 * True, if entries were changed since loading or saving
+	 */
+	private boolean _isModified = false;
+	
+	/**
+	 * Singleton
+	 */
+	private AudioMetadataIndex()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Gets the singleton instance
+	 *
+	 * @return singleton instance
+	 */
+	public static AudioMetadataIndex get()
+	{
+		return AUDIO_METADATA_INDEX_INSTANCE;
+	}
+	
+	/**
+	 * Gets the metadata of the given file. The file is read, if it is not indexed yet or was modified.
+	 * If the file could not be read, it is reported as invalid, but not indexed, so it is read again next time.
+	 *
+	 * @param file audio file
+	 * @return metadata
+	 */
+	public AudioMetadata getMetadata(final File file)
+	{
+		final String key = file.getAbsolutePath();
+		synchronized (_entries)
+		{
+			final AudioMetadata metadata = _entries.get(key);
+			if((metadata != null) && metadata.isCurrent(file))
+			{
+				return metadata;
+			}
+		}
+		final long startTime = System.nanoTime();
+		final AudioMetadata metadata;
+		try
+		{
+			metadata = AudioMetadata.read(file);
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.FINE, "Could not read " + file + ": " + e.toString());
+			return AudioMetadata.invalid(file);
+		}
+		LOGGER.log(Level.FINE, "read " + file + ": " + metadata + " in " + ((System.nanoTime() - startTime) / 1000000) + " ms");
+		synchronized (_entries)
+		{
+			_entries.put(key, metadata);
+			_isModified = true;
+		}
+		return metadata;
+	}
+	
+	/**
+	 * Removes the metadata of the given file from the index
+	 *
+	 * @param file file
+	 */
+	public void invalidate(final File file)
+	{
+		synchronized (_entries)
+		{
+			if(_entries.remove(file.getAbsolutePath()) != null)
+			{
+				_isModified = true;
+			}
+		}
+	}
+	
+	/**
+	 * Loads the index from the given file. Entries read in the meantime are kept.
+	 *
+	 * @param file index file
+	 */
+	@SuppressWarnings("unchecked")
+	public void load(final File file)
+	{
+		if(!file.exists())
+		{
+			return;
+		}
+		try
+		{
+			final FileInputStream fis = new FileInputStream(file);
+			final ObjectInputStream ois = new ObjectInputStream(fis);
+			final Map<String, AudioMetadata> entries;
+			try
+			{
+				entries = (Map<String, AudioMetadata>) ois.readObject();
+			}
+			finally
+			{
+				ois.close();
+				fis.close();
+			}
+			synchronized (_entries)
+			{
+				for(Map.Entry<String, AudioMetadata> entry : entries.entrySet())
+				{
+					if(!_entries.containsKey(entry.getKey()))
+					{
+						_entries.put(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+			LOGGER.log(Level.FINE, "loaded " + entries.size() + " entries from " + file);
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not load metadata index " + file + ": " + e.toString(), e);
+		}
+		catch (ClassNotFoundException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not load metadata index " + file + ": " + e.toString(), e);
+		}
+		catch (ClassCastException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not load metadata index " + file + ": " + e.toString(), e);
+		}
+	}
+	
+	/**
+	 * Saves the index to the given file, if it was modified
+	 *
+	 * @param file index file
+	 */
+	public void save(final File file)
+	{
+		final Map<String, AudioMetadata> entries;
+		synchronized (_entries)
+		{
+			if(!_isModified && file.exists())
+			{
+				return;
+			}
+			entries = new HashMap<String, AudioMetadata>(_entries);
+			_isModified = false;
+		}
+		try
+		{
+			final FileOutputStream fos = new FileOutputStream(file);
+			final ObjectOutputStream oos = new ObjectOutputStream(fos);
+			oos.writeObject(entries);
+			oos.close();
+			fos.close();
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.SEVERE, e.toString(), e);
+		}
+	}
+}
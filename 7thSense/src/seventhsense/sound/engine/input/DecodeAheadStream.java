@@ -0,0 +1,511 @@
+/*
+ * DecodeAheadStream.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import seventhsense.sound.engine.PcmBufferPool;
+
+/**
+ * Stream that decodes the source stream ahead in a background decoder. The decoded data is kept in a
+ * bounded queue of pcm chunks, so reading only copies already decoded data and never blocks on the codec.
+ * If no decoded data is available yet, read returns 0.
+ * The chunks are taken from the pcm buffer pool. Decoding starts with the first read and the chunks are
+ * returned to the pool, when they are consumed or the stream is released, so idle streams hold no pcm data.
+ *
+ * @author Parallan
+ *
+ */
+public class DecodeAheadStream implements IAudioInputStream
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(DecodeAheadStream.class.getName());
+	
+	/**
+	 * Default duration of one chunk in seconds
+	 */
+	private static final double DEFAULT_CHUNK_DURATION = 0.25;
+	
+	/**
+	 * Default number of chunks to decode ahead
+	 */
+	private static final int DEFAULT_CHUNK_COUNT = 8;
+	
+	/**
+	 * Shared decoder threads for all streams
+	 */
+	private static final ExecutorService DECODER_POOL = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			final Thread thread = new Thread(runnable, "AudioDecoder");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	/**
+	 * A decoded pcm chunk
+	 */
+	private static final class Chunk
+	{
+		/**
+		 * Pooled buffer holding the data
+		 */
+		private final ByteBuffer _buffer;
+		
+		/**
+		 * Pcm data (backing array of the buffer)
+		 */
+		private final byte[] _data;
+		
+		/**
+		 * Number of valid bytes in data
+		 */
+		private int _length;
+		
+		/**
+		 * Number of bytes already read
+		 */
+		private int _offset;
+		
+		/**
+		 * Creates a chunk
+		 *
+		 * @param size size of the chunk
+		 */
+		private Chunk(final int size)
+		{
+			_buffer = PcmBufferPool.get().acquireHeap(size);
+			_data = _buffer.array();
+		}
+		
+		/**
+		 * Returns the buffer to the pool. The chunk must not be used afterwards.
+		 */
+		private void release()
+		{
+			PcmBufferPool.get().releaseHeap(_buffer);
+		}
+	}
+	
+	/**
+	 * The stream to decode ahead
+	 */
+	private final IAudioInputStream _sourceStream;
+	
+	/**
+	 * Size of one chunk in bytes
+	 */
+	private final int _chunkSize;
+	
+	/**
+	 * Number of chunks to decode ahead
+	 */
+	private final int _chunkCount;
+	
+	/**
+	 * Lock-Object for safe threading
+	 */
+	private final Object _lock = new Object();
+	
+	/**
+	 * Decoded chunks ready for reading
+	 */
+	private final Deque<Chunk> _readyChunks = new ArrayDeque<Chunk>();
+	
+	/**
+	 * Task for decoding one chunk
+	 */
+	private final Runnable _decodeTask = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			decodeChunk();
+		}
+	};
+	
+	/**
+	 * Position of the reader in bytes
+	 */
+	private long _position = 0;
+	
+	/**
+	 * Position to seek the source stream to or -1
+	 */
+	private long _pendingSeek = -1;
+	
+	/**
+	 * Incremented on each seek, for dropping chunks of an outdated position
+	 */
+	private int _generation = 0;
+	
+	/**
+	 * True, if the stream is read, so decoding ahead is required
+	 */
+	private boolean _isActive = false;
+	
+	/**
+	 * True, if the decoder task is scheduled or running
+	 */
+	private boolean _isDecoding = false;
+	
+	/**
+	 * True, if the source stream has ended
+	 */
+	private boolean _endOfStream = false;
+	
+	/**
+	 * True, if the stream was closed
+	 */
+	private boolean _isClosed = false;
+	
+	/**
+	 * Error of the decoder, which is passed to the reader
+	 */
+	private IOException _error;
+	
+	/**
+	 * Creates a decode ahead stream with the default chunk settings
+	 *
+	 * @param sourceStream stream to decode ahead
+	 */
+	public DecodeAheadStream(final IAudioInputStream sourceStream)
+	{
+		this(sourceStream, (int) (DEFAULT_CHUNK_DURATION * sourceStream.getSampleRate()) * sourceStream.getFrameSize(), DEFAULT_CHUNK_COUNT);
+	}
+	
+	/**
+	 * Creates a decode ahead stream
+	 *
+	 * @param sourceStream stream to decode ahead
+	 * @param chunkSize size of one chunk in bytes (must be a multiple of the frame size)
+	 * @param chunkCount number of chunks to decode ahead
+	 */
+	public DecodeAheadStream(final IAudioInputStream sourceStream, final int chunkSize, final int chunkCount)
+	{
+		_sourceStream = sourceStream;
+		_chunkSize = chunkSize;
+		_chunkCount = chunkCount;
+	}
+	
+	/**
+	 * Schedules the decoder task, if the stream is read, the task is not running and more data is required.
+	 * Must hold the lock.
+	 */
+	private void scheduleDecoding()
+	{
+		if(_isActive && !_isDecoding && !_isClosed && ((_pendingSeek >= 0) || (!_endOfStream && (_error == null) && (_readyChunks.size() < _chunkCount))))
+		{
+			_isDecoding = true;
+			DECODER_POOL.execute(_decodeTask);
+		}
+	}
+	
+	/**
+	 * Decoder task: Performs a pending seek or decodes one chunk
+	 */
+	private void decodeChunk()
+	{
+		final long seekPosition;
+		final int generation;
+		Chunk chunk = null;
+		synchronized (_lock)
+		{
+			if(_isClosed)
+			{
+				_isDecoding = false;
+				_sourceStream.close();
+				return;
+			}
+			seekPosition = _pendingSeek;
+			_pendingSeek = -1;
+			generation = _generation;
+			if(seekPosition < 0)
+			{
+				chunk = new Chunk(_chunkSize);
+			}
+		}
+		
+		boolean endOfStream = false;
+		IOException error = null;
+		try
+		{
+			if(seekPosition >= 0)
+			{
+				LOGGER.log(Level.FINER, "seek " + seekPosition);
+				_sourceStream.setPosition(seekPosition);
+			}
+			else
+			{
+				while(chunk._length < _chunkSize)
+				{
+					final int result = _sourceStream.read(chunk._data, chunk._length, _chunkSize - chunk._length);
+					if(result < 0)
+					{
+						endOfStream = true;
+						break;
+					}
+					chunk._length += result;
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.SEVERE, e.toString(), e);
+			error = e;
+		}
+		
+		synchronized (_lock)
+		{
+			_isDecoding = false;
+			if(_isClosed)
+			{
+				if(chunk != null)
+				{
+					chunk.release();
+				}
+				_sourceStream.close();
+				return;
+			}
+			if(generation == _generation)
+			{
+				if(chunk != null)
+				{
+					if(chunk._length > 0)
+					{
+						_readyChunks.add(chunk);
+						chunk = null;
+					}
+					_endOfStream = endOfStream;
+				}
+				_error = error;
+			}
+			if(chunk != null)
+			{
+				// Empty or outdated
+				chunk.release();
+			}
+			scheduleDecoding();
+		}
+	}
+	
+	@Override
+	public int read(final byte[] buffer, final int off, final int len) throws IOException
+	{
+		return read(buffer, off, null, len);
+	}
+	
+	@Override
+	public int read(final ByteBuffer buffer) throws IOException
+	{
+		return read(null, 0, buffer, buffer.remaining());
+	}
+	
+	/**
+	 * Copies decoded data either to the array or to the buffer
+	 * 
+	 * @param array destination array or null
+	 * @param off offset in destination array
+	 * @param buffer destination buffer or null
+	 * @param len number of bytes to read
+	 * @return number of bytes read, 0 if no data is available yet or -1 if the stream has ended
+	 * @throws IOException on decoder error
+	 */
+	private int read(final byte[] array, final int off, final ByteBuffer buffer, final int len) throws IOException
+	{
+		synchronized (_lock)
+		{
+			if(_error != null)
+			{
+				final IOException error = _error;
+				_error = null;
+				throw error;
+			}
+			_isActive = true;
+			int size = 0;
+			while((size < len) && !_readyChunks.isEmpty())
+			{
+				final Chunk chunk = _readyChunks.peek();
+				final int copySize = Math.min(len - size, chunk._length - chunk._offset);
+				if(array == null)
+				{
+					buffer.put(chunk._data, chunk._offset, copySize);
+				}
+				else
+				{
+					System.arraycopy(chunk._data, chunk._offset, array, off + size, copySize);
+				}
+				chunk._offset += copySize;
+				size += copySize;
+				if(chunk._offset >= chunk._length)
+				{
+					_readyChunks.poll().release();
+				}
+			}
+			_position += size;
+			scheduleDecoding();
+			if((size == 0) && _endOfStream && (_pendingSeek < 0) && (len > 0))
+			{
+				return -1;
+			}
+			return size;
+		}
+	}
+	
+	@Override
+	public void close()
+	{
+		synchronized (_lock)
+		{
+			if(_isClosed)
+			{
+				return;
+			}
+			_isClosed = true;
+			releaseReadyChunks();
+			if(!_isDecoding)
+			{
+				_sourceStream.close();
+			}
+		}
+	}
+	
+	@Override
+	public void releaseBuffers()
+	{
+		synchronized (_lock)
+		{
+			_isActive = false;
+			if(_readyChunks.isEmpty() && !_isDecoding && (_pendingSeek < 0))
+			{
+				// Nothing decoded ahead, the source stream is at the position
+				return;
+			}
+			// Drop the decoded data and the chunk in flight, the source stream is seeked back on the next read
+			_generation++;
+			releaseReadyChunks();
+			_endOfStream = false;
+			_pendingSeek = _position;
+		}
+	}
+	
+	/**
+	 * Returns the ready chunks to the pool. Must hold the lock.
+	 */
+	private void releaseReadyChunks()
+	{
+		while(!_readyChunks.isEmpty())
+		{
+			_readyChunks.poll().release();
+		}
+	}
+	
+	@Override
+	public long getPosition()
+	{
+		synchronized (_lock)
+		{
+			return _position;
+		}
+	}
+	
+	@Override
+	public void setPosition(final long position) throws IOException
+	{
+		synchronized (_lock)
+		{
+			if((position == _position) && (_error == null))
+			{
+				// Already there, keep the decoded data
+				return;
+			}
+			_generation++;
+			releaseReadyChunks();
+			_endOfStream = false;
+			_error = null;
+			_pendingSeek = position;
+			_position = position;
+			scheduleDecoding();
+		}
+	}
+	
+	@Override
+	public long getLength()
+	{
+		return _sourceStream.getLength();
+	}
+	
+	@Override
+	public int getSampleSize()
+	{
+		return _sourceStream.getSampleSize();
+	}
+	
+	@Override
+	public int getFrameSize()
+	{
+		return _sourceStream.getFrameSize();
+	}
+	
+	@Override
+	public int getChannels()
+	{
+		return _sourceStream.getChannels();
+	}
+	
+	@Override
+	public int getSampleRate()
+	{
+		return _sourceStream.getSampleRate();
+	}
+	
+	@Override
+	public String getName()
+	{
+		return _sourceStream.getName();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return _sourceStream.toString();
+	}
+}
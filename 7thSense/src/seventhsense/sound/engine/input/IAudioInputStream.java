@@ -28,6 +28,7 @@
 package seventhsense.sound.engine.input;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Audio input stream interface for decoding audio files and streaming audio data.
@@ -43,16 +44,32 @@ public interface IAudioInputStream
 	 * @param buffer destination buffer
 	 * @param off offset in destination buffer
 	 * @param len number of bytes to read
-	 * @return true number of bytes, that could be read
+	 * @return true number of bytes, that could be read, 0 if no data is available yet or -1 if the stream has ended
 	 * @throws IOException on read error
 	 */
 	int read(byte[] buffer, int off, int len) throws IOException;
 	
+	/**
+	 * Read decoded pcm audio data into the remaining space of the given buffer.
+	 * The position of the buffer is advanced by the number of bytes read.
+	 * 
+	 * @param buffer destination buffer (may be direct)
+	 * @return true number of bytes, that could be read, 0 if no data is available yet or -1 if the stream has ended
+	 * @throws IOException on read error
+	 */
+	int read(ByteBuffer buffer) throws IOException;
+	
 	/**
 	 * Close the stream
 	 */
 	void close();
 	
+	/**
+	 * Releases the buffers, which are held for reading ahead, while the stream is not read (e.g. while paused).
+	 * Reading continues at the current position.
+	 */
+	void releaseBuffers();
+	
 	/**
 	 * Gets the current position in the stream
 	 * 
@@ -29,17 +29,22 @@ package seventhsense.sound.engine.input;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
+import javax.sound.sampled.spi.AudioFileReader;
 
-import org.tritonus.share.sampled.file.TAudioFileFormat;
+import javazoom.spi.mpeg.sampled.file.MpegAudioFileReader;
+import javazoom.spi.vorbis.sampled.file.VorbisAudioFileReader;
+
+import seventhsense.sound.engine.AudioMetrics;
+import seventhsense.sound.engine.PcmBufferPool;
 
 /**
  * Decoder stream for wrapping the java audio input
@@ -51,12 +56,26 @@ public class JavaSoundDecoderStream implements IAudioInputStream
 {
 	private static final Logger LOGGER = Logger.getLogger(JavaSoundDecoderStream.class.getName());
 	
+	/**
+	 * Minimum distance in seconds for a forward seek to use the seek index instead of decoding
+	 */
+	private static final double SEEK_INDEX_THRESHOLD = 2.0;
+	
 	private AudioInputStream _audioStream;
 	private final AudioFormat _decodedFormat;
-	private final AudioFileFormat _fileFormat;
+	
+	/**
+	 * Format of the file from the metadata index
+	 */
+	private final AudioMetadata _metadata;
 	private final File _file;
 	
 	private long _position;
+	
+	/**
+	 * Seek index of the file, loaded on the first seek (null if not loaded yet)
+	 */
+	private SeekIndex _seekIndex;
 
 	/**
 	 * Creates the decoder with a given file, that will be decoded
@@ -68,19 +87,15 @@ public class JavaSoundDecoderStream implements IAudioInputStream
 	public JavaSoundDecoderStream(final File file) throws IOException
 	{
 		_file = file;
-		try
+		_metadata = AudioMetadataIndex.get().getMetadata(_file);
+		if(!_metadata.isValid())
 		{
-			_fileFormat = AudioSystem.getAudioFileFormat(_file);
+			throw new IOException(new UnsupportedAudioFileException("Unsupported audio file " + _file));
 		}
-		catch (UnsupportedAudioFileException e)
-		{
-			throw new IOException(e);
-		}
-		final AudioFormat baseFormat = _fileFormat.getFormat();
-		LOGGER.log(Level.FINE, "Source Format: " + baseFormat);
+		LOGGER.log(Level.FINE, "Source Format: " + _metadata);
 		int sampleSize;
 		AudioFormat.Encoding encoding;
-		if(baseFormat.getSampleSizeInBits() == 8)
+		if(_metadata.getSampleSizeInBits() == 8)
 		{
 			// Only if 8 is specified, use 8
 			sampleSize = 8;
@@ -94,11 +109,11 @@ public class JavaSoundDecoderStream implements IAudioInputStream
 		
 		// Find decode format
 		_decodedFormat = new AudioFormat(encoding, // Encoding to use
-				baseFormat.getSampleRate(), // sample rate (same as base format)
+				_metadata.getSampleRate(), // sample rate (same as base format)
 				sampleSize, // sample size in bits
-				baseFormat.getChannels(), // # of Channels
-				baseFormat.getChannels() * sampleSize / 8, // Frame Size
-				baseFormat.getSampleRate(), // Frame Rate
+				_metadata.getChannels(), // # of Channels
+				_metadata.getChannels() * sampleSize / 8, // Frame Size
+				_metadata.getSampleRate(), // Frame Rate
 				false // Big Endian
 		);
 		
@@ -132,17 +147,124 @@ public class JavaSoundDecoderStream implements IAudioInputStream
 		}
 	}
 
+	/**
+	 * Opens the internal stream at a sync point of the seek index
+	 * 
+	 * @param syncPoint index of the sync point
+	 * @return true, if the stream was opened, false if it could not be opened (the old stream is closed)
+	 */
+	private boolean openStream(final int syncPoint)
+	{
+		if(_audioStream != null)
+		{
+			try
+			{
+				_audioStream.close();
+			}
+			catch (IOException e)
+			{
+				LOGGER.log(Level.SEVERE, e.toString(), e);
+			}
+			_audioStream = null;
+		}
+		try
+		{
+			final InputStream fileStream = _seekIndex.openStream(_file, syncPoint);
+			final AudioFileReader reader;
+			if(_seekIndex.getType() == SeekIndex.Type.Mpeg)
+			{
+				reader = new MpegAudioFileReader();
+			}
+			else
+			{
+				reader = new VorbisAudioFileReader();
+			}
+			final AudioInputStream stream = reader.getAudioInputStream(fileStream);
+			_audioStream = AudioSystem.getAudioInputStream(_decodedFormat, stream);
+			_position = _seekIndex.getSamplePosition(syncPoint) * getFrameSize();
+			LOGGER.log(Level.FINER, "opened at sync point " + syncPoint + " (" + _position + ")");
+			return true;
+		}
+		catch (UnsupportedAudioFileException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not open sync point: " + e.toString(), e);
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not open sync point: " + e.toString(), e);
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Thrown, if the conversion is not supported
+			LOGGER.log(Level.WARNING, "Could not open sync point: " + e.toString(), e);
+		}
+		return false;
+	}
+	
+	/**
+	 * Moves the internal stream to the nearest sync point before the given position, if this is faster than
+	 * decoding from the current position
+	 * 
+	 * @param position target position in bytes
+	 * @return true, if the stream was moved, false if decoding must continue from the current position
+	 *  or the beginning of the stream
+	 */
+	private boolean seekSyncPoint(final long position)
+	{
+		if(!_metadata.isIndexable())
+		{
+			return false;
+		}
+		final boolean isBackward = position < _position;
+		if(!isBackward && (position - _position < SEEK_INDEX_THRESHOLD * getSampleRate() * getFrameSize()))
+		{
+			return false;
+		}
+		if(_seekIndex == null)
+		{
+			_seekIndex = SeekIndex.get(_file);
+		}
+		final int syncPoint = _seekIndex.find(position / getFrameSize());
+		if((syncPoint < 0) || (!isBackward && (_seekIndex.getSamplePosition(syncPoint) * getFrameSize() <= _position)))
+		{
+			return false;
+		}
+		return openStream(syncPoint);
+	}
+	
 	@Override
 	public int read(final byte[] buffer, final int off, final int len) throws IOException
 	{
+		final long startTime = System.nanoTime();
 		final int result = _audioStream.read(buffer, off, len);
 		if(result > 0)
 		{
 			_position += result;
+			AudioMetrics.get().chunkDecoded(System.nanoTime() - startTime, result);
 		}
 		return result;
 	}
 	
+	@Override
+	public int read(final ByteBuffer buffer) throws IOException
+	{
+		final int len = buffer.remaining();
+		final ByteBuffer readBuffer = PcmBufferPool.get().acquireHeap(len);
+		try
+		{
+			final int result = read(readBuffer.array(), 0, len);
+			if(result > 0)
+			{
+				buffer.put(readBuffer.array(), 0, result);
+			}
+			return result;
+		}
+		finally
+		{
+			PcmBufferPool.get().releaseHeap(readBuffer);
+		}
+	}
+	
 	@Override
 	public void close()
 	{
@@ -157,6 +279,12 @@ public class JavaSoundDecoderStream implements IAudioInputStream
 		_audioStream = null;
 		_position = 0;
 	}
+	
+	@Override
+	public void releaseBuffers()
+	{
+		// Nothing is decoded ahead
+	}
 
 	@Override
 	public long getPosition()
@@ -167,7 +295,8 @@ public class JavaSoundDecoderStream implements IAudioInputStream
 	@Override
 	public void setPosition(final long position) throws IOException
 	{
-		if(position < _position)
+		final long startTime = System.nanoTime();
+		if(!seekSyncPoint(position) && ((position < _position) || (_audioStream == null)))
 		{
 			try
 			{
@@ -180,41 +309,40 @@ public class JavaSoundDecoderStream implements IAudioInputStream
 		}
 		
 		final long bytesToSkip = position;
-		final byte[] dummyBuffer = new byte[getFrameSize() * getSampleRate()];
+		final ByteBuffer skipBuffer = PcmBufferPool.get().acquireHeap(getFrameSize() * getSampleRate());
+		final byte[] dummyBuffer = skipBuffer.array();
 		long skippedBytes = _position;
-		//LOGGER.log(Level.FINE, "seek " + time + ", " + framesToSkip + " Frames, " + bytesToSkip + " bytes");
-		while(skippedBytes < bytesToSkip)
+		try
 		{
-			final int bytesToRead = (int) Math.min(dummyBuffer.length, bytesToSkip - skippedBytes);
-			final int readBytes = _audioStream.read(dummyBuffer, 0, (int) bytesToRead);
-			if(readBytes < 0)
+			//LOGGER.log(Level.FINE, "seek " + time + ", " + framesToSkip + " Frames, " + bytesToSkip + " bytes");
+			while(skippedBytes < bytesToSkip)
 			{
-				LOGGER.log(Level.FINE, "read < 0: " + readBytes);
-				break;
+				final int bytesToRead = (int) Math.min(skipBuffer.limit(), bytesToSkip - skippedBytes);
+				final int readBytes = _audioStream.read(dummyBuffer, 0, (int) bytesToRead);
+				if(readBytes < 0)
+				{
+					LOGGER.log(Level.FINE, "read < 0: " + readBytes);
+					break;
+				}
+				//LOGGER.log(Level.INFO, "read: " + readBytes + " / " + bytesToRead + " (" + (bytesToSkip - skippedBytes) + ")");
+				skippedBytes += readBytes;
 			}
-			//LOGGER.log(Level.INFO, "read: " + readBytes + " / " + bytesToRead + " (" + (bytesToSkip - skippedBytes) + ")");
-			skippedBytes += readBytes;
+		}
+		finally
+		{
+			PcmBufferPool.get().releaseHeap(skipBuffer);
 		}
 		
 		_position = skippedBytes;
+		AudioMetrics.get().seeked(System.nanoTime() - startTime);
 	}
 
 	@Override
 	public long getLength()
 	{
-		if (_fileFormat instanceof TAudioFileFormat)
-		{
-			final Map<?, ?> props = ((TAudioFileFormat) _fileFormat).properties();
-			final Long duration = (Long) props.get("duration");
-			if(duration != null)
-			{
-				final long uSec = duration.longValue();
-				return uSec * (getSampleRate() * getFrameSize()) / 1000000;
-			}
-		}
-		else if(_fileFormat.getFrameLength() > 0)
+		if(_metadata.getFrameLength() > 0)
 		{
-			return _fileFormat.getFrameLength() * getFrameSize();
+			return _metadata.getFrameLength() * getFrameSize();
 		}
 		else if((_audioStream != null) && (_audioStream.getFrameLength() > 0))
 		{
@@ -251,7 +379,7 @@ public class JavaSoundDecoderStream implements IAudioInputStream
 	@Override
 	public String getName()
 	{
-		return _fileFormat.getType().toString();
+		return _metadata.getCodec();
 	}
 
 	@Override
@@ -0,0 +1,184 @@
+/*
+ * MappedPcmStream.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stream for playing decoded pcm data from a buffer, usually a file mapped into memory by the PcmDiskCache.
+ * Each stream reads through its own view of the buffer. Seeking only sets the position.
+ *
+ * @author Parallan
+ *
+ */
+public class MappedPcmStream implements IAudioInputStream
+{
+	/**
+	 * View of the pcm data
+	 */
+	private final ByteBuffer _data;
+	
+	/**
+	 * Size of one sample in bytes
+	 */
+	private final int _sampleSize;
+	
+	/**
+	 * Number of channels
+	 */
+	private final int _channels;
+	
+	/**
+	 * Sample rate
+	 */
+	private final int _sampleRate;
+	
+	/**
+	 * Name of the codec the data was decoded with
+	 */
+	private final String _name;
+	
+	/**
+	 * Description of the source
+	 */
+	private final String _source;
+	
+	/**
+	 * Creates a stream for the given pcm data
+	 *
+	 * @param data pcm data between position and limit (not copied, must not be modified)
+	 * @param sampleSize size of one sample in bytes
+	 * @param channels number of channels
+	 * @param sampleRate sample rate
+	 * @param name name of the codec the data was decoded with
+	 * @param source description of the source (e.g. the file)
+	 */
+	public MappedPcmStream(final ByteBuffer data, final int sampleSize, final int channels, final int sampleRate, final String name, final String source)
+	{
+		_data = data.slice();
+		_sampleSize = sampleSize;
+		_channels = channels;
+		_sampleRate = sampleRate;
+		_name = name;
+		_source = source;
+	}
+	
+	@Override
+	public int read(final byte[] buffer, final int off, final int len)
+	{
+		if(!_data.hasRemaining())
+		{
+			return -1;
+		}
+		final int size = Math.min(len, _data.remaining());
+		_data.get(buffer, off, size);
+		return size;
+	}
+	
+	@Override
+	public int read(final ByteBuffer buffer)
+	{
+		if(!_data.hasRemaining())
+		{
+			return -1;
+		}
+		final int size = Math.min(buffer.remaining(), _data.remaining());
+		// Limit the view temporarily instead of duplicating it, so reading does not allocate
+		final int limit = _data.limit();
+		_data.limit(_data.position() + size);
+		buffer.put(_data);
+		_data.limit(limit);
+		return size;
+	}
+	
+	@Override
+	public void close()
+	{
+		// The mapping is released, when the buffer is collected
+	}
+	
+	@Override
+	public void releaseBuffers()
+	{
+		// Nothing is read ahead
+	}
+	
+	@Override
+	public long getPosition()
+	{
+		return _data.position();
+	}
+	
+	@Override
+	public void setPosition(final long position)
+	{
+		_data.position((int) Math.max(0, Math.min(position, _data.limit())));
+	}
+	
+	@Override
+	public long getLength()
+	{
+		return _data.limit();
+	}
+	
+	@Override
+	public int getSampleSize()
+	{
+		return _sampleSize;
+	}
+	
+	@Override
+	public int getFrameSize()
+	{
+		return _sampleSize * _channels;
+	}
+	
+	@Override
+	public int getChannels()
+	{
+		return _channels;
+	}
+	
+	@Override
+	public int getSampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return _name;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return _source;
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * MemoryPcmStream.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stream for playing decoded pcm data from memory. The data is shared and never modified,
+ * so any number of streams can read the same data. Seeking only sets the position.
+ *
+ * @author Parallan
+ *
+ */
+public class MemoryPcmStream implements IAudioInputStream
+{
+	/**
+	 * Pcm data
+	 */
+	private final byte[] _data;
+	
+	/**
+	 * Number of valid bytes in data
+	 */
+	private final int _length;
+	
+	/**
+	 * Size of one sample in bytes
+	 */
+	private final int _sampleSize;
+	
+	/**
+	 * Number of channels
+	 */
+	private final int _channels;
+	
+	/**
+	 * Sample rate
+	 */
+	private final int _sampleRate;
+	
+	/**
+	 * Name of the codec the data was decoded with
+	 */
+	private final String _name;
+	
+	/**
+	 * Description of the source
+	 */
+	private final String _source;
+	
+	/**
+	 * Current position in bytes
+	 */
+	private int _position = 0;
+	
+	/**
+	 * Creates a stream for the given pcm data
+	 *
+	 * @param data pcm data (not copied, must not be modified)
+	 * @param length number of valid bytes in data
+	 * @param sampleSize size of one sample in bytes
+	 * @param channels number of channels
+	 * @param sampleRate sample rate
+	 * @param name name of the codec the data was decoded with
+	 * @param source description of the source (e.g. the file)
+	 */
+	public MemoryPcmStream(final byte[] data, final int length, final int sampleSize, final int channels, final int sampleRate, final String name, final String source)
+	{
+		_data = data;
+		_length = length;
+		_sampleSize = sampleSize;
+		_channels = channels;
+		_sampleRate = sampleRate;
+		_name = name;
+		_source = source;
+	}
+	
+	@Override
+	public int read(final byte[] buffer, final int off, final int len)
+	{
+		if(_position >= _length)
+		{
+			return -1;
+		}
+		final int size = Math.min(len, _length - _position);
+		System.arraycopy(_data, _position, buffer, off, size);
+		_position += size;
+		return size;
+	}
+	
+	@Override
+	public int read(final ByteBuffer buffer)
+	{
+		if(_position >= _length)
+		{
+			return -1;
+		}
+		final int size = Math.min(buffer.remaining(), _length - _position);
+		buffer.put(_data, _position, size);
+		_position += size;
+		return size;
+	}
+	
+	@Override
+	public void close()
+	{
+		// Data is shared, nothing to free
+	}
+	
+	@Override
+	public void releaseBuffers()
+	{
+		// Data is shared, nothing to free
+	}
+	
+	@Override
+	public long getPosition()
+	{
+		return _position;
+	}
+	
+	@Override
+	public void setPosition(final long position)
+	{
+		_position = (int) Math.max(0, Math.min(position, _length));
+	}
+	
+	@Override
+	public long getLength()
+	{
+		return _length;
+	}
+	
+	@Override
+	public int getSampleSize()
+	{
+		return _sampleSize;
+	}
+	
+	@Override
+	public int getFrameSize()
+	{
+		return _sampleSize * _channels;
+	}
+	
+	@Override
+	public int getChannels()
+	{
+		return _channels;
+	}
+	
+	@Override
+	public int getSampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return _name;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return _source;
+	}
+}
@@ -0,0 +1,308 @@
+/*
+ * SeekIndex.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of sync points in a compressed audio file. Each sync point is a byte offset in the file, where
+ * decoding can be started, together with the sample position of the first decoded sample.
+ * The index is built by scanning the frame (MP3) or page (Ogg Vorbis) headers once and is cached per file.
+ *
+ * @author Parallan
+ *
+ */
+public final class SeekIndex
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(SeekIndex.class.getName());
+	
+	/**
+	 * Maximum number of cached indices
+	 */
+	private static final int MAX_CACHED_INDICES = 32;
+	
+	/**
+	 * Cached indices by absolute path
+	 */
+	private static final Map<String, SeekIndex> CACHE = new LinkedHashMap<String, SeekIndex>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, SeekIndex> eldest)
+		{
+			return size() > MAX_CACHED_INDICES;
+		}
+	};
+	
+	/**
+	 * Type of the indexed file
+	 */
+	public static enum Type
+	{
+		/**
+		 * MPEG audio (MP3)
+		 */
+		Mpeg,
+		/**
+		 * Ogg Vorbis
+		 */
+		Vorbis
+	}
+	
+	/**
+	 * Type of the file or null, if the file could not be indexed
+	 */
+	private final Type _type;
+	
+	/**
+	 * Sample positions of the sync points (ascending)
+	 */
+	private final long[] _samplePositions;
+	
+	/**
+	 * Byte offsets of the sync points
+	 */
+	private final long[] _byteOffsets;
+	
+	/**
+	 * Number of sync points
+	 */
+	private final int _count;
+	
+	/**
+	 * Data, which must be decoded before the data at a sync point (stream headers) or null
+	 */
+	private final byte[] _header;
+	
+	/**
+	 * Number of samples to decode before the seek target, so the decoder has settled
+	 */
+	private final int _leadIn;
+	
+	/**
+	 * Length of the file, when it was indexed
+	 */
+	private final long _fileLength;
+	
+	/**
+	 * Modification time of the file, when it was indexed
+	 */
+	private final long _lastModified;
+	
+	/**
+	 * Creates an index
+	 *
+	 * @param file indexed file
+	 * @param type type of the file or null
+	 * @param samplePositions sample positions of the sync points
+	 * @param byteOffsets byte offsets of the sync points
+	 * @param count number of sync points
+	 * @param header stream headers or null
+	 * @param leadIn number of samples to decode before the seek target
+	 */
+	SeekIndex(final File file, final Type type, final long[] samplePositions, final long[] byteOffsets, final int count, final byte[] header, final int leadIn)
+	{
+		_fileLength = file.length();
+		_lastModified = file.lastModified();
+		_type = type;
+		_samplePositions = samplePositions;
+		_byteOffsets = byteOffsets;
+		_count = count;
+		_header = header;
+		_leadIn = leadIn;
+	}
+	
+	/**
+	 * Creates an empty index for a file, which cannot be indexed
+	 *
+	 * @param file file
+	 */
+	SeekIndex(final File file)
+	{
+		this(file, null, new long[0], new long[0], 0, null, 0);
+	}
+	
+	/**
+	 * Gets the type of the indexed file
+	 *
+	 * @return type or null, if the file could not be indexed
+	 */
+	public Type getType()
+	{
+		return _type;
+	}
+	
+	/**
+	 * Gets the number of sync points
+	 *
+	 * @return number of sync points
+	 */
+	public int getCount()
+	{
+		return _count;
+	}
+	
+	/**
+	 * Gets the sample position of a sync point
+	 *
+	 * @param index index of the sync point
+	 * @return sample position of the first sample decoded from the sync point
+	 */
+	public long getSamplePosition(final int index)
+	{
+		return _samplePositions[index];
+	}
+	
+	/**
+	 * Finds the last sync point, from which the given sample position can be reached
+	 *
+	 * @param samplePosition target sample position
+	 * @return index of the sync point or -1, if decoding must start at the beginning of the file
+	 */
+	public int find(final long samplePosition)
+	{
+		int index = Arrays.binarySearch(_samplePositions, 0, _count, samplePosition - _leadIn);
+		if(index < 0)
+		{
+			// Insertion point - 1 is the last position before
+			index = -index - 2;
+		}
+		return index;
+	}
+	
+	/**
+	 * Opens the file for decoding from the given sync point. Stream headers are prepended, if required.
+	 *
+	 * @param file indexed file
+	 * @param index index of the sync point
+	 * @return buffered input stream
+	 * @throws IOException if the file could not be opened
+	 */
+	public InputStream openStream(final File file, final int index) throws IOException
+	{
+		final FileInputStream fileStream = new FileInputStream(file);
+		try
+		{
+			long skip = _byteOffsets[index];
+			while(skip > 0)
+			{
+				final long skipped = fileStream.skip(skip);
+				if(skipped <= 0)
+				{
+					throw new IOException("Sync point beyond end of file");
+				}
+				skip -= skipped;
+			}
+		}
+		catch (IOException e)
+		{
+			fileStream.close();
+			throw e;
+		}
+		if(_header == null)
+		{
+			return new BufferedInputStream(fileStream);
+		}
+		return new BufferedInputStream(new SequenceInputStream(new ByteArrayInputStream(_header), fileStream));
+	}
+	
+	/**
+	 * Checks, if the file was not modified since it was indexed
+	 *
+	 * @param file file to check
+	 * @return true, if the index is still valid
+	 */
+	private boolean isValid(final File file)
+	{
+		return (file.length() == _fileLength) && (file.lastModified() == _lastModified);
+	}
+	
+	/**
+	 * Gets the index for the given file. The file is scanned, if it was not indexed yet or was modified.
+	 *
+	 * @param file file to index
+	 * @return index (may have no sync points, if the file could not be indexed)
+	 */
+	public static SeekIndex get(final File file)
+	{
+		final String key = file.getAbsolutePath();
+		synchronized (CACHE)
+		{
+			final SeekIndex seekIndex = CACHE.get(key);
+			if((seekIndex != null) && seekIndex.isValid(file))
+			{
+				return seekIndex;
+			}
+		}
+		SeekIndex seekIndex;
+		final long startTime = System.nanoTime();
+		try
+		{
+			seekIndex = SeekIndexScanner.scan(file);
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not index " + file + ": " + e.toString(), e);
+			seekIndex = new SeekIndex(file);
+		}
+		LOGGER.log(Level.FINE, "indexed " + file + ": " + seekIndex._count + " sync points in " + ((System.nanoTime() - startTime) / 1000000) + " ms");
+		synchronized (CACHE)
+		{
+			CACHE.put(key, seekIndex);
+		}
+		return seekIndex;
+	}
+	
+	/**
+	 * Removes the index of the given file from the cache
+	 *
+	 * @param file file
+	 */
+	public static void invalidate(final File file)
+	{
+		synchronized (CACHE)
+		{
+			CACHE.remove(file.getAbsolutePath());
+		}
+	}
+}
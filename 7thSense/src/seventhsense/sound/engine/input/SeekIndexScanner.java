@@ -0,0 +1,515 @@
+/*
+ * SeekIndexScanner.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.jcraft.jogg.Packet;
+import com.jcraft.jorbis.Comment;
+import com.jcraft.jorbis.Info;
+
+/**
+ * Scans the headers of MP3 frames or Ogg pages for building a seek index.
+ * Only headers are parsed, no audio is decoded.
+ *
+ * @author Parallan
+ *
+ */
+final class SeekIndexScanner
+{
+	/**
+	 * Minimum distance between two sync points in seconds
+	 */
+	private static final double SYNC_POINT_INTERVAL = 0.5;
+	
+	/**
+	 * Maximum number of frames to look ahead for the first decodable frame of an MP3 sync point
+	 */
+	private static final int MAX_RESERVOIR_FRAMES = 8;
+	
+	/**
+	 * Bitrates in kbit/s for MPEG 1 (Layer I, II, III)
+	 */
+	private static final int[][] MPEG1_BITRATES = {
+		{0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+		{0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+		{0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}
+	};
+	
+	/**
+	 * Bitrates in kbit/s for MPEG 2 and 2.5 (Layer I, II and III)
+	 */
+	private static final int[][] MPEG2_BITRATES = {
+		{0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+		{0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+		{0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+	};
+	
+	/**
+	 * Sample rates for MPEG 1
+	 */
+	private static final int[] MPEG1_SAMPLE_RATES = {44100, 48000, 32000};
+	
+	/**
+	 * Sync points, which are collected
+	 */
+	private long[] _samplePositions = new long[256];
+	
+	/**
+	 * Byte offsets of the collected sync points
+	 */
+	private long[] _byteOffsets = new long[256];
+	
+	/**
+	 * Number of collected sync points
+	 */
+	private int _count = 0;
+	
+	/**
+	 * Can't instantiate from outside
+	 */
+	private SeekIndexScanner()
+	{
+	}
+	
+	/**
+	 * Scans the given file
+	 *
+	 * @param file file to scan
+	 * @return index (without sync points, if the file is neither MP3 nor Ogg Vorbis)
+	 * @throws IOException on read error
+	 */
+	static SeekIndex scan(final File file) throws IOException
+	{
+		final DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+		try
+		{
+			stream.mark(4);
+			final int magic = stream.readInt();
+			stream.reset();
+			final SeekIndexScanner scanner = new SeekIndexScanner();
+			if(magic == 0x4F676753)
+			{
+				// "OggS"
+				return scanner.scanVorbis(file, stream);
+			}
+			if(((magic >>> 8) == 0x494433) || ((magic >>> 21) == 0x7FF))
+			{
+				// "ID3" or frame sync
+				return scanner.scanMpeg(file, stream);
+			}
+			return new SeekIndex(file);
+		}
+		catch (EOFException e)
+		{
+			return new SeekIndex(file);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Adds a sync point
+	 *
+	 * @param samplePosition sample position of the first decoded sample
+	 * @param byteOffset offset in the file
+	 */
+	private void addSyncPoint(final long samplePosition, final long byteOffset)
+	{
+		if(_count == _samplePositions.length)
+		{
+			_samplePositions = Arrays.copyOf(_samplePositions, _count * 2);
+			_byteOffsets = Arrays.copyOf(_byteOffsets, _count * 2);
+		}
+		_samplePositions[_count] = samplePosition;
+		_byteOffsets[_count] = byteOffset;
+		_count++;
+	}
+	
+	/**
+	 * Skips the given number of bytes
+	 *
+	 * @param stream stream
+	 * @param count number of bytes to skip
+	 * @throws IOException on read error or end of file
+	 */
+	private static void skipFully(final DataInputStream stream, final long count) throws IOException
+	{
+		long remaining = count;
+		while(remaining > 0)
+		{
+			final long skipped = stream.skip(remaining);
+			if(skipped <= 0)
+			{
+				throw new EOFException();
+			}
+			remaining -= skipped;
+		}
+	}
+	
+	/**
+	 * Scans MP3 frame headers. For layer III, the bit reservoir is considered: The decoder drops frames,
+	 * whose main data begins in frames before the sync point, so the sample position of a sync point is
+	 * the position of the first frame, which can be decoded.
+	 *
+	 * @param file scanned file
+	 * @param stream stream at the beginning of the file
+	 * @return index
+	 * @throws IOException on read error
+	 */
+	private SeekIndex scanMpeg(final File file, final DataInputStream stream) throws IOException
+	{
+		long offset = 0;
+		// Skip ID3v2 tag
+		final byte[] header = new byte[10];
+		stream.mark(10);
+		stream.readFully(header);
+		if((header[0] == 'I') && (header[1] == 'D') && (header[2] == '3'))
+		{
+			final int tagSize = ((header[6] & 0x7F) << 21) | ((header[7] & 0x7F) << 14) | ((header[8] & 0x7F) << 7) | (header[9] & 0x7F);
+			final int footerSize = ((header[5] & 0x10) != 0)?10:0;
+			skipFully(stream, tagSize + footerSize);
+			offset = 10 + tagSize + footerSize;
+		}
+		else
+		{
+			stream.reset();
+		}
+		
+		int firstHeader = -1;
+		long samplePosition = 0;
+		long lastSyncPosition = 0;
+		int syncInterval = 0;
+		int samplesPerFrame = 0;
+		int leadIn = 0;
+		
+		// Pending sync point, which waits for its first decodable frame
+		long pendingOffset = -1;
+		int pendingReservoir = 0;
+		int pendingFrames = 0;
+		
+		try
+		{
+			while(true)
+			{
+				final int frameHeader = stream.readInt();
+				if((frameHeader >>> 21) != 0x7FF)
+				{
+					// Tag or garbage: Stop here, the decoder continues from the last sync point
+					break;
+				}
+				// Version, layer and sample rate must not change
+				if((firstHeader != -1) && ((frameHeader & 0xFFFE0C00) != (firstHeader & 0xFFFE0C00)))
+				{
+					break;
+				}
+				final int version = (frameHeader >>> 19) & 3;
+				final int layer = 4 - ((frameHeader >>> 17) & 3);
+				final boolean hasCrc = ((frameHeader >>> 16) & 1) == 0;
+				final int bitrateIndex = (frameHeader >>> 12) & 15;
+				final int sampleRateIndex = (frameHeader >>> 10) & 3;
+				final int padding = (frameHeader >>> 9) & 1;
+				final boolean isMono = ((frameHeader >>> 6) & 3) == 3;
+				if((version == 1) || (layer == 4) || (bitrateIndex == 0) || (bitrateIndex == 15) || (sampleRateIndex == 3))
+				{
+					// Reserved values or free format
+					break;
+				}
+				final boolean isMpeg1 = version == 3;
+				int sampleRate = MPEG1_SAMPLE_RATES[sampleRateIndex];
+				if(version == 2)
+				{
+					sampleRate /= 2;
+				}
+				else if(version == 0)
+				{
+					sampleRate /= 4;
+				}
+				final int bitrate = (isMpeg1?MPEG1_BITRATES:MPEG2_BITRATES)[layer - 1][bitrateIndex] * 1000;
+				final int frameLength;
+				if(layer == 1)
+				{
+					samplesPerFrame = 384;
+					frameLength = (12 * bitrate / sampleRate + padding) * 4;
+				}
+				else if((layer == 3) && !isMpeg1)
+				{
+					samplesPerFrame = 576;
+					frameLength = 72 * bitrate / sampleRate + padding;
+				}
+				else
+				{
+					samplesPerFrame = 1152;
+					frameLength = 144 * bitrate / sampleRate + padding;
+				}
+				if(firstHeader == -1)
+				{
+					firstHeader = frameHeader;
+					syncInterval = (int) (SYNC_POINT_INTERVAL * sampleRate);
+					// Decode one frame before the target, so the synthesis filter has settled
+					leadIn = samplesPerFrame;
+				}
+				
+				int consumed = 4;
+				int mainDataBegin = 0;
+				int mainDataSize = 0;
+				if(layer == 3)
+				{
+					if(hasCrc)
+					{
+						stream.readUnsignedShort();
+						consumed += 2;
+					}
+					final int sideInfo = stream.readUnsignedShort();
+					consumed += 2;
+					final int sideInfoSize;
+					if(isMpeg1)
+					{
+						mainDataBegin = sideInfo >>> 7;
+						sideInfoSize = isMono?17:32;
+					}
+					else
+					{
+						mainDataBegin = sideInfo >>> 8;
+						sideInfoSize = isMono?9:17;
+					}
+					mainDataSize = frameLength - 4 - (hasCrc?2:0) - sideInfoSize;
+				}
+				
+				// Resolve pending sync point
+				if(pendingOffset >= 0)
+				{
+					if(mainDataBegin <= pendingReservoir)
+					{
+						// First frame, which is decoded
+						addSyncPoint(samplePosition, pendingOffset);
+						lastSyncPosition = samplePosition;
+						pendingOffset = -1;
+					}
+					else if(++pendingFrames > MAX_RESERVOIR_FRAMES)
+					{
+						pendingOffset = -1;
+					}
+					else
+					{
+						pendingReservoir += mainDataSize;
+					}
+				}
+				// Start a new sync point
+				if((pendingOffset < 0) && ((_count == 0) || (samplePosition - lastSyncPosition >= syncInterval)))
+				{
+					if(mainDataBegin == 0)
+					{
+						addSyncPoint(samplePosition, offset);
+						lastSyncPosition = samplePosition;
+					}
+					else
+					{
+						pendingOffset = offset;
+						pendingReservoir = mainDataSize;
+						pendingFrames = 0;
+					}
+				}
+				
+				skipFully(stream, frameLength - consumed);
+				offset += frameLength;
+				samplePosition += samplesPerFrame;
+			}
+		}
+		catch (EOFException e)
+		{
+			// End of file
+		}
+		return new SeekIndex(file, SeekIndex.Type.Mpeg, _samplePositions, _byteOffsets, _count, null, leadIn);
+	}
+	
+	/**
+	 * Scans Ogg pages of a Vorbis stream. The header packets are parsed for the block sizes. For each audio
+	 * packet, the block size is read from its first byte to calculate the sample positions exactly like
+	 * the decoder does. A sync point is at the beginning of a page, its sample position is the position of
+	 * the first sample decoded from the first packet, which starts on this page.
+	 *
+	 * @param file scanned file
+	 * @param stream stream at the beginning of the file
+	 * @return index
+	 * @throws IOException on read error
+	 */
+	private SeekIndex scanVorbis(final File file, final DataInputStream stream) throws IOException
+	{
+		final Info info = new Info();
+		final Comment comment = new Comment();
+		info.init();
+		comment.init();
+		final Packet packet = new Packet();
+		final ByteArrayOutputStream headerPacket = new ByteArrayOutputStream();
+		int headerCount = 0;
+		int headerLength = 0;
+		
+		final byte[] pageHeader = new byte[27];
+		final byte[] lacing = new byte[255];
+		byte[] body = new byte[65536];
+		
+		long offset = 0;
+		int serial = 0;
+		long samplePosition = 0;
+		long lastSyncPosition = 0;
+		int syncInterval = 0;
+		int previousBlockSize = -1;
+		
+		try
+		{
+			while(true)
+			{
+				stream.readFully(pageHeader);
+				if((pageHeader[0] != 'O') || (pageHeader[1] != 'g') || (pageHeader[2] != 'g') || (pageHeader[3] != 'S'))
+				{
+					break;
+				}
+				final boolean isContinued = (pageHeader[5] & 1) != 0;
+				final int pageSerial = (pageHeader[14] & 0xFF) | ((pageHeader[15] & 0xFF) << 8) | ((pageHeader[16] & 0xFF) << 16) | ((pageHeader[17] & 0xFF) << 24);
+				if(offset == 0)
+				{
+					serial = pageSerial;
+				}
+				else if(pageSerial != serial)
+				{
+					// Chained or multiplexed stream
+					break;
+				}
+				final int segmentCount = pageHeader[26] & 0xFF;
+				stream.readFully(lacing, 0, segmentCount);
+				int bodyLength = 0;
+				for(int i = 0; i < segmentCount; i++)
+				{
+					bodyLength += lacing[i] & 0xFF;
+				}
+				if(body.length < bodyLength)
+				{
+					body = new byte[bodyLength];
+				}
+				stream.readFully(body, 0, bodyLength);
+				final int pageLength = 27 + segmentCount + bodyLength;
+				
+				boolean isSyncPage = false;
+				int packetStart = 0;
+				int packetOffset = 0;
+				// Continued packets do not start on this page
+				boolean isPacketStart = !isContinued;
+				for(int i = 0; i < segmentCount; i++)
+				{
+					final int segmentLength = lacing[i] & 0xFF;
+					if(headerCount < 3)
+					{
+						headerPacket.write(body, packetOffset, segmentLength);
+						if(segmentLength < 255)
+						{
+							final byte[] data = headerPacket.toByteArray();
+							headerPacket.reset();
+							packet.packet_base = data;
+							packet.packet = 0;
+							packet.bytes = data.length;
+							packet.b_o_s = (headerCount == 0)?1:0;
+							if(info.synthesis_headerin(comment, packet) < 0)
+							{
+								// Not Vorbis
+								return new SeekIndex(file);
+							}
+							headerCount++;
+							if(headerCount == 3)
+							{
+								headerLength = (int) offset + pageLength;
+								syncInterval = (int) (SYNC_POINT_INTERVAL * info.rate);
+							}
+						}
+					}
+					else if(isPacketStart)
+					{
+						// First segment of a packet: the block size is encoded in the first byte
+						packet.packet_base = body;
+						packet.packet = packetStart;
+						packet.bytes = bodyLength - packetStart;
+						final int blockSize = (packet.bytes > 0)?info.blocksize(packet):-1;
+						if(blockSize > 0)
+						{
+							// The first block only initializes the decoder
+							if(previousBlockSize > 0)
+							{
+								samplePosition += previousBlockSize / 4 + blockSize / 4;
+							}
+							previousBlockSize = blockSize;
+							if(!isSyncPage && ((_count == 0) || (samplePosition - lastSyncPosition >= syncInterval)))
+							{
+								// Decoding starts with this packet, the first output follows the next packet
+								addSyncPoint(samplePosition, offset);
+								lastSyncPosition = samplePosition;
+							}
+							isSyncPage = true;
+						}
+					}
+					packetOffset += segmentLength;
+					isPacketStart = segmentLength < 255;
+					if(isPacketStart)
+					{
+						packetStart = packetOffset;
+					}
+				}
+				offset += pageLength;
+			}
+		}
+		catch (EOFException e)
+		{
+			// End of file
+		}
+		if(headerCount < 3)
+		{
+			return new SeekIndex(file);
+		}
+		
+		// Read the header pages for prepending them to the sync points
+		final byte[] header = new byte[headerLength];
+		final DataInputStream headerStream = new DataInputStream(new FileInputStream(file));
+		try
+		{
+			headerStream.readFully(header);
+		}
+		finally
+		{
+			headerStream.close();
+		}
+		return new SeekIndex(file, SeekIndex.Type.Vorbis, _samplePositions, _byteOffsets, _count, header, 0);
+	}
+}
@@ -0,0 +1,397 @@
+/*
+ * WavPcmStream.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stream for reading uncompressed RIFF/WAVE pcm files directly from the file without the AudioSystem.
+ * The header is parsed once, reading is a plain copy and seeking only computes the byte offset.
+ * Only 8 bit unsigned and 16 bit signed little endian pcm with one or two channels is supported,
+ * other files must be decoded by the JavaSoundDecoderStream.
+ *
+ * @author Parallan
+ *
+ */
+public class WavPcmStream implements IAudioInputStream
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(WavPcmStream.class.getName());
+	
+	/**
+	 * Format tag for integer pcm
+	 */
+	private static final int WAVE_FORMAT_PCM = 0x0001;
+	
+	/**
+	 * Format tag for the extensible format (the sub format is stored in the extension)
+	 */
+	private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+	
+	/**
+	 * Size of the riff header ("RIFF", size, "WAVE")
+	 */
+	private static final int RIFF_HEADER_SIZE = 12;
+	
+	/**
+	 * Size of a chunk header (id, size)
+	 */
+	private static final int CHUNK_HEADER_SIZE = 8;
+	
+	/**
+	 * Minimum size of the fmt chunk
+	 */
+	private static final int FMT_SIZE = 16;
+	
+	/**
+	 * Size of the fmt chunk with the extension of the extensible format
+	 */
+	private static final int FMT_EXTENSIBLE_SIZE = 40;
+	
+	/**
+	 * The file
+	 */
+	private final File _file;
+	
+	/**
+	 * Opened file for reading into arrays
+	 */
+	private final RandomAccessFile _input;
+	
+	/**
+	 * Channel of the file for reading into byte buffers
+	 */
+	private final FileChannel _channel;
+	
+	/**
+	 * Offset of the pcm data in the file
+	 */
+	private final long _dataOffset;
+	
+	/**
+	 * Length of the pcm data in bytes
+	 */
+	private final long _length;
+	
+	/**
+	 * Size of one sample in bytes
+	 */
+	private final int _sampleSize;
+	
+	/**
+	 * Number of channels
+	 */
+	private final int _channels;
+	
+	/**
+	 * Sample rate
+	 */
+	private final int _sampleRate;
+	
+	/**
+	 * Read position in bytes of the pcm data
+	 */
+	private long _position = 0;
+	
+	/**
+	 * Creates a stream for the parsed file
+	 *
+	 * @param file the file
+	 * @param input opened file
+	 * @param dataOffset offset of the pcm data in the file
+	 * @param length length of the pcm data in bytes
+	 * @param sampleSize size of one sample in bytes
+	 * @param channels number of channels
+	 * @param sampleRate sample rate
+	 */
+	private WavPcmStream(final File file, final RandomAccessFile input, final long dataOffset, final long length, final int sampleSize, final int channels, final int sampleRate)
+	{
+		_file = file;
+		_input = input;
+		_channel = input.getChannel();
+		_dataOffset = dataOffset;
+		_length = length;
+		_sampleSize = sampleSize;
+		_channels = channels;
+		_sampleRate = sampleRate;
+	}
+	
+	/**
+	 * Opens the file, if it is a supported RIFF/WAVE pcm file
+	 *
+	 * @param file file to open
+	 * @return stream or null, if the file is no supported pcm file
+	 * @throws IOException if the file could not be read
+	 */
+	public static WavPcmStream open(final File file) throws IOException
+	{
+		final RandomAccessFile input = new RandomAccessFile(file, "r");
+		WavPcmStream stream = null;
+		try
+		{
+			stream = parse(file, input);
+		}
+		finally
+		{
+			if(stream == null)
+			{
+				input.close();
+			}
+		}
+		return stream;
+	}
+	
+	/**
+	 * Parses the header of the file
+	 *
+	 * @param file the file
+	 * @param input opened file
+	 * @return stream or null, if the file is no supported pcm file
+	 * @throws IOException if the file could not be read
+	 */
+	private static WavPcmStream parse(final File file, final RandomAccessFile input) throws IOException
+	{
+		final FileChannel channel = input.getChannel();
+		final long fileSize = channel.size();
+		final ByteBuffer header = ByteBuffer.allocate(FMT_EXTENSIBLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		if(!readFully(channel, header, 0, RIFF_HEADER_SIZE) || (header.getInt(0) != fourCc("RIFF")) || (header.getInt(8) != fourCc("WAVE")))
+		{
+			return null;
+		}
+		int sampleSize = 0;
+		int channels = 0;
+		int sampleRate = 0;
+		long offset = RIFF_HEADER_SIZE;
+		while(readFully(channel, header, offset, CHUNK_HEADER_SIZE))
+		{
+			final int chunkId = header.getInt(0);
+			final long chunkSize = header.getInt(4) & 0xFFFFFFFFL;
+			offset += CHUNK_HEADER_SIZE;
+			if(chunkId == fourCc("fmt "))
+			{
+				if((chunkSize < FMT_SIZE) || !readFully(channel, header, offset, (int) Math.min(chunkSize, FMT_EXTENSIBLE_SIZE)))
+				{
+					return null;
+				}
+				int formatTag = header.getShort(0) & 0xFFFF;
+				if((formatTag == WAVE_FORMAT_EXTENSIBLE) && (chunkSize >= FMT_EXTENSIBLE_SIZE))
+				{
+					// The first two bytes of the sub format guid are the format tag
+					formatTag = header.getShort(24) & 0xFFFF;
+				}
+				channels = header.getShort(2) & 0xFFFF;
+				sampleRate = header.getInt(4);
+				final int blockAlign = header.getShort(12) & 0xFFFF;
+				final int bitsPerSample = header.getShort(14) & 0xFFFF;
+				if((formatTag != WAVE_FORMAT_PCM) || ((bitsPerSample != 8) && (bitsPerSample != 16)) || (channels < 1) || (channels > 2)
+						|| (sampleRate <= 0) || (blockAlign != channels * bitsPerSample / 8))
+				{
+					LOGGER.log(Level.FINE, "unsupported wave format " + formatTag + ", " + bitsPerSample + " bits, " + channels + " channels (" + file + ")");
+					return null;
+				}
+				sampleSize = bitsPerSample / 8;
+			}
+			else if(chunkId == fourCc("data"))
+			{
+				if(sampleSize == 0)
+				{
+					// No fmt chunk before the data
+					return null;
+				}
+				final int frameSize = sampleSize * channels;
+				long length = Math.min(chunkSize, fileSize - offset);
+				length -= length % frameSize;
+				return new WavPcmStream(file, input, offset, length, sampleSize, channels, sampleRate);
+			}
+			// Chunks are padded to an even size
+			offset += chunkSize + (chunkSize & 1);
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads the given number of bytes at the offset into the start of the buffer
+	 *
+	 * @param channel source channel
+	 * @param buffer destination buffer
+	 * @param offset offset in the file
+	 * @param length number of bytes
+	 * @return false, if the end of the file was reached before
+	 * @throws IOException on read error
+	 */
+	private static boolean readFully(final FileChannel channel, final ByteBuffer buffer, final long offset, final int length) throws IOException
+	{
+		buffer.clear();
+		buffer.limit(length);
+		while(buffer.hasRemaining())
+		{
+			if(channel.read(buffer, offset + buffer.position()) < 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the four character code as little endian int
+	 *
+	 * @param id four characters
+	 * @return code
+	 */
+	private static int fourCc(final String id)
+	{
+		return id.charAt(0) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+	}
+	
+	@Override
+	public int read(final byte[] buffer, final int off, final int len) throws IOException
+	{
+		final int size = (int) Math.min(len, _length - _position);
+		if(size <= 0)
+		{
+			return (len == 0)?0:-1;
+		}
+		_input.seek(_dataOffset + _position);
+		final int result = _input.read(buffer, off, size);
+		if(result > 0)
+		{
+			_position += result;
+		}
+		return result;
+	}
+	
+	@Override
+	public int read(final ByteBuffer buffer) throws IOException
+	{
+		final int size = (int) Math.min(buffer.remaining(), _length - _position);
+		if(size <= 0)
+		{
+			return buffer.hasRemaining()?-1:0;
+		}
+		final int limit = buffer.limit();
+		buffer.limit(buffer.position() + size);
+		final int result;
+		try
+		{
+			result = _channel.read(buffer, _dataOffset + _position);
+		}
+		finally
+		{
+			buffer.limit(limit);
+		}
+		if(result > 0)
+		{
+			_position += result;
+		}
+		return result;
+	}
+	
+	@Override
+	public void close()
+	{
+		try
+		{
+			_input.close();
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.SEVERE, e.toString(), e);
+		}
+	}
+	
+	@Override
+	public void releaseBuffers()
+	{
+		// Nothing is read ahead
+	}
+	
+	@Override
+	public long getPosition()
+	{
+		return _position;
+	}
+	
+	@Override
+	public void setPosition(final long position)
+	{
+		final long frameSize = getFrameSize();
+		_position = Math.max(0, Math.min(position, _length)) / frameSize * frameSize;
+	}
+	
+	@Override
+	public long getLength()
+	{
+		return _length;
+	}
+	
+	@Override
+	public int getSampleSize()
+	{
+		return _sampleSize;
+	}
+	
+	@Override
+	public int getFrameSize()
+	{
+		return _sampleSize * _channels;
+	}
+	
+	@Override
+	public int getChannels()
+	{
+		return _channels;
+	}
+	
+	@Override
+	public int getSampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "WAVE";
+	}
+	
+	@Override
+	public String toString()
+	{
+		return _file.toString();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * IAudioOutput.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.output;
+
+import java.nio.ByteBuffer;
+
+import seventhsense.sound.engine.GainRamp;
+
+/**
+ * Audio output interface for one player. Pcm data is queued in chunks, which are played in order.
+ * Played chunks stay in the queue until they are removed by unqueueProcessed.
+ *
+ * @author Parallan
+ *
+ */
+public interface IAudioOutput
+{
+	/**
+	 * Queues a chunk of pcm data. The data is copied from the position to the limit of the buffer.
+	 *
+	 * @param data pcm data (may be direct)
+	 */
+	void queue(ByteBuffer data);
+	
+	/**
+	 * Removes all chunks, which have been played completely, from the queue
+	 *
+	 * @return number of removed chunks
+	 */
+	int unqueueProcessed();
+	
+	/**
+	 * Gets the play offset relative to the first chunk in the queue
+	 *
+	 * @return offset in bytes
+	 */
+	int getPlayOffset();
+	
+	/**
+	 * Returns true, if the output is currently playing. The output stops by itself, when the queue has run out of data.
+	 *
+	 * @return true, if playing
+	 */
+	boolean isRunning();
+	
+	/**
+	 * Starts or resumes playing the queued chunks
+	 */
+	void play();
+	
+	/**
+	 * Pauses playing
+	 */
+	void pause();
+	
+	/**
+	 * Stops playing and removes all chunks from the queue
+	 */
+	void stop();
+	
+	/**
+	 * Sets the gain
+	 *
+	 * @param gain linear gain
+	 */
+	void setGain(float gain);
+	
+	/**
+	 * Gets the gain
+	 *
+	 * @return linear gain
+	 */
+	float getGain();
+	
+	/**
+	 * Starts a gain ramp, which is applied per sample from the next mixed sample on.
+	 * Setting the gain cancels the ramp.
+	 *
+	 * @param ramp gain ramp
+	 * @return true, if the output applies the ramp, false if the caller must update the gain while ramping
+	 */
+	boolean rampGain(GainRamp ramp);
+	
+	/**
+	 * Stops playing and frees all resources of the output. The output cannot be used afterwards.
+	 */
+	void close();
+}
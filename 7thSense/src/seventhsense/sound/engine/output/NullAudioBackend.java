@@ -0,0 +1,248 @@
+/*
+ * NullAudioBackend.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.output;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless backend, which does not need any sound hardware. Its outputs consume the pcm data on a virtual clock
+ * and record statistics. The clock runs in real-time, accelerated by a speed factor or as fast as possible.
+ *
+ * @author Parallan
+ *
+ */
+public final class NullAudioBackend implements IAudioBackend
+{
+	/**
+	 * Speed factor for consuming all queued data immediately
+	 */
+	public static final double UNLIMITED_SPEED = Double.POSITIVE_INFINITY;
+	
+	/**
+	 * Speed factor of the virtual clock (1.0 for real-time)
+	 */
+	private final double _speed;
+	
+	/**
+	 * Number of created outputs
+	 */
+	private final AtomicInteger _createdOutputs = new AtomicInteger();
+	
+	/**
+	 * Number of open outputs
+	 */
+	private final AtomicInteger _openOutputs = new AtomicInteger();
+	
+	/**
+	 * Number of queued chunks
+	 */
+	private final AtomicLong _queuedChunks = new AtomicLong();
+	
+	/**
+	 * Number of queued bytes
+	 */
+	private final AtomicLong _queuedBytes = new AtomicLong();
+	
+	/**
+	 * Number of played bytes
+	 */
+	private final AtomicLong _playedBytes = new AtomicLong();
+	
+	/**
+	 * Number of times a playing output ran out of data
+	 */
+	private final AtomicLong _drainCount = new AtomicLong();
+	
+	/**
+	 * Creates a real-time null backend
+	 */
+	public NullAudioBackend()
+	{
+		this(1.0);
+	}
+	
+	/**
+	 * Creates a null backend
+	 *
+	 * @param speed speed factor of the virtual clock (1.0 for real-time, UNLIMITED_SPEED for as fast as possible)
+	 */
+	public NullAudioBackend(final double speed)
+	{
+		if(!(speed > 0))
+		{
+			throw new IllegalArgumentException("Invalid speed " + speed);
+		}
+		_speed = speed;
+	}
+	
+	@Override
+	public IAudioOutput createOutput(final int channels, final int sampleSize, final int sampleRate)
+	{
+		if((channels <= 0) || (sampleSize <= 0) || (sampleRate <= 0))
+		{
+			throw new IllegalArgumentException("Invalid source stream format");
+		}
+		_createdOutputs.incrementAndGet();
+		_openOutputs.incrementAndGet();
+		return new NullAudioOutput(this, channels * sampleSize, sampleRate);
+	}
+	
+	/**
+	 * Gets the speed factor of the virtual clock
+	 *
+	 * @return speed factor
+	 */
+	public double getSpeed()
+	{
+		return _speed;
+	}
+	
+	/**
+	 * Records a queued chunk
+	 *
+	 * @param size size of the chunk in bytes
+	 */
+	void chunkQueued(final int size)
+	{
+		_queuedChunks.incrementAndGet();
+		_queuedBytes.addAndGet(size);
+	}
+	
+	/**
+	 * Records played data
+	 *
+	 * @param size number of played bytes
+	 */
+	void bytesPlayed(final long size)
+	{
+		_playedBytes.addAndGet(size);
+	}
+	
+	/**
+	 * Records, that a playing output ran out of data
+	 */
+	void drained()
+	{
+		_drainCount.incrementAndGet();
+	}
+	
+	/**
+	 * Records, that an output was closed
+	 */
+	void outputClosed()
+	{
+		_openOutputs.decrementAndGet();
+	}
+	
+	/**
+	 * Gets the number of created outputs
+	 *
+	 * @return number of created outputs
+	 */
+	public int getCreatedOutputCount()
+	{
+		return _createdOutputs.get();
+	}
+	
+	/**
+	 * Gets the number of outputs, which were not closed yet
+	 *
+	 * @return number of open outputs
+	 */
+	public int getOpenOutputCount()
+	{
+		return _openOutputs.get();
+	}
+	
+	/**
+	 * Gets the number of queued chunks
+	 *
+	 * @return number of queued chunks
+	 */
+	public long getQueuedChunkCount()
+	{
+		return _queuedChunks.get();
+	}
+	
+	/**
+	 * Gets the number of queued bytes
+	 *
+	 * @return number of queued bytes
+	 */
+	public long getQueuedByteCount()
+	{
+		return _queuedBytes.get();
+	}
+	
+	/**
+	 * Gets the number of bytes consumed by the virtual clock
+	 *
+	 * @return number of played bytes
+	 */
+	public long getPlayedByteCount()
+	{
+		return _playedBytes.get();
+	}
+	
+	/**
+	 * Gets the number of times a playing output ran out of data. This includes underruns as well as the regular
+	 * end of a stream.
+	 *
+	 * @return number of times outputs ran out of data
+	 */
+	public long getDrainCount()
+	{
+		return _drainCount.get();
+	}
+	
+	/**
+	 * Resets the statistics (except the number of open outputs)
+	 */
+	public void resetStatistics()
+	{
+		_createdOutputs.set(0);
+		_queuedChunks.set(0);
+		_queuedBytes.set(0);
+		_playedBytes.set(0);
+		_drainCount.set(0);
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "Null";
+	}
+	
+	@Override
+	public String toString()
+	{
+		return getName() + " (speed " + _speed + ", outputs " + _openOutputs.get() + "/" + _createdOutputs.get()
+				+ ", queued " + _queuedBytes.get() + " bytes, played " + _playedBytes.get() + " bytes, drained " + _drainCount.get() + " times)";
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * NullAudioOutput.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.output;
+
+import java.nio.ByteBuffer;
+
+import seventhsense.sound.engine.GainRamp;
+
+/**
+ * Output of the null backend. The queued data is discarded, only the sizes of the chunks are kept.
+ * The data is consumed on a virtual clock, which is advanced on each call.
+ *
+ * @author Parallan
+ *
+ */
+final class NullAudioOutput implements IAudioOutput
+{
+	/**
+	 * Backend for statistics
+	 */
+	private final NullAudioBackend _backend;
+	
+	/**
+	 * Bytes per second at real-time
+	 */
+	private final double _byteRate;
+	
+	/**
+	 * Initial capacity of the ring of pending chunk sizes
+	 */
+	private static final int INITIAL_PENDING_CAPACITY = 16;
+	
+	/**
+	 * Ring of the sizes of the queued chunks, which were not played completely (not boxed, so queueing does
+	 * not allocate)
+	 */
+	private int[] _pendingChunks = new int[INITIAL_PENDING_CAPACITY];
+	
+	/**
+	 * Index of the first pending chunk in the ring
+	 */
+	private int _pendingHead = 0;
+	
+	/**
+	 * Number of pending chunks in the ring
+	 */
+	private int _pendingCount = 0;
+	
+	/**
+	 * Number of played chunks, which are still in the queue
+	 */
+	private int _processedCount = 0;
+	
+	/**
+	 * Size of the played chunks, which are still in the queue
+	 */
+	private int _processedBytes = 0;
+	
+	/**
+	 * Played bytes of the first pending chunk
+	 */
+	private int _headOffset = 0;
+	
+	/**
+	 * Fraction of a byte, which was not consumed at the last clock advance
+	 */
+	private double _byteRemainder = 0;
+	
+	/**
+	 * Time of the last clock advance in ns
+	 */
+	private long _lastClockTime = 0;
+	
+	/**
+	 * True, if the virtual clock is running
+	 */
+	private boolean _isRunning = false;
+	
+	/**
+	 * Gain
+	 */
+	private float _gain = 1.0f;
+	
+	/**
+	 * Creates a null output
+	 *
+	 * @param backend backend for statistics
+	 * @param frameSize size of one frame in bytes
+	 * @param sampleRate sample rate
+	 */
+	NullAudioOutput(final NullAudioBackend backend, final int frameSize, final int sampleRate)
+	{
+		_backend = backend;
+		_byteRate = (double) frameSize * sampleRate;
+	}
+	
+	/**
+	 * Advances the virtual clock and consumes the queued data
+	 */
+	private void advanceClock()
+	{
+		if(!_isRunning)
+		{
+			return;
+		}
+		final long now = System.nanoTime();
+		long budget;
+		if(Double.isInfinite(_backend.getSpeed()))
+		{
+			budget = Long.MAX_VALUE;
+		}
+		else
+		{
+			final double exactBudget = (now - _lastClockTime) * 1e-9 * _backend.getSpeed() * _byteRate + _byteRemainder;
+			budget = (long) exactBudget;
+			_byteRemainder = exactBudget - budget;
+		}
+		_lastClockTime = now;
+		
+		long played = 0;
+		while((budget > 0) && (_pendingCount > 0))
+		{
+			final int chunkSize = _pendingChunks[_pendingHead];
+			final int size = (int) Math.min(budget, chunkSize - _headOffset);
+			_headOffset += size;
+			budget -= size;
+			played += size;
+			if(_headOffset >= chunkSize)
+			{
+				_pendingHead = (_pendingHead + 1) % _pendingChunks.length;
+				_pendingCount--;
+				_processedCount++;
+				_processedBytes += chunkSize;
+				_headOffset = 0;
+			}
+		}
+		_backend.bytesPlayed(played);
+		if(_pendingCount == 0)
+		{
+			// Ran out of data, stop like a real output
+			_isRunning = false;
+			_byteRemainder = 0;
+			_backend.drained();
+		}
+	}
+	
+	/**
+	 * Appends a chunk size to the ring, grows the ring if it is full
+	 *
+	 * @param size size of the chunk in bytes
+	 */
+	private void addPendingChunk(final int size)
+	{
+		if(_pendingCount == _pendingChunks.length)
+		{
+			final int[] pendingChunks = new int[_pendingChunks.length * 2];
+			for(int i = 0; i < _pendingCount; i++)
+			{
+				pendingChunks[i] = _pendingChunks[(_pendingHead + i) % _pendingChunks.length];
+			}
+			_pendingChunks = pendingChunks;
+			_pendingHead = 0;
+		}
+		_pendingChunks[(_pendingHead + _pendingCount) % _pendingChunks.length] = size;
+		_pendingCount++;
+	}
+	
+	@Override
+	public void queue(final ByteBuffer data)
+	{
+		advanceClock();
+		final int size = data.remaining();
+		addPendingChunk(size);
+		data.position(data.limit());
+		_backend.chunkQueued(size);
+	}
+	
+	@Override
+	public int unqueueProcessed()
+	{
+		advanceClock();
+		final int processedCount = _processedCount;
+		_processedCount = 0;
+		_processedBytes = 0;
+		return processedCount;
+	}
+	
+	@Override
+	public int getPlayOffset()
+	{
+		advanceClock();
+		return _processedBytes + _headOffset;
+	}
+	
+	@Override
+	public boolean isRunning()
+	{
+		advanceClock();
+		return _isRunning;
+	}
+	
+	@Override
+	public void play()
+	{
+		if(!_isRunning && (_pendingCount > 0))
+		{
+			_isRunning = true;
+			_lastClockTime = System.nanoTime();
+		}
+	}
+	
+	@Override
+	public void pause()
+	{
+		advanceClock();
+		_isRunning = false;
+	}
+	
+	@Override
+	public void stop()
+	{
+		_isRunning = false;
+		_pendingHead = 0;
+		_pendingCount = 0;
+		_processedCount = 0;
+		_processedBytes = 0;
+		_headOffset = 0;
+		_byteRemainder = 0;
+	}
+	
+	@Override
+	public void setGain(final float gain)
+	{
+		_gain = gain;
+	}
+	
+	@Override
+	public float getGain()
+	{
+		return _gain;
+	}
+	
+	@Override
+	public boolean rampGain(final GainRamp ramp)
+	{
+		// Samples are already queued, the gain is updated by the caller
+		return false;
+	}
+	
+	@Override
+	public void close()
+	{
+		stop();
+		_backend.outputClosed();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "NullAudioOutput";
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * OpenAlOutput.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.output;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import seventhsense.sound.engine.AlObjectPool;
+import seventhsense.sound.engine.AlUtil;
+import seventhsense.sound.engine.GainRamp;
+import seventhsense.sound.engine.PlayerMixer;
+
+import com.jogamp.openal.AL;
+
+/**
+ * Output, which queues the chunks as buffers of an OpenAL source.
+ * The source and the buffers are taken from the object pool of the PlayerMixer.
+ *
+ * @author Parallan
+ *
+ */
+final class OpenAlOutput implements IAudioOutput
+{
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = Logger.getLogger(OpenAlOutput.class.getName());
+	
+	/**
+	 * OpenAL instance
+	 */
+	private final AL _al;
+	
+	/**
+	 * Pool for the source and the buffers
+	 */
+	private final AlObjectPool _objectPool;
+	
+	/**
+	 * OpenAL source
+	 */
+	private final int _source;
+	
+	/**
+	 * OpenAL format
+	 */
+	private final int _format;
+	
+	/**
+	 * Sample rate
+	 */
+	private final int _sampleRate;
+	
+	/**
+	 * Name of the output for the leak reports of the object pool
+	 */
+	private final String _name;
+	
+	/**
+	 * Buffer for handle transfers
+	 */
+	private final int[] _intBuffer = new int[1];
+	
+	/**
+	 * Buffer for reading the gain
+	 */
+	private final float[] _floatBuffer = new float[1];
+	
+	/**
+	 * Creates an OpenAL output
+	 *
+	 * @param channels number of channels
+	 * @param sampleSize size of one sample in bytes
+	 * @param sampleRate sample rate
+	 */
+	OpenAlOutput(final int channels, final int sampleSize, final int sampleRate)
+	{
+		if((sampleSize == 1) && (channels == 1))
+		{
+			_format = AL.AL_FORMAT_MONO8;
+			LOGGER.log(Level.FINE, "Mono 8");
+		}
+		else if((sampleSize == 1) && (channels == 2))
+		{
+			_format = AL.AL_FORMAT_STEREO8;
+			LOGGER.log(Level.FINE, "Stereo 8");
+		}
+		else if((sampleSize == 2) && (channels == 1))
+		{
+			_format = AL.AL_FORMAT_MONO16;
+			LOGGER.log(Level.FINE, "Mono 16");
+		}
+		else if((sampleSize == 2) && (channels == 2))
+		{
+			_format = AL.AL_FORMAT_STEREO16;
+			LOGGER.log(Level.FINE, "Stereo 16");
+		}
+		else
+		{
+			throw new IllegalArgumentException("Invalid source stream format");
+		}
+		_sampleRate = sampleRate;
+		_al = PlayerMixer.get().getAl();
+		_objectPool = PlayerMixer.get().getObjectPool();
+		_source = _objectPool.acquireSource("OpenAlOutput");
+		_name = "OpenAlOutput (source " + _source + ")";
+	}
+	
+	@Override
+	public void queue(final ByteBuffer data)
+	{
+		_objectPool.acquireBuffers(_intBuffer, 0, 1, _name);
+		_al.alBufferData(_intBuffer[0], _format, data, data.remaining(), _sampleRate);
+		AlUtil.checkError(_al);
+		_al.alSourceQueueBuffers(_source, 1, _intBuffer, 0);
+		AlUtil.checkError(_al);
+		data.position(data.limit());
+	}
+	
+	@Override
+	public int unqueueProcessed()
+	{
+		_al.alGetSourcei(_source, AL.AL_BUFFERS_PROCESSED, _intBuffer, 0);
+		return unqueue(_intBuffer[0]);
+	}
+	
+	/**
+	 * Removes the given number of buffers from the queue and returns them to the pool
+	 *
+	 * @param count number of buffers
+	 * @return number of buffers
+	 */
+	private int unqueue(final int count)
+	{
+		for(int i = 0; i < count; i++)
+		{
+			_intBuffer[0] = 0;
+			_al.alSourceUnqueueBuffers(_source, 1, _intBuffer, 0);
+			AlUtil.checkError(_al);
+			_objectPool.releaseBuffers(_intBuffer, 0, 1);
+		}
+		return count;
+	}
+	
+	@Override
+	public int getPlayOffset()
+	{
+		_al.alGetSourcei(_source, AL.AL_BYTE_OFFSET, _intBuffer, 0);
+		return _intBuffer[0];
+	}
+	
+	@Override
+	public boolean isRunning()
+	{
+		_al.alGetSourcei(_source, AL.AL_SOURCE_STATE, _intBuffer, 0);
+		return _intBuffer[0] == AL.AL_PLAYING;
+	}
+	
+	@Override
+	public void play()
+	{
+		_al.alSourcePlay(_source);
+		AlUtil.checkError(_al);
+	}
+	
+	@Override
+	public void pause()
+	{
+		_al.alSourcePause(_source);
+	}
+	
+	@Override
+	public void stop()
+	{
+		_al.alSourceStop(_source);
+		AlUtil.checkError(_al);
+		_al.alGetSourcei(_source, AL.AL_BUFFERS_QUEUED, _intBuffer, 0);
+		final int queued = unqueue(_intBuffer[0]);
+		LOGGER.log(Level.FINER, "flush " + queued + " buffers");
+	}
+	
+	@Override
+	public void setGain(final float gain)
+	{
+		_al.alSourcef(_source, AL.AL_GAIN, gain);
+		AlUtil.checkError(_al);
+	}
+	
+	@Override
+	public float getGain()
+	{
+		_al.alGetSourcef(_source, AL.AL_GAIN, _floatBuffer, 0);
+		return _floatBuffer[0];
+	}
+	
+	@Override
+	public boolean rampGain(final GainRamp ramp)
+	{
+		// AL_GAIN applies to the already queued samples, so the ramp cannot be applied per sample while queueing
+		// without delaying it by the queued time. The caller steps the gain in inaudibly small steps instead.
+		return false;
+	}
+	
+	@Override
+	public void close()
+	{
+		stop();
+		_objectPool.releaseSource(_source);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return _name;
+	}
+}
@@ -27,16 +27,19 @@
  */
 package seventhsense.sound.fade;
 
-import java.io.File;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import seventhsense.data.eventlist.EventList;
+import seventhsense.data.fx.ITransition;
+import seventhsense.data.file.FileReference;
 import seventhsense.sound.SoundFactory;
 import seventhsense.sound.engine.IPlayer;
 import seventhsense.sound.engine.ISoundListener;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 import seventhsense.sound.engine.SoundException;
+import seventhsense.sound.engine.SoundListenerList;
+import seventhsense.sound.engine.output.IAudioBackend;
 
 /**
  * This class plays a sound file with fading options
@@ -52,7 +55,12 @@ public class ReplayFadeFile implements IPlayerFade
 	/**
 	 * The source-file
 	 */
-	private final File _file;
+	private final FileReference _file;
+	
+	/**
+	 * Backend for the output
+	 */
+	private final IAudioBackend _audioBackend;
 	
 	/**
 	 * The currently used fade-file
@@ -62,7 +70,7 @@ public class ReplayFadeFile implements IPlayerFade
 	/**
 	 * Listener list
 	 */
-	private final EventList<ISoundListener<IPlayer>> _listeners = new EventList<ISoundListener<IPlayer>>();
+	private final SoundListenerList<ISoundListener<IPlayer>> _listeners = new SoundListenerList<ISoundListener<IPlayer>>();
 	
 	/**
 	 * The listener for events in the playFile
@@ -75,10 +83,23 @@ public class ReplayFadeFile implements IPlayerFade
 	 * @param file base file
 	 * @throws SoundException 
 	 */
-	public ReplayFadeFile(final File file) throws SoundException
+	public ReplayFadeFile(final FileReference file) throws SoundException
+	{
+		this(file, SoundFactory.getAudioBackend());
+	}
+	
+	/**
+	 * Constructor for a fading sound file
+	 * 
+	 * @param file base file
+	 * @param audioBackend backend for the output
+	 * @throws SoundException 
+	 */
+	public ReplayFadeFile(final FileReference file, final IAudioBackend audioBackend) throws SoundException
 	{
 		_file = file;
-		_playFile = new SoundFadeFile(SoundFactory.createPlayer(file));
+		_audioBackend = audioBackend;
+		_playFile = new SoundFadeFile(SoundFactory.createPlayer(file, audioBackend));
 		
 		_playFileListener = new ISoundListener<IPlayer>()
 		{
@@ -88,7 +109,7 @@ public class ReplayFadeFile implements IPlayerFade
 				fireEvent(eventType);
 			}
 		};
-		_playFile.addSoundListener(_playFileListener);
+		updateSubscription();
 	}
 	
 	@Override
@@ -96,6 +117,12 @@ public class ReplayFadeFile implements IPlayerFade
 	{
 		_playFile.setVolume(volume);
 	}
+	
+	@Override
+	public void rampVolume(final double volume, final double duration, final ITransition transition)
+	{
+		_playFile.rampVolume(volume, duration, transition);
+	}
 
 	@Override
 	public void play() throws SoundException
@@ -108,8 +135,8 @@ public class ReplayFadeFile implements IPlayerFade
 			final double lastFadeTime = _playFile.getFadeTime();
 			_playFile.removeSoundListener(_playFileListener);
 			_playFile.close();
-			_playFile = new SoundFadeFile(SoundFactory.createPlayer(_file));
-			_playFile.addSoundListener(_playFileListener);
+			_playFile = new SoundFadeFile(SoundFactory.createPlayer(_file, _audioBackend));
+			updateSubscription();
 			_playFile.setVolume(lastVolume);
 			_playFile.setFadeTime(lastFadeTime);
 		}
@@ -133,6 +160,18 @@ public class ReplayFadeFile implements IPlayerFade
 	{
 		_playFile.resume();
 	}
+	
+	@Override
+	public void cue() throws SoundException
+	{
+		_playFile.cue();
+	}
+	
+	@Override
+	public void setSuccessor(final IPlayer successor, final double overlap)
+	{
+		_playFile.setSuccessor(successor, overlap);
+	}
 
 	@Override
 	public boolean isPlaying()
@@ -180,12 +219,32 @@ public class ReplayFadeFile implements IPlayerFade
 	public void removeSoundListener(final ISoundListener<IPlayer> listener)
 	{
 		_listeners.remove(listener);
+		updateSubscription();
 	}
 
 	@Override
 	public void addSoundListener(final ISoundListener<IPlayer> listener)
 	{
 		_listeners.add(listener);
+		updateSubscription();
+	}
+	
+	@Override
+	public void addSoundListener(final ISoundListener<IPlayer> listener, final SoundEventSubscription subscription)
+	{
+		_listeners.add(listener, subscription);
+		updateSubscription();
+	}
+	
+	/**
+	 * Subscribes the events of the play file, which are required by the listeners
+	 */
+	private void updateSubscription()
+	{
+		if(_playFile != null)
+		{
+			_playFile.addSoundListener(_playFileListener, _listeners.getSubscription());
+		}
 	}
 
 	/**
@@ -194,7 +253,7 @@ public class ReplayFadeFile implements IPlayerFade
 	 */
 	private void fireEvent(final SoundEventType eventType)
 	{
-		for (ISoundListener<IPlayer> listener : _listeners.iterateEvents())
+		for (ISoundListener<IPlayer> listener : _listeners.iterateEvents(eventType))
 		{
 			listener.soundEvent(this, eventType);
 		}
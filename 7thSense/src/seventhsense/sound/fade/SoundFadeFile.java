@@ -30,15 +30,14 @@ package seventhsense.sound.fade;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import seventhsense.data.eventlist.EventList;
-import seventhsense.data.fx.Fx;
-import seventhsense.data.fx.IFxListener;
-import seventhsense.data.fx.IFxSetter;
+import seventhsense.data.fx.ITransition;
 import seventhsense.data.fx.transitions.LinearTransition;
 import seventhsense.sound.engine.IPlayer;
 import seventhsense.sound.engine.ISoundListener;
+import seventhsense.sound.engine.SoundEventSubscription;
 import seventhsense.sound.engine.SoundEventType;
 import seventhsense.sound.engine.SoundException;
+import seventhsense.sound.engine.SoundListenerList;
 
 /**
  * This class plays a sound file with fading options
@@ -57,13 +56,14 @@ public class SoundFadeFile implements IPlayerFade
 	private static final double DEFAULT_FADETIME = 0.25;
 	
 	/**
-	 * The parent file to control
+	 * Curve for fading
 	 */
-	private final IPlayer _file;
+	private static final ITransition FADE_TRANSITION = new LinearTransition();
+	
 	/**
-	 * The fx for fading
+	 * The parent file to control
 	 */
-	private final Fx _volumeFx;
+	private final IPlayer _file;
 	/**
 	 * Stores the full/maximum volume
 	 */
@@ -81,7 +81,12 @@ public class SoundFadeFile implements IPlayerFade
 	/**
 	 * Listener list
 	 */
-	private final EventList<ISoundListener<IPlayer>> _listeners = new EventList<ISoundListener<IPlayer>>();
+	private final SoundListenerList<ISoundListener<IPlayer>> _listeners = new SoundListenerList<ISoundListener<IPlayer>>();
+	
+	/**
+	 * Listener for the file
+	 */
+	private final ISoundListener<IPlayer> _fileListener;
 	
 	/**
 	 * Constructor for a fading sound file
@@ -91,7 +96,7 @@ public class SoundFadeFile implements IPlayerFade
 	public SoundFadeFile(final IPlayer file)
 	{
 		_file = file;
-		_file.addSoundListener(new ISoundListener<IPlayer>()
+		_fileListener = new ISoundListener<IPlayer>()
 		{
 			@Override
 			public void soundEvent(final IPlayer player, final SoundEventType eventType)
@@ -100,48 +105,35 @@ public class SoundFadeFile implements IPlayerFade
 				{
 					fireEvent(eventType);
 				}
-			}
-		});
-		_volumeFx = new Fx(50, new LinearTransition());
-		_volumeFx.addFxSetter(new IFxSetter()
-		{
-			@Override
-			public void setValue(final double value)
-			{
-				if(!_file.isClosed())
+				if(eventType == SoundEventType.VolumeRamped)
 				{
-					_file.setVolume(value);
+					onVolumeRamped();
 				}
 			}
-		});
-		_volumeFx.addListener(new IFxListener()
-		{
-			@Override
-			public void fxStarted()
-			{
-				// Not required
-			}
-			
-			@Override
-			public void fxFinished()
-			{
-				onVolumeFxDone();
-			}
-			
-			@Override
-			public void fxCancelled()
-			{
-				onVolumeFxDone();
-			}
-		});
-		_volumeFx.setValue(0);
+		};
+		updateSubscription();
+		_file.setVolume(0);
 		_fullVolume = file.getVolume();
 	}
 	
+	/**
+	 * Starts fading the volume of the file. The ramp is applied by the player, so no fx thread is needed.
+	 * 
+	 * @param volume target volume
+	 * @param time fade time
+	 */
+	private void fadeVolume(final double volume, final double time)
+	{
+		if(!_file.isClosed())
+		{
+			_file.rampVolume(volume, time, FADE_TRANSITION);
+		}
+	}
+	
 	/**
 	 * Event.
 	 */
-	private void onVolumeFxDone()
+	private void onVolumeRamped()
 	{
 		final FadeState fadeState = _fadeState;
 		_fadeState = FadeState.None;
@@ -152,7 +144,7 @@ public class SoundFadeFile implements IPlayerFade
 		case FadeClosing: _file.close(); break;
 		default:
 		}
-		LOGGER.log(Level.FINE, "volume fx done: " + fadeState);
+		LOGGER.log(Level.FINE, "volume ramp done: " + fadeState);
 	}
 
 	@Override
@@ -162,11 +154,27 @@ public class SoundFadeFile implements IPlayerFade
 		if(_file.isPlaying())
 		{
 			_fadeState = FadeState.FadeVolume;
-			_volumeFx.start(volume, DEFAULT_FADETIME);
+			fadeVolume(volume, DEFAULT_FADETIME);
 		}
 		fireEvent(SoundEventType.Volume);
 		LOGGER.log(Level.FINE, "set volume " + volume);
 	}
+	
+	@Override
+	public void rampVolume(final double volume, final double duration, final ITransition transition)
+	{
+		_fullVolume = volume;
+		if(_file.isPlaying())
+		{
+			_fadeState = FadeState.FadeVolume;
+			if(!_file.isClosed())
+			{
+				_file.rampVolume(volume, duration, transition);
+			}
+		}
+		fireEvent(SoundEventType.Volume);
+		LOGGER.log(Level.FINE, "ramp volume " + volume);
+	}
 
 	@Override
 	public void play() throws SoundException
@@ -174,7 +182,7 @@ public class SoundFadeFile implements IPlayerFade
 		fireEvent(SoundEventType.Starting);
 		_file.play();
 		_fadeState = FadeState.FadePlaying;
-		_volumeFx.start(_fullVolume, _fadeTime);
+		fadeVolume(_fullVolume, _fadeTime);
 		LOGGER.log(Level.FINE, "play");
 	}
 
@@ -183,7 +191,7 @@ public class SoundFadeFile implements IPlayerFade
 	{
 		fireEvent(SoundEventType.Stopping);
 		_fadeState = FadeState.FadeStopping;
-		_volumeFx.start(0, _fadeTime);
+		fadeVolume(0, _fadeTime);
 		LOGGER.log(Level.FINE, "stop");
 	}
 
@@ -192,7 +200,7 @@ public class SoundFadeFile implements IPlayerFade
 	{
 		fireEvent(SoundEventType.Pausing);
 		_fadeState = FadeState.FadePausing;
-		_volumeFx.start(0, DEFAULT_FADETIME);
+		fadeVolume(0, DEFAULT_FADETIME);
 		LOGGER.log(Level.FINE, "pause");
 	}
 
@@ -202,9 +210,27 @@ public class SoundFadeFile implements IPlayerFade
 		fireEvent(SoundEventType.Resuming);
 		_file.resume();
 		_fadeState = FadeState.FadeResuming;
-		_volumeFx.start(_fullVolume, DEFAULT_FADETIME);
+		fadeVolume(_fullVolume, DEFAULT_FADETIME);
 		LOGGER.log(Level.FINE, "resume");
 	}
+	
+	@Override
+	public void cue() throws SoundException
+	{
+		_file.cue();
+		if(_fadeTime <= 0)
+		{
+			// Play the first samples at full volume
+			fadeVolume(_fullVolume, 0);
+		}
+		LOGGER.log(Level.FINE, "cue");
+	}
+	
+	@Override
+	public void setSuccessor(final IPlayer successor, final double overlap)
+	{
+		_file.setSuccessor(successor, overlap);
+	}
 
 	@Override
 	public boolean isPlaying()
@@ -252,12 +278,29 @@ public class SoundFadeFile implements IPlayerFade
 	public void removeSoundListener(final ISoundListener<IPlayer> listener)
 	{
 		_listeners.remove(listener);
+		updateSubscription();
 	}
 
 	@Override
 	public void addSoundListener(final ISoundListener<IPlayer> listener)
 	{
 		_listeners.add(listener);
+		updateSubscription();
+	}
+	
+	@Override
+	public void addSoundListener(final ISoundListener<IPlayer> listener, final SoundEventSubscription subscription)
+	{
+		_listeners.add(listener, subscription);
+		updateSubscription();
+	}
+	
+	/**
+	 * Subscribes the events of the file, which are required by the listeners and for fading
+	 */
+	private void updateSubscription()
+	{
+		_file.addSoundListener(_fileListener, _listeners.getSubscription().with(SoundEventType.VolumeRamped));
 	}
 
 	/**
@@ -266,7 +309,7 @@ public class SoundFadeFile implements IPlayerFade
 	 */
 	private void fireEvent(final SoundEventType eventType)
 	{
-		for (ISoundListener<IPlayer> listener : _listeners.iterateEvents())
+		for (ISoundListener<IPlayer> listener : _listeners.iterateEvents(eventType))
 		{
 			listener.soundEvent(this, eventType);
 		}
@@ -289,7 +332,7 @@ public class SoundFadeFile implements IPlayerFade
 	{
 		fireEvent(SoundEventType.Closing);
 		_fadeState = FadeState.FadeClosing;
-		_volumeFx.start(0, _fadeTime);
+		fadeVolume(0, _fadeTime);
 		LOGGER.log(Level.FINE, "close");
 	}
 }
@@ -0,0 +1,344 @@
+/*
+ * BufferingProfileTest.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import seventhsense.sound.engine.input.MemoryPcmStream;
+import seventhsense.sound.engine.output.IAudioBackend;
+import seventhsense.sound.engine.output.IAudioOutput;
+
+/**
+ * Checks the validation of buffering profiles and the adaptive growth of the queue of an AudioBuffer.
+ * The output is scripted, so underruns happen exactly when the test drains the queue.
+ * Exits with 1, if a check failed.
+ *
+ * @author Parallan
+ *
+ */
+public final class BufferingProfileTest
+{
+	/**
+	 * Sample rate of the test stream
+	 */
+	private static final int SAMPLE_RATE = 44100;
+	
+	/**
+	 * Number of failed checks
+	 */
+	private static int __failures = 0;
+	
+	/**
+	 * Output, which only counts the queued chunks. The chunks are played, when the test drains the output.
+	 */
+	private static final class ScriptedOutput implements IAudioOutput
+	{
+		/**
+		 * Number of queued chunks, which were not played
+		 */
+		private int _pendingCount = 0;
+		
+		/**
+		 * Number of played chunks, which were not unqueued
+		 */
+		private int _processedCount = 0;
+		
+		/**
+		 * True, if playing
+		 */
+		private boolean _isRunning = false;
+		
+		/**
+		 * Gain
+		 */
+		private float _gain = 1.0f;
+		
+		/**
+		 * Plays all queued chunks and stops like a real output, which ran out of data
+		 */
+		public void drain()
+		{
+			_processedCount += _pendingCount;
+			_pendingCount = 0;
+			_isRunning = false;
+		}
+		
+		/**
+		 * Gets the number of chunks in the queue
+		 *
+		 * @return number of queued chunks
+		 */
+		public int getQueuedCount()
+		{
+			return _pendingCount + _processedCount;
+		}
+		
+		@Override
+		public void queue(final ByteBuffer data)
+		{
+			data.position(data.limit());
+			_pendingCount++;
+		}
+		
+		@Override
+		public int unqueueProcessed()
+		{
+			final int processedCount = _processedCount;
+			_processedCount = 0;
+			return processedCount;
+		}
+		
+		@Override
+		public int getPlayOffset()
+		{
+			return 0;
+		}
+		
+		@Override
+		public boolean isRunning()
+		{
+			return _isRunning;
+		}
+		
+		@Override
+		public void play()
+		{
+			_isRunning = _pendingCount > 0;
+		}
+		
+		@Override
+		public void pause()
+		{
+			_isRunning = false;
+		}
+		
+		@Override
+		public void stop()
+		{
+			_isRunning = false;
+			_pendingCount = 0;
+			_processedCount = 0;
+		}
+		
+		@Override
+		public void setGain(final float gain)
+		{
+			_gain = gain;
+		}
+		
+		@Override
+		public float getGain()
+		{
+			return _gain;
+		}
+		
+		@Override
+		public boolean rampGain(final GainRamp ramp)
+		{
+			return false;
+		}
+		
+		@Override
+		public void close()
+		{
+			stop();
+		}
+	}
+	
+	/**
+	 * Backend, which creates one scripted output
+	 */
+	private static final class ScriptedBackend implements IAudioBackend
+	{
+		/**
+		 * The output
+		 */
+		private final ScriptedOutput _output = new ScriptedOutput();
+		
+		@Override
+		public IAudioOutput createOutput(final int channels, final int sampleSize, final int sampleRate)
+		{
+			return _output;
+		}
+		
+		@Override
+		public String getName()
+		{
+			return "Scripted";
+		}
+	}
+	
+	/**
+	 * Utility class
+	 */
+	private BufferingProfileTest()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Records the result of a check
+	 *
+	 * @param name name of the check
+	 * @param isPassed true, if the check passed
+	 */
+	private static void check(final String name, final boolean isPassed)
+	{
+		System.out.println((isPassed?"ok   ":"FAIL ") + name);
+		if(!isPassed)
+		{
+			__failures++;
+		}
+	}
+	
+	/**
+	 * Returns true, if the profile cannot be created
+	 *
+	 * @param bufferCount number of buffers
+	 * @param chunkDuration duration of one buffer
+	 * @param maxBufferCount maximum number of buffers
+	 * @return true, if rejected
+	 */
+	private static boolean isRejected(final int bufferCount, final double chunkDuration, final int maxBufferCount)
+	{
+		try
+		{
+			new BufferingProfile(bufferCount, chunkDuration, maxBufferCount);
+			return false;
+		}
+		catch (IllegalArgumentException e)
+		{
+			return true;
+		}
+	}
+	
+	/**
+	 * Checks the validation of profiles
+	 */
+	private static void testProfiles()
+	{
+		check("rejects a single buffer", isRejected(1, 0.1, 4));
+		check("rejects max below initial count", isRejected(4, 0.1, 3));
+		check("rejects empty chunks", isRejected(4, 0, 4));
+		check("fixed profile is not adaptive", !BufferingProfile.BALANCED.isAdaptive() && (BufferingProfile.BALANCED.getMaxBufferCount() == BufferingProfile.BALANCED.getBufferCount()));
+		check("adaptive profile", BufferingProfile.ADAPTIVE.isAdaptive() && (BufferingProfile.ADAPTIVE.getMaxBufferCount() == 16));
+	}
+	
+	/**
+	 * Plays silence with the given profile, causes underruns and returns the queue length after each refill
+	 *
+	 * @param profile buffering profile
+	 * @param underrunCount number of underruns
+	 * @return queue length initially and after each underrun
+	 * @throws IOException
+	 */
+	private static int[] runUnderruns(final BufferingProfile profile, final int underrunCount) throws IOException
+	{
+		final int frameSize = 4;
+		final int length = (int) (profile.getChunkDuration() * SAMPLE_RATE) * frameSize * profile.getMaxBufferCount() * (underrunCount + 2);
+		final ScriptedBackend backend = new ScriptedBackend();
+		final AudioBuffer buffer = new AudioBuffer(new MemoryPcmStream(new byte[length], length, 2, 2, SAMPLE_RATE, "PCM", "silence"), false, profile, backend);
+		final int[] queueLengths = new int[underrunCount + 1];
+		try
+		{
+			buffer.play();
+			queueLengths[0] = backend._output.getQueuedCount();
+			for(int i = 1; i <= underrunCount; i++)
+			{
+				backend._output.drain();
+				// Refills and detects the underrun
+				buffer.update();
+				// Refills the grown queue
+				buffer.update();
+				queueLengths[i] = backend._output.getQueuedCount();
+			}
+		}
+		finally
+		{
+			buffer.close();
+		}
+		return queueLengths;
+	}
+	
+	/**
+	 * Checks, that an adaptive queue grows by one buffer per underrun up to the maximum
+	 *
+	 * @throws IOException
+	 */
+	private static void testAdaptiveGrowth() throws IOException
+	{
+		final BufferingProfile profile = new BufferingProfile(4, 0.01, 8);
+		final long underrunsBefore = AudioMetrics.get().getUnderrunCount();
+		final int[] queueLengths = runUnderruns(profile, 6);
+		check("underruns are counted", AudioMetrics.get().getUnderrunCount() - underrunsBefore == 6);
+		check("starts with the initial count", queueLengths[0] == 4);
+		boolean isGrowing = true;
+		for(int i = 1; i <= 4; i++)
+		{
+			isGrowing &= queueLengths[i] == 4 + i;
+		}
+		check("grows by one buffer per underrun", isGrowing);
+		check("stops at the maximum", (queueLengths[5] == 8) && (queueLengths[6] == 8));
+	}
+	
+	/**
+	 * Checks, that a fixed queue keeps its length after underruns
+	 *
+	 * @throws IOException
+	 */
+	private static void testFixedProfile() throws IOException
+	{
+		final int[] queueLengths = runUnderruns(new BufferingProfile(3, 0.01), 3);
+		boolean isFixed = true;
+		for(int queueLength : queueLengths)
+		{
+			isFixed &= queueLength == 3;
+		}
+		check("fixed queue does not grow", isFixed);
+	}
+	
+	/**
+	 * Runs the checks
+	 *
+	 * @param args not used
+	 * @throws IOException
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		testProfiles();
+		testAdaptiveGrowth();
+		testFixedProfile();
+		if(__failures > 0)
+		{
+			System.out.println(__failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("All checks passed");
+	}
+}
@@ -0,0 +1,498 @@
+/*
+ * SeekIndexScannerTest.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.jcraft.jogg.Buffer;
+
+/**
+ * Checks the sync points found by the SeekIndexScanner in synthesized MP3 and Ogg Vorbis files.
+ * The frames and pages carry their number in the payload, so the byte offset of a sync point
+ * can be checked by opening the index at it. Exits with 1, if a check failed.
+ *
+ * @author Parallan
+ *
+ */
+public final class SeekIndexScannerTest
+{
+	/**
+	 * Size of the synthesized MP3 frames (MPEG 1 Layer III, 128 kbit/s, 44100 Hz)
+	 */
+	private static final int MPEG_FRAME_LENGTH = 417;
+	
+	/**
+	 * Samples per MP3 frame
+	 */
+	private static final int MPEG_FRAME_SAMPLES = 1152;
+	
+	/**
+	 * Size of the ID3v2 tag in front of the MP3 frames
+	 */
+	private static final int ID3_LENGTH = 100;
+	
+	/**
+	 * Size of a long Vorbis block
+	 */
+	private static final int VORBIS_LONG_BLOCK = 2048;
+	
+	/**
+	 * Number of audio packets per Ogg page
+	 */
+	private static final int VORBIS_PACKETS_PER_PAGE = 4;
+	
+	/**
+	 * Number of failed checks
+	 */
+	private static int __failures = 0;
+	
+	/**
+	 * Utility class
+	 */
+	private SeekIndexScannerTest()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Records the result of a check
+	 *
+	 * @param name name of the check
+	 * @param isPassed true, if the check passed
+	 */
+	private static void check(final String name, final boolean isPassed)
+	{
+		System.out.println((isPassed?"ok   ":"FAIL ") + name);
+		if(!isPassed)
+		{
+			__failures++;
+		}
+	}
+	
+	/**
+	 * Writes the data to a temporary file
+	 *
+	 * @param data file content
+	 * @param suffix file suffix
+	 * @return file (deleted on exit)
+	 * @throws IOException
+	 */
+	private static File writeFile(final byte[] data, final String suffix) throws IOException
+	{
+		final File file = File.createTempFile("seekindex", suffix);
+		file.deleteOnExit();
+		final FileOutputStream stream = new FileOutputStream(file);
+		try
+		{
+			stream.write(data);
+		}
+		finally
+		{
+			stream.close();
+		}
+		return file;
+	}
+	
+	/**
+	 * Gets the sample positions of all sync points
+	 *
+	 * @param seekIndex index
+	 * @return sample positions
+	 */
+	private static long[] getSamplePositions(final SeekIndex seekIndex)
+	{
+		final long[] samplePositions = new long[seekIndex.getCount()];
+		for(int i = 0; i < samplePositions.length; i++)
+		{
+			samplePositions[i] = seekIndex.getSamplePosition(i);
+		}
+		return samplePositions;
+	}
+	
+	/**
+	 * Opens the index at each sync point and reads the number, which is stored at the given offset of the
+	 * frame or page
+	 *
+	 * @param seekIndex index
+	 * @param file indexed file
+	 * @param skip number of bytes before the frame or page (stream headers)
+	 * @param numberOffset offset of the number in the frame or page
+	 * @return numbers of the frames or pages at the sync points
+	 * @throws IOException
+	 */
+	private static int[] readSyncNumbers(final SeekIndex seekIndex, final File file, final int skip, final int numberOffset) throws IOException
+	{
+		final int[] numbers = new int[seekIndex.getCount()];
+		for(int i = 0; i < numbers.length; i++)
+		{
+			final InputStream stream = seekIndex.openStream(file, i);
+			try
+			{
+				final DataInputStream dataStream = new DataInputStream(stream);
+				dataStream.readFully(new byte[skip + numberOffset]);
+				numbers[i] = dataStream.readInt();
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+		return numbers;
+	}
+	
+	/**
+	 * Creates an MP3 file with an ID3v2 tag, the given number of frames and an ID3v1 tag. The frame number
+	 * is stored behind the side info.
+	 *
+	 * @param mainDataBegins main data begin of each frame (offset of the frame data in the bit reservoir)
+	 * @return file content
+	 */
+	private static byte[] createMpeg(final int[] mainDataBegins)
+	{
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final byte[] tag = new byte[ID3_LENGTH];
+		tag[0] = 'I';
+		tag[1] = 'D';
+		tag[2] = '3';
+		tag[3] = 4;
+		tag[9] = ID3_LENGTH - 10;
+		data.write(tag, 0, tag.length);
+		for(int i = 0; i < mainDataBegins.length; i++)
+		{
+			final byte[] frame = new byte[MPEG_FRAME_LENGTH];
+			// Sync, MPEG 1, Layer III, no CRC, 128 kbit/s, 44100 Hz, no padding, stereo
+			frame[0] = (byte) 0xFF;
+			frame[1] = (byte) 0xFB;
+			frame[2] = (byte) 0x90;
+			frame[3] = 0x00;
+			// 9 bit main data begin
+			frame[4] = (byte) (mainDataBegins[i] >>> 1);
+			frame[5] = (byte) ((mainDataBegins[i] & 1) << 7);
+			frame[6] = (byte) (i >>> 24);
+			frame[7] = (byte) (i >>> 16);
+			frame[8] = (byte) (i >>> 8);
+			frame[9] = (byte) i;
+			data.write(frame, 0, frame.length);
+		}
+		final byte[] trailer = new byte[128];
+		trailer[0] = 'T';
+		trailer[1] = 'A';
+		trailer[2] = 'G';
+		data.write(trailer, 0, trailer.length);
+		return data.toByteArray();
+	}
+	
+	/**
+	 * Checks the sync points of an MP3 file. Frame 20 and 21 need data from before frame 20, so decoding
+	 * from frame 20 only produces samples from frame 22 on.
+	 *
+	 * @throws IOException
+	 */
+	private static void testMpeg() throws IOException
+	{
+		final int[] mainDataBegins = new int[100];
+		mainDataBegins[20] = 500;
+		mainDataBegins[21] = 400;
+		final File file = writeFile(createMpeg(mainDataBegins), ".mp3");
+		final SeekIndex seekIndex = SeekIndexScanner.scan(file);
+		check("mpeg: type", seekIndex.getType() == SeekIndex.Type.Mpeg);
+		check("mpeg: sample positions " + Arrays.toString(getSamplePositions(seekIndex)),
+				Arrays.equals(getSamplePositions(seekIndex), new long[] {0, 22 * MPEG_FRAME_SAMPLES, 42 * MPEG_FRAME_SAMPLES, 62 * MPEG_FRAME_SAMPLES, 82 * MPEG_FRAME_SAMPLES}));
+		check("mpeg: byte offsets", Arrays.equals(readSyncNumbers(seekIndex, file, 0, 6), new int[] {0, 20, 42, 62, 82}));
+		check("mpeg: find before the lead-in", seekIndex.find(MPEG_FRAME_SAMPLES - 1) == -1);
+		check("mpeg: find at the lead-in", seekIndex.find(MPEG_FRAME_SAMPLES) == 0);
+		check("mpeg: find before the reservoir sync point", seekIndex.find(23 * MPEG_FRAME_SAMPLES - 1) == 0);
+		check("mpeg: find at the reservoir sync point", seekIndex.find(23 * MPEG_FRAME_SAMPLES) == 1);
+		check("mpeg: find behind the last sync point", seekIndex.find(100 * MPEG_FRAME_SAMPLES) == 4);
+	}
+	
+	/**
+	 * Writes an Ogg page
+	 *
+	 * @param data target
+	 * @param flags header type flags
+	 * @param sequence page sequence number
+	 * @param packets packets, which are completed on this page
+	 */
+	private static void writePage(final ByteArrayOutputStream data, final int flags, final int sequence, final byte[]... packets)
+	{
+		final ByteArrayOutputStream lacing = new ByteArrayOutputStream();
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for(byte[] packet : packets)
+		{
+			for(int i = 0; i < packet.length / 255; i++)
+			{
+				lacing.write(255);
+			}
+			lacing.write(packet.length % 255);
+			body.write(packet, 0, packet.length);
+		}
+		final byte[] header = new byte[27];
+		header[0] = 'O';
+		header[1] = 'g';
+		header[2] = 'g';
+		header[3] = 'S';
+		header[5] = (byte) flags;
+		header[14] = 0x2A;
+		header[18] = (byte) sequence;
+		header[19] = (byte) (sequence >>> 8);
+		header[26] = (byte) lacing.size();
+		data.write(header, 0, header.length);
+		data.write(lacing.toByteArray(), 0, lacing.size());
+		data.write(body.toByteArray(), 0, body.size());
+	}
+	
+	/**
+	 * Packs the header packet type and "vorbis"
+	 *
+	 * @param buffer target
+	 * @param type packet type
+	 */
+	private static void packHeaderType(final Buffer buffer, final int type)
+	{
+		buffer.write(type, 8);
+		for(char c : "vorbis".toCharArray())
+		{
+			buffer.write(c, 8);
+		}
+	}
+	
+	/**
+	 * Gets the packed bytes of the buffer
+	 *
+	 * @param buffer buffer
+	 * @return packed bytes
+	 */
+	private static byte[] getBytes(final Buffer buffer)
+	{
+		return Arrays.copyOf(buffer.buffer(), buffer.bytes());
+	}
+	
+	/**
+	 * Creates the identification header (mono, 44100 Hz, blocks of 256 and 2048 samples)
+	 *
+	 * @return packet
+	 */
+	private static byte[] createVorbisIdentification()
+	{
+		final Buffer buffer = new Buffer();
+		buffer.writeinit();
+		packHeaderType(buffer, 1);
+		buffer.write(0, 32);
+		buffer.write(1, 8);
+		buffer.write(44100, 32);
+		buffer.write(0, 32);
+		buffer.write(0, 32);
+		buffer.write(0, 32);
+		buffer.write(8, 4);
+		buffer.write(11, 4);
+		buffer.write(1, 1);
+		return getBytes(buffer);
+	}
+	
+	/**
+	 * Creates an empty comment header
+	 *
+	 * @return packet
+	 */
+	private static byte[] createVorbisComment()
+	{
+		final Buffer buffer = new Buffer();
+		buffer.writeinit();
+		packHeaderType(buffer, 3);
+		buffer.write(4, 32);
+		for(char c : "test".toCharArray())
+		{
+			buffer.write(c, 8);
+		}
+		buffer.write(0, 32);
+		buffer.write(1, 1);
+		return getBytes(buffer);
+	}
+	
+	/**
+	 * Creates a minimal setup header: One codebook, floor, residue and mapping and two modes for short
+	 * and long blocks
+	 *
+	 * @return packet
+	 */
+	private static byte[] createVorbisSetup()
+	{
+		final Buffer buffer = new Buffer();
+		buffer.writeinit();
+		packHeaderType(buffer, 5);
+		// Codebook with two entries of length 1
+		buffer.write(0, 8);
+		buffer.write(0x564342, 24);
+		buffer.write(1, 16);
+		buffer.write(2, 24);
+		buffer.write(0, 1);
+		buffer.write(0, 1);
+		buffer.write(0, 5);
+		buffer.write(0, 5);
+		buffer.write(0, 4);
+		// Time domain transform
+		buffer.write(0, 6);
+		buffer.write(0, 16);
+		// Floor 1 without partitions
+		buffer.write(0, 6);
+		buffer.write(1, 16);
+		buffer.write(0, 5);
+		buffer.write(0, 2);
+		buffer.write(1, 4);
+		// Residue 0 with one partition
+		buffer.write(0, 6);
+		buffer.write(0, 16);
+		buffer.write(0, 24);
+		buffer.write(0, 24);
+		buffer.write(0, 24);
+		buffer.write(0, 6);
+		buffer.write(0, 8);
+		buffer.write(0, 3);
+		buffer.write(0, 1);
+		// Mapping 0 with one submap
+		buffer.write(0, 6);
+		buffer.write(0, 16);
+		buffer.write(0, 1);
+		buffer.write(0, 1);
+		buffer.write(0, 2);
+		buffer.write(0, 8);
+		buffer.write(0, 8);
+		buffer.write(0, 8);
+		// Short and long mode
+		buffer.write(1, 6);
+		for(int blockFlag = 0; blockFlag < 2; blockFlag++)
+		{
+			buffer.write(blockFlag, 1);
+			buffer.write(0, 16);
+			buffer.write(0, 16);
+			buffer.write(0, 8);
+		}
+		buffer.write(1, 1);
+		return getBytes(buffer);
+	}
+	
+	/**
+	 * Creates an Ogg Vorbis file with the given number of pages of long audio packets. Each packet stores
+	 * the page number.
+	 *
+	 * @param pageCount number of audio pages
+	 * @param headerData receives the header pages
+	 * @return file content
+	 */
+	private static byte[] createVorbis(final int pageCount, final ByteArrayOutputStream headerData)
+	{
+		writePage(headerData, 2, 0, createVorbisIdentification());
+		writePage(headerData, 0, 1, createVorbisComment(), createVorbisSetup());
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(headerData.toByteArray(), 0, headerData.size());
+		for(int page = 0; page < pageCount; page++)
+		{
+			final byte[][] packets = new byte[VORBIS_PACKETS_PER_PAGE][];
+			for(int i = 0; i < packets.length; i++)
+			{
+				// Audio packet in the long mode
+				packets[i] = new byte[] {0x02, (byte) (page >>> 24), (byte) (page >>> 16), (byte) (page >>> 8), (byte) page};
+			}
+			writePage(data, (page == pageCount - 1)?4:0, page + 2, packets);
+		}
+		return data.toByteArray();
+	}
+	
+	/**
+	 * Checks the sync points of an Ogg Vorbis file. Each long packet after the first adds half a long block,
+	 * a sync point is at the first page at least half a second after the previous one.
+	 *
+	 * @throws IOException
+	 */
+	private static void testVorbis() throws IOException
+	{
+		final ByteArrayOutputStream headerData = new ByteArrayOutputStream();
+		final File file = writeFile(createVorbis(20, headerData), ".ogg");
+		final SeekIndex seekIndex = SeekIndexScanner.scan(file);
+		check("vorbis: type", seekIndex.getType() == SeekIndex.Type.Vorbis);
+		final long pageSamples = VORBIS_PACKETS_PER_PAGE * VORBIS_LONG_BLOCK / 2;
+		check("vorbis: sample positions " + Arrays.toString(getSamplePositions(seekIndex)),
+				Arrays.equals(getSamplePositions(seekIndex), new long[] {0, 6 * pageSamples, 12 * pageSamples, 18 * pageSamples}));
+		// Page header (28 bytes with one lacing value per packet), first packet type byte
+		final int numberOffset = 27 + VORBIS_PACKETS_PER_PAGE + 1;
+		check("vorbis: byte offsets", Arrays.equals(readSyncNumbers(seekIndex, file, headerData.size(), numberOffset), new int[] {0, 6, 12, 18}));
+		final InputStream stream = seekIndex.openStream(file, 2);
+		try
+		{
+			final byte[] header = new byte[headerData.size()];
+			new DataInputStream(stream).readFully(header);
+			check("vorbis: stream headers are prepended", Arrays.equals(header, headerData.toByteArray()));
+		}
+		finally
+		{
+			stream.close();
+		}
+		check("vorbis: find", (seekIndex.find(6 * pageSamples - 1) == 0) && (seekIndex.find(6 * pageSamples) == 1));
+	}
+	
+	/**
+	 * Checks, that other files are not indexed
+	 *
+	 * @throws IOException
+	 */
+	private static void testUnknown() throws IOException
+	{
+		final SeekIndex textIndex = SeekIndexScanner.scan(writeFile("RIFF....WAVEfmt ".getBytes("US-ASCII"), ".wav"));
+		check("other: no type", (textIndex.getType() == null) && (textIndex.getCount() == 0));
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		writePage(data, 2, 0, "OpusHead".getBytes("US-ASCII"));
+		final SeekIndex oggIndex = SeekIndexScanner.scan(writeFile(data.toByteArray(), ".ogg"));
+		check("other: ogg without vorbis", (oggIndex.getType() == null) && (oggIndex.getCount() == 0));
+	}
+	
+	/**
+	 * Runs the checks
+	 *
+	 * @param args not used
+	 * @throws IOException
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		testMpeg();
+		testVorbis();
+		testUnknown();
+		if(__failures > 0)
+		{
+			System.out.println(__failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("All checks passed");
+	}
+}
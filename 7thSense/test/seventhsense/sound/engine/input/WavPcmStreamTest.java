@@ -0,0 +1,441 @@
+/*
+ * WavPcmStreamTest.java
+ * 
+ * Copyright (c) 2011 L.Voegtle, J. Moeller. All rights reserved.
+ * 
+ * This file is part of 7th Sense (
+ * <a href="http://code.google.com/p/7thsense">
+ * http://code.google.com/p/7thsense</a>) and therefore released
+ * under the LGPL license:
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ * 
+ * For more information check <a href="http://www.gnu.org/licenses/lgpl.html">http://www.gnu.org/licenses/lgpl.html</a>
+ */
+package seventhsense.sound.engine.input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Checks the header parsing and the seek offsets of the WavPcmStream with synthesized RIFF/WAVE files.
+ * The pcm data is a byte pattern, so every read can be compared with the written data. Exits with 1, if
+ * a check failed.
+ *
+ * @author Parallan
+ *
+ */
+public final class WavPcmStreamTest
+{
+	/**
+	 * Format tag for integer pcm
+	 */
+	private static final int WAVE_FORMAT_PCM = 0x0001;
+	
+	/**
+	 * Format tag for float pcm
+	 */
+	private static final int WAVE_FORMAT_IEEE_FLOAT = 0x0003;
+	
+	/**
+	 * Format tag for the extensible format
+	 */
+	private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+	
+	/**
+	 * Sample rate of the test files
+	 */
+	private static final int SAMPLE_RATE = 22050;
+	
+	/**
+	 * Number of failed checks
+	 */
+	private static int __failures = 0;
+	
+	/**
+	 * Utility class
+	 */
+	private WavPcmStreamTest()
+	{
+		// Nothing to do
+	}
+	
+	/**
+	 * Records the result of a check
+	 *
+	 * @param name name of the check
+	 * @param isPassed true, if the check passed
+	 */
+	private static void check(final String name, final boolean isPassed)
+	{
+		System.out.println((isPassed?"ok   ":"FAIL ") + name);
+		if(!isPassed)
+		{
+			__failures++;
+		}
+	}
+	
+	/**
+	 * Writes the data to a temporary file
+	 *
+	 * @param data file content
+	 * @return file (deleted on exit)
+	 * @throws IOException
+	 */
+	private static File writeFile(final byte[] data) throws IOException
+	{
+		final File file = File.createTempFile("wavpcm", ".wav");
+		file.deleteOnExit();
+		final FileOutputStream stream = new FileOutputStream(file);
+		try
+		{
+			stream.write(data);
+		}
+		finally
+		{
+			stream.close();
+		}
+		return file;
+	}
+	
+	/**
+	 * Creates the pcm data pattern
+	 *
+	 * @param length number of bytes
+	 * @return data
+	 */
+	private static byte[] createData(final int length)
+	{
+		final byte[] data = new byte[length];
+		for(int i = 0; i < length; i++)
+		{
+			data[i] = (byte) (i * 7 + 3);
+		}
+		return data;
+	}
+	
+	/**
+	 * Writes a chunk header
+	 *
+	 * @param output destination
+	 * @param id chunk id
+	 * @param size chunk size
+	 */
+	private static void writeChunkHeader(final ByteArrayOutputStream output, final String id, final long size)
+	{
+		final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		for(int i = 0; i < 4; i++)
+		{
+			header.put((byte) id.charAt(i));
+		}
+		header.putInt((int) size);
+		output.write(header.array(), 0, 8);
+	}
+	
+	/**
+	 * Creates the content of a fmt chunk
+	 *
+	 * @param formatTag format tag (for the extensible format, the sub format is pcm)
+	 * @param subFormatTag format tag of the sub format of the extensible format
+	 * @param channels number of channels
+	 * @param bitsPerSample bits per sample
+	 * @return content of the chunk
+	 */
+	private static byte[] createFormat(final int formatTag, final int subFormatTag, final int channels, final int bitsPerSample)
+	{
+		final boolean isExtensible = formatTag == WAVE_FORMAT_EXTENSIBLE;
+		final ByteBuffer format = ByteBuffer.allocate(isExtensible?40:16).order(ByteOrder.LITTLE_ENDIAN);
+		final int blockAlign = channels * bitsPerSample / 8;
+		format.putShort((short) formatTag);
+		format.putShort((short) channels);
+		format.putInt(SAMPLE_RATE);
+		format.putInt(SAMPLE_RATE * blockAlign);
+		format.putShort((short) blockAlign);
+		format.putShort((short) bitsPerSample);
+		if(isExtensible)
+		{
+			// Extension size, valid bits, channel mask and the sub format guid
+			format.putShort((short) 22);
+			format.putShort((short) bitsPerSample);
+			format.putInt(0);
+			format.putShort((short) subFormatTag);
+		}
+		return format.array();
+	}
+	
+	/**
+	 * Creates a wave file
+	 *
+	 * @param format content of the fmt chunk or null for no fmt chunk
+	 * @param extraChunk content of an additional chunk before the data (may have an odd size) or null
+	 * @param data pcm data
+	 * @param dataChunkSize size of the data chunk written to the header
+	 * @return file content
+	 */
+	private static byte[] createWave(final byte[] format, final byte[] extraChunk, final byte[] data, final long dataChunkSize)
+	{
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writeChunkHeader(output, "RIFF", 0);
+		output.write('W');
+		output.write('A');
+		output.write('V');
+		output.write('E');
+		if(format != null)
+		{
+			writeChunkHeader(output, "fmt ", format.length);
+			output.write(format, 0, format.length);
+		}
+		if(extraChunk != null)
+		{
+			writeChunkHeader(output, "LIST", extraChunk.length);
+			output.write(extraChunk, 0, extraChunk.length);
+			if((extraChunk.length & 1) != 0)
+			{
+				output.write(0);
+			}
+		}
+		writeChunkHeader(output, "data", dataChunkSize);
+		output.write(data, 0, data.length);
+		final byte[] content = output.toByteArray();
+		ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putInt(4, content.length - 8);
+		return content;
+	}
+	
+	/**
+	 * Opens a synthesized wave file
+	 *
+	 * @param content file content
+	 * @return stream or null, if not supported
+	 * @throws IOException
+	 */
+	private static WavPcmStream open(final byte[] content) throws IOException
+	{
+		return WavPcmStream.open(writeFile(content));
+	}
+	
+	/**
+	 * Reads the stream to the end
+	 *
+	 * @param stream stream
+	 * @param isByteBuffer true, if read into a direct byte buffer instead of an array
+	 * @return read data
+	 * @throws IOException
+	 */
+	private static byte[] readAll(final IAudioInputStream stream, final boolean isByteBuffer) throws IOException
+	{
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] array = new byte[333];
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(333);
+		while(true)
+		{
+			if(isByteBuffer)
+			{
+				buffer.clear();
+				if(stream.read(buffer) < 0)
+				{
+					break;
+				}
+				buffer.flip();
+				final int size = buffer.remaining();
+				buffer.get(array, 0, size);
+				output.write(array, 0, size);
+			}
+			else
+			{
+				final int size = stream.read(array, 0, array.length);
+				if(size < 0)
+				{
+					break;
+				}
+				output.write(array, 0, size);
+			}
+		}
+		return output.toByteArray();
+	}
+	
+	/**
+	 * Returns true, if the bytes read at the current position equal the data at the offset
+	 *
+	 * @param stream stream
+	 * @param data written pcm data
+	 * @param offset expected offset in the data
+	 * @return true, if equal
+	 * @throws IOException
+	 */
+	private static boolean readsAt(final IAudioInputStream stream, final byte[] data, final int offset) throws IOException
+	{
+		final byte[] read = new byte[8];
+		return (stream.read(read, 0, read.length) == read.length) && Arrays.equals(read, Arrays.copyOfRange(data, offset, offset + read.length));
+	}
+	
+	/**
+	 * Checks a 16 bit stereo file
+	 *
+	 * @throws IOException
+	 */
+	private static void testStereo16() throws IOException
+	{
+		final byte[] data = createData(4000);
+		final WavPcmStream stream = open(createWave(createFormat(WAVE_FORMAT_PCM, 0, 2, 16), null, data, data.length));
+		try
+		{
+			check("16 bit stereo: opened", stream != null);
+			check("16 bit stereo: format", (stream.getChannels() == 2) && (stream.getSampleSize() == 2) && (stream.getFrameSize() == 4) && (stream.getSampleRate() == SAMPLE_RATE));
+			check("16 bit stereo: length", stream.getLength() == data.length);
+			check("16 bit stereo: array read", Arrays.equals(readAll(stream, false), data));
+			check("16 bit stereo: end of stream", (stream.read(new byte[4], 0, 4) == -1) && (stream.getPosition() == data.length));
+			stream.setPosition(0);
+			check("16 bit stereo: buffer read", Arrays.equals(readAll(stream, true), data));
+			stream.setPosition(1002);
+			check("16 bit stereo: seek aligns to frames", stream.getPosition() == 1000);
+			check("16 bit stereo: seek offset", readsAt(stream, data, 1000) && (stream.getPosition() == 1008));
+			stream.setPosition(2400);
+			final ByteBuffer buffer = ByteBuffer.allocate(8);
+			stream.read(buffer);
+			check("16 bit stereo: buffer seek offset", Arrays.equals(buffer.array(), Arrays.copyOfRange(data, 2400, 2408)));
+			stream.setPosition(-4);
+			check("16 bit stereo: seek before start", stream.getPosition() == 0);
+			stream.setPosition(data.length + 100);
+			check("16 bit stereo: seek after end", stream.getPosition() == data.length);
+		}
+		finally
+		{
+			if(stream != null)
+			{
+				stream.close();
+			}
+		}
+	}
+	
+	/**
+	 * Checks an 8 bit mono file
+	 *
+	 * @throws IOException
+	 */
+	private static void testMono8() throws IOException
+	{
+		final byte[] data = createData(999);
+		final WavPcmStream stream = open(createWave(createFormat(WAVE_FORMAT_PCM, 0, 1, 8), null, data, data.length));
+		try
+		{
+			check("8 bit mono: opened", stream != null);
+			check("8 bit mono: format", (stream.getChannels() == 1) && (stream.getSampleSize() == 1) && (stream.getFrameSize() == 1));
+			check("8 bit mono: length", stream.getLength() == data.length);
+			stream.setPosition(777);
+			check("8 bit mono: seek offset", (stream.getPosition() == 777) && readsAt(stream, data, 777));
+		}
+		finally
+		{
+			if(stream != null)
+			{
+				stream.close();
+			}
+		}
+	}
+	
+	/**
+	 * Checks the extensible format and a padded chunk before the data
+	 *
+	 * @throws IOException
+	 */
+	private static void testChunks() throws IOException
+	{
+		final byte[] data = createData(2000);
+		WavPcmStream stream = open(createWave(createFormat(WAVE_FORMAT_EXTENSIBLE, WAVE_FORMAT_PCM, 1, 16), null, data, data.length));
+		try
+		{
+			check("extensible: opened", stream != null);
+			check("extensible: format and data", (stream.getChannels() == 1) && (stream.getSampleSize() == 2) && Arrays.equals(readAll(stream, false), data));
+		}
+		finally
+		{
+			if(stream != null)
+			{
+				stream.close();
+			}
+		}
+		stream = open(createWave(createFormat(WAVE_FORMAT_PCM, 0, 2, 16), new byte[] { 'a', 'b', 'c' }, data, data.length));
+		try
+		{
+			check("odd chunk: opened", stream != null);
+			check("odd chunk: data offset", (stream.getLength() == data.length) && readsAt(stream, data, 0));
+			stream.setPosition(1992);
+			check("odd chunk: seek offset", readsAt(stream, data, 1992));
+		}
+		finally
+		{
+			if(stream != null)
+			{
+				stream.close();
+			}
+		}
+		// The data chunk claims more data than the file has and the rest is no full frame
+		final byte[] truncated = createData(1003);
+		stream = open(createWave(createFormat(WAVE_FORMAT_PCM, 0, 2, 16), null, truncated, 4000));
+		try
+		{
+			check("truncated: length is cut to full frames", (stream != null) && (stream.getLength() == 1000));
+		}
+		finally
+		{
+			if(stream != null)
+			{
+				stream.close();
+			}
+		}
+	}
+	
+	/**
+	 * Checks, that unsupported files are not opened
+	 *
+	 * @throws IOException
+	 */
+	private static void testUnsupported() throws IOException
+	{
+		final byte[] data = createData(1200);
+		check("24 bit is not supported", open(createWave(createFormat(WAVE_FORMAT_PCM, 0, 2, 24), null, data, data.length)) == null);
+		check("float is not supported", open(createWave(createFormat(WAVE_FORMAT_IEEE_FLOAT, 0, 2, 16), null, data, data.length)) == null);
+		check("extensible float is not supported", open(createWave(createFormat(WAVE_FORMAT_EXTENSIBLE, WAVE_FORMAT_IEEE_FLOAT, 2, 16), null, data, data.length)) == null);
+		check("six channels are not supported", open(createWave(createFormat(WAVE_FORMAT_PCM, 0, 6, 16), null, data, data.length)) == null);
+		check("data without fmt is not supported", open(createWave(null, null, data, data.length)) == null);
+		check("no riff file", open(data) == null);
+	}
+	
+	/**
+	 * Runs the checks
+	 *
+	 * @param args not used
+	 * @throws IOException
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		testStereo16();
+		testMono8();
+		testChunks();
+		testUnsupported();
+		if(__failures > 0)
+		{
+			System.out.println(__failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("All checks passed");
+	}
+}